@@ -0,0 +1,59 @@
+package ms.imf.redpoint.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 基准测试用节点路径生成工具
+ * <p>
+ * 路径中第 n 层的节点名为 "n{n}_{i}"，i 取值范围为 [0, fanOut)，相同种子生成的路径完全相同
+ */
+public final class BenchmarkPaths {
+
+    private BenchmarkPaths() {
+    }
+
+    /**
+     * 生成指定数量、指定深度的随机节点路径
+     *
+     * @param random 随机数来源
+     * @param count  路径数量
+     * @param depth  路径深度
+     * @param fanOut 每层节点名的可选数量
+     * @return 节点路径列表
+     */
+    public static List<NodePath> randomPaths(Random random, int count, int depth, int fanOut) {
+        List<NodePath> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(randomPath(random, depth, fanOut));
+        }
+        return result;
+    }
+
+    public static NodePath randomPath(Random random, int depth, int fanOut) {
+        Node[] nodes = new Node[depth];
+        for (int level = 0; level < depth; level++) {
+            nodes[level] = Node.instance(nodeName(level, random.nextInt(fanOut)));
+        }
+        return NodePath.instance(nodes);
+    }
+
+    /**
+     * 截取路径的前缀
+     *
+     * @param path  节点路径
+     * @param depth 前缀深度
+     * @return 前缀路径
+     */
+    public static NodePath prefix(NodePath path, int depth) {
+        return NodePath.instance(path.nodes().subList(0, Math.min(depth, path.size())));
+    }
+
+    public static String nodeName(int level, int index) {
+        return "n" + level + "_" + index;
+    }
+}
@@ -0,0 +1,56 @@
+package ms.imf.redpoint.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ms.imf.redpoint.converter.ConvertRule;
+
+/**
+ * 基准测试用转换规则生成工具
+ * <p>
+ * 生成 depth 层、每层 fanOut 个节点的完全规则树，节点名与{@link BenchmarkPaths#nodeName(int, int)}一致，
+ * 每个规则节点都可作为转换终点，转换目标含一个固定值参数和一个引用当前层级 "id" 参数的引用值参数
+ */
+public final class BenchmarkRules {
+
+    private BenchmarkRules() {
+    }
+
+    public static List<ConvertRule> create(int depth, int fanOut) {
+        return create(0, depth, fanOut);
+    }
+
+    private static List<ConvertRule> create(int level, int depth, int fanOut) {
+        if (level >= depth) {
+            return null;
+        }
+
+        List<ConvertRule> rules = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            ConvertRule.Arg fixedArg = new ConvertRule.Arg();
+            fixedArg.hisArg = "level";
+            fixedArg.value = String.valueOf(level);
+
+            ConvertRule.Arg refArg = new ConvertRule.Arg();
+            refArg.hisArg = "id";
+            refArg.refValue = new ConvertRule.Arg.RefValue();
+            refArg.refValue.myLevel = level;
+            refArg.refValue.myArg = "id";
+
+            ConvertRule.ConvertTo convertTo = new ConvertRule.ConvertTo();
+            convertTo.name = "target_" + BenchmarkPaths.nodeName(level, i);
+            convertTo.args = new ArrayList<>();
+            convertTo.args.add(fixedArg);
+            convertTo.args.add(refArg);
+
+            ConvertRule rule = new ConvertRule();
+            rule.name = BenchmarkPaths.nodeName(level, i);
+            rule.args = Collections.singletonList("id");
+            rule.convertTo = Collections.singletonList(convertTo);
+            rule.sub = create(level + 1, depth, fanOut);
+            rules.add(rule);
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,91 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.converter.CachingNodePathConverter;
+import ms.imf.redpoint.converter.CompiledNodePathConverter;
+import ms.imf.redpoint.converter.NodePathConverter;
+import ms.imf.redpoint.entity.Node;
+
+/**
+ * 节点转换器基准测试，对比{@link NodePathConverter}、编译后的{@link CompiledNodePathConverter}及带缓存的{@link CachingNodePathConverter}
+ * <p>
+ * 转换规则见{@link BenchmarkRules}，源路径中约有 1/8 查无匹配
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private static final int SOURCE_PATH_COUNT = 1024;
+
+    @Param({"4", "32"})
+    public int fanOut;
+
+    @Param({"3"})
+    public int depth;
+
+    private NodePathConverter converter;
+    private CompiledNodePathConverter compiledConverter;
+    private CachingNodePathConverter cachingConverter;
+
+    private List<List<Node>> sourcePaths;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        converter = new NodePathConverter(BenchmarkRules.create(depth, fanOut), false);
+        compiledConverter = converter.compile();
+        cachingConverter = new CachingNodePathConverter(compiledConverter, SOURCE_PATH_COUNT);
+
+        Random random = new Random(0);
+        sourcePaths = new ArrayList<>(SOURCE_PATH_COUNT);
+        for (int i = 0; i < SOURCE_PATH_COUNT; i++) {
+            int pathDepth = 1 + random.nextInt(depth);
+            List<Node> path = new ArrayList<>(pathDepth);
+            for (int level = 0; level < pathDepth; level++) {
+                int nodeIndex = random.nextInt(fanOut + (level == pathDepth - 1 && i % 8 == 0 ? fanOut : 0));
+                path.add(Node.instance(BenchmarkPaths.nodeName(level, nodeIndex), "id", String.valueOf(random.nextInt(100))));
+            }
+            sourcePaths.add(path);
+        }
+    }
+
+    @Benchmark
+    public List<Node> convert() {
+        return converter.convert(nextSourcePath());
+    }
+
+    @Benchmark
+    public List<Node> compiledConvert() {
+        return compiledConverter.convert(nextSourcePath());
+    }
+
+    @Benchmark
+    public List<Node> cachingConvert() {
+        return cachingConverter.convert(nextSourcePath());
+    }
+
+    private List<Node> nextSourcePath() {
+        index = (index + 1) & (SOURCE_PATH_COUNT - 1);
+        return sourcePaths.get(index);
+    }
+}
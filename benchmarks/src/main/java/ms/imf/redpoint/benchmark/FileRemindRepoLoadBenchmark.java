@@ -0,0 +1,108 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.CompactRemindSerializer;
+import ms.imf.redpoint.manager.FileRemindRepo;
+import ms.imf.redpoint.manager.PathRemindSerializer;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindSerializer;
+
+/**
+ * {@link FileRemindRepo}冷启动加载的基准测试，即从日志文件重建出可查询的仓库所需的时间
+ * <p>
+ * compacted: 日志已压缩，只含当前消息；appended: 日志为逐批追加且含约1/4已被移除的消息；
+ * path: {@link PathRemindSerializer}；compact: {@link CompactRemindSerializer}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileRemindRepoLoadBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 32;
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"10000", "100000"})
+    public int remindCount;
+
+    @Param({"compacted", "appended"})
+    public String log;
+
+    @Param({"path", "compact"})
+    public String serializer;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("reminds", ".log");
+        file.delete();
+
+        Random random = new Random(0);
+        List<Remind> reminds = new ArrayList<>(remindCount);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, remindCount, PATH_DEPTH, PATH_FAN_OUT)) {
+            reminds.add(new Remind(path));
+        }
+
+        // 关闭自动压缩以保留追加日志的原貌
+        FileRemindRepo<Remind> repo = new FileRemindRepo<>(file, serializer(), Integer.MAX_VALUE);
+        try {
+            for (int start = 0; start < reminds.size(); start += BATCH_SIZE) {
+                List<Remind> batch = reminds.subList(start, Math.min(start + BATCH_SIZE, reminds.size()));
+                repo.addReminds(batch);
+                if (random.nextInt(4) == 0) {
+                    repo.removeReminds(batch.subList(0, batch.size() / 2));
+                }
+            }
+            if ("compacted".equals(log)) {
+                repo.compact();
+            }
+        } finally {
+            repo.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        FileRemindRepo<Remind> repo = new FileRemindRepo<>(file, serializer(), Integer.MAX_VALUE);
+        try {
+            return repo.remindCount();
+        } finally {
+            repo.close();
+        }
+    }
+
+    private RemindSerializer<Remind> serializer() {
+        return "compact".equals(serializer)
+                ? new CompactRemindSerializer()
+                : new PathRemindSerializer();
+    }
+}
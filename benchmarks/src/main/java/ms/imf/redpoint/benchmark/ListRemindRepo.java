@@ -0,0 +1,65 @@
+package ms.imf.redpoint.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ms.imf.redpoint.manager.AbstractRemindRepo;
+import ms.imf.redpoint.manager.BatchableRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindBatch;
+import ms.imf.redpoint.manager.RemindDelta;
+
+/**
+ * 以列表存储消息、完全依赖{@link AbstractRemindRepo}全量扫描匹配的消息仓库，作为基准测试的对照组
+ * <p>
+ * {@link #getAllReminds()}返回只读视图，不拷贝，以免拷贝开销计入对照组的匹配开销
+ */
+public class ListRemindRepo extends AbstractRemindRepo<Remind> implements BatchableRemindRepo<Remind> {
+
+    private final List<Remind> reminds = new ArrayList<>();
+    private final List<Remind> readOnlyReminds = Collections.unmodifiableList(reminds);
+
+    @Override
+    public void addReminds(Iterable<? extends Remind> newReminds) {
+        List<Remind> changed = new ArrayList<>();
+        for (Remind remind : newReminds) {
+            changed.add(remind);
+        }
+        reminds.addAll(changed);
+        dispatchRemindDelta(new RemindDelta<>(changed, Collections.<Remind>emptyList(), Collections.<Remind>emptyList()));
+    }
+
+    @Override
+    public void batch(RemindBatch<Remind> batch) {
+        mergeBatch(batch, this);
+    }
+
+    @Override
+    public Collection<? extends Remind> getAllReminds() {
+        return readOnlyReminds;
+    }
+
+    @Override
+    public void removeReminds(Iterable<? extends Remind> removedReminds) {
+        List<Remind> changed = new ArrayList<>();
+        for (Remind remind : removedReminds) {
+            if (reminds.remove(remind)) {
+                changed.add(remind);
+            }
+        }
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), changed, Collections.<Remind>emptyList()));
+    }
+
+    /**
+     * 默认实现以{@link #getAllReminds()}调用{@link #removeReminds(Iterable)}，而其返回的是视图，需先拷贝
+     */
+    @Override
+    public long removeAllReminds() {
+        List<Remind> changed = new ArrayList<>(reminds);
+        reminds.clear();
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), changed, Collections.<Remind>emptyList()));
+        return changed.size();
+    }
+}
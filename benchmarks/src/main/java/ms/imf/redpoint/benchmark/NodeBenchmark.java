@@ -0,0 +1,83 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeInterner;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * {@link Node}/{@link NodePath}构造、哈希与比较的基准测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeBenchmark {
+
+    private NodePath path;
+    private NodePath equalPath;
+    private NodeInterner interner;
+
+    @Setup
+    public void setUp() {
+        path = createPath();
+        equalPath = createPath();
+        interner = new NodeInterner();
+        interner.intern(path);
+    }
+
+    @Benchmark
+    public Node createNode() {
+        return Node.instance("item", "id", "1", "type", "vip");
+    }
+
+    @Benchmark
+    public NodePath createPath() {
+        return NodePath.instance(
+                Node.instance("home"),
+                Node.instance("list", "listId", "2"),
+                Node.instance("item", "id", "1", "type", "vip"),
+                Node.instance("detail")
+        );
+    }
+
+    /**
+     * 新建路径的首次哈希，包含各节点的首次哈希计算
+     */
+    @Benchmark
+    public int createPathAndHash() {
+        return createPath().hashCode();
+    }
+
+    /**
+     * 已缓存哈希的路径再次哈希
+     */
+    @Benchmark
+    public int cachedPathHash() {
+        return path.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalPathEquals() {
+        return path.equals(equalPath);
+    }
+
+    @Benchmark
+    public NodePath internPath() {
+        return interner.intern(createPath());
+    }
+}
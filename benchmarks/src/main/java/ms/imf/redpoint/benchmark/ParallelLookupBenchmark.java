@@ -0,0 +1,109 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * 大量handler全量刷新的基准测试，对比顺序查找与{@link TreeModeRemindHandlerManager#setLookupPool(ForkJoinPool)}并行查找
+ * <p>
+ * parallelism为线程池并行度，0 == 不设置线程池；并行的收益取决于运行机器的可用核数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelLookupBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 8;
+    private static final int REMIND_COUNT = 4096;
+
+    private static class BlackholeRemindHandler extends RemindHandler<Remind> {
+        private final Blackhole blackhole;
+
+        BlackholeRemindHandler(RemindHandlerManager<Remind> manager, Blackhole blackhole) {
+            super(manager);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            blackhole.consume(reminds);
+        }
+    }
+
+    @Param({"0", "1", "4", "16"})
+    public int parallelism;
+
+    @Param({"4096"})
+    public int handlerCount;
+
+    private TreeModeRemindHandlerManager<Remind> manager;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        Random random = new Random(0);
+
+        List<Remind> reminds = new ArrayList<>(REMIND_COUNT);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, REMIND_COUNT, PATH_DEPTH, PATH_FAN_OUT)) {
+            reminds.add(new Remind(path));
+        }
+        IndexedRemindRepo<Remind> repo = new IndexedRemindRepo<>();
+        repo.addReminds(reminds);
+
+        manager = new TreeModeRemindHandlerManager<>(repo);
+        for (int i = 0; i < handlerCount; i++) {
+            BlackholeRemindHandler handler = new BlackholeRemindHandler(manager, blackhole);
+            handler.setPath(BenchmarkPaths.randomPath(random, 1 + random.nextInt(PATH_DEPTH - 1), PATH_FAN_OUT));
+            handler.attachToManager();
+        }
+
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+            manager.setLookupPool(pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 未知范围的消息变更，所有handler都需重新查找
+     */
+    @Benchmark
+    public void notifyAllRemindChanged() {
+        manager.notifyRemindDataChanged();
+    }
+}
@@ -0,0 +1,144 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindDelta;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * 关注大列表下所有条目的handler基准测试：为每个条目注册一条路径与以一条{@link NodePattern}路径注册的对比
+ * <p>
+ * 消息路径为 'list>item(itemId=n)'，同时有数个只关注单个条目的handler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternPathBenchmark {
+
+    private static final int ITEM_HANDLER_COUNT = 64;
+
+    private static class BlackholeRemindHandler extends RemindHandler<Remind> {
+        private final Blackhole blackhole;
+
+        BlackholeRemindHandler(RemindHandlerManager<Remind> manager, Blackhole blackhole) {
+            super(manager);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            blackhole.consume(reminds);
+        }
+    }
+
+    @Param({"1000", "10000"})
+    public int itemCount;
+
+    /**
+     * concrete: 每个条目一条路径，pattern: 一条节点模式路径
+     */
+    @Param({"concrete", "pattern"})
+    public String registration;
+
+    private TreeModeRemindHandlerManager<Remind> manager;
+    private BlackholeRemindHandler listHandler;
+    private List<NodePath> listHandlerPaths;
+
+    private List<Remind> reminds;
+    private int index;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        Node list = Node.instance("list");
+
+        reminds = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            reminds.add(new Remind(NodePath.instance(list, Node.instance("item", "itemId", String.valueOf(i)))));
+        }
+
+        IndexedRemindRepo<Remind> repo = new IndexedRemindRepo<>();
+        repo.addReminds(reminds);
+        manager = new TreeModeRemindHandlerManager<>(repo);
+
+        for (int i = 0; i < ITEM_HANDLER_COUNT; i++) {
+            BlackholeRemindHandler handler = new BlackholeRemindHandler(manager, blackhole);
+            handler.setPath(reminds.get(i * itemCount / ITEM_HANDLER_COUNT).path());
+            handler.attachToManager();
+        }
+
+        switch (registration) {
+            case "concrete":
+                listHandlerPaths = new ArrayList<>(itemCount);
+                for (Remind remind : reminds) {
+                    listHandlerPaths.add(remind.path());
+                }
+                break;
+            case "pattern":
+                listHandlerPaths = Collections.singletonList(NodePath.instance(list, NodePattern.anyArgs("item", "itemId")));
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("unknown registration '%s'", registration));
+        }
+
+        listHandler = new BlackholeRemindHandler(manager, blackhole);
+        listHandler.setPath(listHandlerPaths);
+        listHandler.attachToManager();
+    }
+
+    /**
+     * 重新附加关注整个列表的handler(附加时会查询并展示其消息)
+     */
+    @Benchmark
+    public void attachAndDetach() {
+        listHandler.detachFromManager();
+        listHandler.attachToManager();
+    }
+
+    /**
+     * 单个条目的增量变更，需找到关注该条目的所有handler
+     */
+    @Benchmark
+    public void notifyItemDelta() {
+        index = (index + 1) % itemCount;
+        manager.notifyRemindDelta(new RemindDelta<>(
+                Collections.<Remind>emptyList(),
+                Collections.<Remind>emptyList(),
+                Collections.singleton(new Remind(reminds.get(index).path()))
+        ));
+    }
+
+    /**
+     * 未知范围的消息变更，刷新所有handler
+     */
+    @Benchmark
+    public void notifyAllRemindChanged() {
+        manager.notifyRemindDataChanged();
+    }
+}
@@ -0,0 +1,114 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+
+/**
+ * 按参数获取/移除消息的基准测试，对比{@link IndexedRemindRepo}的参数倒排索引与全量扫描
+ * <p>
+ * 每个条目有3条消息: 'feed(tab=n)>item(itemId=i)', 'feed(tab=n)>item(itemId=i)>badge', 'detail(itemId=i)'
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindArgIndexBenchmark {
+
+    private static final int TAB_COUNT = 8;
+
+    @Param({"1000", "10000"})
+    public int itemCount;
+
+    private IndexedRemindRepo<Remind> repo;
+    private List<List<Remind>> itemReminds;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        repo = new IndexedRemindRepo<>();
+        itemReminds = new ArrayList<>(itemCount);
+
+        for (int i = 0; i < itemCount; i++) {
+            String itemId = String.valueOf(i);
+            NodePath item = NodePath.instance(
+                    Node.instance("feed", "tab", String.valueOf(i % TAB_COUNT)),
+                    Node.instance("item", "itemId", itemId)
+            );
+
+            List<Remind> reminds = new ArrayList<>(3);
+            reminds.add(new Remind(item));
+            reminds.add(new Remind(NodePath.instance(item, "badge")));
+            reminds.add(new Remind(NodePath.instance(Node.instance("detail", "itemId", itemId))));
+            itemReminds.add(reminds);
+            repo.addReminds(reminds);
+        }
+    }
+
+    @Benchmark
+    public List<Remind> getByArgIndexed() {
+        return repo.getRemindsByArg(null, "itemId", nextItemId());
+    }
+
+    @Benchmark
+    public List<Remind> getByArgScan() {
+        return scan(nextItemId());
+    }
+
+    /**
+     * 移除一个条目的消息后再添加回去，保持仓库规模不变
+     */
+    @Benchmark
+    public long removeByArgIndexed() {
+        String itemId = nextItemId();
+        long count = repo.removeRemindsByArg(null, "itemId", itemId);
+        repo.addReminds(itemReminds.get(index));
+        return count;
+    }
+
+    @Benchmark
+    public long removeByArgScan() {
+        String itemId = nextItemId();
+        List<Remind> reminds = scan(itemId);
+        repo.removeReminds(reminds);
+        repo.addReminds(itemReminds.get(index));
+        return reminds.size();
+    }
+
+    private List<Remind> scan(String itemId) {
+        List<Remind> result = new ArrayList<>();
+        for (Remind remind : repo.getAllReminds()) {
+            for (Node node : remind.path().nodes()) {
+                if (itemId.equals(node.args.get("itemId"))) {
+                    result.add(remind);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private String nextItemId() {
+        index = (index + 1) % itemCount;
+        return String.valueOf(index);
+    }
+}
@@ -0,0 +1,110 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.BatchableRemindRepo;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindBatch;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * 服务端同步一批消息的基准测试，对比逐条变更与{@link BatchableRemindRepo#batch(RemindBatch)}批量变更
+ * <p>
+ * 每次同步以新实例替换全部消息，消息路径为 'sync>g{i % 64}>{i}'，每个分组有一个handler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindBatchBenchmark {
+
+    private static final int GROUP_COUNT = 64;
+
+    private static class BlackholeRemindHandler extends RemindHandler<Remind> {
+        private final Blackhole blackhole;
+
+        BlackholeRemindHandler(RemindHandlerManager<Remind> manager, Blackhole blackhole) {
+            super(manager);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            blackhole.consume(reminds);
+        }
+    }
+
+    @Param({"100", "1000"})
+    public int syncCount;
+
+    private IndexedRemindRepo<Remind> repo;
+    private List<NodePath> paths;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        repo = new IndexedRemindRepo<>();
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            BlackholeRemindHandler handler = new BlackholeRemindHandler(manager, blackhole);
+            handler.setPath(NodePath.instance("sync", "g" + i));
+            handler.attachToManager();
+        }
+
+        paths = new ArrayList<>(syncCount);
+        for (int i = 0; i < syncCount; i++) {
+            paths.add(NodePath.instance("sync", "g" + (i % GROUP_COUNT), String.valueOf(i)));
+        }
+        repo.addReminds(newReminds());
+    }
+
+    @Benchmark
+    public void syncEach() {
+        for (NodePath path : paths) {
+            repo.addReminds(Collections.singleton(new Remind(path)));
+        }
+    }
+
+    @Benchmark
+    public void syncBatch() {
+        repo.batch(new RemindBatch<Remind>() {
+            @Override
+            public void apply(BatchableRemindRepo<Remind> repo) {
+                for (NodePath path : paths) {
+                    repo.addReminds(Collections.singleton(new Remind(path)));
+                }
+            }
+        });
+    }
+
+    private List<Remind> newReminds() {
+        List<Remind> result = new ArrayList<>(paths.size());
+        for (NodePath path : paths) {
+            result.add(new Remind(path));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,144 @@
+package ms.imf.redpoint.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeDictionary;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindCodec;
+
+/**
+ * 消息编解码的基准测试，对比Java默认序列化、Gson及{@link RemindCodec}(无字典/共享字典)
+ * <p>
+ * 各编码方式的编码结果大小在Setup时输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindCodecBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 16;
+
+    private static final Type GSON_TYPE = new TypeToken<List<List<Node>>>() {
+    }.getType();
+
+    @Param({"1000"})
+    public int remindCount;
+
+    @Param({"java", "gson", "compact", "compactDictionary"})
+    public String codec;
+
+    private final Gson gson = new Gson();
+
+    private List<Remind> reminds;
+    private NodeDictionary dictionary;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(0);
+        reminds = new ArrayList<>(remindCount);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, remindCount, PATH_DEPTH, PATH_FAN_OUT)) {
+            // 末级节点带参数，模拟列表项
+            List<Node> nodes = new ArrayList<>(path.nodes());
+            nodes.set(nodes.size() - 1, Node.instance(nodes.get(nodes.size() - 1).name, "id", String.valueOf(random.nextInt(100))));
+            reminds.add(new Remind(NodePath.instance(nodes)));
+        }
+
+        List<String> strings = new ArrayList<>();
+        strings.add("id");
+        for (int level = 0; level < PATH_DEPTH; level++) {
+            for (int i = 0; i < PATH_FAN_OUT; i++) {
+                strings.add(BenchmarkPaths.nodeName(level, i));
+            }
+        }
+        dictionary = new NodeDictionary(strings);
+
+        encoded = encode().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encode() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        switch (codec) {
+            case "java":
+                ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+                objectOutputStream.writeObject(reminds);
+                objectOutputStream.flush();
+                break;
+            case "gson":
+                List<List<Node>> paths = new ArrayList<>(reminds.size());
+                for (Remind remind : reminds) {
+                    paths.add(remind.path().nodes());
+                }
+                Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+                gson.toJson(paths, GSON_TYPE, writer);
+                writer.flush();
+                break;
+            case "compact":
+                RemindCodec.encode(reminds, outputStream, NodeDictionary.EMPTY);
+                break;
+            case "compactDictionary":
+                RemindCodec.encode(reminds, outputStream, dictionary);
+                break;
+            default:
+                throw new IllegalStateException(codec);
+        }
+        return outputStream;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Remind> decode() throws IOException, ClassNotFoundException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(encoded);
+        switch (codec) {
+            case "java":
+                return (List<Remind>) new ObjectInputStream(inputStream).readObject();
+            case "gson":
+                List<List<Node>> paths = gson.fromJson(new InputStreamReader(inputStream, "UTF-8"), GSON_TYPE);
+                List<Remind> result = new ArrayList<>(paths.size());
+                for (List<Node> path : paths) {
+                    result.add(new Remind(NodePath.instance(path)));
+                }
+                return result;
+            case "compact":
+                return RemindCodec.decode(inputStream, NodeDictionary.EMPTY);
+            case "compactDictionary":
+                return RemindCodec.decode(inputStream, dictionary);
+            default:
+                throw new IllegalStateException(codec);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+
+/**
+ * 清理过期消息的基准测试，对比{@link IndexedRemindRepo#evictExpiredReminds()}与移除全部消息后重新加载有效消息
+ * <p>
+ * 每次操作先添加{@link #EXPIRED_COUNT}条已过期的消息，再将其清理掉，仓库中另有remindCount条永不过期的消息
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindExpiryBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 8;
+    private static final int EXPIRED_COUNT = 16;
+
+    @Param({"1000", "10000"})
+    public int remindCount;
+
+    private IndexedRemindRepo<Remind> repo;
+    private List<Remind> liveReminds;
+    private List<Remind> expiredReminds;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+
+        liveReminds = new ArrayList<>(remindCount);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, remindCount, PATH_DEPTH, PATH_FAN_OUT)) {
+            liveReminds.add(new Remind(path));
+        }
+        expiredReminds = new ArrayList<>(EXPIRED_COUNT);
+        for (int i = 0; i < EXPIRED_COUNT; i++) {
+            expiredReminds.add(new Remind(NodePath.instance("campaign", String.valueOf(i)), 1));
+        }
+
+        repo = new IndexedRemindRepo<>();
+        repo.addReminds(liveReminds);
+    }
+
+    @Benchmark
+    public int evictExpired() {
+        repo.addReminds(expiredReminds);
+        return repo.evictExpiredReminds();
+    }
+
+    @Benchmark
+    public long reloadAll() {
+        repo.addReminds(expiredReminds);
+        long removedCount = repo.removeAllReminds();
+        repo.addReminds(liveReminds);
+        return removedCount;
+    }
+}
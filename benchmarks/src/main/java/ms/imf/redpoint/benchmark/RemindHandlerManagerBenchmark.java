@@ -0,0 +1,158 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindDelta;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.RemindRepo;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * {@link TreeModeRemindHandlerManager}附加handler与通知刷新的基准测试
+ * <p>
+ * 消息路径深度为4、每层8种节点，handler关注深度为1~3的随机路径前缀
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindHandlerManagerBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 8;
+
+    /**
+     * 展示消息时只交给{@link Blackhole}消费，避免被JIT优化掉
+     */
+    private static class BlackholeRemindHandler extends RemindHandler<Remind> {
+        private final Blackhole blackhole;
+
+        BlackholeRemindHandler(RemindHandlerManager<Remind> manager, Blackhole blackhole) {
+            super(manager);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            blackhole.consume(reminds);
+        }
+    }
+
+    @Param({"16", "256"})
+    public int handlerCount;
+
+    @Param({"256", "4096"})
+    public int remindCount;
+
+    @Param({"list", "indexed"})
+    public String repo;
+
+    private TreeModeRemindHandlerManager<Remind> manager;
+    private BlackholeRemindHandler spareHandler;
+
+    private List<Remind> reminds;
+    private int index;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        Random random = new Random(0);
+
+        reminds = new ArrayList<>(remindCount);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, remindCount, PATH_DEPTH, PATH_FAN_OUT)) {
+            reminds.add(new Remind(path));
+        }
+
+        RemindRepo<Remind> remindRepo;
+        switch (repo) {
+            case "list":
+                ListRemindRepo listRemindRepo = new ListRemindRepo();
+                listRemindRepo.addReminds(reminds);
+                remindRepo = listRemindRepo;
+                break;
+            case "indexed":
+                IndexedRemindRepo<Remind> indexedRemindRepo = new IndexedRemindRepo<>();
+                indexedRemindRepo.addReminds(reminds);
+                remindRepo = indexedRemindRepo;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("unknown repo '%s'", repo));
+        }
+
+        manager = new TreeModeRemindHandlerManager<>(remindRepo);
+        for (int i = 0; i < handlerCount; i++) {
+            BlackholeRemindHandler handler = new BlackholeRemindHandler(manager, blackhole);
+            handler.setPath(randomHandlerPath(random));
+            handler.attachToManager();
+        }
+
+        spareHandler = new BlackholeRemindHandler(manager, blackhole);
+        spareHandler.setPath(randomHandlerPath(random));
+    }
+
+    /**
+     * 附加一个handler(附加时会查询并展示其消息)后再解除附加
+     */
+    @Benchmark
+    public void attachAndDetach() {
+        spareHandler.attachToManager();
+        spareHandler.detachFromManager();
+    }
+
+    /**
+     * 单条消息变更，只刷新关注该消息的handler
+     */
+    @Benchmark
+    public void notifyRemindChanged() {
+        index = (index + 1) % remindCount;
+        manager.notifyRemindDataChanged(Collections.singleton(reminds.get(index)));
+    }
+
+    /**
+     * 单条消息的增量变更(替换为新实例)，只将增量合并到关注该消息的handler缓存，不查询仓库
+     */
+    @Benchmark
+    public void notifyRemindDelta() {
+        index = (index + 1) % remindCount;
+        manager.notifyRemindDelta(new RemindDelta<>(
+                Collections.<Remind>emptyList(),
+                Collections.<Remind>emptyList(),
+                Collections.singleton(new Remind(reminds.get(index).path()))
+        ));
+    }
+
+    /**
+     * 未知范围的消息变更，刷新所有handler
+     */
+    @Benchmark
+    public void notifyAllRemindChanged() {
+        manager.notifyRemindDataChanged();
+    }
+
+    private static NodePath randomHandlerPath(Random random) {
+        return BenchmarkPaths.randomPath(random, 1 + random.nextInt(PATH_DEPTH - 1), PATH_FAN_OUT);
+    }
+}
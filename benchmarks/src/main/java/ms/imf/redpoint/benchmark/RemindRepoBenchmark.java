@@ -0,0 +1,109 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.AbstractRemindRepo;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.OffHeapRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+
+/**
+ * 消息仓库路径匹配的基准测试，对比{@link AbstractRemindRepo}的全量扫描匹配与{@link IndexedRemindRepo}的前缀树匹配，
+ * 以及{@link OffHeapRemindRepo}查询时解码生成消息的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemindRepoBenchmark {
+
+    private static final int PATH_DEPTH = 4;
+    private static final int PATH_FAN_OUT = 8;
+    private static final int QUERY_COUNT = 1024;
+    private static final int QUERY_PATH_COUNT = 4;
+
+    @Param({"256", "4096"})
+    public int remindCount;
+
+    @Param({"list", "indexed", "offHeap"})
+    public String repo;
+
+    private AbstractRemindRepo<Remind> remindRepo;
+
+    private List<List<NodePath>> queries;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+
+        List<Remind> reminds = new ArrayList<>(remindCount);
+        for (NodePath path : BenchmarkPaths.randomPaths(random, remindCount, PATH_DEPTH, PATH_FAN_OUT)) {
+            reminds.add(new Remind(path));
+        }
+
+        switch (repo) {
+            case "list":
+                ListRemindRepo listRemindRepo = new ListRemindRepo();
+                listRemindRepo.addReminds(reminds);
+                remindRepo = listRemindRepo;
+                break;
+            case "indexed":
+                IndexedRemindRepo<Remind> indexedRemindRepo = new IndexedRemindRepo<>();
+                indexedRemindRepo.addReminds(reminds);
+                remindRepo = indexedRemindRepo;
+                break;
+            case "offHeap":
+                OffHeapRemindRepo offHeapRemindRepo = new OffHeapRemindRepo();
+                offHeapRemindRepo.addReminds(reminds);
+                remindRepo = offHeapRemindRepo;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("unknown repo '%s'", repo));
+        }
+
+        queries = new ArrayList<>(QUERY_COUNT);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            List<NodePath> query = new ArrayList<>(QUERY_PATH_COUNT);
+            for (int j = 0; j < QUERY_PATH_COUNT; j++) {
+                query.add(BenchmarkPaths.prefix(reminds.get(random.nextInt(remindCount)).path(), 1 + random.nextInt(PATH_DEPTH)));
+            }
+            queries.add(query);
+        }
+    }
+
+    @Benchmark
+    public Map<NodePath, ? extends Collection<? extends Remind>> getMatchPathReminds() {
+        return remindRepo.getMatchPathReminds(nextQuery());
+    }
+
+    @Benchmark
+    public Map<NodePath, ? extends Collection<? extends Remind>> getMatchPathSubReminds() {
+        return remindRepo.getMatchPathSubReminds(nextQuery());
+    }
+
+    private List<NodePath> nextQuery() {
+        index = (index + 1) & (QUERY_COUNT - 1);
+        return queries.get(index);
+    }
+}
@@ -0,0 +1,133 @@
+package ms.imf.redpoint.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.BatchableRemindRepo;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.OffHeapRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * 对比{@link IndexedRemindRepo}与{@link OffHeapRemindRepo}保存大量消息时的堆内存占用，以及{@link OffHeapRemindRepo}占用的直接内存
+ * <p>
+ * 消息路径形如 'category_i>item(itemId=n)>badge_j'，每个条目的消息各不相同；
+ * 消息分批生成并添加，添加后不再持有，结果包含仓库保存消息所需的全部对象；
+ * 以GC后的堆使用量之差估算，同一次运行内的各实现之间可直接比较
+ * <p>
+ * '+manager'为经由{@link TreeModeRemindHandlerManager}使用仓库时的占用：每个category附加一个handler并完成一次分发，
+ * handler只记录消息数量，结果包含仓库及管理器为handler保留的全部对象
+ * <pre>
+ * java -cp ... ms.imf.redpoint.benchmark.RemindRepoMemoryReport [消息数量]
+ * </pre>
+ */
+public class RemindRepoMemoryReport {
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int CATEGORY_COUNT = 16;
+    private static final int BADGE_COUNT = 4;
+
+    public static void main(String[] args) {
+        int remindCount = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+        System.out.println(String.format("reminds=%d", remindCount));
+        report("indexed", new IndexedRemindRepo<Remind>(), remindCount, false);
+        report("indexed+manager", new IndexedRemindRepo<Remind>(), remindCount, true);
+        report("offHeap+manager", new OffHeapRemindRepo(), remindCount, true);
+        OffHeapRemindRepo offHeap = new OffHeapRemindRepo();
+        report("offHeap", offHeap, remindCount, false);
+        System.out.println(String.format(
+                "offHeap: %.1f bytes/remind direct memory, %.1f MB total",
+                (double) offHeap.offHeapBytes() / remindCount,
+                offHeap.offHeapBytes() / 1024.0 / 1024.0
+        ));
+    }
+
+    /**
+     * 只记录消息数量的handler
+     */
+    private static class CountingRemindHandler extends RemindHandler<Remind> {
+        int remindCount;
+
+        CountingRemindHandler(RemindHandlerManager<Remind> manager) {
+            super(manager);
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            remindCount = reminds.size();
+        }
+    }
+
+    private static void report(String name, BatchableRemindRepo<Remind> repo, int remindCount, boolean withManager) {
+        Random random = new Random(0);
+
+        long before = usedHeap();
+        for (int start = 0; start < remindCount; start += BATCH_SIZE) {
+            int end = Math.min(remindCount, start + BATCH_SIZE);
+            List<Remind> reminds = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                reminds.add(new Remind(NodePath.instance(
+                        Node.instance("category_" + random.nextInt(CATEGORY_COUNT)),
+                        Node.instance("item", "itemId", String.valueOf(i)),
+                        Node.instance("badge_" + random.nextInt(BADGE_COUNT))
+                )));
+            }
+            repo.addReminds(reminds);
+        }
+
+        List<CountingRemindHandler> handlers = new ArrayList<>();
+        if (withManager) {
+            TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+            for (int i = 0; i < CATEGORY_COUNT; i++) {
+                CountingRemindHandler handler = new CountingRemindHandler(manager);
+                handler.setPath(NodePath.instance("category_" + i));
+                handler.attachToManager();
+                handlers.add(handler);
+            }
+        }
+        long after = usedHeap();
+
+        System.out.println(String.format(
+                "%-16s %10.1f bytes/remind heap, %8.1f MB total",
+                name,
+                (double) (after - before) / remindCount,
+                (after - before) / 1024.0 / 1024.0
+        ));
+
+        // 保证测量期间仓库不被回收
+        if (repo.getAllReminds().size() != remindCount) {
+            throw new IllegalStateException(name + " lost reminds");
+        }
+        int deliveredCount = 0;
+        for (CountingRemindHandler handler : handlers) {
+            deliveredCount += handler.remindCount;
+        }
+        if (withManager
+                && deliveredCount != remindCount) {
+            throw new IllegalStateException(name + " delivered " + deliveredCount + " reminds");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,75 @@
+package ms.imf.redpoint.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.converter.BinaryConvertRules;
+import ms.imf.redpoint.converter.CompiledNodePathConverter;
+import ms.imf.redpoint.converter.NodePathConverter;
+import ms.imf.redpoint.converter.StreamingConvertRuleLoader;
+
+/**
+ * 转换规则加载的基准测试，对比 Gson 反射解析 + 全量校验 + 编译、{@link StreamingConvertRuleLoader}流式加载
+ * 及{@link BinaryConvertRules}预编译二进制加载，二进制加载不做校验，与checkRules参数无关
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleLoadBenchmark {
+
+    @Param({"8", "24"})
+    public int fanOut;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"true", "false"})
+    public boolean checkRules;
+
+    private String rulesJson;
+    private ByteBuffer rulesBinary;
+
+    @Setup
+    public void setUp() throws IOException {
+        rulesJson = new Gson().toJson(BenchmarkRules.create(depth, fanOut));
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryConvertRules.write(BenchmarkRules.create(depth, fanOut), null, binary);
+        rulesBinary = ByteBuffer.wrap(binary.toByteArray());
+    }
+
+    @Benchmark
+    public CompiledNodePathConverter gsonLoad() {
+        return new NodePathConverter(rulesJson, checkRules).compile();
+    }
+
+    @Benchmark
+    public CompiledNodePathConverter streamingLoad() {
+        return StreamingConvertRuleLoader.load(new StringReader(rulesJson), null, checkRules).converter;
+    }
+
+    @Benchmark
+    public CompiledNodePathConverter binaryLoad() {
+        return BinaryConvertRules.load(rulesBinary);
+    }
+}
@@ -0,0 +1,97 @@
+package ms.imf.redpoint.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.manager.IndexedRemindRepo;
+import ms.imf.redpoint.manager.Remind;
+import ms.imf.redpoint.manager.RemindHandler;
+import ms.imf.redpoint.manager.RemindHandlerManager;
+import ms.imf.redpoint.manager.RemindRepo;
+import ms.imf.redpoint.manager.ShardedRemindHandlerManager;
+import ms.imf.redpoint.manager.TreeModeRemindHandlerManager;
+
+/**
+ * 多租户分片管理器的基准测试，多个线程随机获取租户并更新其消息
+ * <p>
+ * 每个租户有一条消息'home>badge'及关注'home'的handler，shardCount为1时相当于所有租户共用一把锁及一颗handler节点树
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ShardedManagerBenchmark {
+
+    private static final NodePath HOME = NodePath.instance("home");
+    private static final NodePath BADGE = NodePath.instance("home", "badge");
+
+    private static class BlackholeRemindHandler extends RemindHandler<Remind> {
+        private final Blackhole blackhole;
+
+        BlackholeRemindHandler(RemindHandlerManager<Remind> manager, Blackhole blackhole) {
+            super(manager);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends Remind> reminds) {
+            blackhole.consume(reminds);
+        }
+    }
+
+    @Param({"1", "16"})
+    public int shardCount;
+
+    @Param({"10000"})
+    public int tenantCount;
+
+    private ShardedRemindHandlerManager<Remind> sharded;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        sharded = new ShardedRemindHandlerManager<>(shardCount, new ShardedRemindHandlerManager.RepoFactory<Remind>() {
+            @Override
+            public RemindRepo<Remind> createRepo(String tenantId) {
+                return new IndexedRemindRepo<>();
+            }
+        });
+
+        for (int i = 0; i < tenantCount; i++) {
+            BlackholeRemindHandler handler = new BlackholeRemindHandler(sharded.manager(String.valueOf(i)), blackhole);
+            handler.setPath(HOME);
+            handler.attachToManager();
+        }
+    }
+
+    @Benchmark
+    public TreeModeRemindHandlerManager<Remind> getTenant() {
+        return sharded.manager(String.valueOf(ThreadLocalRandom.current().nextInt(tenantCount)));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void updateTenantRemind() {
+        TreeModeRemindHandlerManager<Remind> manager = sharded.manager(String.valueOf(ThreadLocalRandom.current().nextInt(tenantCount)));
+        ((IndexedRemindRepo<Remind>) manager.remindRepo()).addReminds(Collections.singleton(new Remind(BADGE)));
+    }
+}
@@ -0,0 +1,127 @@
+package ms.imf.redpoint.manager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.benchmark.BenchmarkPaths;
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * {@link TreeStructure}及其并发、紧凑实现的基准测试，内存占用对比参见{@link TreeStructureMemoryReport}
+ * <p>
+ * {@link TreeStructure}为包内可见类，所以本基准测试放在与其相同的包下
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeStructureBenchmark {
+
+    private static final int DATA_COUNT = 1024;
+    private static final int QUERY_PATH_COUNT = 8;
+
+    @Param({"plain", "concurrentSafe", "copyOnWrite", "compact"})
+    public String implementation;
+
+    @Param({"3", "6"})
+    public int depth;
+
+    @Param({"4", "16"})
+    public int fanOut;
+
+    private TreeStructure<Node, Integer> tree;
+
+    private List<NodePath> paths;
+    private List<List<NodePath>> queryPaths;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        tree = createTreeStructure(implementation);
+
+        Random random = new Random(0);
+        paths = BenchmarkPaths.randomPaths(random, DATA_COUNT, depth, fanOut);
+        for (int i = 0; i < DATA_COUNT; i++) {
+            tree.put(i, paths.get(i).nodes());
+        }
+
+        queryPaths = new ArrayList<>(DATA_COUNT);
+        for (int i = 0; i < DATA_COUNT; i++) {
+            List<NodePath> query = new ArrayList<>(QUERY_PATH_COUNT);
+            for (int j = 0; j < QUERY_PATH_COUNT; j++) {
+                query.add(BenchmarkPaths.prefix(paths.get(random.nextInt(DATA_COUNT)), 1 + random.nextInt(depth)));
+            }
+            queryPaths.add(query);
+        }
+    }
+
+    /**
+     * 放入一条新数据后再将其移除，保持树规模不变
+     */
+    @Benchmark
+    public TreeStructure<Node, Integer> putAndRemove() {
+        NodePath path = paths.get(nextIndex());
+        tree.put(-1, path.nodes());
+        tree.remove(-1, path.nodes());
+        return tree;
+    }
+
+    @Benchmark
+    public Set<Integer> getMatchPathsSubData() {
+        List<NodePath> query = queryPaths.get(nextIndex());
+        List<List<Node>> queryNodes = new ArrayList<>(query.size());
+        for (NodePath path : query) {
+            queryNodes.add(path.nodes());
+        }
+        return tree.getMatchPathsSubData(queryNodes);
+    }
+
+    @Benchmark
+    public Set<Integer> getMatchPathSubData() {
+        return tree.getMatchPathsSubData(Collections.singleton(queryPaths.get(nextIndex()).get(0).nodes()));
+    }
+
+    @Benchmark
+    public Set<Integer> getShortestPathData() {
+        return tree.getShortestPathData();
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & (DATA_COUNT - 1);
+        return index;
+    }
+
+    private static TreeStructure<Node, Integer> createTreeStructure(String implementation) {
+        switch (implementation) {
+            case "plain":
+                return new TreeStructure<>();
+            case "concurrentSafe":
+                return new ConcurrentSafeTreeStructure<>();
+            case "copyOnWrite":
+                return new CopyOnWriteTreeStructure<>();
+            case "compact":
+                return new CompactTreeStructure<>();
+            default:
+                throw new IllegalArgumentException(String.format("unknown implementation '%s'", implementation));
+        }
+    }
+}
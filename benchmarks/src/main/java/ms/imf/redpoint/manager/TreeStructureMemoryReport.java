@@ -0,0 +1,76 @@
+package ms.imf.redpoint.manager;
+
+import java.util.List;
+import java.util.Random;
+
+import ms.imf.redpoint.benchmark.BenchmarkPaths;
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 对比{@link TreeStructure}各实现的内存占用，输出每条路径平均占用的堆内存字节数
+ * <p>
+ * 路径及其节点在测量前已创建，不计入结果，结果只包含树结构自身的开销；
+ * 以GC后的堆使用量之差估算，结果受JVM参数(如是否压缩指针)影响，同一次运行内的各实现之间可直接比较
+ * <pre>
+ * java -cp ... ms.imf.redpoint.manager.TreeStructureMemoryReport [路径数量] [路径深度] [每层节点种类]
+ * </pre>
+ */
+public class TreeStructureMemoryReport {
+
+    public static void main(String[] args) {
+        int pathCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int fanOut = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        List<NodePath> paths = BenchmarkPaths.randomPaths(new Random(0), pathCount, depth, fanOut);
+
+        System.out.println(String.format("paths=%d, depth=%d, fanOut=%d", pathCount, depth, fanOut));
+        report("plain", new TreeStructure<Node, Integer>(), paths);
+        report("copyOnWrite", new CopyOnWriteTreeStructure<Node, Integer>(), paths);
+        CompactTreeStructure<Node, Integer> compact = new CompactTreeStructure<>();
+        report("compact", compact, paths);
+        System.out.println(String.format("compact: treeNodes=%d, nodeIds=%d", compact.treeNodeCount(), compact.nodeIdCount()));
+    }
+
+    private static void report(String name, TreeStructure<Node, Integer> tree, List<NodePath> paths) {
+        // 预先装箱，避免数据对象计入树结构的开销
+        Integer[] data = new Integer[paths.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+
+        long before = usedHeap();
+        for (int i = 0; i < data.length; i++) {
+            tree.put(data[i], paths.get(i).nodes());
+        }
+        long after = usedHeap();
+
+        System.out.println(String.format(
+                "%-12s %10.1f bytes/path, %8.1f MB total",
+                name,
+                (double) (after - before) / paths.size(),
+                (after - before) / 1024.0 / 1024.0
+        ));
+
+        // 保证测量期间树结构不被回收
+        if (tree.getMatchPathData(paths.get(0).nodes()).isEmpty()) {
+            throw new IllegalStateException(name + " lost data");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,94 @@
+package ms.imf.redpoint.compiler.plugin.nodeconverter.binary;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.List;
+
+import ms.imf.redpoint.compiler.plugin.AptProcessException;
+import ms.imf.redpoint.compiler.plugin.NodeTreeHandlePlugin;
+import ms.imf.redpoint.converter.BinaryConvertRules;
+import ms.imf.redpoint.converter.ConvertRule;
+import ms.imf.redpoint.converter.ConvertRuleChecker;
+import ms.imf.redpoint.converter.NodePathConverter;
+import ms.imf.redpoint.entity.NodeTree;
+import ms.imf.redpoint.util.ResourceHandler;
+
+/**
+ * 节点转换规则二进制导出插件，在编译期校验节点转换规则并将其导出为预编译的二进制格式
+ * <p>
+ * 运行时通过{@link NodePathConverter#fromBinary(InputStream)}直接加载导出的资源，省去JSON解析及规则校验的开销
+ *
+ * <pre>
+ * 所需参数：
+ *   参数1：节点转换规则JSON资源类型及位置，JSON格式为toJson(List<{@link ConvertRule}>)，支持资源类型参见 {@link ResourceHandler}
+ *   参数2：导出资源类型及目标，格式参见 {@link BinaryConvertRules}，支持资源类型参见 {@link ResourceHandler}
+ *   参数3：可选，是否将编译期节点树作为转换目标节点树一并导出，true/false，默认false
+ * </pre>
+ */
+public class NodeConvertRuleBinaryExportCompilerPlugin implements NodeTreeHandlePlugin {
+
+    @Override
+    public void onNodeTreeParsed(PluginContext context) throws AptProcessException {
+        if (context.args() == null
+                || context.args().length <= 1
+                || context.args()[0] == null
+                || context.args()[0].isEmpty()
+                || context.args()[1] == null
+                || context.args()[1].isEmpty()) {
+            throw new AptProcessException("args can't be empty, I need convertRuleResourceStr and exportResourceStr, please add them into args[0] and args[1]");
+        }
+
+        final String convertRuleResourceStr = context.args()[0];
+        final String exportResourceStr = context.args()[1];
+        final boolean isExportNodeTree = context.args().length > 2
+                && Boolean.parseBoolean(context.args()[2]);
+
+        final List<ConvertRule> convertRules;
+        try {
+            InputStream convertRuleInputStream = ResourceHandler.read(context.processingEnvironment(), convertRuleResourceStr);
+            try {
+                convertRules = new Gson().fromJson(
+                        new InputStreamReader(convertRuleInputStream, "UTF-8"),
+                        new TypeToken<List<ConvertRule>>() {
+                        }.getType()
+                );
+            } finally {
+                convertRuleInputStream.close();
+            }
+        } catch (Exception e) {
+            throw new AptProcessException(
+                    String.format(
+                            "found error on read args[0]-convertRuleResource %s: %s",
+                            convertRuleResourceStr,
+                            e.getMessage()
+                    ),
+                    e
+            );
+        }
+
+        try {
+            ConvertRuleChecker.check(convertRules, context.nodeTree());
+        } catch (IllegalArgumentException e) {
+            throw new AptProcessException(String.format("found error on convert config check: %s", e.getMessage()), e);
+        }
+
+        final List<NodeTree> targetNodeTreeSchema = isExportNodeTree
+                ? context.nodeTree()
+                : null;
+
+        try {
+            OutputStream target = ResourceHandler.write(context.processingEnvironment(), exportResourceStr);
+            try {
+                BinaryConvertRules.write(convertRules, targetNodeTreeSchema, target);
+            } finally {
+                target.close();
+            }
+        } catch (Exception e) {
+            throw new AptProcessException(String.format("found error on write convertRules binary to %s: %s", exportResourceStr, e.getMessage()), e);
+        }
+    }
+}
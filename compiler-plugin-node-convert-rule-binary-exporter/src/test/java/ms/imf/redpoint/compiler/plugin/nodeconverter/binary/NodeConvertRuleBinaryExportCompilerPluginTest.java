@@ -0,0 +1,190 @@
+package ms.imf.redpoint.compiler.plugin.nodeconverter.binary;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+import ms.imf.redpoint.compiler.plugin.AptProcessException;
+import ms.imf.redpoint.compiler.plugin.NodeContainerEntity;
+import ms.imf.redpoint.compiler.plugin.NodeTreeHandlePlugin;
+import ms.imf.redpoint.converter.BinaryConvertRules;
+import ms.imf.redpoint.converter.NodePathConverter;
+import ms.imf.redpoint.converter.PathConverter;
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeTree;
+import ms.imf.redpoint.util.ResourceHandler;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NodeConvertRuleBinaryExportCompilerPluginTest {
+
+    private static final String RULES = ("[" +
+            "{'name':'home','args':['tab'],'convertTo':[{'name':'main','args':[{'hisArg':'tab','refValue':{'myLevel':0,'myArg':'tab'}}]}],'sub':[" +
+            "  {'name':'msg','args':['id'],'convertTo':[{'name':'main'},{'name':'message','args':[{'hisArg':'msgId','refValue':{'myLevel':1,'myArg':'id'}}]}]}" +
+            "]}" +
+            "]").replace('\'', '"');
+
+    private static final String NODE_TREE = ("[" +
+            "{'name':'main','args':[{'name':'tab'}],'sub':[{'name':'message','args':[{'name':'msgId'}]}]}" +
+            "]").replace('\'', '"');
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void export() throws Exception {
+        File rulesFile = writeFile(RULES);
+        File exportFile = new File(folder.getRoot(), "rules.bin");
+
+        new NodeConvertRuleBinaryExportCompilerPlugin().onNodeTreeParsed(context(
+                ResourceHandler.RESOURCE_TYPE_FILE + rulesFile.getPath(),
+                ResourceHandler.RESOURCE_TYPE_FILE + exportFile.getPath()
+        ));
+
+        // 导出的二进制规则应与 JSON 规则的转换结果一致
+        PathConverter jsonConverter = new NodePathConverter(RULES, NODE_TREE);
+        PathConverter binaryConverter = NodePathConverter.fromBinary(exportFile);
+        List<List<Node>> sources = Arrays.asList(
+                Arrays.asList(Node.instance("home", "tab", "a")),
+                Arrays.asList(Node.instance("home", "tab", "a"), Node.instance("msg", "id", "1")),
+                Arrays.asList(Node.instance("msg"))
+        );
+        for (List<Node> source : sources) {
+            assertThat(source.toString(), binaryConverter.convert(source), is(jsonConverter.convert(source)));
+        }
+
+        assertThat(loadTargetNodeTreeSchema(exportFile), is(nullValue()));
+    }
+
+    @Test
+    public void exportNodeTree() throws Exception {
+        File rulesFile = writeFile(RULES);
+        File exportFile = new File(folder.getRoot(), "rules.bin");
+
+        new NodeConvertRuleBinaryExportCompilerPlugin().onNodeTreeParsed(context(
+                ResourceHandler.RESOURCE_TYPE_FILE + rulesFile.getPath(),
+                ResourceHandler.RESOURCE_TYPE_FILE + exportFile.getPath(),
+                "true"
+        ));
+
+        assertThat(String.valueOf(loadTargetNodeTreeSchema(exportFile)), is(nodeTree().toString()));
+    }
+
+    @Test
+    public void missingArgs() {
+        assertRejected(context(), "args can't be empty");
+        assertRejected(context(ResourceHandler.RESOURCE_TYPE_FILE + "rules.json"), "args can't be empty");
+        assertRejected(context("", ResourceHandler.RESOURCE_TYPE_FILE + "rules.bin"), "args can't be empty");
+    }
+
+    @Test
+    public void unreadableRules() throws IOException {
+        File exportFile = new File(folder.getRoot(), "rules.bin");
+
+        assertRejected(
+                context(ResourceHandler.RESOURCE_TYPE_FILE + new File(folder.getRoot(), "absent.json").getPath(), ResourceHandler.RESOURCE_TYPE_FILE + exportFile.getPath()),
+                "found error on read args[0]-convertRuleResource"
+        );
+        assertRejected(
+                context(ResourceHandler.RESOURCE_TYPE_FILE + writeFile("[{").getPath(), ResourceHandler.RESOURCE_TYPE_FILE + exportFile.getPath()),
+                "found error on read args[0]-convertRuleResource"
+        );
+        assertThat(exportFile.exists(), is(false));
+    }
+
+    @Test
+    public void invalidRules() throws IOException {
+        File exportFile = new File(folder.getRoot(), "rules.bin");
+        // 转换目标节点不在编译期节点树中
+        String rules = "[{'name':'home','convertTo':[{'name':'unknown'}]}]".replace('\'', '"');
+
+        assertRejected(
+                context(ResourceHandler.RESOURCE_TYPE_FILE + writeFile(rules).getPath(), ResourceHandler.RESOURCE_TYPE_FILE + exportFile.getPath()),
+                "found error on convert config check"
+        );
+        assertThat(exportFile.exists(), is(false));
+    }
+
+    private static void assertRejected(NodeTreeHandlePlugin.PluginContext context, String expectedMessage) {
+        try {
+            new NodeConvertRuleBinaryExportCompilerPlugin().onNodeTreeParsed(context);
+            fail("plugin should reject: " + Arrays.toString(context.args()));
+        } catch (AptProcessException e) {
+            assertThat(e.getMessage(), containsString(expectedMessage));
+        }
+    }
+
+    private static List<NodeTree> loadTargetNodeTreeSchema(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return BinaryConvertRules.loadTargetNodeTreeSchema(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private File writeFile(String content) throws IOException {
+        File file = folder.newFile();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static List<NodeTree> nodeTree() {
+        return new Gson().fromJson(NODE_TREE, new TypeToken<List<NodeTree>>() {
+        }.getType());
+    }
+
+    private static NodeTreeHandlePlugin.PluginContext context(final String... args) {
+        final List<NodeTree> nodeTree = nodeTree();
+        return new NodeTreeHandlePlugin.PluginContext() {
+            @Override
+            public ProcessingEnvironment processingEnvironment() {
+                return null;
+            }
+
+            @Override
+            public String[] args() {
+                return args;
+            }
+
+            @Override
+            public List<NodeContainerEntity> flatNodeContainerEntities() {
+                return null;
+            }
+
+            @Override
+            public List<NodeContainerEntity> treeNodeContainerEntities() {
+                return null;
+            }
+
+            @Override
+            public List<NodeTree> nodeTree() {
+                return nodeTree;
+            }
+        };
+    }
+}
@@ -0,0 +1,489 @@
+package ms.imf.redpoint.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.NodeTree;
+
+/**
+ * 预编译的二进制节点转换规则格式
+ * <p>
+ * 转换规则已在编译期校验过时，运行时无需再解析JSON：编译期将规则写为此格式的资源，
+ * 运行时直接读取为{@link CompiledNodePathConverter}，省去JSON解析、反射构造实体及规则编译的开销
+ * <p>
+ * 格式(整数均为无符号变长整数varint，字符串以字符串表下标引用，下标0为null，其余为实际下标+1)：
+ * <pre>
+ * int32      magic  固定为 {@link #MAGIC}，大端序
+ * byte       version 固定为 {@link #VERSION}
+ * byte       flags   bit0: 是否包含目标节点树
+ * varint     字符串个数, 随后依次为 varint 字节长度 + UTF-8字节
+ * RuleList   转换规则, 同一层级的重名规则只保留先出现的一条
+ * NodeTreeList 可选，目标节点树
+ *
+ * RuleList:     varint 个数(0 == 无), Rule...
+ * Rule:         string name, varint 转换目标个数(0 == 无), Target..., RuleList sub
+ * Target:       string name, varint 参数个数, TargetArg...
+ * TargetArg:    string hisArg, varint refLevel+1(0 == 固定值), 固定值时为 string value，否则为 string myArg
+ * NodeTreeList: varint 个数+1(0 == null), NodeTree...
+ * NodeTree:     string name, varint 参数个数+1(0 == null), NodeTreeArg..., NodeTreeList sub
+ * NodeTreeArg:  string name, varint 限制值个数+1(0 == null), string valueLimit...
+ * </pre>
+ *
+ * @see NodePathConverter#fromBinary(InputStream)
+ * @see NodePathConverter#fromBinary(File)
+ */
+public class BinaryConvertRules {
+
+    /**
+     * 'R' 'P' 'C' 'R'
+     */
+    public static final int MAGIC = 0x52504352;
+    public static final int VERSION = 1;
+
+    private static final int FLAG_TARGET_NODE_TREE_SCHEMA = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 将转换规则写为二进制格式，规则需已通过{@link ConvertRuleChecker}校验，本方法不做校验
+     *
+     * @param convertRules         转换规则
+     * @param targetNodeTreeSchema 可选，转换目标节点树的全貌，null == 不写入
+     * @param outputStream         写入目标，写入完毕后不会被关闭
+     * @throws IllegalArgumentException convertRules为null
+     * @throws IOException              写入失败
+     */
+    public static void write(List<ConvertRule> convertRules, List<NodeTree> targetNodeTreeSchema, OutputStream outputStream) throws IllegalArgumentException, IOException {
+        if (convertRules == null) {
+            throw new IllegalArgumentException("convertRules can't be null");
+        }
+        if (outputStream == null) {
+            throw new IllegalArgumentException("outputStream can't be null");
+        }
+
+        final Writer body = new Writer();
+        body.writeRules(convertRules);
+        if (targetNodeTreeSchema != null) {
+            body.writeNodeTrees(targetNodeTreeSchema);
+        }
+
+        final Writer header = new Writer();
+        header.writeInt(MAGIC);
+        header.bytes.write(VERSION);
+        header.bytes.write(targetNodeTreeSchema != null ? FLAG_TARGET_NODE_TREE_SCHEMA : 0);
+        header.writeVarInt(body.strings.size());
+        for (String string : body.strings.keySet()) {
+            byte[] stringBytes = string.getBytes(UTF_8);
+            header.writeVarInt(stringBytes.length);
+            header.bytes.write(stringBytes, 0, stringBytes.length);
+        }
+
+        header.bytes.writeTo(outputStream);
+        body.bytes.writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    /**
+     * 从二进制格式读取转换器
+     *
+     * @param buffer 二进制格式内容，从其当前位置开始读取，读取不改变其位置
+     * @return 转换器
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static CompiledNodePathConverter load(ByteBuffer buffer) throws IllegalArgumentException {
+        return new CompiledNodePathConverter(new Reader(buffer).readRulesSection());
+    }
+
+    /**
+     * 从二进制格式读取转换器
+     *
+     * @param inputStream 二进制格式内容，读取完毕后不会被关闭
+     * @return 转换器
+     * @throws IllegalArgumentException 格式错误
+     * @throws IOException              读取失败
+     */
+    public static CompiledNodePathConverter load(InputStream inputStream) throws IllegalArgumentException, IOException {
+        return load(readFully(inputStream));
+    }
+
+    /**
+     * 以内存映射的方式从二进制格式文件读取转换器
+     *
+     * @param file 二进制格式文件
+     * @return 转换器
+     * @throws IllegalArgumentException 格式错误
+     * @throws IOException              读取失败
+     */
+    public static CompiledNodePathConverter load(File file) throws IllegalArgumentException, IOException {
+        return load(map(file));
+    }
+
+    /**
+     * 从二进制格式读取目标节点树
+     *
+     * @param buffer 二进制格式内容，从其当前位置开始读取，读取不改变其位置
+     * @return 目标节点树，null == 写入时未包含目标节点树
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static List<NodeTree> loadTargetNodeTreeSchema(ByteBuffer buffer) throws IllegalArgumentException {
+        return new Reader(buffer).readTargetNodeTreeSchemaSection();
+    }
+
+    /**
+     * 从二进制格式读取目标节点树
+     *
+     * @param inputStream 二进制格式内容，读取完毕后不会被关闭
+     * @return 目标节点树，null == 写入时未包含目标节点树
+     * @throws IllegalArgumentException 格式错误
+     * @throws IOException              读取失败
+     */
+    public static List<NodeTree> loadTargetNodeTreeSchema(InputStream inputStream) throws IllegalArgumentException, IOException {
+        return loadTargetNodeTreeSchema(readFully(inputStream));
+    }
+
+    private static ByteBuffer readFully(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream can't be null");
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(inputStream.available(), 1024));
+        byte[] buffer = new byte[4096];
+        int readSize;
+        while ((readSize = inputStream.read(buffer)) != -1) {
+            result.write(buffer, 0, readSize);
+        }
+        return ByteBuffer.wrap(result.toByteArray());
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file can't be null");
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // 映射在通道关闭后依然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static final class Writer {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /**
+         * 字符串 -> 字符串表下标，按首次出现顺序排列
+         */
+        final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+
+        void writeRules(List<ConvertRule> convertRules) {
+            if (convertRules == null) {
+                writeVarInt(0);
+                return;
+            }
+
+            // 与 NodePathConverter 一致，同一层级出现重名规则时以先出现的为准
+            final List<ConvertRule> rules = new ArrayList<>(convertRules.size());
+            final Set<String> names = new HashSet<>();
+            for (ConvertRule convertRule : convertRules) {
+                if (names.add(convertRule.name)) {
+                    rules.add(convertRule);
+                }
+            }
+
+            writeVarInt(rules.size());
+            for (ConvertRule rule : rules) {
+                writeString(rule.name);
+
+                if (rule.convertTo == null) {
+                    writeVarInt(0);
+                } else {
+                    writeVarInt(rule.convertTo.size());
+                    for (ConvertRule.ConvertTo convertTo : rule.convertTo) {
+                        writeTarget(CompiledNodePathConverter.compileTarget(convertTo));
+                    }
+                }
+
+                writeRules(rule.sub);
+            }
+        }
+
+        void writeTarget(CompiledNodePathConverter.TargetPlan target) {
+            writeString(target.name);
+            writeVarInt(target.hisArgs.length);
+            for (int i = 0; i < target.hisArgs.length; i++) {
+                writeString(target.hisArgs[i]);
+                if (target.refLevels[i] < 0) {
+                    writeVarInt(0);
+                    writeString(target.values[i]);
+                } else {
+                    writeVarInt(target.refLevels[i] + 1);
+                    writeString(target.refMyArgs[i]);
+                }
+            }
+        }
+
+        void writeNodeTrees(List<NodeTree> nodeTrees) {
+            if (nodeTrees == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(nodeTrees.size() + 1);
+            for (NodeTree nodeTree : nodeTrees) {
+                writeString(nodeTree.name);
+
+                if (nodeTree.args == null) {
+                    writeVarInt(0);
+                } else {
+                    writeVarInt(nodeTree.args.size() + 1);
+                    for (NodeTree.Arg arg : nodeTree.args) {
+                        writeString(arg.name);
+                        if (arg.valueLimits == null) {
+                            writeVarInt(0);
+                        } else {
+                            writeVarInt(arg.valueLimits.size() + 1);
+                            for (String valueLimit : arg.valueLimits) {
+                                writeString(valueLimit);
+                            }
+                        }
+                    }
+                }
+
+                writeNodeTrees(nodeTree.sub);
+            }
+        }
+
+        void writeString(String string) {
+            if (string == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.put(string, index);
+            }
+            writeVarInt(index + 1);
+        }
+
+        void writeInt(int value) {
+            bytes.write(value >>> 24);
+            bytes.write(value >>> 16);
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+    }
+
+    private static final class Reader {
+
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private boolean hasTargetNodeTreeSchema;
+
+        Reader(ByteBuffer buffer) {
+            if (buffer == null) {
+                throw new IllegalArgumentException("buffer can't be null");
+            }
+            this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+
+        Map<String, CompiledNodePathConverter.RuleNode> readRulesSection() throws IllegalArgumentException {
+            try {
+                readHeader();
+                return readRules();
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("found error on parse convertRulesBinary: unexpected end of data", e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("found error on parse convertRulesBinary: %s", e.getMessage()), e);
+            }
+        }
+
+        List<NodeTree> readTargetNodeTreeSchemaSection() throws IllegalArgumentException {
+            try {
+                readHeader();
+                readRules();
+                return hasTargetNodeTreeSchema
+                        ? readNodeTrees()
+                        : null;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("found error on parse convertRulesBinary: unexpected end of data", e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("found error on parse convertRulesBinary: %s", e.getMessage()), e);
+            }
+        }
+
+        private void readHeader() throws IllegalArgumentException {
+            int magic = buffer.getInt();
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException(String.format("illegal magic 0x%08x, expected 0x%08x", magic, MAGIC));
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format("unsupported version %d, expected %d", version, VERSION));
+            }
+            hasTargetNodeTreeSchema = (buffer.get() & FLAG_TARGET_NODE_TREE_SCHEMA) != 0;
+
+            strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] stringBytes = new byte[readCount()];
+                buffer.get(stringBytes);
+                strings[i] = new String(stringBytes, UTF_8);
+            }
+        }
+
+        private Map<String, CompiledNodePathConverter.RuleNode> readRules() throws IllegalArgumentException {
+            int ruleCount = readCount();
+            if (ruleCount == 0) {
+                return null;
+            }
+
+            final Map<String, CompiledNodePathConverter.RuleNode> result = new HashMap<>(ruleCount * 4 / 3 + 1);
+            for (int i = 0; i < ruleCount; i++) {
+                String name = readString();
+
+                int targetCount = readCount();
+                CompiledNodePathConverter.TargetPlan[] targets = null;
+                if (targetCount > 0) {
+                    targets = new CompiledNodePathConverter.TargetPlan[targetCount];
+                    for (int j = 0; j < targetCount; j++) {
+                        targets[j] = readTarget();
+                    }
+                }
+
+                result.put(name, new CompiledNodePathConverter.RuleNode(readRules(), targets));
+            }
+            return result;
+        }
+
+        private CompiledNodePathConverter.TargetPlan readTarget() throws IllegalArgumentException {
+            String name = readString();
+            int argCount = readCount();
+
+            final String[] hisArgs = new String[argCount];
+            final String[] values = new String[argCount];
+            final int[] refLevels = new int[argCount];
+            final String[] refMyArgs = new String[argCount];
+            boolean hasRefValue = false;
+
+            for (int i = 0; i < argCount; i++) {
+                hisArgs[i] = readString();
+                refLevels[i] = readVarInt() - 1;
+                if (refLevels[i] < 0) {
+                    values[i] = readString();
+                } else {
+                    refMyArgs[i] = readString();
+                    hasRefValue = true;
+                }
+            }
+
+            return new CompiledNodePathConverter.TargetPlan(name, hisArgs, values, refLevels, refMyArgs, hasRefValue);
+        }
+
+        private List<NodeTree> readNodeTrees() throws IllegalArgumentException {
+            int nodeTreeCount = readNullableCount();
+            if (nodeTreeCount < 0) {
+                return null;
+            }
+
+            final List<NodeTree> result = new ArrayList<>(nodeTreeCount);
+            for (int i = 0; i < nodeTreeCount; i++) {
+                String name = readString();
+
+                List<NodeTree.Arg> args = null;
+                int argCount = readNullableCount();
+                if (argCount >= 0) {
+                    args = new ArrayList<>(argCount);
+                    for (int j = 0; j < argCount; j++) {
+                        NodeTree.Arg arg = new NodeTree.Arg();
+                        arg.name = readString();
+                        int valueLimitCount = readNullableCount();
+                        if (valueLimitCount >= 0) {
+                            arg.valueLimits = new ArrayList<>(valueLimitCount);
+                            for (int k = 0; k < valueLimitCount; k++) {
+                                arg.valueLimits.add(readString());
+                            }
+                        }
+                        args.add(arg);
+                    }
+                }
+
+                result.add(new NodeTree(name, args, readNodeTrees()));
+            }
+            return result;
+        }
+
+        private String readString() throws IllegalArgumentException {
+            int index = readVarInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index > strings.length) {
+                throw new IllegalArgumentException(String.format("string index %d out of string table size %d", index - 1, strings.length));
+            }
+            return strings[index - 1];
+        }
+
+        /**
+         * 读取个数，个数不可能超过剩余字节数，借此尽早发现损坏的数据，避免按错误的个数分配过大的数组
+         */
+        private int readCount() throws IllegalArgumentException {
+            int count = readVarInt();
+            if (count > buffer.remaining()) {
+                throw new IllegalArgumentException(String.format("illegal count %d, only %d bytes remaining", count, buffer.remaining()));
+            }
+            return count;
+        }
+
+        /**
+         * 读取可为null的个数
+         *
+         * @return 个数，-1 == null
+         */
+        private int readNullableCount() throws IllegalArgumentException {
+            int count = readVarInt() - 1;
+            if (count > buffer.remaining()) {
+                throw new IllegalArgumentException(String.format("illegal count %d, only %d bytes remaining", count, buffer.remaining()));
+            }
+            return count;
+        }
+
+        private int readVarInt() throws IllegalArgumentException {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (result < 0) {
+                        throw new IllegalArgumentException(String.format("illegal varint %d", result & 0xFFFFFFFFL));
+                    }
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ms.imf.redpoint.converter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 带有限容量缓存的节点转换器
+ * <p>
+ * 前端上报的源路径重复度很高，此转换器以源路径为键缓存被包装转换器的转换结果，包括查无匹配的结果，
+ * 缓存总权重超出上限时按最近最少使用(LRU)的顺序淘汰，默认每条缓存权重为1，即按条数限制容量
+ * <p>
+ * 缓存的转换结果不可修改；线程安全，可在多线程间共享，缓存未命中时的实际转换在锁外进行
+ *
+ * @see CompiledNodePathConverter
+ */
+public class CachingNodePathConverter implements PathConverter {
+
+    /**
+     * 缓存权重计算器
+     */
+    public interface Weigher {
+        /**
+         * 计算一条缓存的权重
+         *
+         * @param sourceNodes 源节点链
+         * @param targetNodes 转换结果, null == 查无匹配
+         * @return 权重，不能小于0
+         */
+        int weigh(List<Node> sourceNodes, List<Node> targetNodes);
+    }
+
+    private static final Weigher SINGLE_WEIGHER = new Weigher() {
+        @Override
+        public int weigh(List<Node> sourceNodes, List<Node> targetNodes) {
+            return 1;
+        }
+    };
+
+    private static final class CacheEntry {
+        /**
+         * 转换结果，null == 查无匹配
+         */
+        final List<Node> targetNodes;
+        final int weight;
+
+        CacheEntry(List<Node> targetNodes, int weight) {
+            this.targetNodes = targetNodes;
+            this.weight = weight;
+        }
+    }
+
+    private final PathConverter converter;
+    private final long maxWeight;
+    private final Weigher weigher;
+
+    /**
+     * 访问顺序的LinkedHashMap，迭代顺序即为LRU淘汰顺序，所有访问均需持有其自身的锁
+     */
+    private final LinkedHashMap<List<Node>, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param converter 被包装的转换器
+     * @param maxSize   最大缓存条数
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public CachingNodePathConverter(PathConverter converter, int maxSize) throws IllegalArgumentException {
+        this(converter, maxSize, SINGLE_WEIGHER);
+    }
+
+    /**
+     * @param converter 被包装的转换器
+     * @param maxWeight 最大缓存总权重
+     * @param weigher   缓存权重计算器
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public CachingNodePathConverter(PathConverter converter, long maxWeight, Weigher weigher) throws IllegalArgumentException {
+        if (converter == null) { throw new IllegalArgumentException("converter can't be null"); }
+        if (maxWeight < 0) { throw new IllegalArgumentException("maxWeight can't less 0"); }
+        if (weigher == null) { throw new IllegalArgumentException("weigher can't be null"); }
+
+        this.converter = converter;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 根据规则转换节点链列表到目标节点链，优先使用缓存的转换结果
+     *
+     * @param sourceNodes 源节点链
+     * @return 目标路径(不可修改), null == 查无匹配
+     */
+    @Override
+    public List<Node> convert(List<Node> sourceNodes) {
+        if (sourceNodes == null
+                || sourceNodes.isEmpty()) {
+            return converter.convert(sourceNodes);
+        }
+
+        synchronized (cache) {
+            CacheEntry entry = cache.get(sourceNodes);
+            if (entry != null) {
+                hitCount++;
+                return entry.targetNodes;
+            }
+            missCount++;
+        }
+
+        List<Node> targetNodes = converter.convert(sourceNodes);
+        if (targetNodes != null) {
+            targetNodes = Collections.unmodifiableList(new ArrayList<>(targetNodes));
+        }
+
+        // 缓存键需使用源节点链的不可变副本，避免调用方修改传入的列表破坏缓存
+        List<Node> key = NodePath.instance(sourceNodes).nodes();
+        int entryWeight = weigher.weigh(key, targetNodes);
+        if (entryWeight < 0) {
+            throw new IllegalStateException(String.format("weigher returned negative weight(%d) for %s", entryWeight, key));
+        }
+        if (entryWeight <= maxWeight) {
+            put(key, new CacheEntry(targetNodes, entryWeight));
+        }
+
+        return targetNodes;
+    }
+
+    /**
+     * 清空所有缓存，统计信息不受影响
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * 获取缓存统计信息快照
+     *
+     * @return 缓存统计信息
+     */
+    public ConvertCacheStats stats() {
+        synchronized (cache) {
+            return new ConvertCacheStats(hitCount, missCount, evictionCount, cache.size(), weight);
+        }
+    }
+
+    private void put(List<Node> key, CacheEntry entry) {
+        synchronized (cache) {
+            CacheEntry lastEntry = cache.put(key, entry);
+            if (lastEntry != null) {
+                weight -= lastEntry.weight;
+            }
+            weight += entry.weight;
+
+            Iterator<Map.Entry<List<Node>, CacheEntry>> iterator = cache.entrySet().iterator();
+            while (weight > maxWeight
+                    && iterator.hasNext()) {
+                weight -= iterator.next().getValue().weight;
+                iterator.remove();
+                evictionCount++;
+            }
+        }
+    }
+}
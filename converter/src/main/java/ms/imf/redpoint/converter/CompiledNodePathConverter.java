@@ -0,0 +1,231 @@
+package ms.imf.redpoint.converter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ms.imf.redpoint.entity.Node;
+
+/**
+ * 编译后的节点转换器
+ * <p>
+ * 与{@link NodePathConverter}的转换结果一致，区别在于转换规则在构造时被一次性编译为不可变的查找结构：
+ * <ul>
+ * <li>每一层级的规则以节点名为键存入哈希表，匹配一个节点为 O(1)，不再逐条比较节点名</li>
+ * <li>每个转换目标的参数被预先展开为投影数组(参数名、固定值或引用的源节点层级及参数名)，转换时直接按下标取值</li>
+ * <li>不含引用值参数的转换目标节点在编译时即被创建，转换时直接复用</li>
+ * </ul>
+ * 编译完成后与原始转换规则再无关联，之后对原始规则的修改不会影响本转换器，可在多线程间共享
+ *
+ * @see NodePathConverter#compile()
+ */
+public class CompiledNodePathConverter implements PathConverter {
+
+    /**
+     * 编译后的规则节点
+     */
+    static final class RuleNode {
+        /**
+         * 子层级规则，null == 无子规则
+         */
+        final Map<String, RuleNode> sub;
+        /**
+         * 转换目标，null == 当前规则不可作为转换终点
+         */
+        final TargetPlan[] targets;
+
+        RuleNode(Map<String, RuleNode> sub, TargetPlan[] targets) {
+            this.sub = sub;
+            this.targets = targets;
+        }
+    }
+
+    /**
+     * 转换目标节点的生成计划，参数按规则声明顺序投影，重名参数以后出现的为准
+     */
+    static final class TargetPlan {
+        final String name;
+        final String[] hisArgs;
+        /**
+         * 固定值，引用值参数对应位置为null
+         */
+        final String[] values;
+        /**
+         * 引用的源节点层级，固定值参数对应位置为-1
+         */
+        final int[] refLevels;
+        final String[] refMyArgs;
+        /**
+         * 不含引用值参数时预先生成的目标节点，否则为null
+         */
+        final Node constantNode;
+
+        TargetPlan(String name, String[] hisArgs, String[] values, int[] refLevels, String[] refMyArgs, boolean hasRefValue) {
+            this.name = name;
+            this.hisArgs = hisArgs;
+            this.values = values;
+            this.refLevels = refLevels;
+            this.refMyArgs = refMyArgs;
+            this.constantNode = hasRefValue
+                    ? null
+                    : toNode(null);
+        }
+
+        Node toNode(List<Node> sourceNodes) {
+            if (constantNode != null) {
+                return constantNode;
+            }
+
+            final Map<String, String> args = new HashMap<>(hisArgs.length * 4 / 3 + 1);
+            for (int i = 0; i < hisArgs.length; i++) {
+                args.put(
+                        hisArgs[i],
+                        refLevels[i] < 0
+                                ? values[i]
+                                : sourceNodes.get(refLevels[i]).args.get(refMyArgs[i])
+                );
+            }
+            return new Node(name, args);
+        }
+    }
+
+    private final Map<String, RuleNode> rootRules;
+
+    /**
+     * @param convertRules 转换规则，需已通过{@link ConvertRuleChecker}校验
+     * @throws IllegalArgumentException convertRules为null
+     */
+    CompiledNodePathConverter(List<ConvertRule> convertRules) throws IllegalArgumentException {
+        if (convertRules == null) {
+            throw new IllegalArgumentException("convertRules can't be null");
+        }
+        this.rootRules = compileRules(convertRules);
+    }
+
+    /**
+     * @param rootRules 已编译的首层规则，null == 无任何规则
+     */
+    CompiledNodePathConverter(Map<String, RuleNode> rootRules) {
+        this.rootRules = rootRules;
+    }
+
+    /**
+     * 根据规则转换节点链列表到目标节点链
+     *
+     * @param sourceNodes 源节点链
+     * @return 目标路径(不可修改), null == 查无匹配
+     * @see NodePathConverter#convert(List)
+     */
+    @Override
+    public List<Node> convert(List<Node> sourceNodes) {
+
+        if (sourceNodes == null) {
+            return null;
+        }
+
+        if (sourceNodes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        RuleNode matchedRule = null;
+        Map<String, RuleNode> currentLevelRules = rootRules;
+
+        for (Node node : sourceNodes) {
+            if (currentLevelRules == null) {
+                return null;
+            }
+            matchedRule = currentLevelRules.get(node.name);
+            if (matchedRule == null) {
+                return null;
+            }
+            currentLevelRules = matchedRule.sub;
+        }
+
+        final TargetPlan[] targets = matchedRule.targets;
+        if (targets == null) {
+            return null;
+        }
+
+        if (targets.length == 1) {
+            return Collections.singletonList(targets[0].toNode(sourceNodes));
+        }
+
+        final Node[] result = new Node[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            result[i] = targets[i].toNode(sourceNodes);
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    private static Map<String, RuleNode> compileRules(List<ConvertRule> convertRules) {
+        if (convertRules == null
+                || convertRules.isEmpty()) {
+            return null;
+        }
+
+        final Map<String, RuleNode> result = new HashMap<>(convertRules.size() * 4 / 3 + 1);
+        for (ConvertRule convertRule : convertRules) {
+            // 同一层级出现重名规则时与 NodePathConverter 一致，以先出现的为准
+            if (!result.containsKey(convertRule.name)) {
+                result.put(
+                        convertRule.name,
+                        new RuleNode(compileRules(convertRule.sub), compileTargets(convertRule.convertTo))
+                );
+            }
+        }
+        return result;
+    }
+
+    private static TargetPlan[] compileTargets(List<ConvertRule.ConvertTo> convertTos) {
+        if (convertTos == null
+                || convertTos.isEmpty()) {
+            return null;
+        }
+
+        final TargetPlan[] result = new TargetPlan[convertTos.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = compileTarget(convertTos.get(i));
+        }
+        return result;
+    }
+
+    static TargetPlan compileTarget(ConvertRule.ConvertTo convertTo) {
+        int argCount = 0;
+        if (convertTo.args != null) {
+            for (ConvertRule.Arg arg : convertTo.args) {
+                if (arg.value != null
+                        || arg.refValue != null) {
+                    argCount++;
+                }
+            }
+        }
+
+        final String[] hisArgs = new String[argCount];
+        final String[] values = new String[argCount];
+        final int[] refLevels = new int[argCount];
+        final String[] refMyArgs = new String[argCount];
+        boolean hasRefValue = false;
+
+        if (convertTo.args != null) {
+            int index = 0;
+            for (ConvertRule.Arg arg : convertTo.args) {
+                if (arg.value != null) {
+                    hisArgs[index] = arg.hisArg;
+                    values[index] = arg.value;
+                    refLevels[index] = -1;
+                    index++;
+                } else if (arg.refValue != null) {
+                    hisArgs[index] = arg.hisArg;
+                    refLevels[index] = arg.refValue.myLevel;
+                    refMyArgs[index] = arg.refValue.myArg;
+                    hasRefValue = true;
+                    index++;
+                }
+            }
+        }
+
+        return new TargetPlan(convertTo.name, hisArgs, values, refLevels, refMyArgs, hasRefValue);
+    }
+}
@@ -0,0 +1,57 @@
+package ms.imf.redpoint.converter;
+
+/**
+ * 转换缓存统计信息快照
+ *
+ * @see CachingNodePathConverter#stats()
+ */
+public class ConvertCacheStats {
+
+    /**
+     * 缓存命中次数，包括命中查无匹配的缓存
+     */
+    public final long hitCount;
+    /**
+     * 缓存未命中次数
+     */
+    public final long missCount;
+    /**
+     * 因超出容量被淘汰的缓存条数
+     */
+    public final long evictionCount;
+    /**
+     * 当前缓存条数
+     */
+    public final int size;
+    /**
+     * 当前缓存总权重
+     */
+    public final long weight;
+
+    public ConvertCacheStats(long hitCount, long missCount, long evictionCount, int size, long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    /**
+     * 缓存命中率
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ConvertCacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                ", weight=" + weight +
+                '}';
+    }
+}
@@ -3,6 +3,8 @@ package ms.imf.redpoint.converter;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -27,7 +29,7 @@ import ms.imf.redpoint.entity.NodeTree;
  * @date 19-5-18
  * @see ConvertRule
  */
-public class NodePathConverter {
+public class NodePathConverter implements PathConverter {
 
     private final List<ConvertRule> convertRules;
 
@@ -176,6 +178,7 @@ public class NodePathConverter {
      * @param sourceNodes 源节点链
      * @return 目标路径, null == 查无匹配
      */
+    @Override
     public List<Node> convert(List<Node> sourceNodes) {
 
         if (sourceNodes == null) {
@@ -230,6 +233,68 @@ public class NodePathConverter {
         return result;
     }
 
+    /**
+     * 将当前转换规则编译为查找更快、转换时分配更少的转换器
+     * <p>
+     * 编译后的转换器为当前转换规则的快照，适用于转换规则不再变化、转换调用频繁的场景
+     *
+     * @return 编译后的转换器
+     */
+    public CompiledNodePathConverter compile() {
+        return new CompiledNodePathConverter(convertRules);
+    }
+
+    /**
+     * 以{@link StreamingConvertRuleLoader}流式加载转换规则并直接创建编译后的转换器，不经过 List<{@link ConvertRule}> 中间对象
+     *
+     * @param convertRulesJsonInputStream         转换规则 格式为 toJson(List<{@link ConvertRule}>)，UTF-8编码
+     * @param targetNodeTreeSchemaJsonInputStream 可选,转换目标节点树的全貌，用于参与转换规则的校验以发现更多规则本身的错误，格式为 toJson(List<{@link NodeTree}>)，UTF-8编码
+     * @return 编译后的转换器
+     * @throws IllegalArgumentException 解析或校验未通过
+     */
+    public static CompiledNodePathConverter fromJson(InputStream convertRulesJsonInputStream, InputStream targetNodeTreeSchemaJsonInputStream) throws IllegalArgumentException {
+        return fromJson(convertRulesJsonInputStream, targetNodeTreeSchemaJsonInputStream, true);
+    }
+
+    /**
+     * 以{@link StreamingConvertRuleLoader}流式加载转换规则并直接创建编译后的转换器，不经过 List<{@link ConvertRule}> 中间对象
+     *
+     * @param convertRulesJsonInputStream         转换规则 格式为 toJson(List<{@link ConvertRule}>)，UTF-8编码
+     * @param targetNodeTreeSchemaJsonInputStream 可选,转换目标节点树的全貌，用于参与转换规则的校验以发现更多规则本身的错误，格式为 toJson(List<{@link NodeTree}>)，UTF-8编码
+     * @param isCheckRules                        是否校验转换规则合法性, 不校验情况提供给用于编译期已经校验，运行时无需二次校验的情况，此时不会解析转换目标节点树
+     * @return 编译后的转换器
+     * @throws IllegalArgumentException 解析或校验未通过
+     */
+    public static CompiledNodePathConverter fromJson(InputStream convertRulesJsonInputStream, InputStream targetNodeTreeSchemaJsonInputStream, boolean isCheckRules) throws IllegalArgumentException {
+        return StreamingConvertRuleLoader.load(convertRulesJsonInputStream, targetNodeTreeSchemaJsonInputStream, isCheckRules).converter;
+    }
+
+    /**
+     * 从编译期生成的二进制转换规则资源直接创建编译后的转换器，无需JSON解析及规则校验
+     *
+     * @param convertRulesBinaryInputStream 转换规则，格式见{@link BinaryConvertRules}，读取完毕后不会被关闭
+     * @return 编译后的转换器
+     * @throws IllegalArgumentException 格式错误
+     * @throws IOException              读取失败
+     * @see BinaryConvertRules#write(List, List, java.io.OutputStream)
+     */
+    public static CompiledNodePathConverter fromBinary(InputStream convertRulesBinaryInputStream) throws IllegalArgumentException, IOException {
+        return BinaryConvertRules.load(convertRulesBinaryInputStream);
+    }
+
+    /**
+     * 以内存映射的方式从编译期生成的二进制转换规则文件直接创建编译后的转换器，无需JSON解析及规则校验
+     *
+     * @param convertRulesBinaryFile 转换规则文件，格式见{@link BinaryConvertRules}
+     * @return 编译后的转换器
+     * @throws IllegalArgumentException 格式错误
+     * @throws IOException              读取失败
+     * @see BinaryConvertRules#write(List, List, java.io.OutputStream)
+     */
+    public static CompiledNodePathConverter fromBinary(File convertRulesBinaryFile) throws IllegalArgumentException, IOException {
+        return BinaryConvertRules.load(convertRulesBinaryFile);
+    }
+
     /**
      * 匹配节点列表对应的转换规则列表
      *
@@ -0,0 +1,23 @@
+package ms.imf.redpoint.converter;
+
+import java.util.List;
+
+import ms.imf.redpoint.entity.Node;
+
+/**
+ * 节点路径转换器
+ *
+ * @see NodePathConverter
+ * @see CompiledNodePathConverter
+ * @see CachingNodePathConverter
+ */
+public interface PathConverter {
+
+    /**
+     * 根据规则转换节点链列表到目标节点链
+     *
+     * @param sourceNodes 源节点链
+     * @return 目标路径, null == 查无匹配
+     */
+    List<Node> convert(List<Node> sourceNodes);
+}
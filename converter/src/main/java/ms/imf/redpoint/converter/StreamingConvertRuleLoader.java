@@ -0,0 +1,706 @@
+package ms.imf.redpoint.converter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.NodeTree;
+
+/**
+ * 流式转换规则加载器
+ * <p>
+ * 以{@link JsonReader}逐个读取转换规则JSON的token，直接构建{@link CompiledNodePathConverter}的运行时查找结构，
+ * 不再经过 Gson 反射生成 List<{@link ConvertRule}> 中间对象，也不再在解析完成后对整颗规则树做二次遍历校验：
+ * 规则的合法性校验与解析在同一遍读取中完成，校验规则与{@link ConvertRuleChecker}一致，出错时会附带出错位置的JSON路径
+ * <p>
+ * 规则对象的字段可以以任意顺序出现：引用值参数对祖先层级规则参数的校验会被暂存，在对应层级的规则读取完毕后再完成
+ *
+ * @see ConvertRuleChecker
+ * @see CompiledNodePathConverter
+ */
+public class StreamingConvertRuleLoader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 加载结果
+     */
+    public static class LoadResult {
+        /**
+         * 加载得到的转换器
+         */
+        public final CompiledNodePathConverter converter;
+        /**
+         * 加载的转换规则数量(包含各层级子规则)
+         */
+        public final int ruleCount;
+        /**
+         * 转换目标节点树解析(包含校验)耗时，单位纳秒，未解析节点树时为0
+         */
+        public final long schemaParseNanos;
+        /**
+         * 转换规则解析(包含校验)耗时，单位纳秒
+         */
+        public final long rulesParseNanos;
+
+        public LoadResult(CompiledNodePathConverter converter, int ruleCount, long schemaParseNanos, long rulesParseNanos) {
+            this.converter = converter;
+            this.ruleCount = ruleCount;
+            this.schemaParseNanos = schemaParseNanos;
+            this.rulesParseNanos = rulesParseNanos;
+        }
+
+        /**
+         * 总解析耗时，单位纳秒
+         */
+        public long totalParseNanos() {
+            return schemaParseNanos + rulesParseNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "LoadResult{" +
+                    "ruleCount=" + ruleCount +
+                    ", schemaParseNanos=" + schemaParseNanos +
+                    ", rulesParseNanos=" + rulesParseNanos +
+                    '}';
+        }
+    }
+
+    /**
+     * 暂存的引用值参数校验，待被引用层级的规则读取完毕后完成
+     */
+    private static final class RefCheck {
+        final int myLevel;
+        final String myArg;
+        final Location location;
+
+        RefCheck(int myLevel, String myArg, Location location) {
+            this.myLevel = myLevel;
+            this.myArg = myArg;
+            this.location = location;
+        }
+    }
+
+    /**
+     * 解析位置，格式与{@link JsonReader#getPath()}一致，只在出错时才拼接为字符串
+     */
+    private static final class Location {
+        static final Location ROOT = new Location(null, null, -1);
+
+        final Location parent;
+        final String fieldName;
+        final int index;
+
+        private Location(Location parent, String fieldName, int index) {
+            this.parent = parent;
+            this.fieldName = fieldName;
+            this.index = index;
+        }
+
+        Location field(String fieldName) {
+            return new Location(this, fieldName, -1);
+        }
+
+        Location index(int index) {
+            return new Location(this, null, index);
+        }
+
+        @Override
+        public String toString() {
+            if (parent == null) {
+                return "$";
+            }
+            return fieldName != null
+                    ? parent + "." + fieldName
+                    : parent + "[" + index + "]";
+        }
+    }
+
+    /**
+     * 解析中的转换目标，用于在整个convertTo列表读取完毕后与转换目标节点树进行比对
+     */
+    private static final class TargetSpec {
+        String name;
+        final List<String> hisArgs = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        final List<Integer> refLevels = new ArrayList<>();
+        final List<String> refMyArgs = new ArrayList<>();
+        final List<Location> argLocations = new ArrayList<>();
+        boolean hasRefValue;
+
+        CompiledNodePathConverter.TargetPlan toTargetPlan() {
+            final int size = hisArgs.size();
+            final int[] refLevelArray = new int[size];
+            for (int i = 0; i < size; i++) {
+                refLevelArray[i] = refLevels.get(i);
+            }
+            return new CompiledNodePathConverter.TargetPlan(
+                    name,
+                    hisArgs.toArray(new String[size]),
+                    values.toArray(new String[size]),
+                    refLevelArray,
+                    refMyArgs.toArray(new String[size]),
+                    hasRefValue
+            );
+        }
+    }
+
+    private final boolean isCheckRules;
+    private final List<NodeTree> targetNodeTreeSchema;
+    private int ruleCount;
+
+    private StreamingConvertRuleLoader(boolean isCheckRules, List<NodeTree> targetNodeTreeSchema) {
+        this.isCheckRules = isCheckRules;
+        this.targetNodeTreeSchema = targetNodeTreeSchema;
+    }
+
+    /**
+     * @param convertRulesJsonInputStream         转换规则 格式为 toJson(List<{@link ConvertRule}>)，UTF-8编码
+     * @param targetNodeTreeSchemaJsonInputStream 可选,转换目标节点树的全貌，用于参与转换规则的校验以发现更多规则本身的错误，格式为 toJson(List<{@link NodeTree}>)，UTF-8编码
+     * @param isCheckRules                        是否校验转换规则合法性, 不校验情况提供给用于编译期已经校验，运行时无需二次校验的情况，此时不会解析转换目标节点树
+     * @return 加载结果
+     * @throws IllegalArgumentException 解析或校验未通过
+     */
+    public static LoadResult load(InputStream convertRulesJsonInputStream, InputStream targetNodeTreeSchemaJsonInputStream, boolean isCheckRules) throws IllegalArgumentException {
+        if (convertRulesJsonInputStream == null) {
+            throw new IllegalArgumentException("convertRulesJsonInputStream can't be null");
+        }
+        return load(
+                new InputStreamReader(convertRulesJsonInputStream, UTF_8),
+                targetNodeTreeSchemaJsonInputStream == null
+                        ? null
+                        : new InputStreamReader(targetNodeTreeSchemaJsonInputStream, UTF_8),
+                isCheckRules
+        );
+    }
+
+    /**
+     * @param convertRulesJsonReader         转换规则 格式为 toJson(List<{@link ConvertRule}>)
+     * @param targetNodeTreeSchemaJsonReader 可选,转换目标节点树的全貌，用于参与转换规则的校验以发现更多规则本身的错误，格式为 toJson(List<{@link NodeTree}>)
+     * @param isCheckRules                   是否校验转换规则合法性, 不校验情况提供给用于编译期已经校验，运行时无需二次校验的情况，此时不会解析转换目标节点树
+     * @return 加载结果
+     * @throws IllegalArgumentException 解析或校验未通过
+     */
+    public static LoadResult load(Reader convertRulesJsonReader, Reader targetNodeTreeSchemaJsonReader, boolean isCheckRules) throws IllegalArgumentException {
+        if (convertRulesJsonReader == null) {
+            throw new IllegalArgumentException("convertRulesJsonReader can't be null");
+        }
+
+        final long schemaStartNanos = System.nanoTime();
+        List<NodeTree> targetNodeTreeSchema = null;
+        // 转换目标节点树只用于校验，不校验时无需解析
+        final boolean isReadSchema = isCheckRules && targetNodeTreeSchemaJsonReader != null;
+        if (isReadSchema) {
+            JsonReader reader = new JsonReader(targetNodeTreeSchemaJsonReader);
+            reader.setLenient(true);
+            try {
+                targetNodeTreeSchema = readNodeTrees(reader, Location.ROOT);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new IllegalStateException("unexpected content after node tree schema");
+                }
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("found error on parse targetNodeTreeSchemaJson: %s", e.getMessage()), e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("found error on check targetNodeTreeSchema: %s", e.getMessage()), e);
+            }
+        }
+        final long schemaParseNanos = isReadSchema ? System.nanoTime() - schemaStartNanos : 0;
+
+        final long rulesStartNanos = System.nanoTime();
+        final StreamingConvertRuleLoader loader = new StreamingConvertRuleLoader(isCheckRules, targetNodeTreeSchema);
+        final Map<String, CompiledNodePathConverter.RuleNode> rootRules;
+        JsonReader reader = new JsonReader(convertRulesJsonReader);
+        reader.setLenient(true);
+        try {
+            List<RefCheck> unresolvedRefChecks = new ArrayList<>();
+            rootRules = loader.readRules(reader, Location.ROOT, 0, unresolvedRefChecks);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalStateException("unexpected content after convert rules");
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("found error on parse convertRulesJson: %s", e.getMessage()), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("found error on check convertRules: %s", e.getMessage()), e);
+        }
+        final long rulesParseNanos = System.nanoTime() - rulesStartNanos;
+
+        return new LoadResult(new CompiledNodePathConverter(rootRules), loader.ruleCount, schemaParseNanos, rulesParseNanos);
+    }
+
+    /**
+     * 读取一个层级的转换规则
+     *
+     * @param level           当前层级，从0开始
+     * @param pendingRefChecks 用于向上层传递引用了祖先层级的引用值参数校验
+     */
+    private Map<String, CompiledNodePathConverter.RuleNode> readRules(JsonReader reader, Location location, int level, List<RefCheck> pendingRefChecks) throws IOException {
+        final Map<String, CompiledNodePathConverter.RuleNode> result = new HashMap<>();
+
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            if (reader.peek() == JsonToken.NULL) {
+                if (isCheckRules) { throw checkError(location.index(index), "found null value"); }
+                reader.nextNull();
+                continue;
+            }
+            readRule(reader, location.index(index), level, result, pendingRefChecks);
+        }
+        reader.endArray();
+
+        return result.isEmpty() ? null : result;
+    }
+
+    private void readRule(JsonReader reader, Location location, int level, Map<String, CompiledNodePathConverter.RuleNode> levelRules, List<RefCheck> pendingRefChecks) throws IOException {
+
+        String name = null;
+        List<String> args = null;
+        Map<String, CompiledNodePathConverter.RuleNode> sub = null;
+        CompiledNodePathConverter.TargetPlan[] targets = null;
+        final List<RefCheck> refChecks = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String fieldName = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "args":
+                    args = readRuleArgs(reader, location.field("args"));
+                    break;
+                case "sub":
+                    sub = readRules(reader, location.field("sub"), level + 1, refChecks);
+                    break;
+                case "convertTo":
+                    targets = readConvertTos(reader, location.field("convertTo"), level, refChecks);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (isCheckRules) {
+            if (name == null) {
+                throw checkError(location.field("name"), "found null value");
+            }
+            if (levelRules.containsKey(name)) {
+                throw checkError(location.field("name"), String.format("(%s) repeat node name in same node level", name));
+            }
+
+            for (RefCheck refCheck : refChecks) {
+                if (refCheck.myLevel < level) {
+                    pendingRefChecks.add(refCheck);
+                    continue;
+                }
+                if (args == null
+                        || !args.contains(refCheck.myArg)) {
+                    throw checkError(
+                            refCheck.location,
+                            String.format("target level(%d) convertRule(%s)'s args(%s) not contains arg '%s'", refCheck.myLevel, name, args, refCheck.myArg)
+                    );
+                }
+            }
+        }
+
+        if (name != null
+                && !levelRules.containsKey(name)) {
+            levelRules.put(name, new CompiledNodePathConverter.RuleNode(sub, targets));
+            ruleCount++;
+        }
+    }
+
+    private List<String> readRuleArgs(JsonReader reader, Location location) throws IOException {
+        final List<String> result = new ArrayList<>();
+
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            String arg = null;
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                arg = reader.nextString();
+            }
+            if (isCheckRules
+                    && (arg == null || arg.length() <= 0)) {
+                throw checkError(location.index(index), "found null value");
+            }
+            result.add(arg);
+        }
+        reader.endArray();
+
+        return result;
+    }
+
+    private CompiledNodePathConverter.TargetPlan[] readConvertTos(JsonReader reader, Location location, int level, List<RefCheck> refChecks) throws IOException {
+        final List<TargetSpec> targetSpecs = new ArrayList<>();
+
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            if (reader.peek() == JsonToken.NULL) {
+                if (isCheckRules) { throw checkError(location.index(index), "found null value"); }
+                reader.nextNull();
+                continue;
+            }
+            TargetSpec targetSpec = readConvertTo(reader, location.index(index), level, refChecks);
+            if (targetSpec.name != null) {
+                targetSpecs.add(targetSpec);
+            }
+        }
+        reader.endArray();
+
+        if (isCheckRules
+                && targetNodeTreeSchema != null
+                && !targetSpecs.isEmpty()) {
+            checkTargetSpecs(location, targetSpecs);
+        }
+
+        if (targetSpecs.isEmpty()) {
+            return null;
+        }
+
+        final CompiledNodePathConverter.TargetPlan[] result = new CompiledNodePathConverter.TargetPlan[targetSpecs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = targetSpecs.get(i).toTargetPlan();
+        }
+        return result;
+    }
+
+    private TargetSpec readConvertTo(JsonReader reader, Location location, int level, List<RefCheck> refChecks) throws IOException {
+        final TargetSpec result = new TargetSpec();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String fieldName = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case "name":
+                    result.name = reader.nextString();
+                    break;
+                case "args":
+                    final Location argsLocation = location.field("args");
+                    reader.beginArray();
+                    for (int index = 0; reader.hasNext(); index++) {
+                        readConvertToArg(reader, argsLocation.index(index), level, result, refChecks);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (isCheckRules
+                && result.name == null) {
+            throw checkError(location.field("name"), "found null value");
+        }
+        return result;
+    }
+
+    private void readConvertToArg(JsonReader reader, Location location, int level, TargetSpec targetSpec, List<RefCheck> refChecks) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            if (isCheckRules) { throw checkError(location, "found null value"); }
+            reader.nextNull();
+            return;
+        }
+
+        String hisArg = null;
+        String value = null;
+        boolean hasRefValue = false;
+        Integer myLevel = null;
+        String myArg = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String fieldName = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case "hisArg":
+                    hisArg = reader.nextString();
+                    break;
+                case "value":
+                    value = reader.nextString();
+                    break;
+                case "refValue":
+                    hasRefValue = true;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        final String refFieldName = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if ("myLevel".equals(refFieldName)) {
+                            myLevel = reader.nextInt();
+                        } else if ("myArg".equals(refFieldName)) {
+                            myArg = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (isCheckRules) {
+            if (hisArg == null) {
+                throw checkError(location.field("hisArg"), "found null value");
+            }
+            if (value == null
+                    && !hasRefValue) {
+                throw checkError(location, "value and refValue must exist one, but found none");
+            }
+            if (value != null
+                    && hasRefValue) {
+                throw checkError(location, "value and refValue only can exist one, but found more");
+            }
+        }
+
+        if (value != null) {
+            targetSpec.hisArgs.add(hisArg);
+            targetSpec.values.add(value);
+            targetSpec.refLevels.add(-1);
+            targetSpec.refMyArgs.add(null);
+            targetSpec.argLocations.add(location);
+            return;
+        }
+
+        if (!hasRefValue) {
+            return;
+        }
+
+        if (isCheckRules) {
+            if (myLevel == null) {
+                throw checkError(location.field("refValue").field("myLevel"), "myLevel can't be null, but found null value");
+            }
+            if (myLevel < 0) {
+                throw checkError(location.field("refValue").field("myLevel"), String.format("(%d) myLevel can't less 0", myLevel));
+            }
+            if (myLevel > level) {
+                throw checkError(location.field("refValue").field("myLevel"), String.format("(%d) up to now convertRules(size = %d) not contain level '%d' (level start from 0)", myLevel, level + 1, myLevel));
+            }
+            if (myArg == null) {
+                throw checkError(location.field("refValue").field("myArg"), "found null value");
+            }
+        }
+
+        if (myLevel == null
+                || myArg == null) {
+            return;
+        }
+
+        targetSpec.hisArgs.add(hisArg);
+        targetSpec.values.add(null);
+        targetSpec.refLevels.add(myLevel);
+        targetSpec.refMyArgs.add(myArg);
+        targetSpec.argLocations.add(location);
+        targetSpec.hasRefValue = true;
+
+        if (isCheckRules) {
+            refChecks.add(new RefCheck(myLevel, myArg, location.field("refValue").field("myArg")));
+        }
+    }
+
+    /**
+     * 将转换目标节点链与转换目标节点树比对，只在校验时调用
+     */
+    private void checkTargetSpecs(Location location, List<TargetSpec> targetSpecs) {
+        List<NodeTree> compareNodeTrees = targetNodeTreeSchema;
+        for (int targetIndex = 0; targetIndex < targetSpecs.size(); targetIndex++) {
+            final TargetSpec targetSpec = targetSpecs.get(targetIndex);
+
+            NodeTree matchedNodeTree = null;
+            if (compareNodeTrees != null) {
+                for (NodeTree compareNodeTree : compareNodeTrees) {
+                    if (compareNodeTree.name.equals(targetSpec.name)) {
+                        matchedNodeTree = compareNodeTree;
+                        break;
+                    }
+                }
+            }
+
+            if (matchedNodeTree == null) {
+                final StringBuilder errorNodesTipSb = new StringBuilder();
+                for (int i = 0; i < targetSpecs.size(); i++) {
+                    if (i == targetIndex) {
+                        errorNodesTipSb.append('*');
+                    }
+                    errorNodesTipSb.append(targetSpecs.get(i).name);
+                    errorNodesTipSb.append(i < targetSpecs.size() - 1 ? '/' : '*');
+                }
+                throw checkError(location, String.format("not match target node schema: %s", errorNodesTipSb));
+            }
+
+            for (int argIndex = 0; argIndex < targetSpec.hisArgs.size(); argIndex++) {
+                final String hisArg = targetSpec.hisArgs.get(argIndex);
+                final NodeTree.Arg matchedNodeArg = findNodeTreeArg(matchedNodeTree, hisArg);
+
+                if (matchedNodeArg == null) {
+                    throw checkError(
+                            targetSpec.argLocations.get(argIndex).field("hisArg"),
+                            String.format("(%s) target nodeSchema.args('%s') not contains arg '%s'", hisArg, matchedNodeTree.args, hisArg)
+                    );
+                }
+
+                final String value = targetSpec.values.get(argIndex);
+                if (value != null
+                        && matchedNodeArg.valueLimits != null
+                        && !matchedNodeArg.valueLimits.isEmpty()
+                        && !matchedNodeArg.valueLimits.contains(value)) {
+                    throw checkError(
+                            targetSpec.argLocations.get(argIndex).field("value"),
+                            String.format("(%s) target nodeSchema.arg(%s).valueLimits(%s) not contains value '%s'", value, matchedNodeArg.name, matchedNodeArg.valueLimits, value)
+                    );
+                }
+            }
+
+            compareNodeTrees = matchedNodeTree.sub;
+        }
+    }
+
+    private static NodeTree.Arg findNodeTreeArg(NodeTree nodeTree, String argName) {
+        if (nodeTree.args == null) {
+            return null;
+        }
+        for (NodeTree.Arg arg : nodeTree.args) {
+            if (argName.equals(arg.name)) {
+                return arg;
+            }
+        }
+        return null;
+    }
+
+    private static List<NodeTree> readNodeTrees(JsonReader reader, Location arrayLocation) throws IOException {
+        final List<NodeTree> result = new ArrayList<>();
+        final Set<String> repeatCheckNames = new HashSet<>();
+
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            final Location location = arrayLocation.index(index);
+            if (reader.peek() == JsonToken.NULL) {
+                throw checkError(location, "found null value");
+            }
+
+            final NodeTree nodeTree = new NodeTree();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String fieldName = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (fieldName) {
+                    case "name":
+                        nodeTree.name = reader.nextString();
+                        break;
+                    case "args":
+                        nodeTree.args = readNodeTreeArgs(reader, location.field("args"));
+                        break;
+                    case "sub":
+                        nodeTree.sub = readNodeTrees(reader, location.field("sub"));
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (nodeTree.name == null) {
+                throw checkError(location.field("name"), "found null value");
+            }
+            if (!repeatCheckNames.add(nodeTree.name)) {
+                throw checkError(location.field("name"), String.format("(%s) repeat node name in same level", nodeTree.name));
+            }
+            result.add(nodeTree);
+        }
+        reader.endArray();
+
+        return result;
+    }
+
+    private static List<NodeTree.Arg> readNodeTreeArgs(JsonReader reader, Location arrayLocation) throws IOException {
+        final List<NodeTree.Arg> result = new ArrayList<>();
+
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            final Location location = arrayLocation.index(index);
+            if (reader.peek() == JsonToken.NULL) {
+                throw checkError(location, "found null value");
+            }
+
+            final NodeTree.Arg arg = new NodeTree.Arg();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String fieldName = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (fieldName) {
+                    case "name":
+                        arg.name = reader.nextString();
+                        break;
+                    case "valueLimits":
+                        arg.valueLimits = new ArrayList<>();
+                        reader.beginArray();
+                        for (int valueIndex = 0; reader.hasNext(); valueIndex++) {
+                            if (reader.peek() == JsonToken.NULL) {
+                                throw checkError(location.field("valueLimits").index(valueIndex), "found null value");
+                            }
+                            arg.valueLimits.add(reader.nextString());
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (arg.name == null) {
+                throw checkError(location.field("name"), "found null value");
+            }
+            result.add(arg);
+        }
+        reader.endArray();
+
+        return result;
+    }
+
+    /**
+     * 校验错误的消息只在出错时才拼接，避免拖慢正常的加载过程
+     */
+    private static IllegalArgumentException checkError(Location location, String errorMessage) {
+        return new IllegalArgumentException(String.format("%s: %s", location, errorMessage));
+    }
+}
@@ -0,0 +1,218 @@
+package ms.imf.redpoint.converter;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeTree;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BinaryConvertRulesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void convertParity() throws IOException {
+        // 二进制格式加载得到的转换器应与 JSON 加载路径的转换结果一致
+        PathConverter jsonConverter = new NodePathConverter(StreamingConvertRuleLoaderTest.RULES, StreamingConvertRuleLoaderTest.SCHEMA);
+        PathConverter binaryConverter = NodePathConverter.fromBinary(new ByteArrayInputStream(write(rules(), schema())));
+
+        for (List<Node> source : StreamingConvertRuleLoaderTest.SOURCES) {
+            assertThat(source.toString(), binaryConverter.convert(source), is(jsonConverter.convert(source)));
+        }
+    }
+
+    @Test
+    public void mappedFileParity() throws IOException {
+        File file = folder.newFile("rules.bin");
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            BinaryConvertRules.write(rules(), null, output);
+        } finally {
+            output.close();
+        }
+
+        PathConverter jsonConverter = new NodePathConverter(StreamingConvertRuleLoaderTest.RULES);
+        PathConverter binaryConverter = NodePathConverter.fromBinary(file);
+
+        for (List<Node> source : StreamingConvertRuleLoaderTest.SOURCES) {
+            assertThat(source.toString(), binaryConverter.convert(source), is(jsonConverter.convert(source)));
+        }
+    }
+
+    @Test
+    public void targetNodeTreeSchema() throws IOException {
+        List<NodeTree> schema = schema();
+
+        List<NodeTree> result = BinaryConvertRules.loadTargetNodeTreeSchema(new ByteArrayInputStream(write(rules(), schema)));
+        assertThat(result.toString(), is(schema.toString()));
+
+        assertThat(BinaryConvertRules.loadTargetNodeTreeSchema(new ByteArrayInputStream(write(rules(), null))), is(nullValue()));
+    }
+
+    @Test
+    public void bufferPositionUnchanged() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(write(rules(), schema()));
+
+        BinaryConvertRules.load(buffer);
+        BinaryConvertRules.loadTargetNodeTreeSchema(buffer);
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test
+    public void duplicateNameFirstWins() throws IOException {
+        String rules = StreamingConvertRuleLoaderTest.json("[{'name':'a','convertTo':[{'name':'first'}]},{'name':'a','convertTo':[{'name':'second'}]}]");
+        List<Node> source = Arrays.asList(Node.instance("a"));
+
+        assertThat(
+                NodePathConverter.fromBinary(new ByteArrayInputStream(write(parseRules(rules), null))).convert(source),
+                is(new NodePathConverter(rules, false).convert(source))
+        );
+    }
+
+    @Test
+    public void emptyRules() throws IOException {
+        PathConverter converter = NodePathConverter.fromBinary(new ByteArrayInputStream(write(parseRules("[]"), null)));
+        assertThat(converter.convert(Arrays.asList(Node.instance("a"))), is(nullValue()));
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        // 截断处可能先被个数校验发现，也可能读到数据末尾，均应报告为格式错误
+        byte[] rulesOnly = write(rules(), null);
+        for (int length = 0; length < rulesOnly.length; length++) {
+            assertLoadRejected(Arrays.copyOf(rulesOnly, length), "");
+        }
+        assertLoadRejected(Arrays.copyOf(rulesOnly, 5), "unexpected end of data");
+
+        byte[] withSchema = write(rules(), schema());
+        for (int length = rulesOnly.length; length < withSchema.length; length++) {
+            try {
+                BinaryConvertRules.loadTargetNodeTreeSchema(ByteBuffer.wrap(Arrays.copyOf(withSchema, length)));
+                fail("truncated length " + length + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage(), containsString("found error on parse convertRulesBinary"));
+            }
+        }
+    }
+
+    @Test
+    public void illegalHeader() throws IOException {
+        byte[] data = write(rules(), null);
+
+        byte[] illegalMagic = data.clone();
+        illegalMagic[0] = 0;
+        assertLoadRejected(illegalMagic, "illegal magic");
+
+        byte[] illegalVersion = data.clone();
+        illegalVersion[4] = (byte) (BinaryConvertRules.VERSION + 1);
+        assertLoadRejected(illegalVersion, "unsupported version");
+    }
+
+    @Test
+    public void illegalCount() {
+        // 字符串表个数远超剩余字节数
+        assertLoadRejected(header(0xFF, 0xFF, 0xFF, 0xFF, 0x07), "illegal count");
+        // 字符串字节长度超过剩余字节数
+        assertLoadRejected(header(0x01, 0x7F, 'a'), "illegal count");
+        // 规则个数超过剩余字节数
+        assertLoadRejected(header(0x00, 0x7F), "illegal count");
+    }
+
+    @Test
+    public void illegalStringIndex() {
+        // 字符串表为空，规则名引用了下标4
+        assertLoadRejected(header(0x00, 0x01, 0x05, 0x00, 0x00), "string index 4 out of string table size 0");
+    }
+
+    @Test
+    public void illegalVarInt() {
+        assertLoadRejected(header(0xFF, 0xFF, 0xFF, 0xFF, 0xFF), "malformed varint");
+        assertLoadRejected(header(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), "illegal varint");
+    }
+
+    @Test
+    public void illegalArgument() throws IOException {
+        try {
+            BinaryConvertRules.write(null, null, new ByteArrayOutputStream());
+            fail("null convertRules should be rejected");
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            BinaryConvertRules.write(rules(), null, null);
+            fail("null outputStream should be rejected");
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            NodePathConverter.fromBinary((java.io.InputStream) null);
+            fail("null inputStream should be rejected");
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            BinaryConvertRules.load((ByteBuffer) null);
+            fail("null buffer should be rejected");
+        } catch (IllegalArgumentException ignore) {
+        }
+    }
+
+    private static void assertLoadRejected(byte[] data, String expectedMessage) {
+        try {
+            BinaryConvertRules.load(ByteBuffer.wrap(data));
+            fail(String.format("%s should be rejected", Arrays.toString(data)));
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("found error on parse convertRulesBinary"));
+            assertThat(e.getMessage(), containsString(expectedMessage));
+        }
+    }
+
+    /**
+     * 合法的文件头(不含目标节点树)，后接给定的内容
+     */
+    private static byte[] header(int... content) {
+        byte[] result = new byte[6 + content.length];
+        ByteBuffer.wrap(result).putInt(BinaryConvertRules.MAGIC).put((byte) BinaryConvertRules.VERSION).put((byte) 0);
+        for (int i = 0; i < content.length; i++) {
+            result[6 + i] = (byte) content[i];
+        }
+        return result;
+    }
+
+    private static byte[] write(List<ConvertRule> convertRules, List<NodeTree> targetNodeTreeSchema) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryConvertRules.write(convertRules, targetNodeTreeSchema, output);
+        return output.toByteArray();
+    }
+
+    private static List<ConvertRule> rules() {
+        return parseRules(StreamingConvertRuleLoaderTest.RULES);
+    }
+
+    private static List<ConvertRule> parseRules(String json) {
+        return new Gson().fromJson(json, new TypeToken<List<ConvertRule>>() {
+        }.getType());
+    }
+
+    private static List<NodeTree> schema() {
+        return new Gson().fromJson(StreamingConvertRuleLoaderTest.SCHEMA, new TypeToken<List<NodeTree>>() {
+        }.getType());
+    }
+}
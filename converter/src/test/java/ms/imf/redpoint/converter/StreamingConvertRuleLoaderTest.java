@@ -0,0 +1,194 @@
+package ms.imf.redpoint.converter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import ms.imf.redpoint.entity.Node;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StreamingConvertRuleLoaderTest {
+
+    static final String RULES = json("[" +
+            "{'name':'home','args':['tab'],'convertTo':[{'name':'main'}],'sub':[" +
+            "  {'name':'msg','args':['id'],'convertTo':[" +
+            "    {'name':'main','args':[{'hisArg':'tab','refValue':{'myLevel':0,'myArg':'tab'}}]}," +
+            "    {'name':'message','args':[{'hisArg':'msgId','refValue':{'myLevel':1,'myArg':'id'}},{'hisArg':'type','value':'text'}]}" +
+            "  ]}," +
+            "  {'name':'empty'}" +
+            "]}," +
+            "{'name':'setting','convertTo':[{'name':'setting','args':[{'hisArg':'page','value':'1'}]}]}" +
+            "]");
+
+    static final String SCHEMA = json("[" +
+            "{'name':'main','args':[{'name':'tab'}],'sub':[" +
+            "  {'name':'message','args':[{'name':'msgId'},{'name':'type','valueLimits':['text','image']}]}" +
+            "]}," +
+            "{'name':'setting','args':[{'name':'page'}]}" +
+            "]");
+
+    static final List<List<Node>> SOURCES = Arrays.asList(
+            Arrays.asList(Node.instance("home", "tab", "a")),
+            Arrays.asList(Node.instance("home", "tab", "a"), Node.instance("msg", "id", "7")),
+            Arrays.asList(Node.instance("home"), Node.instance("msg")),
+            Arrays.asList(Node.instance("home"), Node.instance("empty")),
+            Arrays.asList(Node.instance("home"), Node.instance("unknown")),
+            Arrays.asList(Node.instance("home"), Node.instance("msg"), Node.instance("deeper")),
+            Arrays.asList(Node.instance("setting")),
+            Arrays.asList(Node.instance("unknown")),
+            Arrays.<Node>asList()
+    );
+
+    @Test
+    public void convertParity() {
+        // 流式加载得到的转换器应与 Gson 解析路径的转换结果一致
+        PathConverter gsonConverter = new NodePathConverter(RULES, SCHEMA);
+        PathConverter streamingConverter = NodePathConverter.fromJson(stream(RULES), stream(SCHEMA));
+
+        for (List<Node> source : SOURCES) {
+            assertThat(source.toString(), streamingConverter.convert(source), is(gsonConverter.convert(source)));
+        }
+        assertThat(streamingConverter.convert(null), is(nullValue()));
+
+        List<Node> result = streamingConverter.convert(SOURCES.get(1));
+        assertThat(result, is(Arrays.asList(
+                Node.instance("main", "tab", "a"),
+                Node.instance("message", "msgId", "7", "type", "text")
+        )));
+    }
+
+    @Test
+    public void loadResult() {
+        StreamingConvertRuleLoader.LoadResult result = StreamingConvertRuleLoader.load(stream(RULES), stream(SCHEMA), true);
+        assertThat(result.converter, is(notNullValue()));
+        assertThat(result.ruleCount, is(4));
+        assertThat(result.totalParseNanos(), is(result.schemaParseNanos + result.rulesParseNanos));
+
+        // 不校验时不解析转换目标节点树
+        assertThat(StreamingConvertRuleLoader.load(stream(RULES), stream("not json"), false).schemaParseNanos, is(0L));
+    }
+
+    @Test
+    public void fieldOrderIndependent() {
+        // 子规则先于 args 出现时，引用祖先层级参数的校验应被暂存到 args 读取之后
+        String rules = json("[{'sub':[{'convertTo':[{'args':[{'refValue':{'myArg':'tab','myLevel':0},'hisArg':'tab'}],'name':'main'}],'name':'msg'}],'args':['tab'],'name':'home'}]");
+
+        PathConverter converter = NodePathConverter.fromJson(stream(rules), stream(SCHEMA));
+        assertThat(
+                converter.convert(Arrays.asList(Node.instance("home", "tab", "b"), Node.instance("msg"))),
+                is(Arrays.asList(Node.instance("main", "tab", "b")))
+        );
+    }
+
+    @Test
+    public void uncheckedDuplicateName() {
+        // 不校验时同一层级出现重名规则，与 NodePathConverter 一致以先出现的为准
+        String rules = json("[{'name':'a','convertTo':[{'name':'first'}]},{'name':'a','convertTo':[{'name':'second'}]}]");
+        List<Node> source = Arrays.asList(Node.instance("a"));
+
+        assertThat(
+                NodePathConverter.fromJson(stream(rules), null, false).convert(source),
+                is(new NodePathConverter(rules, false).convert(source))
+        );
+    }
+
+    @Test
+    public void malformedJson() {
+        assertBothReject("[{'name':'a'", null);
+        assertBothReject("{'name':'a'}", null);
+        assertBothReject("[{'name':'a','args':'tab'}]", null);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'b','args':[{'hisArg':'x','refValue':{'myLevel':'zero','myArg':'x'}}]}]}]", null);
+        assertBothReject("[]", "[{'name':'a'");
+    }
+
+    @Test
+    public void invalidRules() {
+        assertBothReject("[null]", null);
+        assertBothReject("[{'args':['a']}]", null);
+        assertBothReject("[{'name':'a'},{'name':'a'}]", null);
+        assertBothReject("[{'name':'a','args':['']}]", null);
+        assertBothReject("[{'name':'a','convertTo':[{'args':[]}]}]", null);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'b','args':[{'value':'1'}]}]}]", null);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'b','args':[{'hisArg':'x'}]}]}]", null);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'b','args':[{'hisArg':'x','value':'1','refValue':{'myLevel':0,'myArg':'x'}}]}]}]", null);
+        assertBothReject("[{'name':'a','args':['x'],'convertTo':[{'name':'b','args':[{'hisArg':'x','refValue':{'myLevel':1,'myArg':'x'}}]}]}]", null);
+        assertBothReject("[{'name':'a','args':['x'],'convertTo':[{'name':'b','args':[{'hisArg':'x','refValue':{'myLevel':-1,'myArg':'x'}}]}]}]", null);
+        assertBothReject("[{'name':'a','args':['x'],'convertTo':[{'name':'b','args':[{'hisArg':'x','refValue':{'myLevel':0,'myArg':'y'}}]}]}]", null);
+        assertBothReject("[{'name':'a','sub':[{'name':'b','convertTo':[{'name':'c','args':[{'hisArg':'x','refValue':{'myLevel':0,'myArg':'x'}}]}]}]}]", null);
+    }
+
+    @Test
+    public void invalidAgainstSchema() {
+        assertBothReject("[{'name':'a','convertTo':[{'name':'unknown'}]}]", SCHEMA);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'setting','args':[{'hisArg':'unknown','value':'1'}]}]}]", SCHEMA);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'main'},{'name':'message','args':[{'hisArg':'type','value':'video'}]}]}]", SCHEMA);
+        assertBothReject("[{'name':'a','convertTo':[{'name':'message'}]}]", SCHEMA);
+
+        assertBothReject("[]", "[{'args':[]}]");
+        assertBothReject("[]", "[{'name':'a'},{'name':'a'}]");
+        assertBothReject("[]", "[{'name':'a','args':[{'valueLimits':[]}]}]");
+    }
+
+    @Test
+    public void errorLocation() {
+        try {
+            NodePathConverter.fromJson(stream(json("[{'name':'a'},{'name':'b','sub':[{'name':'c'},{'name':'c'}]}]")), null);
+            fail("repeat name should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("$[1].sub[1].name"));
+        }
+    }
+
+    @Test
+    public void trailingContent() {
+        try {
+            NodePathConverter.fromJson(stream(json("[] []")), null);
+            fail("trailing content should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("convertRulesJson"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRules() {
+        NodePathConverter.fromJson(null, null);
+    }
+
+    /**
+     * 非法输入在 Gson 解析路径及流式加载路径下均应被拒绝
+     */
+    private static void assertBothReject(String rules, String schema) {
+        rules = json(rules);
+        schema = schema == null ? null : json(schema);
+
+        try {
+            new NodePathConverter(rules, schema);
+            fail("gson path should reject: " + rules + " / " + schema);
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            NodePathConverter.fromJson(stream(rules), schema == null ? null : stream(schema));
+            fail("streaming path should reject: " + rules + " / " + schema);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static String json(String singleQuoted) {
+        return singleQuoted.replace('\'', '"');
+    }
+
+    static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(Charset.forName("UTF-8")));
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Map;
  */
 public class Node implements Serializable {
 
+    private static final long serialVersionUID = 2936720820209767279L;
+
     public static Node instance(String type, String... argValues) {
         HashMap<String, String> args = null;
         if (argValues != null
@@ -45,6 +47,11 @@ public class Node implements Serializable {
      */
     public final Map<String, String> args;
 
+    /**
+     * hashCode缓存，节点不可变，计算一次即可，0代表还未计算
+     */
+    private transient int hash;
+
     public Node(String name) {
         this(name, null);
     }
@@ -83,14 +90,19 @@ public class Node implements Serializable {
 
         Node node = (Node) o;
 
+        if (hashCode() != node.hashCode()) return false;
         if (name != null ? !name.equals(node.name) : node.name != null) return false;
         return args != null ? args.equals(node.args) : node.args == null;
     }
 
     @Override
     public int hashCode() {
-        int result = name != null ? name.hashCode() : 0;
-        result = 31 * result + (args != null ? args.hashCode() : 0);
+        int result = hash;
+        if (result == 0) {
+            result = name != null ? name.hashCode() : 0;
+            result = 31 * result + (args != null ? args.hashCode() : 0);
+            hash = result;
+        }
         return result;
     }
 }
\ No newline at end of file
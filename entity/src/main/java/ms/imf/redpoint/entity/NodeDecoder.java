@@ -0,0 +1,174 @@
+package ms.imf.redpoint.entity;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点紧凑二进制解码器，与{@link NodeEncoder}对应，格式参见{@link NodeEncoder}
+ * <p>
+ * 解码器是有状态的流式解码器，需按编码时的顺序读取；流中相等的节点解码为同一实例；非线程安全
+ */
+public class NodeDecoder {
+
+    private final DataInput input;
+    private final NodeDictionary dictionary;
+
+    /**
+     * 流中新增的字符串，下标为字符串表下标减去字典大小
+     */
+    private final List<String> strings = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * @param input 读取来源
+     */
+    public NodeDecoder(DataInput input) {
+        this(input, NodeDictionary.EMPTY);
+    }
+
+    /**
+     * @param input      读取来源
+     * @param dictionary 共享字典，需与编码时使用的字典内容相同
+     */
+    public NodeDecoder(DataInput input, NodeDictionary dictionary) {
+        if (input == null) { throw new IllegalArgumentException("input can't be null"); }
+        if (dictionary == null) { throw new IllegalArgumentException("dictionary can't be null"); }
+
+        this.input = input;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 读取节点路径
+     *
+     * @return 节点路径
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public NodePath readNodePath() throws IOException {
+        return readNodePath(readVarInt());
+    }
+
+    /**
+     * 读取节点个数已由调用方读出的节点路径，用于在节点路径前扩展自定义标记的格式
+     *
+     * @param nodeCount 已读出的节点个数
+     * @return 节点路径
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public NodePath readNodePath(int nodeCount) throws IOException {
+        if (nodeCount < 0) {
+            throw new IOException(String.format("illegal path node count %d", nodeCount));
+        }
+        if (nodeCount == 0) {
+            return NodePath.EMPTY;
+        }
+        if (nodeCount > NodeEncoder.MAX_PATH_NODE_COUNT) {
+            throw new IOException(String.format("illegal path node count %d, max %d", nodeCount, NodeEncoder.MAX_PATH_NODE_COUNT));
+        }
+
+        Node[] pathNodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            pathNodes[i] = readNode();
+        }
+        return new NodePath(pathNodes);
+    }
+
+    /**
+     * 读取节点
+     *
+     * @return 节点
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public Node readNode() throws IOException {
+        int tag = readVarInt();
+        if (tag != NodeEncoder.NODE_LITERAL) {
+            int index = tag - NodeEncoder.NODE_INDEX_OFFSET;
+            if (index >= nodes.size()) {
+                throw new IOException(String.format("node index %d out of node table size %d", index, nodes.size()));
+            }
+            return nodes.get(index);
+        }
+
+        String name = readString();
+        if (name == null) {
+            throw new IOException("node name can't be null");
+        }
+
+        int argCount = readVarInt();
+        Map<String, String> args = null;
+        if (argCount > 0) {
+            args = new HashMap<>(Math.min(argCount, 64) * 4 / 3 + 1);
+            for (int i = 0; i < argCount; i++) {
+                String key = readString();
+                if (key == null) {
+                    throw new IOException("node arg key can't be null");
+                }
+                args.put(key, readString());
+            }
+        }
+
+        Node node = new Node(name, args);
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * 读取字符串
+     *
+     * @return 字符串，可为null
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public String readString() throws IOException {
+        int tag = readVarInt();
+        if (tag == NodeEncoder.STRING_NULL) {
+            return null;
+        }
+
+        if (tag == NodeEncoder.STRING_LITERAL) {
+            int length = readVarInt();
+            if (length > NodeEncoder.MAX_STRING_BYTES) {
+                throw new IOException(String.format("illegal string length %d, max %d", length, NodeEncoder.MAX_STRING_BYTES));
+            }
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            String string = new String(bytes, NodeEncoder.UTF_8);
+            strings.add(string);
+            return string;
+        }
+
+        int index = tag - NodeEncoder.STRING_INDEX_OFFSET;
+        if (index < dictionary.size()) {
+            return dictionary.get(index);
+        }
+        index -= dictionary.size();
+        if (index >= strings.size()) {
+            throw new IOException(String.format("string index %d out of string table size %d", index + dictionary.size(), dictionary.size() + strings.size()));
+        }
+        return strings.get(index);
+    }
+
+    /**
+     * 读取无符号变长整数
+     *
+     * @return 不小于0的整数
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = input.readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (result < 0) {
+                    throw new IOException(String.format("illegal varint %d", result & 0xFFFFFFFFL));
+                }
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
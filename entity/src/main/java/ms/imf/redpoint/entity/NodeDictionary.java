@@ -0,0 +1,119 @@
+package ms.imf.redpoint.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点编解码共享字典
+ * <p>
+ * 收录节点名、参数名等高频字符串，编码双方使用内容相同的字典时，字典内的字符串只需以下标引用，无需写出字符串本身，
+ * 适用于节点名、参数名在编译期即已确定的场景，可通过{@link #of(List)}由节点树生成
+ * <p>
+ * 字典不可变，线程安全；字典内容决定编码结果，编码双方的字典内容及顺序必须完全一致
+ *
+ * @see NodeEncoder
+ * @see NodeDecoder
+ */
+public class NodeDictionary {
+
+    /**
+     * 空字典
+     */
+    public static final NodeDictionary EMPTY = new NodeDictionary(Collections.<String>emptyList());
+
+    /**
+     * 由节点树生成字典，收录所有节点名、参数名及参数限制值，按节点树的深度优先顺序排列
+     *
+     * @param nodeTree 节点树
+     * @return 字典
+     */
+    public static NodeDictionary of(List<NodeTree> nodeTree) {
+        if (nodeTree == null) { throw new IllegalArgumentException("nodeTree can't be null"); }
+
+        LinkedHashSet<String> strings = new LinkedHashSet<>();
+        collectStrings(nodeTree, strings);
+        return new NodeDictionary(strings);
+    }
+
+    private static void collectStrings(List<NodeTree> nodeTree, Collection<String> result) {
+        if (nodeTree == null) {
+            return;
+        }
+        for (NodeTree node : nodeTree) {
+            if (node.name != null) {
+                result.add(node.name);
+            }
+            if (node.args != null) {
+                for (NodeTree.Arg arg : node.args) {
+                    if (arg.name != null) {
+                        result.add(arg.name);
+                    }
+                    if (arg.valueLimits != null) {
+                        for (String valueLimit : arg.valueLimits) {
+                            if (valueLimit != null) {
+                                result.add(valueLimit);
+                            }
+                        }
+                    }
+                }
+            }
+            collectStrings(node.sub, result);
+        }
+    }
+
+    private final String[] strings;
+    private final Map<String, Integer> indexes;
+
+    /**
+     * @param strings 字典内容，不能包含null值，重复的字符串只保留第一个
+     */
+    public NodeDictionary(Collection<String> strings) {
+        if (strings == null) { throw new IllegalArgumentException("strings can't be null"); }
+
+        List<String> distinctStrings = new ArrayList<>(strings.size());
+        Map<String, Integer> indexes = new HashMap<>(strings.size() * 4 / 3 + 1);
+        for (String string : strings) {
+            if (string == null) { throw new IllegalArgumentException("strings can't contain null value"); }
+            if (!indexes.containsKey(string)) {
+                indexes.put(string, distinctStrings.size());
+                distinctStrings.add(string);
+            }
+        }
+
+        this.strings = distinctStrings.toArray(new String[distinctStrings.size()]);
+        this.indexes = indexes;
+    }
+
+    /**
+     * 字典收录的字符串数量
+     */
+    public int size() {
+        return strings.length;
+    }
+
+    /**
+     * 获取指定下标的字符串
+     *
+     * @param index 下标
+     * @return 字符串
+     */
+    public String get(int index) {
+        return strings[index];
+    }
+
+    /**
+     * 获取字符串在字典中的下标
+     *
+     * @param string 字符串
+     * @return 下标，-1 == 未收录
+     */
+    public int indexOf(String string) {
+        Integer index = indexes.get(string);
+        return index == null ? -1 : index;
+    }
+}
@@ -0,0 +1,171 @@
+package ms.imf.redpoint.entity;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点紧凑二进制编码器，与{@link NodeDecoder}对应
+ * <p>
+ * 编码器是有状态的流式编码器，同一个编码器写出的内容需由同一个解码器按相同顺序读取：
+ * <ul>
+ * <li>整数均为无符号变长整数varint，小数值只占一个字节</li>
+ * <li>字符串在流中首次出现时写出UTF-8内容并加入字符串表，之后只写出其下标；{@link NodeDictionary}中的字符串从不写出内容</li>
+ * <li>节点在流中首次出现时写出完整内容并加入节点表，之后只写出其下标，解码时相等的节点为同一实例</li>
+ * </ul>
+ * <pre>
+ * String:   varint 0 == null | 1 + varint 字节长度 + UTF-8字节 | 2 + 字符串表下标(字典在前，流中新增的在后)
+ * Node:     varint 0 + String name + varint 参数个数 + (String key, String value)... | 1 + 节点表下标
+ * NodePath: varint 节点个数 + Node...
+ * </pre>
+ * 字符串表及节点表随写出的内容增长，不会淘汰，适合单次的批量编码；非线程安全
+ */
+public class NodeEncoder {
+
+    /**
+     * 字符串UTF-8字节长度上限，解码时据此尽早发现损坏的数据，避免按错误的长度分配过大的数组
+     */
+    public static final int MAX_STRING_BYTES = 1 << 20;
+    /**
+     * 节点路径的节点个数上限，作用同{@link #MAX_STRING_BYTES}
+     */
+    public static final int MAX_PATH_NODE_COUNT = 1 << 16;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int STRING_NULL = 0;
+    static final int STRING_LITERAL = 1;
+    static final int STRING_INDEX_OFFSET = 2;
+
+    static final int NODE_LITERAL = 0;
+    static final int NODE_INDEX_OFFSET = 1;
+
+    private final DataOutput output;
+    private final NodeDictionary dictionary;
+
+    /**
+     * 流中新增的字符串 -> 字符串表下标
+     */
+    private final Map<String, Integer> strings = new HashMap<>();
+    /**
+     * 节点 -> 节点表下标
+     */
+    private final Map<Node, Integer> nodes = new HashMap<>();
+
+    /**
+     * @param output 写出目标
+     */
+    public NodeEncoder(DataOutput output) {
+        this(output, NodeDictionary.EMPTY);
+    }
+
+    /**
+     * @param output     写出目标
+     * @param dictionary 共享字典，解码时需使用内容相同的字典
+     */
+    public NodeEncoder(DataOutput output, NodeDictionary dictionary) {
+        if (output == null) { throw new IllegalArgumentException("output can't be null"); }
+        if (dictionary == null) { throw new IllegalArgumentException("dictionary can't be null"); }
+
+        this.output = output;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 写出节点路径
+     *
+     * @param path 节点路径
+     * @throws IOException 写出失败
+     */
+    public void writeNodePath(NodePath path) throws IOException {
+        if (path == null) { throw new IllegalArgumentException("path can't be null"); }
+
+        List<Node> pathNodes = path.nodes();
+        if (pathNodes.size() > MAX_PATH_NODE_COUNT) {
+            throw new IllegalArgumentException(String.format("path node count can't more than %d, but found %d", MAX_PATH_NODE_COUNT, pathNodes.size()));
+        }
+        writeVarInt(pathNodes.size());
+        for (int i = 0; i < pathNodes.size(); i++) {
+            writeNode(pathNodes.get(i));
+        }
+    }
+
+    /**
+     * 写出节点
+     *
+     * @param node 节点
+     * @throws IOException 写出失败
+     */
+    public void writeNode(Node node) throws IOException {
+        if (node == null) { throw new IllegalArgumentException("node can't be null"); }
+
+        Integer index = nodes.get(node);
+        if (index != null) {
+            writeVarInt(NODE_INDEX_OFFSET + index);
+            return;
+        }
+        nodes.put(node, nodes.size());
+
+        writeVarInt(NODE_LITERAL);
+        writeString(node.name);
+        writeVarInt(node.args.size());
+        for (Map.Entry<String, String> arg : node.args.entrySet()) {
+            writeString(arg.getKey());
+            writeString(arg.getValue());
+        }
+    }
+
+    /**
+     * 写出字符串
+     *
+     * @param string 字符串，可为null
+     * @throws IOException 写出失败
+     */
+    public void writeString(String string) throws IOException {
+        if (string == null) {
+            writeVarInt(STRING_NULL);
+            return;
+        }
+
+        int index = dictionary.indexOf(string);
+        if (index < 0) {
+            Integer streamIndex = strings.get(string);
+            if (streamIndex != null) {
+                index = streamIndex;
+            }
+        }
+        if (index >= 0) {
+            writeVarInt(STRING_INDEX_OFFSET + index);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(String.format("string bytes length can't more than %d, but found %d", MAX_STRING_BYTES, bytes.length));
+        }
+
+        strings.put(string, dictionary.size() + strings.size());
+        writeVarInt(STRING_LITERAL);
+        writeVarInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * 写出无符号变长整数
+     *
+     * @param value 不小于0的整数
+     * @throws IOException 写出失败
+     */
+    public void writeVarInt(int value) throws IOException {
+        if (value < 0) { throw new IllegalArgumentException(String.format("value can't less 0, but found %d", value)); }
+
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+}
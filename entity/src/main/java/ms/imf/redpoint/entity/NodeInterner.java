@@ -0,0 +1,225 @@
+package ms.imf.redpoint.entity;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 节点/节点路径规范化工厂
+ * <p>
+ * 相等的{@link Node}、{@link NodePath}经由同一个interner规范化后会得到同一个实例，
+ * 从而使这些实例间的equals比较可以在引用相等处直接返回，hashCode也只需计算一次，
+ * 适用于节点被大量重复创建并作为树结构、哈希表的键使用的场景
+ * <p>
+ * 规范化实例以弱引用方式持有，不再被外部使用的实例会随GC被回收，不会无限增长；
+ * 所有方法都是线程安全的，内部为{@link ConcurrentHashMap}，多线程同时规范化不会互相阻塞
+ *
+ * @see #global()
+ */
+public class NodeInterner {
+
+    private static final NodeInterner GLOBAL = new NodeInterner();
+
+    /**
+     * 获取全局共享的interner
+     */
+    public static NodeInterner global() {
+        return GLOBAL;
+    }
+
+    /**
+     * 弱引用的规范化实例集合
+     */
+    private static final class WeakInternSet<T> {
+
+        /**
+         * 弱引用键，hash在创建时计算，引用对象被回收后与任何键都不相等，只能以自身实例移除
+         */
+        private static final class WeakKey<T> extends WeakReference<T> {
+            private final int hash;
+
+            WeakKey(T referent, ReferenceQueue<? super T> queue) {
+                super(referent, queue);
+                this.hash = referent.hashCode();
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof WeakKey)) return false;
+
+                T referent = get();
+                return referent != null
+                        && referent.equals(((WeakKey<?>) o).get());
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+        }
+
+        private final ConcurrentMap<WeakKey<T>, WeakKey<T>> keys = new ConcurrentHashMap<>();
+        private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+        /**
+         * @return 与value相等的已有实例，null == 没有
+         */
+        T find(T value) {
+            WeakKey<T> existingKey = keys.get(new WeakKey<>(value, null));
+            return existingKey == null
+                    ? null
+                    : existingKey.get();
+        }
+
+        T intern(T value) {
+            expungeStaleKeys();
+
+            WeakKey<T> key = new WeakKey<>(value, queue);
+            while (true) {
+                WeakKey<T> existingKey = keys.get(key);
+                if (existingKey == null) {
+                    existingKey = keys.putIfAbsent(key, key);
+                    if (existingKey == null) {
+                        return value;
+                    }
+                }
+
+                T existing = existingKey.get();
+                if (existing != null) {
+                    return existing;
+                }
+                // 已存在的实例恰好在比较后被回收，重试
+            }
+        }
+
+        int size() {
+            expungeStaleKeys();
+            return keys.size();
+        }
+
+        private void expungeStaleKeys() {
+            Reference<? extends T> reference;
+            while ((reference = queue.poll()) != null) {
+                keys.remove(reference);
+            }
+        }
+    }
+
+    private final WeakInternSet<Node> nodes = new WeakInternSet<>();
+    private final WeakInternSet<NodePath> paths = new WeakInternSet<>();
+
+    /**
+     * 获取节点的规范化实例
+     *
+     * @param node 节点
+     * @return 与node相等的规范化实例
+     */
+    public Node intern(Node node) {
+        if (node == null) { throw new IllegalArgumentException("node can't be null"); }
+
+        return nodes.intern(node);
+    }
+
+    /**
+     * 获取节点路径的规范化实例，路径中的节点也会被规范化
+     *
+     * @param path 节点路径
+     * @return 与path相等的规范化实例
+     */
+    public NodePath intern(NodePath path) {
+        if (path == null) { throw new IllegalArgumentException("path can't be null"); }
+
+        if (path.size() == 0) {
+            return NodePath.EMPTY;
+        }
+
+        NodePath result = paths.find(path);
+        if (result != null) {
+            return result;
+        }
+
+        // 规范化节点期间可能已有其他线程放入相等的路径，此时以已有实例为准
+        return paths.intern(internNodes(path));
+    }
+
+    /**
+     * @see Node#instance(String, String...)
+     */
+    public Node node(String name, String... argValues) {
+        return intern(Node.instance(name, argValues));
+    }
+
+    /**
+     * @see Node#instance(String, Map)
+     */
+    public Node node(String name, Map<String, String> args) {
+        return intern(Node.instance(name, args));
+    }
+
+    /**
+     * @see NodePath#instance(List)
+     */
+    public NodePath path(List<Node> nodes) {
+        return intern(NodePath.instance(nodes));
+    }
+
+    /**
+     * @see NodePath#instance(Node...)
+     */
+    public NodePath path(Node... nodes) {
+        return intern(NodePath.instance(nodes));
+    }
+
+    /**
+     * @see NodePath#instance(String...)
+     */
+    public NodePath path(String... nodeTypes) {
+        return intern(NodePath.instance(nodeTypes));
+    }
+
+    /**
+     * @see NodePath#instance(NodePath, Node)
+     */
+    public NodePath path(NodePath parentPath, Node node) {
+        return intern(NodePath.instance(parentPath, node));
+    }
+
+    /**
+     * 当前持有的规范化节点数量
+     */
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * 当前持有的规范化节点路径数量
+     */
+    public int pathCount() {
+        return paths.size();
+    }
+
+    private NodePath internNodes(NodePath path) {
+        Node[] sourceNodes = path.nodeArray();
+        Node[] canonicalNodes = null;
+
+        for (int i = 0; i < sourceNodes.length; i++) {
+            Node canonicalNode = intern(sourceNodes[i]);
+            if (canonicalNode != sourceNodes[i]
+                    && canonicalNodes == null) {
+                canonicalNodes = sourceNodes.clone();
+            }
+            if (canonicalNodes != null) {
+                canonicalNodes[i] = canonicalNode;
+            }
+        }
+
+        return canonicalNodes == null
+                ? path
+                : new NodePath(canonicalNodes);
+    }
+}
@@ -1,19 +1,32 @@
 package ms.imf.redpoint.entity;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * 节点路径，包含一条节点链
+ * <p>
+ * 节点链以数组形式存储，{@link #nodes()}为其只读视图，支持 O(1) 的随机访问；
+ * 序列化格式与以列表存储时保持一致，只有一个List类型的字段nodes
  *
  * @author f_ms
  */
 public class NodePath implements Serializable {
 
-    public static final NodePath EMPTY = new NodePath(Collections.<Node>emptyList());
+    private static final long serialVersionUID = -7587776808962113047L;
+
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("nodes", List.class)
+    };
+
+    public static final NodePath EMPTY = new NodePath(new Node[0]);
 
     public static NodePath instance(List<Node> nodes) {
         return new NodePath(nodes);
@@ -32,20 +45,31 @@ public class NodePath implements Serializable {
         return instance(parentPath, Node.instance(nodeType));
     }
     public static NodePath instance(NodePath parentPath, Node node) {
-        LinkedList<Node> nodes = new LinkedList<>();
-        if (parentPath != null) {
-            nodes.addAll(parentPath.nodes);
-        }
-        if (node != null) {
-            nodes.add(node);
+        Node[] parentNodes = parentPath != null
+                ? parentPath.nodes
+                : EMPTY.nodes;
+
+        if (node == null) {
+            return new NodePath(parentNodes);
         }
+
+        Node[] nodes = Arrays.copyOf(parentNodes, parentNodes.length + 1);
+        nodes[parentNodes.length] = node;
         return new NodePath(nodes);
     }
 
     /**
-     * 包含的节点列表
+     * 包含的节点，不可变，只在构造及反序列化时赋值
+     */
+    private Node[] nodes;
+    /**
+     * {@link #nodes}的只读列表视图
+     */
+    private List<Node> nodeList;
+    /**
+     * hashCode缓存，路径不可变，计算一次即可，0代表还未计算
      */
-    private final List<Node> nodes;
+    private transient int hash;
 
     public NodePath(List<Node> nodes) {
         if (nodes == null) {
@@ -55,13 +79,70 @@ public class NodePath implements Serializable {
         if (nullIndex >= 0) {
             throw new IllegalArgumentException("nodes can't contain null value, but found in index '" + nullIndex + "'");
         }
-        this.nodes = Collections.unmodifiableList(new LinkedList<>(nodes));
+        this.nodes = nodes.toArray(new Node[nodes.size()]);
+        this.nodeList = Collections.unmodifiableList(Arrays.asList(this.nodes));
+    }
+
+    /**
+     * @param nodes 不含null的节点数组，直接持有不做拷贝，调用方需保证不再修改
+     */
+    NodePath(Node[] nodes) {
+        this.nodes = nodes;
+        this.nodeList = Collections.unmodifiableList(Arrays.asList(nodes));
     }
 
     public List<Node> nodes() {
+        return nodeList;
+    }
+
+    /**
+     * 节点数量
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * 获取指定位置的节点
+     *
+     * @param index 节点位置，从0开始
+     * @return 节点
+     */
+    public Node get(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * 节点数组，仅供包内只读使用
+     */
+    Node[] nodeArray() {
         return nodes;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.putFields().put("nodes", nodeList);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        Object serialNodes = in.readFields().get("nodes", null);
+        if (!(serialNodes instanceof List)) {
+            throw new InvalidObjectException("nodes must be a list, but found " + serialNodes);
+        }
+
+        List<?> list = (List<?>) serialNodes;
+        Node[] nodes = new Node[list.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            Object node = list.get(i);
+            if (!(node instanceof Node)) {
+                throw new InvalidObjectException("nodes can't contain non-node value, but found '" + node + "' in index '" + i + "'");
+            }
+            nodes[i] = (Node) node;
+        }
+        this.nodes = nodes;
+        this.nodeList = Collections.unmodifiableList(Arrays.asList(nodes));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -69,18 +150,26 @@ public class NodePath implements Serializable {
 
         NodePath path = (NodePath) o;
 
-        return nodes != null ? nodes.equals(path.nodes) : path.nodes == null;
+        if (nodes.length != path.nodes.length) return false;
+        if (hashCode() != path.hashCode()) return false;
+        return Arrays.equals(nodes, path.nodes);
     }
 
     @Override
     public int hashCode() {
-        return nodes != null ? nodes.hashCode() : 0;
+        int result = hash;
+        if (result == 0) {
+            // 与 List#hashCode 的计算方式一致
+            result = Arrays.hashCode(nodes);
+            hash = result;
+        }
+        return result;
     }
 
     @Override
     public String toString() {
         return "NodePath{" +
-                "nodes=" + nodes +
+                "nodes=" + nodeList +
                 '}';
     }
-}
\ No newline at end of file
+}
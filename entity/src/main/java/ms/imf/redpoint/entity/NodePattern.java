@@ -0,0 +1,191 @@
+package ms.imf.redpoint.entity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 节点模式，作为节点路径中的节点时匹配一类节点，用于以一条路径关注一组同类节点
+ * <p>
+ * 例如关注列表下的所有条目 'list>item(itemId=*)'：
+ * <pre>
+ * NodePath.instance(Node.instance("list"), NodePattern.anyArgs("item", "itemId"))
+ * </pre>
+ * 除{@link #any()}外，被匹配节点的名称需相同，参数名集合需与模式的参数名集合完全相同，与{@link Node#equals(Object)}的参数匹配规则一致；
+ * 节点模式不会匹配另一个节点模式，两个节点模式只在完全相同时相等
+ * <p>
+ * 节点模式只能用于{@code RemindHandler}的支持路径，不能用于消息路径
+ */
+public final class NodePattern extends Node {
+
+    private static final long serialVersionUID = -6821398127065693576L;
+
+    private static final String ANY_NAME = "*";
+
+    private static final NodePattern ANY = new NodePattern(null, Collections.<String, Collection<String>>emptyMap());
+
+    /**
+     * 匹配任意节点
+     */
+    public static NodePattern any() {
+        return ANY;
+    }
+
+    /**
+     * 匹配名称为name、指定参数为任意值的节点
+     *
+     * @param name     节点名
+     * @param argNames 参数名
+     */
+    public static NodePattern anyArgs(String name, String... argNames) {
+        if (name == null) { throw new IllegalArgumentException("name can't be null"); }
+
+        Map<String, Collection<String>> argValues = new HashMap<>();
+        if (argNames != null) {
+            for (String argName : argNames) {
+                argValues.put(argName, null);
+            }
+        }
+        return new NodePattern(name, argValues);
+    }
+
+    /**
+     * 匹配名称为name、参数argName的值在values中的节点
+     *
+     * @param name    节点名
+     * @param argName 参数名
+     * @param values  允许的参数值
+     */
+    public static NodePattern argIn(String name, String argName, Collection<String> values) {
+        if (name == null) { throw new IllegalArgumentException("name can't be null"); }
+        if (values == null) { throw new IllegalArgumentException("values can't be null"); }
+
+        return new NodePattern(name, Collections.singletonMap(argName, values));
+    }
+
+    /**
+     * @param name      节点名
+     * @param argValues 参数名及其允许的值，值为null代表任意值
+     */
+    public static NodePattern argsIn(String name, Map<String, ? extends Collection<String>> argValues) {
+        if (name == null) { throw new IllegalArgumentException("name can't be null"); }
+        if (argValues == null) { throw new IllegalArgumentException("argValues can't be null"); }
+
+        return new NodePattern(name, argValues);
+    }
+
+    /**
+     * 是否匹配任意节点
+     */
+    private final boolean anyName;
+    /**
+     * 参数名及其允许的值，值为null代表任意值
+     */
+    private final Map<String, Set<String>> argValues;
+
+    /**
+     * hashCode缓存，节点模式不可变，计算一次即可，0代表还未计算
+     */
+    private transient int patternHash;
+
+    private NodePattern(String name, Map<String, ? extends Collection<String>> argValues) {
+        super(name == null ? ANY_NAME : name);
+
+        Map<String, Set<String>> values = new HashMap<>(argValues.size() * 4 / 3 + 1);
+        for (Map.Entry<String, ? extends Collection<String>> entry : argValues.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("argValues' key can't be null");
+            }
+            values.put(
+                    entry.getKey(),
+                    entry.getValue() == null
+                            ? null
+                            : Collections.unmodifiableSet(new HashSet<>(entry.getValue()))
+            );
+        }
+
+        this.anyName = name == null;
+        this.argValues = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * 是否为匹配任意节点的模式
+     */
+    public boolean isAny() {
+        return anyName;
+    }
+
+    /**
+     * 参数名及其允许的值，值为null代表任意值
+     */
+    public Map<String, Set<String>> argValues() {
+        return argValues;
+    }
+
+    /**
+     * 是否匹配指定节点
+     *
+     * @param node 被匹配的节点，节点模式永远不会被匹配
+     */
+    public boolean matches(Node node) {
+        if (node == null
+                || node instanceof NodePattern) {
+            return false;
+        }
+        if (anyName) {
+            return true;
+        }
+        if (!name.equals(node.name)
+                || node.args.size() != argValues.size()) {
+            return false;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : argValues.entrySet()) {
+            if (!node.args.containsKey(entry.getKey())) {
+                return false;
+            }
+            Set<String> values = entry.getValue();
+            if (values != null
+                    && !values.contains(node.args.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "NodePattern{" +
+                "name='" + (anyName ? ANY_NAME : name) + '\'' +
+                ", argValues=" + argValues +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        NodePattern that = (NodePattern) o;
+
+        if (hashCode() != that.hashCode()) return false;
+        if (anyName != that.anyName) return false;
+        if (!name.equals(that.name)) return false;
+        return argValues.equals(that.argValues);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = patternHash;
+        if (result == 0) {
+            result = name.hashCode();
+            result = 31 * result + (anyName ? 1 : 0);
+            result = 31 * result + argValues.hashCode();
+            patternHash = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+package ms.imf.redpoint.entity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class NodeInternerTest {
+
+    @Test
+    public void internNode() {
+        NodeInterner interner = new NodeInterner();
+
+        Node node = Node.instance("item", "itemId", "1");
+        assertThat(interner.intern(node), sameInstance(node));
+        assertThat(interner.intern(Node.instance("item", "itemId", "1")), sameInstance(node));
+        assertThat(interner.node("item", "itemId", "1"), sameInstance(node));
+
+        // 不相等的节点互不影响
+        Node other = interner.node("item", "itemId", "2");
+        assertThat(other, not(sameInstance(node)));
+        assertThat(other, is(Node.instance("item", "itemId", "2")));
+        assertThat(interner.nodeCount(), is(2));
+
+        // 不同的interner互相独立
+        assertThat(new NodeInterner().intern(Node.instance("item", "itemId", "1")), not(sameInstance(node)));
+    }
+
+    @Test
+    public void internPath() {
+        NodeInterner interner = new NodeInterner();
+
+        Node list = interner.node("list");
+        NodePath path = interner.path(Node.instance("list"), Node.instance("item", "itemId", "1"));
+        assertThat(path, is(NodePath.instance(Node.instance("list"), Node.instance("item", "itemId", "1"))));
+        // 路径中的节点同样被规范化
+        assertThat(path.get(0), sameInstance(list));
+        assertThat(path.get(1), sameInstance(interner.node("item", "itemId", "1")));
+
+        assertThat(interner.intern(NodePath.instance(Node.instance("list"), Node.instance("item", "itemId", "1"))), sameInstance(path));
+        assertThat(interner.path(interner.path("list"), Node.instance("item", "itemId", "1")), sameInstance(path));
+        assertThat(interner.intern(NodePath.instance(new Node[0])), sameInstance(NodePath.EMPTY));
+        assertThat(interner.pathCount(), is(2));
+    }
+
+    @Test
+    public void releaseUnused() throws InterruptedException {
+        NodeInterner interner = new NodeInterner();
+        Node retained = interner.node("retained");
+        for (int i = 0; i < 1000; i++) {
+            interner.path("unused", String.valueOf(i));
+        }
+        assertThat(interner.nodeCount() > 1, is(true));
+
+        // 不再被外部使用的实例随GC回收
+        for (int i = 0; i < 50 && interner.nodeCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(interner.nodeCount(), is(1));
+        assertThat(interner.pathCount(), is(0));
+        assertThat(interner.node("retained"), sameInstance(retained));
+    }
+
+    @Test
+    public void concurrentIntern() throws Exception {
+        final NodeInterner interner = new NodeInterner();
+        final int threadCount = 8;
+        final int nodeCount = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<NodePath[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executor.submit(new Callable<NodePath[]>() {
+                    @Override
+                    public NodePath[] call() throws Exception {
+                        start.await();
+                        // 持有结果，避免驻留的实例在统计前被GC回收
+                        NodePath[] result = new NodePath[nodeCount];
+                        for (int i = 0; i < nodeCount; i++) {
+                            result[i] = interner.path(Node.instance("list"), Node.instance("item", "itemId", String.valueOf(i)));
+                        }
+                        return result;
+                    }
+                }));
+            }
+            start.countDown();
+
+            NodePath[] expected = futures.get(0).get();
+            for (Future<NodePath[]> future : futures) {
+                NodePath[] actual = future.get();
+                for (int i = 0; i < nodeCount; i++) {
+                    // 所有线程得到同一个实例
+                    assertThat(actual[i], sameInstance(expected[i]));
+                    assertThat(actual[i].get(1), sameInstance(expected[i].get(1)));
+                }
+            }
+            assertThat(interner.nodeCount(), is(nodeCount + 1));
+            assertThat(interner.pathCount(), is(nodeCount));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ms.imf.redpoint.entity;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class NodePathTest {
+
+    @Test
+    public void serialize() throws Exception {
+        NodePath path = NodePath.instance(Node.instance("list"), Node.instance("item", "itemId", "1"));
+
+        NodePath result = (NodePath) deserialize(serialize(path));
+        assertThat(result, is(path));
+        assertThat(result.hashCode(), is(path.hashCode()));
+        assertThat(result.size(), is(2));
+        assertThat(result.get(1), is(Node.instance("item", "itemId", "1")));
+        assertThat(result.nodes(), is(path.nodes()));
+
+        assertThat((NodePath) deserialize(serialize(NodePath.EMPTY)), is(NodePath.EMPTY));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(object);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+}
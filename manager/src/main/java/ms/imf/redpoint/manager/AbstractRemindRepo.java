@@ -1,10 +1,12 @@
 package ms.imf.redpoint.manager;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ms.imf.redpoint.entity.Node;
 import ms.imf.redpoint.entity.NodePath;
@@ -16,7 +18,13 @@ import ms.imf.redpoint.entity.NodePath;
  */
 public abstract class AbstractRemindRepo<RemindType extends Remind> implements RemindRepo<RemindType> {
 
-    private RemindDataChangedListener mRemindDataChangedListener;
+    private RemindDataChangedListener<? super RemindType> mRemindDataChangedListener;
+
+    /**
+     * 当前线程正在执行的批量操作的变更合并器，null == 不在批量操作中
+     */
+    private final ThreadLocal<RemindDeltaMerger<RemindType>> batchMerger = new ThreadLocal<>();
+    private final AtomicLong deltaSequence = new AtomicLong();
 
     @Override
     public Map<NodePath, ? extends Collection<? extends RemindType>> getMatchPathReminds(Collection<NodePath> nodePaths) {
@@ -103,15 +111,101 @@ public abstract class AbstractRemindRepo<RemindType extends Remind> implements R
         return removeReminds(getAllReminds());
     }
 
+    /**
+     * 批量执行数据变更，供实现了{@link BatchableRemindRepo}的子类实现{@link BatchableRemindRepo#batch(RemindBatch)}
+     * <p>
+     * 批量操作期间本线程通过{@link #dispatchRemindDelta(RemindDelta)}发出的变更会被合并，结束后只通知一次净变更；
+     * 批量操作内再次调用本方法时直接执行，并入外层批量操作。
+     * 批量操作抛出异常时，已执行的变更不会回滚，依然会被通知
+     * <p>
+     * 默认不保证其他线程看不到执行一半的批量操作，需要时由子类覆写{@link #applyBatch(RemindBatch, BatchableRemindRepo)}在同一个写锁内执行
+     *
+     * @param batch 批量操作
+     * @param repo  传给批量操作的仓库，即子类自身
+     */
+    protected final void mergeBatch(RemindBatch<RemindType> batch, BatchableRemindRepo<RemindType> repo) {
+        if (batch == null) { throw new IllegalArgumentException("batch can't be null"); }
+
+        if (batchMerger.get() != null) {
+            batch.apply(repo);
+            return;
+        }
+
+        RemindDeltaMerger<RemindType> merger = new RemindDeltaMerger<>();
+        batchMerger.set(merger);
+        try {
+            applyBatch(batch, repo);
+        } finally {
+            batchMerger.remove();
+            dispatchRemindDelta(merger.toDelta());
+        }
+    }
+
+    /**
+     * 执行最外层的批量操作，子类可覆写以在同一个写锁内执行所有变更
+     *
+     * @param batch 批量操作
+     * @param repo  传给批量操作的仓库
+     */
+    protected void applyBatch(RemindBatch<RemindType> batch, BatchableRemindRepo<RemindType> repo) {
+        batch.apply(repo);
+    }
+
     @Override
-    public void setRemindDataChangedListener(RemindDataChangedListener listener) {
+    public void setRemindDataChangedListener(RemindDataChangedListener<? super RemindType> listener) {
         mRemindDataChangedListener = listener;
     }
 
-    protected RemindDataChangedListener remindChangedListener() {
+    protected RemindDataChangedListener<? super RemindType> remindChangedListener() {
         return mRemindDataChangedListener;
     }
 
+    /**
+     * 为一次变更分配提交序号，从1开始递增
+     * <p>
+     * 需在提交该变更的写锁内调用，使序号的顺序与变更的提交顺序一致；只为非空的变更分配序号，
+     * 否则接收方会把空变更占用的序号视为还未到达的变更
+     *
+     * @return 提交序号
+     * @see RemindDelta#firstSequence()
+     */
+    protected final long nextDeltaSequence() {
+        return deltaSequence.incrementAndGet();
+    }
+
+    /**
+     * 向监听器通知增量变更
+     * <p>
+     * 监听器为{@link RemindDeltaListener}时回调{@link RemindDeltaListener#onRemindDataChanged(RemindDelta)}，
+     * 否则以{@link RemindDelta#changedReminds()}回调{@link RemindDataChangedListener#onRemindDataChanged(Iterable)}；
+     * 在本线程的批量操作中时只合并变更，待批量操作结束后统一通知
+     *
+     * @param delta 增量变更，为空时不通知
+     */
+    @SuppressWarnings("unchecked")
+    protected void dispatchRemindDelta(RemindDelta<RemindType> delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        RemindDeltaMerger<RemindType> merger = batchMerger.get();
+        if (merger != null) {
+            merger.merge(delta);
+            return;
+        }
+
+        RemindDataChangedListener<? super RemindType> listener = remindChangedListener();
+        if (listener instanceof RemindDeltaListener) {
+            ((RemindDeltaListener<RemindType>) listener).onRemindDataChanged(delta);
+        } else if (listener != null) {
+            notifyChangedReminds(listener, delta.changedReminds());
+        }
+    }
+
+    private static <T extends Remind> void notifyChangedReminds(RemindDataChangedListener<T> listener, List<? extends T> changedReminds) {
+        listener.onRemindDataChanged(Collections.<T>unmodifiableList(changedReminds));
+    }
+
     private long removeReminds(Collection<? extends RemindType> reminds) {
         if (reminds.isEmpty()) {
             return 0;
@@ -0,0 +1,32 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 支持添加提醒及批量变更的提醒数据仓库
+ * <p>
+ * 与{@link CountableRemindRepo}一样作为{@link RemindRepo}的可选能力单独声明，已有的{@link RemindRepo}实现无需修改；
+ * {@link AbstractRemindRepo}的子类可通过{@link AbstractRemindRepo#mergeBatch(RemindBatch, BatchableRemindRepo)}实现{@link #batch(RemindBatch)}
+ *
+ * @param <RemindType> 支持的提醒数据类型
+ * @see IndexedRemindRepo
+ * @see OffHeapRemindRepo
+ */
+public interface BatchableRemindRepo<RemindType extends Remind> extends RemindRepo<RemindType> {
+
+    /**
+     * 添加提醒数据集，与已存在提醒相等的提醒会替换掉已存在的提醒
+     *
+     * @param reminds 要添加的提醒数据集
+     */
+    void addReminds(Iterable<? extends RemindType> reminds);
+
+    /**
+     * 批量执行数据变更
+     * <p>
+     * 批量操作内对本仓库的所有变更合并为一次变更通知，监听器只会收到各提醒最终的净变更，
+     * 例如批量同步1000条提醒只会触发一次handler刷新；是否对其他线程及持久化存储原子可见由实现决定
+     *
+     * @param batch 批量操作
+     * @see RemindBatch
+     */
+    void batch(RemindBatch<RemindType> batch);
+}
@@ -0,0 +1,149 @@
+package ms.imf.redpoint.manager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并分发器，收集调度执行前的所有待刷新目标，在调度执行时一次性交给{@link FlushHandler}处理
+ * <p>
+ * 未设置{@link DispatchScheduler}时退化为同步分发：每个请求立即交给{@link FlushHandler}处理
+ *
+ * @param <Target> 刷新目标类型
+ */
+class CoalescingDispatcher<Target> {
+
+    interface FlushHandler<Target> {
+        /**
+         * 处理合并后的刷新目标
+         *
+         * @param targets 合并后的刷新目标，不为空
+         */
+        void onFlush(Set<Target> targets);
+    }
+
+    private final FlushHandler<Target> flushHandler;
+    private volatile DispatchScheduler scheduler;
+
+    private final Object pendingLocker = new Object();
+    private Set<Target> pendingTargets = new LinkedHashSet<>();
+    private boolean flushScheduled;
+    private long firstPendingNanos;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong dispatchedTargetCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    CoalescingDispatcher(FlushHandler<Target> flushHandler) {
+        this.flushHandler = flushHandler;
+    }
+
+    void setScheduler(DispatchScheduler scheduler) {
+        this.scheduler = scheduler;
+        if (scheduler == null) {
+            // 切换为同步模式时不再等待调度，立即处理已积压的目标
+            flush();
+        }
+    }
+
+    DispatchScheduler scheduler() {
+        return scheduler;
+    }
+
+    void dispatch(Collection<Target> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        requestCount.incrementAndGet();
+
+        DispatchScheduler currentScheduler = scheduler;
+        if (currentScheduler == null) {
+            flushCount.incrementAndGet();
+            dispatchedTargetCount.addAndGet(targets.size());
+            flushHandler.onFlush(targets instanceof Set ? (Set<Target>) targets : new LinkedHashSet<>(targets));
+            return;
+        }
+
+        boolean needSchedule;
+        synchronized (pendingLocker) {
+            if (pendingTargets.isEmpty()) {
+                firstPendingNanos = System.nanoTime();
+            }
+            pendingTargets.addAll(targets);
+
+            needSchedule = !flushScheduled;
+            flushScheduled = true;
+        }
+
+        if (!needSchedule) {
+            return;
+        }
+
+        try {
+            currentScheduler.schedule(flushTask);
+        } catch (RuntimeException e) {
+            // 调度失败(如调度器已关闭)时复位标记，积压的目标保留到下次调度或切换为同步模式时处理，否则之后的请求都会被丢弃
+            synchronized (pendingLocker) {
+                flushScheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 立即处理所有积压的刷新目标
+     */
+    void flush() {
+        Set<Target> targets;
+        long latencyNanos;
+
+        synchronized (pendingLocker) {
+            flushScheduled = false;
+            if (pendingTargets.isEmpty()) {
+                return;
+            }
+            targets = pendingTargets;
+            pendingTargets = new LinkedHashSet<>();
+            latencyNanos = System.nanoTime() - firstPendingNanos;
+        }
+
+        flushCount.incrementAndGet();
+        dispatchedTargetCount.addAndGet(targets.size());
+        totalLatencyNanos.addAndGet(latencyNanos);
+        updateMaxLatency(latencyNanos);
+
+        flushHandler.onFlush(Collections.unmodifiableSet(targets));
+    }
+
+    DispatchStats stats() {
+        return new DispatchStats(
+                requestCount.get(),
+                flushCount.get(),
+                dispatchedTargetCount.get(),
+                totalLatencyNanos.get(),
+                maxLatencyNanos.get()
+        );
+    }
+
+    private void updateMaxLatency(long latencyNanos) {
+        while (true) {
+            long lastMax = maxLatencyNanos.get();
+            if (latencyNanos <= lastMax
+                    || maxLatencyNanos.compareAndSet(lastMax, latencyNanos)) {
+                return;
+            }
+        }
+    }
+}
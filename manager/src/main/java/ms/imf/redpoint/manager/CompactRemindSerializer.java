@@ -0,0 +1,77 @@
+package ms.imf.redpoint.manager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import ms.imf.redpoint.entity.NodeDecoder;
+import ms.imf.redpoint.entity.NodeDictionary;
+import ms.imf.redpoint.entity.NodeEncoder;
+
+/**
+ * 以紧凑二进制格式序列化仅包含节点路径的{@link Remind}，格式参见{@link NodeEncoder}
+ * <p>
+ * 同一个{@link Writer}写出的消息共享字符串表及节点表，重复的字符串、节点只写出一次，
+ * 所以需由同一个{@link Reader}按相同顺序全部读取，{@link FileRemindRepo}中每条日志记录即为一组这样的消息
+ * <pre>
+ * Remind:   NodePath | varint {@value #EXPIRING_REMIND} + long expireAt + NodePath
+ * </pre>
+ * 永不过期的消息只写出节点路径，与不支持过期时间的旧格式相同；
+ * 过期标记大于{@link NodeEncoder#MAX_PATH_NODE_COUNT}，不会与节点路径开头的节点个数混淆，旧格式的数据仍可读取
+ */
+public class CompactRemindSerializer implements RemindSerializer<Remind> {
+
+    /**
+     * 带过期时间的消息标记，位于节点路径的节点个数处
+     */
+    static final int EXPIRING_REMIND = NodeEncoder.MAX_PATH_NODE_COUNT + 1;
+
+    private final NodeDictionary dictionary;
+
+    public CompactRemindSerializer() {
+        this(NodeDictionary.EMPTY);
+    }
+
+    /**
+     * @param dictionary 共享字典，读取时需使用内容相同的字典
+     */
+    public CompactRemindSerializer(NodeDictionary dictionary) {
+        if (dictionary == null) { throw new IllegalArgumentException("dictionary can't be null"); }
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public Writer<Remind> newWriter(final DataOutput output) {
+        final NodeEncoder encoder = new NodeEncoder(output, dictionary);
+        return new Writer<Remind>() {
+            @Override
+            public void write(Remind remind) throws IOException {
+                if (remind.expireAt() != Remind.NEVER_EXPIRE) {
+                    encoder.writeVarInt(EXPIRING_REMIND);
+                    output.writeLong(remind.expireAt());
+                }
+                encoder.writeNodePath(remind.path());
+            }
+        };
+    }
+
+    @Override
+    public Reader<Remind> newReader(final DataInput input) {
+        final NodeDecoder decoder = new NodeDecoder(input, dictionary);
+        return new Reader<Remind>() {
+            @Override
+            public Remind read() throws IOException {
+                int head = decoder.readVarInt();
+                if (head != EXPIRING_REMIND) {
+                    return new Remind(decoder.readNodePath(head));
+                }
+
+                long expireAt = input.readLong();
+                if (expireAt <= Remind.NEVER_EXPIRE) {
+                    throw new IOException(String.format("illegal expireAt: %d", expireAt));
+                }
+                return new Remind(decoder.readNodePath(), expireAt);
+            }
+        };
+    }
+}
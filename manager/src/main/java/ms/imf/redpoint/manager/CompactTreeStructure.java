@@ -0,0 +1,791 @@
+package ms.imf.redpoint.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内存紧凑的{@link TreeStructure}实现，行为与{@link TreeStructure}完全相同，适用于路径数量巨大、内存开销为主要矛盾的场景
+ * <p>
+ * {@link TreeStructure}的每个树节点都持有一个数据HashSet、一个子节点HashMap及一个模式节点HashSet，
+ * 即使只有一个子节点的叶子节点也需要为这些哈希表付出上百字节；本实现改为：
+ * <pre>
+ *  节点ID: 相等的节点在树内只登记一次并分配一个int ID，树节点只记录ID，不再重复持有节点对象，ID随引用计数归零回收
+ *  树节点: 以int下标表示，各字段分别存放在并行数组中，没有树节点对象及其对象头
+ *  子节点: 不超过{@value #INLINE_CHILD_COUNT}个时为按顺序存放子节点下标的小数组，超过时转为以节点ID为键的开放寻址(线性探测)哈希表
+ *  数据槽: 没有数据时为null，只有一个数据时直接存放该数据，多个时才使用数组，数据较多时才使用HashSet
+ * </pre>
+ * 被移除的树节点下标及节点ID会被回收复用
+ * <p>
+ * 数据不能为null；非线程安全
+ */
+class CompactTreeStructure<Node, Data> extends TreeStructure<Node, Data> {
+
+    /**
+     * 子节点数量不超过此值时以小数组存放，线性查找
+     */
+    private static final int INLINE_CHILD_COUNT = 8;
+    /**
+     * 数据数量不超过此值时以数组存放，线性查找
+     */
+    private static final int INLINE_DATA_COUNT = 8;
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 多个数据的数据槽，数据数量不超过{@link #INLINE_DATA_COUNT}时使用items，否则使用set
+     */
+    private static final class MultiData {
+        Object[] items = new Object[INLINE_DATA_COUNT];
+        int size;
+        Set<Object> set;
+    }
+
+    /*
+    节点ID登记表
+     */
+    private final Map<Node, Integer> nodeIds = new HashMap<>();
+    private Object[] idNodes;
+    /**
+     * 使用该节点ID的树节点数量
+     */
+    private int[] idRefCounts;
+    private boolean[] idPatterns;
+    private int[] freeIds;
+    private int freeIdCount;
+    private int idCount;
+
+    /*
+    树节点，以下标表示，0为根节点
+     */
+    /**
+     * 父节点指向当前节点的节点ID
+     */
+    private int[] edgeIds;
+    private int[] parents;
+    /**
+     * 子节点下标，子节点数量不超过{@link #INLINE_CHILD_COUNT}时前childCounts个元素有效，否则为开放寻址哈希表，0 == 空槽(根节点不会是子节点)
+     */
+    private int[][] children;
+    private int[] childCounts;
+    /**
+     * 子节点中的模式节点数量
+     */
+    private int[] patternChildCounts;
+    /**
+     * null == 没有数据，{@link MultiData} == 多个数据，其他 == 唯一的数据
+     */
+    private Object[] dataSlots;
+    private int[] freeNodes;
+    private int freeNodeCount;
+    private int nodeCount;
+
+    private final TreeWalker<Node, Data, Integer> walker;
+
+    CompactTreeStructure() {
+        this(null);
+    }
+
+    /**
+     * @param matcher 模式节点匹配规则，null == 不支持模式节点
+     */
+    CompactTreeStructure(NodeMatcher<Node> matcher) {
+        super(matcher);
+        walker = new IndexWalker(matcher);
+        reset();
+    }
+
+    @Override
+    void put(Data data, Iterable<Node> path) {
+        putMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void putMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        for (Iterable<Node> path : paths) {
+            int current = ROOT;
+
+            Iterator<Node> iterator = path.iterator();
+            if (!iterator.hasNext()) {
+                continue;
+            }
+            while (iterator.hasNext()) {
+                Node node = iterator.next();
+                int id = obtainNodeId(node);
+
+                int child = findChild(current, id);
+                if (child == NONE) {
+                    child = allocateNode(current, id);
+                }
+                current = child;
+            }
+            addData(current, data);
+        }
+    }
+
+    @Override
+    void remove(Data data, Iterable<Node> path) {
+        removeMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void removeMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        for (Iterable<Node> path : paths) {
+            int current = findNode(path);
+            if (current == NONE
+                    || current == ROOT) {
+                continue;
+            }
+
+            removeData(current, data);
+            removeInvalidNode(current);
+        }
+    }
+
+    @Override
+    void clear() {
+        reset();
+    }
+
+    @Override
+    void clearSub(Iterable<Node> path) {
+        int treeNode = findNode(path);
+        if (treeNode == NONE) {
+            return;
+        }
+        if (treeNode == ROOT) {
+            reset();
+            return;
+        }
+
+        releaseSubNodes(treeNode);
+        dataSlots[treeNode] = null;
+        removeInvalidNode(treeNode);
+    }
+
+    @Override
+    Set<Data> getMatchPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        walker.walk(ROOT, path, TreeWalker.Mode.MATCH, result);
+        return result;
+    }
+
+    @Override
+    Set<Data> getPathRangeAllData(Iterable<Node> path) {
+        return getPathsRangeAllData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getPathsRangeAllData(Iterable<? extends Iterable<Node>> paths) {
+        Set<Data> result = new HashSet<>();
+        for (Iterable<Node> path : paths) {
+            walker.walk(ROOT, path, TreeWalker.Mode.RANGE, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getMatchPathSubData(Iterable<Node> path) {
+        return getMatchPathsSubData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getMatchPathsSubData(Iterable<? extends Iterable<Node>> paths) {
+        Set<Data> result = new HashSet<>();
+        for (Iterable<Node> path : paths) {
+            walker.walk(ROOT, path, TreeWalker.Mode.MATCH_SUB, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getLongestPathData() {
+        Set<Data> result = new HashSet<>();
+        addLongestPathDataToContainer(ROOT, result);
+        return result;
+    }
+
+    @Override
+    Set<Data> getShortestPathData() {
+        Set<Data> result = new HashSet<>();
+        int[] subNodes = children[ROOT];
+        for (int i = 0, count = childSlotCount(ROOT); i < count; i++) {
+            if (subNodes[i] != ROOT) {
+                addShortestPathDataToContainer(subNodes[i], result);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getLongestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        int treeNode = findNode(path);
+        if (treeNode != NONE) {
+            addLongestPathDataToContainer(treeNode, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getShortestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        int treeNode = findNode(path);
+        if (treeNode != NONE) {
+            addShortestPathDataToContainer(treeNode, result);
+        }
+        return result;
+    }
+
+    /**
+     * 当前的树节点数量，不包含根节点
+     */
+    int treeNodeCount() {
+        return nodeCount - 1 - freeNodeCount;
+    }
+
+    /**
+     * 当前登记的节点ID数量
+     */
+    int nodeIdCount() {
+        return nodeIds.size();
+    }
+
+    private void reset() {
+        nodeIds.clear();
+        idNodes = new Object[INITIAL_CAPACITY];
+        idRefCounts = new int[INITIAL_CAPACITY];
+        idPatterns = new boolean[INITIAL_CAPACITY];
+        freeIds = new int[INITIAL_CAPACITY];
+        freeIdCount = 0;
+        idCount = 0;
+
+        edgeIds = new int[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        children = new int[INITIAL_CAPACITY][];
+        childCounts = new int[INITIAL_CAPACITY];
+        patternChildCounts = new int[INITIAL_CAPACITY];
+        dataSlots = new Object[INITIAL_CAPACITY];
+        freeNodes = new int[INITIAL_CAPACITY];
+        freeNodeCount = 0;
+
+        edgeIds[ROOT] = NONE;
+        parents[ROOT] = NONE;
+        nodeCount = 1;
+    }
+
+    /*
+    节点ID
+     */
+
+    private int obtainNodeId(Node node) {
+        Integer id = nodeIds.get(node);
+        if (id != null) {
+            return id;
+        }
+
+        int newId;
+        if (freeIdCount > 0) {
+            newId = freeIds[--freeIdCount];
+        } else {
+            if (idCount == idNodes.length) {
+                int capacity = idCount * 2;
+                idNodes = Arrays.copyOf(idNodes, capacity);
+                idRefCounts = Arrays.copyOf(idRefCounts, capacity);
+                idPatterns = Arrays.copyOf(idPatterns, capacity);
+            }
+            newId = idCount++;
+        }
+        idNodes[newId] = node;
+        idRefCounts[newId] = 0;
+        idPatterns[newId] = isPattern(node);
+        nodeIds.put(node, newId);
+        return newId;
+    }
+
+    private void releaseNodeId(int id) {
+        if (--idRefCounts[id] > 0) {
+            return;
+        }
+
+        nodeIds.remove(idNodes[id]);
+        idNodes[id] = null;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node nodeOf(int treeNode) {
+        return (Node) idNodes[edgeIds[treeNode]];
+    }
+
+    /*
+    树节点
+     */
+
+    private int allocateNode(int parent, int id) {
+        int treeNode;
+        if (freeNodeCount > 0) {
+            treeNode = freeNodes[--freeNodeCount];
+        } else {
+            if (nodeCount == edgeIds.length) {
+                int capacity = nodeCount + (nodeCount >> 1);
+                edgeIds = Arrays.copyOf(edgeIds, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                children = Arrays.copyOf(children, capacity);
+                childCounts = Arrays.copyOf(childCounts, capacity);
+                patternChildCounts = Arrays.copyOf(patternChildCounts, capacity);
+                dataSlots = Arrays.copyOf(dataSlots, capacity);
+            }
+            treeNode = nodeCount++;
+        }
+
+        edgeIds[treeNode] = id;
+        parents[treeNode] = parent;
+        idRefCounts[id]++;
+
+        addChild(parent, treeNode);
+        if (idPatterns[id]) {
+            patternChildCounts[parent]++;
+        }
+        return treeNode;
+    }
+
+    /**
+     * @return 完全匹配路径的树节点，{@link #NONE} == 不存在
+     */
+    private int findNode(Iterable<Node> path) {
+        int current = ROOT;
+        for (Node node : path) {
+            Integer id = nodeIds.get(node);
+            current = id == null ? NONE : findChild(current, id);
+            if (current == NONE) {
+                break;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 回收树节点的所有子孙节点，树节点本身保留，之后不再有子节点
+     */
+    private void releaseSubNodes(int treeNode) {
+        int[] subNodes = children[treeNode];
+        for (int i = 0, count = childSlotCount(treeNode); i < count; i++) {
+            int sub = subNodes[i];
+            if (sub == ROOT) {
+                continue;
+            }
+
+            releaseSubNodes(sub);
+            releaseNodeId(edgeIds[sub]);
+
+            edgeIds[sub] = NONE;
+            parents[sub] = NONE;
+            dataSlots[sub] = null;
+            if (freeNodeCount == freeNodes.length) {
+                freeNodes = Arrays.copyOf(freeNodes, freeNodeCount * 2);
+            }
+            freeNodes[freeNodeCount++] = sub;
+        }
+
+        children[treeNode] = null;
+        childCounts[treeNode] = 0;
+        patternChildCounts[treeNode] = 0;
+    }
+
+    /**
+     * 自下而上移除不再携带任何数据的树节点
+     */
+    private void removeInvalidNode(int treeNode) {
+        int current = treeNode;
+        while (current != ROOT
+                && dataSlots[current] == null
+                && childCounts[current] == 0) {
+            int parent = parents[current];
+            int id = edgeIds[current];
+
+            removeChild(parent, current);
+            if (idPatterns[id]) {
+                patternChildCounts[parent]--;
+            }
+            releaseNodeId(id);
+
+            edgeIds[current] = NONE;
+            parents[current] = NONE;
+            children[current] = null;
+            if (freeNodeCount == freeNodes.length) {
+                freeNodes = Arrays.copyOf(freeNodes, freeNodeCount * 2);
+            }
+            freeNodes[freeNodeCount++] = current;
+
+            current = parent;
+        }
+    }
+
+    /*
+    子节点表
+     */
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isInline(int[] table) {
+        return table.length <= INLINE_CHILD_COUNT;
+    }
+
+    /**
+     * 子节点表中需要遍历的槽数，哈希表中的空槽值为{@link #ROOT}
+     */
+    private int childSlotCount(int treeNode) {
+        int[] table = children[treeNode];
+        if (table == null) {
+            return 0;
+        }
+        return isInline(table) ? childCounts[treeNode] : table.length;
+    }
+
+    private int findChild(int treeNode, int id) {
+        int[] table = children[treeNode];
+        if (table == null) {
+            return NONE;
+        }
+
+        if (isInline(table)) {
+            for (int i = 0, count = childCounts[treeNode]; i < count; i++) {
+                if (edgeIds[table[i]] == id) {
+                    return table[i];
+                }
+            }
+            return NONE;
+        }
+
+        int mask = table.length - 1;
+        for (int i = hash(id) & mask; table[i] != ROOT; i = (i + 1) & mask) {
+            if (edgeIds[table[i]] == id) {
+                return table[i];
+            }
+        }
+        return NONE;
+    }
+
+    private void addChild(int treeNode, int child) {
+        int[] table = children[treeNode];
+        int count = childCounts[treeNode];
+
+        if (table == null) {
+            table = new int[2];
+            children[treeNode] = table;
+        }
+
+        if (isInline(table)) {
+            if (count < INLINE_CHILD_COUNT) {
+                if (count == table.length) {
+                    table = Arrays.copyOf(table, Math.min(count * 2, INLINE_CHILD_COUNT));
+                    children[treeNode] = table;
+                }
+                table[count] = child;
+                childCounts[treeNode] = count + 1;
+                return;
+            }
+
+            // 超过内联数量，转为哈希表
+            int[] hashTable = new int[tableCapacity(count + 1)];
+            for (int i = 0; i < count; i++) {
+                insertToTable(hashTable, table[i]);
+            }
+            table = hashTable;
+            children[treeNode] = table;
+        } else if ((count + 1) * 2 > table.length) {
+            table = rehash(table, table.length * 2);
+            children[treeNode] = table;
+        }
+
+        insertToTable(table, child);
+        childCounts[treeNode] = count + 1;
+    }
+
+    private void removeChild(int treeNode, int child) {
+        int[] table = children[treeNode];
+        int count = childCounts[treeNode] - 1;
+        childCounts[treeNode] = count;
+
+        if (isInline(table)) {
+            for (int i = 0; i <= count; i++) {
+                if (table[i] == child) {
+                    table[i] = table[count];
+                    table[count] = ROOT;
+                    break;
+                }
+            }
+            if (count == 0) {
+                children[treeNode] = null;
+            }
+            return;
+        }
+
+        int mask = table.length - 1;
+        int i = hash(edgeIds[child]) & mask;
+        while (table[i] != child) {
+            i = (i + 1) & mask;
+        }
+        // 线性探测的后移删除，无需墓碑标记
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == ROOT) {
+                break;
+            }
+            int home = hash(edgeIds[table[j]]) & mask;
+            boolean movable = j > i
+                    ? home <= i || home > j
+                    : home <= i && home > j;
+            if (movable) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = ROOT;
+
+        // 子节点减少到内联数量的一半时转回小数组，留出余量避免在临界值附近反复转换
+        if (count <= INLINE_CHILD_COUNT / 2) {
+            int[] inline = new int[Math.max(count, 1)];
+            int index = 0;
+            for (int value : table) {
+                if (value != ROOT) {
+                    inline[index++] = value;
+                }
+            }
+            children[treeNode] = inline;
+        }
+    }
+
+    private static int tableCapacity(int count) {
+        int capacity = INLINE_CHILD_COUNT * 2;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private int[] rehash(int[] table, int capacity) {
+        int[] result = new int[capacity];
+        for (int value : table) {
+            if (value != ROOT) {
+                insertToTable(result, value);
+            }
+        }
+        return result;
+    }
+
+    private void insertToTable(int[] table, int child) {
+        int mask = table.length - 1;
+        int i = hash(edgeIds[child]) & mask;
+        while (table[i] != ROOT) {
+            i = (i + 1) & mask;
+        }
+        table[i] = child;
+    }
+
+    /*
+    数据槽
+     */
+
+    private void addData(int treeNode, Data data) {
+        Object slot = dataSlots[treeNode];
+        if (slot == null) {
+            dataSlots[treeNode] = data;
+            return;
+        }
+
+        if (!(slot instanceof MultiData)) {
+            if (slot.equals(data)) {
+                return;
+            }
+            MultiData multiData = new MultiData();
+            multiData.items[0] = slot;
+            multiData.items[1] = data;
+            multiData.size = 2;
+            dataSlots[treeNode] = multiData;
+            return;
+        }
+
+        MultiData multiData = (MultiData) slot;
+        if (multiData.set != null) {
+            multiData.set.add(data);
+            return;
+        }
+        for (int i = 0; i < multiData.size; i++) {
+            if (multiData.items[i].equals(data)) {
+                return;
+            }
+        }
+        if (multiData.size < INLINE_DATA_COUNT) {
+            multiData.items[multiData.size++] = data;
+            return;
+        }
+        multiData.set = new HashSet<>(Arrays.asList(multiData.items));
+        multiData.set.add(data);
+        multiData.items = null;
+    }
+
+    private void removeData(int treeNode, Data data) {
+        Object slot = dataSlots[treeNode];
+        if (slot == null) {
+            return;
+        }
+
+        if (!(slot instanceof MultiData)) {
+            if (slot.equals(data)) {
+                dataSlots[treeNode] = null;
+            }
+            return;
+        }
+
+        MultiData multiData = (MultiData) slot;
+        if (multiData.set != null) {
+            multiData.set.remove(data);
+            if (multiData.set.size() <= INLINE_DATA_COUNT / 2) {
+                multiData.items = new Object[INLINE_DATA_COUNT];
+                multiData.size = 0;
+                for (Object item : multiData.set) {
+                    multiData.items[multiData.size++] = item;
+                }
+                multiData.set = null;
+            }
+        } else {
+            for (int i = 0; i < multiData.size; i++) {
+                if (multiData.items[i].equals(data)) {
+                    multiData.items[i] = multiData.items[--multiData.size];
+                    multiData.items[multiData.size] = null;
+                    break;
+                }
+            }
+        }
+
+        int size = multiData.set != null ? multiData.set.size() : multiData.size;
+        if (size == 1) {
+            dataSlots[treeNode] = multiData.items[0];
+        } else if (size == 0) {
+            dataSlots[treeNode] = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addDataTo(int treeNode, Collection<Data> resultContainer) {
+        Object slot = dataSlots[treeNode];
+        if (slot == null) {
+            return;
+        }
+
+        if (!(slot instanceof MultiData)) {
+            resultContainer.add((Data) slot);
+            return;
+        }
+
+        MultiData multiData = (MultiData) slot;
+        if (multiData.set != null) {
+            resultContainer.addAll((Set<Data>) (Set<?>) multiData.set);
+            return;
+        }
+        for (int i = 0; i < multiData.size; i++) {
+            resultContainer.add((Data) multiData.items[i]);
+        }
+    }
+
+    /*
+    查询
+     */
+
+    /**
+     * 以树节点下标查询，查询规则与{@link TreeStructure}相同
+     */
+    private class IndexWalker extends TreeWalker<Node, Data, Integer> {
+
+        IndexWalker(NodeMatcher<Node> matcher) {
+            super(matcher);
+        }
+
+        @Override
+        Integer findChild(Integer parent, Node node) {
+            Integer id = nodeIds.get(node);
+            if (id == null) {
+                return null;
+            }
+            int child = CompactTreeStructure.this.findChild(parent, id);
+            return child == NONE ? null : child;
+        }
+
+        @Override
+        void forEachChild(Integer parent, boolean pattern, Walk walk) {
+            int[] subNodes = children[parent];
+            if (subNodes == null
+                    || (pattern && patternChildCounts[parent] == 0)) {
+                return;
+            }
+            for (int i = 0, count = childSlotCount(parent); i < count; i++) {
+                int sub = subNodes[i];
+                if (sub != ROOT
+                        && idPatterns[edgeIds[sub]] == pattern) {
+                    walk.child(sub, nodeOf(sub), pattern);
+                }
+            }
+        }
+
+        @Override
+        void addData(Integer treeNode, Collection<Data> result) {
+            addDataTo(treeNode, result);
+        }
+
+        @Override
+        void addSubData(Integer treeNode, Collection<Data> result) {
+            addSubDataToContainer(treeNode, result);
+        }
+    }
+
+    private void addSubDataToContainer(int treeNode, Collection<Data> resultContainer) {
+        addDataTo(treeNode, resultContainer);
+        int[] subNodes = children[treeNode];
+        for (int i = 0, count = childSlotCount(treeNode); i < count; i++) {
+            if (subNodes[i] != ROOT) {
+                addSubDataToContainer(subNodes[i], resultContainer);
+            }
+        }
+    }
+
+    private void addLongestPathDataToContainer(int treeNode, Collection<Data> resultContainer) {
+        if (childCounts[treeNode] == 0) {
+            addDataTo(treeNode, resultContainer);
+            return;
+        }
+        int[] subNodes = children[treeNode];
+        for (int i = 0, count = childSlotCount(treeNode); i < count; i++) {
+            if (subNodes[i] != ROOT) {
+                addLongestPathDataToContainer(subNodes[i], resultContainer);
+            }
+        }
+    }
+
+    private void addShortestPathDataToContainer(int treeNode, Collection<Data> resultContainer) {
+        if (dataSlots[treeNode] != null) {
+            addDataTo(treeNode, resultContainer);
+            return;
+        }
+        int[] subNodes = children[treeNode];
+        for (int i = 0, count = childSlotCount(treeNode); i < count; i++) {
+            if (subNodes[i] != ROOT) {
+                addShortestPathDataToContainer(subNodes[i], resultContainer);
+            }
+        }
+    }
+}
@@ -15,6 +15,17 @@ public class ConcurrentSafeTreeStructure<Node, Data> extends TreeStructure<Node,
 
     private final ReadWriteLock locker = new ReentrantReadWriteLock();
 
+    public ConcurrentSafeTreeStructure() {
+        super();
+    }
+
+    /**
+     * @param matcher 模式节点匹配规则，null == 不支持模式节点
+     */
+    ConcurrentSafeTreeStructure(NodeMatcher<Node> matcher) {
+        super(matcher);
+    }
+
     @Override
     void put(Data data, Iterable<Node> path) {
         Lock lock = locker.writeLock();
@@ -70,6 +81,17 @@ public class ConcurrentSafeTreeStructure<Node, Data> extends TreeStructure<Node,
         }
     }
 
+    @Override
+    void clearSub(Iterable<Node> path) {
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            super.clearSub(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     Set<Data> getMatchPathData(Iterable<Node> path) {
         Lock lock = locker.readLock();
@@ -146,4 +168,26 @@ public class ConcurrentSafeTreeStructure<Node, Data> extends TreeStructure<Node,
             lock.unlock();
         }
     }
+
+    @Override
+    Set<Data> getLongestPathData(Iterable<Node> path) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            return super.getLongestPathData(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    Set<Data> getShortestPathData(Iterable<Node> path) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            return super.getShortestPathData(path);
+        } finally {
+            lock.unlock();
+        }
+    }
 }
@@ -0,0 +1,372 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 无锁的写时复制树结构
+ * <p>
+ * 树节点均不可变，写操作只复制从根节点到被修改节点这一条路径上的节点，生成新的根节点后以CAS的方式原子替换，
+ * 冲突时基于最新的根节点重试；读操作只需读取一次当前根节点，在这份不可变快照上完成查询，永远不会阻塞，
+ * 也不会与写操作互相等待
+ * <p>
+ * 适用于读远多于写的场景，例如频繁查询、偶尔附加/解除的{@link RemindHandler}树
+ * <p>
+ * 模式节点的支持与{@link TreeStructure}相同，每个节点的模式子节点列表随节点一同复制
+ *
+ * @see TreeStructure
+ * @see ConcurrentSafeTreeStructure
+ */
+class CopyOnWriteTreeStructure<Node, Data> extends TreeStructure<Node, Data> {
+
+    private static final class DataNode<Node, Data> {
+        final Set<Data> dataSet;
+        final Map<Node, DataNode<Node, Data>> sub;
+        /**
+         * {@link #sub}中的模式节点
+         */
+        final List<Node> patterns;
+
+        DataNode(Set<Data> dataSet, Map<Node, DataNode<Node, Data>> sub, List<Node> patterns) {
+            this.dataSet = dataSet;
+            this.sub = sub;
+            this.patterns = patterns;
+        }
+
+        boolean isEmpty() {
+            return dataSet.isEmpty() && sub.isEmpty();
+        }
+
+        DataNode<Node, Data> withData(Data data, boolean add) {
+            if (dataSet.contains(data) == add) {
+                return this;
+            }
+            Set<Data> newDataSet = new HashSet<>(dataSet);
+            if (add) {
+                newDataSet.add(data);
+            } else {
+                newDataSet.remove(data);
+            }
+            return new DataNode<>(Collections.unmodifiableSet(newDataSet), sub, patterns);
+        }
+
+        /**
+         * @param pattern node是否为模式节点
+         */
+        DataNode<Node, Data> withSub(Node node, boolean pattern, DataNode<Node, Data> subNode) {
+            DataNode<Node, Data> lastSubNode = sub.get(node);
+            if (lastSubNode == subNode
+                    || (lastSubNode == null && (subNode == null || subNode.isEmpty()))) {
+                return this;
+            }
+            Map<Node, DataNode<Node, Data>> newSub = new HashMap<>(sub);
+            boolean remove = subNode == null || subNode.isEmpty();
+            if (remove) {
+                newSub.remove(node);
+            } else {
+                newSub.put(node, subNode);
+            }
+
+            List<Node> newPatterns = patterns;
+            if (pattern
+                    && (remove || lastSubNode == null)) {
+                List<Node> changedPatterns = new ArrayList<>(patterns);
+                if (remove) {
+                    changedPatterns.remove(node);
+                } else {
+                    changedPatterns.add(node);
+                }
+                newPatterns = Collections.unmodifiableList(changedPatterns);
+            }
+
+            return new DataNode<>(dataSet, Collections.unmodifiableMap(newSub), newPatterns);
+        }
+    }
+
+    private final DataNode<Node, Data> emptyNode = new DataNode<>(
+            Collections.<Data>emptySet(),
+            Collections.<Node, DataNode<Node, Data>>emptyMap(),
+            Collections.<Node>emptyList()
+    );
+
+    CopyOnWriteTreeStructure() {
+        this(null);
+    }
+
+    /**
+     * @param matcher 模式节点匹配规则，null == 不支持模式节点
+     */
+    CopyOnWriteTreeStructure(NodeMatcher<Node> matcher) {
+        super(matcher);
+        walker = new SnapshotWalker(matcher);
+    }
+
+    private final AtomicReference<DataNode<Node, Data>> root = new AtomicReference<>(emptyNode);
+    private final TreeWalker<Node, Data, DataNode<Node, Data>> walker;
+
+    @Override
+    void put(Data data, Iterable<Node> path) {
+        putMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void putMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        update(data, paths, true);
+    }
+
+    @Override
+    void remove(Data data, Iterable<Node> path) {
+        removeMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void removeMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        update(data, paths, false);
+    }
+
+    @Override
+    void clear() {
+        root.set(emptyNode);
+    }
+
+    @Override
+    void clearSub(Iterable<Node> path) {
+        if (!path.iterator().hasNext()) {
+            clear();
+            return;
+        }
+
+        while (true) {
+            DataNode<Node, Data> oldRoot = root.get();
+            DataNode<Node, Data> newRoot = clearSub(oldRoot, path.iterator());
+            if (newRoot == oldRoot
+                    || root.compareAndSet(oldRoot, newRoot)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    Set<Data> getMatchPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        walker.walk(root.get(), path, TreeWalker.Mode.MATCH, result);
+        return result;
+    }
+
+    @Override
+    Set<Data> getPathRangeAllData(Iterable<Node> path) {
+        return getPathsRangeAllData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getPathsRangeAllData(Iterable<? extends Iterable<Node>> paths) {
+        final DataNode<Node, Data> snapshot = root.get();
+        final Set<Data> result = new HashSet<>();
+
+        for (Iterable<Node> path : paths) {
+            walker.walk(snapshot, path, TreeWalker.Mode.RANGE, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    Set<Data> getMatchPathSubData(Iterable<Node> path) {
+        return getMatchPathsSubData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getMatchPathsSubData(Iterable<? extends Iterable<Node>> paths) {
+        final DataNode<Node, Data> snapshot = root.get();
+        final Set<Data> result = new HashSet<>();
+
+        for (Iterable<Node> path : paths) {
+            walker.walk(snapshot, path, TreeWalker.Mode.MATCH_SUB, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    Set<Data> getLongestPathData() {
+        Set<Data> result = new HashSet<>();
+        for (DataNode<Node, Data> dataNode : root.get().sub.values()) {
+            addLongestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getShortestPathData() {
+        Set<Data> result = new HashSet<>();
+        for (DataNode<Node, Data> dataNode : root.get().sub.values()) {
+            addShortestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getLongestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        DataNode<Node, Data> dataNode = findNode(root.get(), path);
+        if (dataNode != null) {
+            addLongestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
+
+    @Override
+    Set<Data> getShortestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        DataNode<Node, Data> dataNode = findNode(root.get(), path);
+        if (dataNode != null) {
+            addShortestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
+
+    private DataNode<Node, Data> findNode(DataNode<Node, Data> snapshot, Iterable<Node> path) {
+        DataNode<Node, Data> current = snapshot;
+        for (Node node : path) {
+            current = current.sub.get(node);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 沿路径复制节点并移除路径末端的节点，没有任何修改时返回原节点
+     */
+    private DataNode<Node, Data> clearSub(DataNode<Node, Data> current, Iterator<Node> path) {
+        Node node = path.next();
+
+        DataNode<Node, Data> subNode = current.sub.get(node);
+        if (subNode == null) {
+            return current;
+        }
+
+        DataNode<Node, Data> newSubNode = path.hasNext()
+                ? clearSub(subNode, path)
+                : null;
+
+        return current.withSub(node, isPattern(node), newSubNode);
+    }
+
+    private void update(Data data, Iterable<? extends Iterable<Node>> paths, boolean add) {
+        while (true) {
+            DataNode<Node, Data> oldRoot = root.get();
+
+            DataNode<Node, Data> newRoot = oldRoot;
+            for (Iterable<Node> path : paths) {
+                Iterator<Node> iterator = path.iterator();
+                if (iterator.hasNext()) {
+                    newRoot = update(newRoot, iterator, data, add);
+                }
+            }
+
+            if (newRoot == oldRoot
+                    || root.compareAndSet(oldRoot, newRoot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 沿路径复制节点并返回修改后的新节点，没有任何修改时返回原节点
+     */
+    private DataNode<Node, Data> update(DataNode<Node, Data> current, Iterator<Node> path, Data data, boolean add) {
+        Node node = path.next();
+
+        DataNode<Node, Data> subNode = current.sub.get(node);
+        if (subNode == null) {
+            if (!add) {
+                return current;
+            }
+            subNode = emptyNode;
+        }
+
+        DataNode<Node, Data> newSubNode = path.hasNext()
+                ? update(subNode, path, data, add)
+                : subNode.withData(data, add);
+
+        return current.withSub(node, isPattern(node), newSubNode);
+    }
+
+    /**
+     * 在快照上沿路径查询数据，查询规则与{@link TreeStructure}相同
+     */
+    private class SnapshotWalker extends TreeWalker<Node, Data, DataNode<Node, Data>> {
+
+        SnapshotWalker(NodeMatcher<Node> matcher) {
+            super(matcher);
+        }
+
+        @Override
+        DataNode<Node, Data> findChild(DataNode<Node, Data> parent, Node node) {
+            return parent.sub.get(node);
+        }
+
+        @Override
+        void forEachChild(DataNode<Node, Data> parent, boolean pattern, Walk walk) {
+            if (pattern) {
+                for (int i = 0; i < parent.patterns.size(); i++) {
+                    Node node = parent.patterns.get(i);
+                    walk.child(parent.sub.get(node), node, true);
+                }
+                return;
+            }
+            for (Map.Entry<Node, DataNode<Node, Data>> entry : parent.sub.entrySet()) {
+                if (!isPattern(entry.getKey())) {
+                    walk.child(entry.getValue(), entry.getKey(), false);
+                }
+            }
+        }
+
+        @Override
+        void addData(DataNode<Node, Data> treeNode, Collection<Data> result) {
+            result.addAll(treeNode.dataSet);
+        }
+
+        @Override
+        void addSubData(DataNode<Node, Data> treeNode, Collection<Data> result) {
+            addDataNodeToContainer(treeNode, result);
+        }
+    }
+
+    private void addDataNodeToContainer(DataNode<Node, Data> dataNode, Collection<Data> resultContainer) {
+        resultContainer.addAll(dataNode.dataSet);
+        for (DataNode<Node, Data> subNode : dataNode.sub.values()) {
+            addDataNodeToContainer(subNode, resultContainer);
+        }
+    }
+
+    private void addLongestPathDataToContainer(DataNode<Node, Data> dataNode, Collection<Data> resultContainer) {
+        if (dataNode.sub.isEmpty()) {
+            resultContainer.addAll(dataNode.dataSet);
+        } else {
+            for (DataNode<Node, Data> subNode : dataNode.sub.values()) {
+                addLongestPathDataToContainer(subNode, resultContainer);
+            }
+        }
+    }
+
+    private void addShortestPathDataToContainer(DataNode<Node, Data> dataNode, Collection<Data> resultContainer) {
+        if (!dataNode.dataSet.isEmpty()) {
+            resultContainer.addAll(dataNode.dataSet);
+            return;
+        }
+        for (DataNode<Node, Data> subNode : dataNode.sub.values()) {
+            addShortestPathDataToContainer(subNode, resultContainer);
+        }
+    }
+}
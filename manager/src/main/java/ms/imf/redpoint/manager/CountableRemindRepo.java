@@ -0,0 +1,33 @@
+package ms.imf.redpoint.manager;
+
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 支持直接获取消息数量的提醒数据仓库
+ * <p>
+ * 大多数提醒UI只需要知道某路径下有多少消息，通过此接口可以不再生成完整的消息列表，
+ * {@link TreeModeRemindHandlerManager}会为{@link RemindCountHandler}优先使用此接口刷新数据
+ *
+ * @param <RemindType> 支持的提醒数据类型
+ * @see IndexedRemindRepo
+ */
+public interface CountableRemindRepo<RemindType extends Remind> extends RemindRepo<RemindType> {
+
+    /**
+     * 获取完全匹配指定节点路径的提醒数量
+     *
+     * @param nodePath 用于匹配的节点路径
+     * @return 提醒数量
+     * @see #getMatchPathReminds(java.util.Collection)
+     */
+    int getMatchPathRemindCount(NodePath nodePath);
+
+    /**
+     * 获取匹配指定节点路径及其子路径的提醒数量
+     *
+     * @param nodePath 用于匹配的节点路径
+     * @return 提醒数量
+     * @see #getMatchPathSubReminds(java.util.Collection)
+     */
+    int getMatchPathSubRemindCount(NodePath nodePath);
+}
@@ -0,0 +1,26 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 通知分发调度器，决定合并后的{@link RemindHandler}数据刷新任务何时、在哪个线程执行
+ * <p>
+ * 在同一次调度执行之前发生的所有刷新请求会被合并为一次：只进行一次消息查询，每个handler只会收到一次{@link RemindHandler#showReminds}调用
+ * <p>
+ * 常见实现：
+ * <pre>
+ *  时间窗口: 收到调度请求后延迟一个固定窗口再执行，参见 {@link WindowDispatchScheduler}
+ *  帧同步: 在下一帧绘制前执行，例如Android中通过Choreographer#postFrameCallback执行
+ * </pre>
+ *
+ * @see TreeModeRemindHandlerManager#setDispatchScheduler(DispatchScheduler)
+ */
+public interface DispatchScheduler {
+
+    /**
+     * 调度一次刷新任务
+     * <p>
+     * 在flushTask执行之前不会再次调用本方法
+     *
+     * @param flushTask 刷新任务，实现方应在合适的时机于合适的线程执行它
+     */
+    void schedule(Runnable flushTask);
+}
@@ -0,0 +1,93 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 通知分发统计信息快照
+ *
+ * @see TreeModeRemindHandlerManager#dispatchStats()
+ */
+public class DispatchStats {
+
+    /**
+     * 收到的刷新请求次数
+     */
+    public final long requestCount;
+    /**
+     * 实际执行的合并刷新次数
+     */
+    public final long flushCount;
+    /**
+     * 合并刷新中分发到的handler总数
+     */
+    public final long dispatchedHandlerCount;
+    /**
+     * 从首个请求进入等待到刷新开始执行的累计延迟，单位纳秒
+     */
+    public final long totalLatencyNanos;
+    /**
+     * 从首个请求进入等待到刷新开始执行的最大延迟，单位纳秒
+     */
+    public final long maxLatencyNanos;
+    /**
+     * 实际回调handler展示消息的次数
+     */
+    public final long deliveredHandlerCount;
+    /**
+     * 因消息与上次展示时相同而跳过展示的次数
+     */
+    public final long skippedHandlerCount;
+    /**
+     * 异步模式下因被后续分发取代而放弃查询或展示的次数
+     */
+    public final long supersededHandlerCount;
+
+    public DispatchStats(long requestCount, long flushCount, long dispatchedHandlerCount, long totalLatencyNanos, long maxLatencyNanos) {
+        this(requestCount, flushCount, dispatchedHandlerCount, totalLatencyNanos, maxLatencyNanos, 0, 0, 0);
+    }
+
+    public DispatchStats(long requestCount, long flushCount, long dispatchedHandlerCount, long totalLatencyNanos, long maxLatencyNanos, long deliveredHandlerCount, long skippedHandlerCount, long supersededHandlerCount) {
+        this.requestCount = requestCount;
+        this.flushCount = flushCount;
+        this.dispatchedHandlerCount = dispatchedHandlerCount;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.deliveredHandlerCount = deliveredHandlerCount;
+        this.skippedHandlerCount = skippedHandlerCount;
+        this.supersededHandlerCount = supersededHandlerCount;
+    }
+
+    /**
+     * 平均每次刷新合并的请求数
+     */
+    public double averageRequestsPerFlush() {
+        return flushCount == 0 ? 0 : (double) requestCount / flushCount;
+    }
+
+    /**
+     * 平均刷新延迟，单位纳秒
+     */
+    public long averageLatencyNanos() {
+        return flushCount == 0 ? 0 : totalLatencyNanos / flushCount;
+    }
+
+    /**
+     * 跳过展示的比例
+     */
+    public double skipRate() {
+        long total = deliveredHandlerCount + skippedHandlerCount;
+        return total == 0 ? 0 : (double) skippedHandlerCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchStats{" +
+                "requestCount=" + requestCount +
+                ", flushCount=" + flushCount +
+                ", dispatchedHandlerCount=" + dispatchedHandlerCount +
+                ", totalLatencyNanos=" + totalLatencyNanos +
+                ", maxLatencyNanos=" + maxLatencyNanos +
+                ", deliveredHandlerCount=" + deliveredHandlerCount +
+                ", skippedHandlerCount=" + skippedHandlerCount +
+                ", supersededHandlerCount=" + supersededHandlerCount +
+                '}';
+    }
+}
@@ -0,0 +1,570 @@
+package ms.imf.redpoint.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+/**
+ * 以文件持久化的消息仓库
+ * <p>
+ * 在{@link IndexedRemindRepo}的基础上，将每次消息的添加/移除以追加日志的方式写入文件，
+ * 启动时以内存映射的方式读取日志文件，重放后一次性重建路径索引，无需等待服务端重新下发全部消息即可展示提醒
+ * <p>
+ * 日志格式：
+ * <pre>
+ * Header:  int magic, int version
+ * Record:  int 负载长度, int 负载CRC32, 负载
+ * 负载:    byte 操作(添加/移除/清空), int 消息个数, 消息...(由{@link RemindSerializer}为每条记录创建的写出器写出)
+ *          byte 操作(批量), int 变更个数, 变更...(byte 操作, int 消息个数, 消息..., 整条记录共用一个写出器)
+ * </pre>
+ * 每次变更写为一条记录，{@link #batch(RemindBatch)}内的所有变更在批量操作结束时合并写为一条批量记录，
+ * 进程在写入中途崩溃时末尾会残留不完整或校验失败的记录，下次启动时该记录及其后的内容会被截断丢弃，
+ * 之前的记录不受影响，因此批量操作在日志中要么全部重放，要么全部丢弃。日志默认只写入操作系统缓冲区，需要抵御断电等系统级故障时可调用{@link #sync()}
+ * <p>
+ * 日志中的消息记录数超过压缩阈值且超过当前消息数的两倍时会自动压缩：将当前所有消息写入临时文件后重命名替换原日志，
+ * 压缩中途崩溃不会影响原日志。自动压缩失败时原日志保持不变，本次变更照常生效，日志再增长一个压缩阈值后重试
+ * <p>
+ * 日志写入在仓库的写锁内同步进行，写入失败时内存中的变更依然生效并照常通知监听器，之后抛出{@link IllegalStateException}
+ *
+ * @param <RemindType> 支持的消息类型
+ */
+public class FileRemindRepo<RemindType extends Remind> extends IndexedRemindRepo<RemindType> implements Closeable {
+
+    /**
+     * 默认压缩阈值，日志中的消息记录数
+     */
+    public static final int DEFAULT_COMPACT_THRESHOLD = 4096;
+
+    /**
+     * 'R' 'M' 'L' 'G'
+     */
+    private static final int MAGIC = 0x524D4C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * 负载长度 + 负载CRC32
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_BATCH = 4;
+
+    /**
+     * 压缩时每条记录包含的最大消息数，避免单条记录过大
+     */
+    private static final int COMPACT_RECORD_REMIND_COUNT = 1024;
+
+    private final File file;
+    private final File compactFile;
+    private final RemindSerializer<RemindType> serializer;
+    private final int compactThreshold;
+
+    private RandomAccessFile logFile;
+    /**
+     * 加载完毕前的添加来自日志重放，无需写回日志
+     */
+    private boolean loaded;
+    private boolean closed;
+    /**
+     * 日志中的消息记录数，包括已失效的记录
+     */
+    private long logRemindCount;
+    /**
+     * 自动压缩失败后，日志中的消息记录数达到此值前不再自动压缩
+     */
+    private long compactRetryLogRemindCount;
+    /**
+     * 批量操作执行期间暂存的变更，批量操作结束时合并写为一条记录，null == 不在批量操作中
+     */
+    private List<LogEntry<RemindType>> batchEntries;
+
+    /**
+     * @param file       日志文件，不存在时会被创建
+     * @param serializer 消息序列化器
+     * @throws IllegalArgumentException 参数不合法
+     * @throws IOException              日志文件读写失败或格式错误
+     */
+    public FileRemindRepo(File file, RemindSerializer<RemindType> serializer) throws IllegalArgumentException, IOException {
+        this(file, serializer, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param file             日志文件，不存在时会被创建
+     * @param serializer       消息序列化器
+     * @param compactThreshold 压缩阈值，日志中的消息记录数达到此值后才会考虑自动压缩
+     * @throws IllegalArgumentException 参数不合法
+     * @throws IOException              日志文件读写失败或格式错误
+     */
+    public FileRemindRepo(File file, RemindSerializer<RemindType> serializer, int compactThreshold) throws IllegalArgumentException, IOException {
+        if (file == null) { throw new IllegalArgumentException("file can't be null"); }
+        if (serializer == null) { throw new IllegalArgumentException("serializer can't be null"); }
+        if (compactThreshold < 0) { throw new IllegalArgumentException("compactThreshold can't less 0"); }
+
+        this.file = file;
+        this.compactFile = new File(file.getPath() + ".compact");
+        this.serializer = serializer;
+        this.compactThreshold = compactThreshold;
+
+        // 上次压缩中途崩溃的残留，原日志依然完整
+        if (compactFile.exists()
+                && !compactFile.delete()) {
+            throw new IOException(String.format("can't delete remained compact file %s", compactFile));
+        }
+
+        final long validLength = load();
+
+        openLog(validLength);
+        loaded = true;
+
+        if (isNeedCompact()) {
+            compact();
+        }
+    }
+
+    /**
+     * 压缩日志，将当前所有消息重写为新日志，丢弃已失效的记录
+     *
+     * @throws IOException 写入失败，原日志不受影响
+     */
+    public void compact() throws IOException {
+        Lock lock = locker().writeLock();
+        lock.lock();
+        try {
+            checkOpened();
+            compactLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将已写入的日志强制同步到存储设备
+     *
+     * @throws IOException 同步失败
+     */
+    public void sync() throws IOException {
+        Lock lock = locker().readLock();
+        lock.lock();
+        try {
+            checkOpened();
+            if (logFile == null) {
+                throw new IllegalStateException(String.format("remind log %s isn't opened, maybe failed on last compaction", file));
+            }
+            logFile.getChannel().force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭日志文件，关闭后对仓库的修改将抛出{@link IllegalStateException}，查询不受影响
+     *
+     * @throws IOException 关闭失败
+     */
+    @Override
+    public void close() throws IOException {
+        Lock lock = locker().writeLock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            RandomAccessFile lastLogFile = logFile;
+            logFile = null;
+            if (lastLogFile != null) {
+                lastLogFile.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在写锁内执行批量操作，结束时将其间的所有变更写为一条批量记录；
+     * 批量操作中途抛出异常时，已生效的变更依然会写入日志
+     */
+    @Override
+    protected void applyBatch(RemindBatch<RemindType> batch, BatchableRemindRepo<RemindType> repo) {
+        Lock lock = locker().writeLock();
+        lock.lock();
+        try {
+            batchEntries = new ArrayList<>();
+            try {
+                super.applyBatch(batch, repo);
+            } finally {
+                List<LogEntry<RemindType>> entries = batchEntries;
+                batchEntries = null;
+                appendLog(entries);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected void onRemindsAdded(List<RemindType> addedReminds) {
+        appendLog(OP_ADD, addedReminds);
+    }
+
+    @Override
+    protected void onRemindsRemoved(List<RemindType> removedReminds) {
+        if (remindCount() == 0) {
+            appendLog(OP_CLEAR, Collections.<RemindType>emptyList());
+        } else {
+            appendLog(OP_REMOVE, removedReminds);
+        }
+    }
+
+    /**
+     * 以内存映射的方式读取日志并直接重放到索引上
+     *
+     * @return 日志中有效内容的长度，0 == 日志不存在或为空
+     */
+    private long load() throws IOException {
+        if (!file.exists()
+                || file.length() == 0) {
+            return 0;
+        }
+
+        final ByteBuffer buffer;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // 映射在通道关闭后依然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (buffer.remaining() < HEADER_SIZE
+                || buffer.getInt() != MAGIC) {
+            throw new IOException(String.format("%s is not a remind log file", file));
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("unsupported remind log version %d of %s, expected %d", version, file, VERSION));
+        }
+
+        long validLength = buffer.position();
+        final CRC32 crc32 = new CRC32();
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0
+                    || length > buffer.remaining()) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc32.reset();
+            crc32.update(payload, 0, length);
+            if ((int) crc32.getValue() != crc) {
+                break;
+            }
+
+            try {
+                replay(payload);
+            } catch (IOException e) {
+                // 校验通过的记录无法解析说明序列化器与日志不匹配，不能当作残缺记录丢弃
+                throw new IOException(String.format("found error on replay remind log %s at %d: %s", file, validLength, e.getMessage()), e);
+            }
+
+            validLength = buffer.position();
+        }
+
+        return validLength;
+    }
+
+    /**
+     * 重放一条记录，日志尚未打开，重放的变更不会被写回日志
+     */
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+
+        byte op = input.readByte();
+        int count = readCount(input, payload.length);
+
+        if (op != OP_BATCH) {
+            replay(op, count, input, null);
+            return;
+        }
+
+        RemindSerializer.Reader<RemindType> reader = serializer.newReader(input);
+        for (int i = 0; i < count; i++) {
+            byte entryOp = input.readByte();
+            if (entryOp == OP_BATCH) {
+                throw new IOException("nested batch op");
+            }
+            replay(entryOp, readCount(input, payload.length), input, reader);
+        }
+    }
+
+    /**
+     * @param reader 批量记录共用的读取器，null == 为本次变更创建读取器
+     */
+    private void replay(byte op, int remindCount, DataInputStream input, RemindSerializer.Reader<RemindType> reader) throws IOException {
+        switch (op) {
+            case OP_ADD:
+                addReminds(readReminds(input, remindCount, reader));
+                break;
+            case OP_REMOVE:
+                removeReminds(readReminds(input, remindCount, reader));
+                break;
+            case OP_CLEAR:
+                removeAllReminds();
+                break;
+            default:
+                throw new IOException(String.format("unknown op: %d", op));
+        }
+
+        logRemindCount += Math.max(remindCount, 1);
+    }
+
+    private static int readCount(DataInputStream input, int payloadLength) throws IOException {
+        int count = input.readInt();
+        if (count < 0
+                || count > payloadLength) {
+            throw new IOException(String.format("illegal remind count: %d", count));
+        }
+        return count;
+    }
+
+    private List<RemindType> readReminds(DataInputStream input, int remindCount, RemindSerializer.Reader<RemindType> reader) throws IOException {
+        if (reader == null) {
+            reader = serializer.newReader(input);
+        }
+        List<RemindType> result = new ArrayList<>(remindCount);
+        for (int i = 0; i < remindCount; i++) {
+            result.add(reader.read());
+        }
+        return result;
+    }
+
+    /**
+     * 打开日志用于追加，截断末尾的无效内容
+     *
+     * @param validLength 日志中有效内容的长度，0 == 需要新建日志
+     */
+    private void openLog(long validLength) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (validLength == 0) {
+                channel.truncate(0);
+                writeHeader(channel);
+            } else if (channel.size() > validLength) {
+                channel.truncate(validLength);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        logFile = randomAccessFile;
+    }
+
+    private void appendLog(byte op, List<RemindType> reminds) {
+        checkOpened();
+        if (!loaded) {
+            return;
+        }
+        if (batchEntries != null) {
+            batchEntries.add(new LogEntry<>(op, new ArrayList<>(reminds)));
+            return;
+        }
+        appendLog(Collections.singletonList(new LogEntry<>(op, reminds)));
+    }
+
+    /**
+     * 将变更写为一条记录，多个变更写为一条批量记录
+     */
+    private void appendLog(List<LogEntry<RemindType>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (logFile == null) {
+            throw new IllegalStateException(String.format("remind log %s isn't opened, maybe failed on last compaction", file));
+        }
+
+        FileChannel channel = logFile.getChannel();
+        long position = -1;
+        try {
+            position = channel.position();
+            if (entries.size() == 1) {
+                writeRecord(channel, entries.get(0).op, entries.get(0).reminds);
+            } else {
+                writeBatchRecord(channel, entries);
+            }
+        } catch (IOException e) {
+            // 尽量移除写了一半的记录，避免之后追加的记录在加载时因其而被截断
+            if (position >= 0) {
+                try {
+                    channel.truncate(position);
+                } catch (IOException ignored) {
+                }
+            }
+            throw new IllegalStateException(String.format("found error on write remind log %s: %s", file, e.getMessage()), e);
+        }
+        for (LogEntry<RemindType> entry : entries) {
+            logRemindCount += Math.max(entry.reminds.size(), 1);
+        }
+
+        if (isNeedCompact()) {
+            try {
+                compactLocked();
+            } catch (IOException e) {
+                // 本次记录已完整写入，原日志依然有效，压缩失败不影响本次变更；日志再增长一个压缩阈值后才重试，避免每次写入都重试
+                compactRetryLogRemindCount = logRemindCount + Math.max(compactThreshold, 1);
+            }
+        }
+    }
+
+    private boolean isNeedCompact() {
+        return logRemindCount >= compactThreshold
+                && logRemindCount >= compactRetryLogRemindCount
+                && logRemindCount > 2L * remindCount();
+    }
+
+    /**
+     * 压缩日志，调用方需持有写锁
+     */
+    private void compactLocked() throws IOException {
+        final List<RemindType> reminds = new ArrayList<>(getAllReminds());
+
+        RandomAccessFile compactLogFile = new RandomAccessFile(compactFile, "rw");
+        try {
+            FileChannel channel = compactLogFile.getChannel();
+            channel.truncate(0);
+            writeHeader(channel);
+            for (int start = 0; start < reminds.size(); start += COMPACT_RECORD_REMIND_COUNT) {
+                writeRecord(channel, OP_ADD, reminds.subList(start, Math.min(start + COMPACT_RECORD_REMIND_COUNT, reminds.size())));
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            compactLogFile.close();
+            compactFile.delete();
+            throw e;
+        }
+        compactLogFile.close();
+
+        if (logFile != null) {
+            logFile.close();
+            logFile = null;
+        }
+
+        boolean renamed = compactFile.renameTo(file);
+
+        // 无论是否替换成功，继续追加到当前的日志文件
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.getChannel().position(randomAccessFile.length());
+        logFile = randomAccessFile;
+
+        if (!renamed) {
+            compactFile.delete();
+            throw new IOException(String.format("can't rename %s to %s", compactFile, file));
+        }
+
+        logRemindCount = reminds.size();
+        compactRetryLogRemindCount = 0;
+    }
+
+    private void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(channel, header);
+    }
+
+    private void writeRecord(FileChannel channel, byte op, List<RemindType> reminds) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = newRecordOutput(bytes);
+
+        output.writeByte(op);
+        output.writeInt(reminds.size());
+        RemindSerializer.Writer<RemindType> writer = serializer.newWriter(output);
+        for (RemindType remind : reminds) {
+            writer.write(remind);
+        }
+
+        writeRecord(channel, output, bytes);
+    }
+
+    private void writeBatchRecord(FileChannel channel, List<LogEntry<RemindType>> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = newRecordOutput(bytes);
+
+        output.writeByte(OP_BATCH);
+        output.writeInt(entries.size());
+        RemindSerializer.Writer<RemindType> writer = serializer.newWriter(output);
+        for (LogEntry<RemindType> entry : entries) {
+            output.writeByte(entry.op);
+            output.writeInt(entry.reminds.size());
+            for (RemindType remind : entry.reminds) {
+                writer.write(remind);
+            }
+        }
+
+        writeRecord(channel, output, bytes);
+    }
+
+    private static DataOutputStream newRecordOutput(ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream output = new DataOutputStream(bytes);
+        // 占位，负载写完后回填
+        output.writeInt(0);
+        output.writeInt(0);
+        return output;
+    }
+
+    private static void writeRecord(FileChannel channel, DataOutputStream output, ByteArrayOutputStream bytes) throws IOException {
+        output.flush();
+
+        byte[] record = bytes.toByteArray();
+        int length = record.length - RECORD_HEADER_SIZE;
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, RECORD_HEADER_SIZE, length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc32.getValue());
+        writeFully(channel, buffer);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkOpened() {
+        if (closed) {
+            throw new IllegalStateException(String.format("remind repo %s has been closed", file));
+        }
+    }
+
+    private static final class LogEntry<RemindType> {
+        final byte op;
+        final List<RemindType> reminds;
+
+        LogEntry(byte op, List<RemindType> reminds) {
+            this.op = op;
+            this.reminds = reminds;
+        }
+    }
+}
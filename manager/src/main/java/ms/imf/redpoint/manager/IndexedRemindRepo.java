@@ -0,0 +1,967 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 以节点前缀树为索引的内存消息仓库
+ * <p>
+ * 所有消息按其节点路径挂载到一颗以{@link Node}为键的前缀树上，
+ * 完全匹配路径、匹配路径及其子路径的查询和移除只需沿路径下行到对应树节点，
+ * 开销为 O(路径深度 + 结果数量)，不再需要像{@link AbstractRemindRepo}那样对每个查询路径都全量扫描{@link #getAllReminds()}
+ * <p>
+ * 每个树节点维护其子树内的消息数量，在消息添加/移除时沿路径增量更新，
+ * 所以获取某路径下的消息数量只需 O(路径深度) 且无需生成消息列表，参见{@link CountableRemindRepo}
+ * <p>
+ * 另外以(参数名, 参数值, 节点名)为键维护携带该参数的树节点的倒排索引，
+ * 不论节点位于路径的哪一层，都可以通过{@link #getRemindsByArg(String, String, String)}、{@link #removeRemindsByArg(String, String, Collection)}
+ * 直接找到路径中包含该参数节点的所有消息，开销与匹配的消息数量成正比
+ * <p>
+ * 消息数据变更后会通过{@link RemindDeltaListener#onRemindDataChanged(RemindDelta)}通知实际新增/移除/替换的消息，
+ * 普通监听器则通过{@link RemindDataChangedListener#onRemindDataChanged(Iterable)}通知，
+ * 监听器的回调在锁外进行，可以在回调中直接查询本仓库
+ * <p>
+ * {@link #batch(RemindBatch)}在同一个写锁内执行所有变更，其他线程只会看到批量操作执行前或执行后的状态
+ * <p>
+ * 携带过期时间({@link Remind#expireAt()})的消息另外按过期时间放入一个小顶堆，
+ * {@link #evictExpiredReminds()}只需从堆顶依次取出已过期的消息，开销为 O(过期数量 * log(n))，无需扫描全部消息，
+ * 一次清理的所有过期消息合并为一次移除通知；通过{@link #setExpiryExecutor(ScheduledExecutorService)}设置调度器后会在堆顶消息过期时自动清理。
+ * 已过期但还未被清理的消息不会出现在消息查询结果中，但在清理前依然会被计入消息数量
+ *
+ * @param <RemindType> 支持的消息类型
+ */
+public class IndexedRemindRepo<RemindType extends Remind> extends AbstractRemindRepo<RemindType> implements CountableRemindRepo<RemindType>, BatchableRemindRepo<RemindType> {
+
+    /**
+     * 前缀树节点
+     */
+    private static class IndexNode<RemindType> {
+        final IndexNode<RemindType> parent;
+        final Node node;
+        /**
+         * 完全匹配当前节点路径的消息，key与value为相等的消息，value为最后添加的消息实例，使用map是为了能够取到已存在的相等消息实例
+         */
+        Map<RemindType, RemindType> reminds;
+        Map<Node, IndexNode<RemindType>> sub;
+        /**
+         * 以当前节点为根的子树内(包含当前节点)的消息数量
+         */
+        int subtreeCount;
+
+        IndexNode(IndexNode<RemindType> parent, Node node) {
+            this.parent = parent;
+            this.node = node;
+        }
+
+        boolean isEmpty() {
+            return subtreeCount == 0;
+        }
+    }
+
+    /**
+     * 节点参数
+     */
+    private static final class Arg {
+        final String key;
+        final String value;
+
+        Arg(String key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Arg arg = (Arg) o;
+
+            if (!key.equals(arg.key)) return false;
+            return value != null ? value.equals(arg.value) : arg.value == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = key.hashCode();
+            result = 31 * result + (value != null ? value.hashCode() : 0);
+            return result;
+        }
+    }
+
+    /**
+     * 过期堆元素
+     * <p>
+     * 消息被移除或替换为其他实例时不会同步从堆中移除(堆中移除任意元素开销为 O(n))，
+     * 而是在出堆时检查索引中的实例是否还是当前实例，不是则直接丢弃
+     */
+    private static final class Expiry<RemindType extends Remind> implements Comparable<Expiry<RemindType>> {
+        final RemindType remind;
+
+        Expiry(RemindType remind) {
+            this.remind = remind;
+        }
+
+        @Override
+        public int compareTo(Expiry<RemindType> o) {
+            return Long.compare(remind.expireAt(), o.remind.expireAt());
+        }
+    }
+
+    /**
+     * 过期清理调度任务，每次提交都是新的实例，以区分已被替换但仍在执行的旧任务
+     */
+    private final class ExpiryTask implements Runnable {
+        @Override
+        public void run() {
+            evictExpiredReminds(this);
+        }
+    }
+
+    /**
+     * 过期堆中失效元素超过有效消息数量加上此值时，重建过期堆
+     */
+    private static final int EXPIRY_QUEUE_SLACK = 64;
+
+    private final ReadWriteLock locker = new ReentrantReadWriteLock();
+    private IndexNode<RemindType> root = new IndexNode<>(null, null);
+    /**
+     * 参数倒排索引: 参数 -> 节点名 -> 节点携带该参数的树节点
+     */
+    private final Map<Arg, Map<String, Set<IndexNode<RemindType>>>> argIndex = new HashMap<>();
+    /**
+     * 按过期时间排序的小顶堆，只包含会过期的消息，可能包含已失效的元素，参见{@link Expiry}
+     */
+    private final PriorityQueue<Expiry<RemindType>> expiryQueue = new PriorityQueue<>();
+
+    /**
+     * 以下字段只在写锁内访问
+     */
+    private ScheduledExecutorService expiryExecutor;
+    private ScheduledFuture<?> expiryFuture;
+    /**
+     * expiryFuture对应的任务，用于识别执行中的任务是否为当前提交的任务
+     */
+    private ExpiryTask expiryTask;
+    /**
+     * expiryFuture的计划执行时间
+     */
+    private long expiryFutureAt;
+
+    /**
+     * 添加消息
+     *
+     * @param remind 要添加的消息
+     * @see #addReminds(Iterable)
+     */
+    public void addRemind(RemindType remind) {
+        addReminds(Collections.singletonList(remind));
+    }
+
+    /**
+     * 添加消息集
+     * <p>
+     * 与已存在消息相等({@link Remind#equals(Object)})的消息会替换掉已存在的消息实例，
+     * 替换为不同实例时同样视为消息数据变更
+     *
+     * @param reminds 要添加的消息集
+     */
+    @Override
+    public void addReminds(Iterable<? extends RemindType> reminds) {
+        if (reminds == null) { throw new IllegalArgumentException("reminds can't be null"); }
+
+        final List<RemindType> addedReminds = new ArrayList<>();
+        final List<RemindType> updatedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (RemindType remind : reminds) {
+                if (remind == null) { throw new IllegalArgumentException("reminds can't contain null value"); }
+
+                IndexNode<RemindType> indexNode = obtainIndexNode(remind.path().nodes());
+                if (indexNode.reminds == null) {
+                    indexNode.reminds = new LinkedHashMap<>();
+                }
+
+                RemindType lastRemind = indexNode.reminds.put(remind, remind);
+                if (lastRemind == null) {
+                    adjustSubtreeCount(indexNode, 1);
+                    addedReminds.add(remind);
+                } else if (lastRemind != remind) {
+                    updatedReminds.add(remind);
+                } else {
+                    continue;
+                }
+                if (remind.expireAt() != Remind.NEVER_EXPIRE) {
+                    expiryQueue.add(new Expiry<>(remind));
+                }
+            }
+            if (!expiryQueue.isEmpty()) {
+                compactExpiryQueue();
+                scheduleExpiry();
+            }
+            if (!addedReminds.isEmpty()
+                    || !updatedReminds.isEmpty()) {
+                List<RemindType> changedReminds = new ArrayList<>(addedReminds.size() + updatedReminds.size());
+                changedReminds.addAll(addedReminds);
+                changedReminds.addAll(updatedReminds);
+                sequence = nextDeltaSequence();
+                onRemindsAdded(changedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(addedReminds, Collections.<RemindType>emptyList(), updatedReminds, sequence));
+        }
+    }
+
+    /**
+     * 获取消息总数
+     *
+     * @return 消息总数
+     */
+    public int remindCount() {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            return root.subtreeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMatchPathRemindCount(NodePath nodePath) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+            return indexNode == null || indexNode.reminds == null
+                    ? 0
+                    : indexNode.reminds.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMatchPathSubRemindCount(NodePath nodePath) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+            return indexNode == null
+                    ? 0
+                    : indexNode.subtreeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<? extends RemindType> getAllReminds() {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            List<RemindType> result = new ArrayList<>();
+            addSubReminds(root, result);
+            return filterExpired(result, expiryFilterTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<NodePath, ? extends Collection<? extends RemindType>> getMatchPathReminds(Collection<NodePath> nodePaths) {
+        HashMap<NodePath, Collection<? extends RemindType>> result = new HashMap<>(nodePaths.size());
+
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            long filterTime = expiryFilterTime();
+            for (NodePath nodePath : nodePaths) {
+                IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+
+                List<RemindType> reminds = new ArrayList<>();
+                if (indexNode != null
+                        && indexNode.reminds != null) {
+                    reminds.addAll(indexNode.reminds.values());
+                }
+                result.put(nodePath, filterExpired(reminds, filterTime));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<NodePath, ? extends Collection<? extends RemindType>> getMatchPathSubReminds(Collection<NodePath> nodePaths) {
+        HashMap<NodePath, Collection<? extends RemindType>> result = new HashMap<>(nodePaths.size());
+
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            long filterTime = expiryFilterTime();
+            for (NodePath nodePath : nodePaths) {
+                IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+
+                List<RemindType> reminds = new ArrayList<>();
+                if (indexNode != null) {
+                    addSubReminds(indexNode, reminds);
+                }
+                result.put(nodePath, filterExpired(reminds, filterTime));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * 获取路径中包含指定参数节点的消息，节点可位于路径的任意一层
+     * <p>
+     * 例如有消息 'list>item(itemId=1)>badge', 'detail(itemId=1)' 和 'list>item(itemId=2)'，
+     * 查询节点名'item'、参数'itemId=1'，则只有第一条消息能够被匹配；节点名为null时前两条消息都能被匹配
+     *
+     * @param nodeName 节点名，null == 任意节点名
+     * @param argKey   参数名
+     * @param argValue 参数值
+     * @return 匹配的消息
+     */
+    public List<RemindType> getRemindsByArg(String nodeName, String argKey, String argValue) {
+        return getRemindsByArg(nodeName, argKey, Collections.singleton(argValue));
+    }
+
+    /**
+     * 获取路径中包含指定参数节点的消息，参数值为argValues中的任意一个即可
+     *
+     * @see #getRemindsByArg(String, String, String)
+     */
+    public List<RemindType> getRemindsByArg(String nodeName, String argKey, Collection<String> argValues) {
+        if (argKey == null) { throw new IllegalArgumentException("argKey can't be null"); }
+        if (argValues == null) { throw new IllegalArgumentException("argValues can't be null"); }
+
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            List<RemindType> result = new ArrayList<>();
+            for (IndexNode<RemindType> indexNode : getOutermostArgIndexNodes(nodeName, argKey, argValues)) {
+                addSubReminds(indexNode, result);
+            }
+            return filterExpired(result, expiryFilterTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除路径中包含指定参数节点的消息
+     *
+     * @return 被移除的消息数量
+     * @see #getRemindsByArg(String, String, String)
+     */
+    public long removeRemindsByArg(String nodeName, String argKey, String argValue) {
+        return removeRemindsByArg(nodeName, argKey, Collections.singleton(argValue));
+    }
+
+    /**
+     * 移除路径中包含指定参数节点的消息，参数值为argValues中的任意一个即可
+     *
+     * @return 被移除的消息数量
+     * @see #getRemindsByArg(String, String, Collection)
+     */
+    public long removeRemindsByArg(String nodeName, String argKey, Collection<String> argValues) {
+        if (argKey == null) { throw new IllegalArgumentException("argKey can't be null"); }
+        if (argValues == null) { throw new IllegalArgumentException("argValues can't be null"); }
+
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (IndexNode<RemindType> indexNode : getOutermostArgIndexNodes(nodeName, argKey, argValues)) {
+                detachSubtree(indexNode, removedReminds);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+        return removedReminds.size();
+    }
+
+    @Override
+    public void removeReminds(Iterable<? extends RemindType> reminds) {
+        if (reminds == null) { throw new IllegalArgumentException("reminds can't be null"); }
+
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (RemindType remind : reminds) {
+                if (remind == null) {
+                    continue;
+                }
+
+                IndexNode<RemindType> indexNode = findIndexNode(remind.path().nodes());
+                if (indexNode == null
+                        || indexNode.reminds == null) {
+                    continue;
+                }
+
+                RemindType removedRemind = indexNode.reminds.remove(remind);
+                if (removedRemind != null) {
+                    removedReminds.add(removedRemind);
+                    adjustSubtreeCount(indexNode, -1);
+                    removeInvalidIndexNode(indexNode);
+                }
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+    }
+
+    @Override
+    public long removeMatchPathReminds(Collection<NodePath> nodePaths) {
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (NodePath nodePath : nodePaths) {
+                IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+                if (indexNode == null
+                        || indexNode.reminds == null) {
+                    continue;
+                }
+
+                removedReminds.addAll(indexNode.reminds.values());
+                adjustSubtreeCount(indexNode, -indexNode.reminds.size());
+                indexNode.reminds = null;
+                removeInvalidIndexNode(indexNode);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+        return removedReminds.size();
+    }
+
+    @Override
+    public long removeMatchPathSubReminds(Collection<NodePath> nodePaths) {
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (NodePath nodePath : nodePaths) {
+                if (nodePath.nodes().isEmpty()) {
+                    // 空路径即根节点，其子路径为所有消息，与 AbstractRemindRepo#isMySubPathWithMe 的行为保持一致
+                    addSubReminds(root, removedReminds);
+                    resetRoot();
+                    continue;
+                }
+
+                IndexNode<RemindType> indexNode = findIndexNode(nodePath.nodes());
+                if (indexNode == null) {
+                    continue;
+                }
+
+                detachSubtree(indexNode, removedReminds);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+        return removedReminds.size();
+    }
+
+    @Override
+    public long removeAllReminds() {
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            addSubReminds(root, removedReminds);
+            resetRoot();
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+        return removedReminds.size();
+    }
+
+    /**
+     * 清理所有已过期的消息，合并为一次移除通知
+     * <p>
+     * 开销为 O(过期数量 * log(n))，n为携带过期时间的消息数量
+     *
+     * @return 被清理的消息数量
+     * @see #setExpiryExecutor(ScheduledExecutorService)
+     */
+    public int evictExpiredReminds() {
+        return evictExpiredReminds(null);
+    }
+
+    /**
+     * @param task 触发本次清理的调度任务，null == 手动清理
+     */
+    private int evictExpiredReminds(ExpiryTask task) {
+        final List<RemindType> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            if (task != null
+                    && task == expiryTask) {
+                // 当前提交的任务开始执行后即不再占用调度，无论本次能否清理到消息，都会按堆顶重新提交；
+                // 时钟回拨或currentTimeMillis()落后于调度器时，任务可能早于堆顶消息的过期时间执行
+                expiryFuture = null;
+                expiryTask = null;
+            }
+
+            long now = currentTimeMillis();
+
+            Expiry<RemindType> expiry;
+            while ((expiry = expiryQueue.peek()) != null
+                    && expiry.remind.isExpired(now)) {
+                expiryQueue.poll();
+                if (!isIndexed(expiry.remind)) {
+                    continue;
+                }
+
+                IndexNode<RemindType> indexNode = findIndexNode(expiry.remind.path().nodes());
+                indexNode.reminds.remove(expiry.remind);
+                removedReminds.add(expiry.remind);
+                adjustSubtreeCount(indexNode, -1);
+                removeInvalidIndexNode(indexNode);
+            }
+
+            if (expiryFuture != null
+                    && expiryFutureAt <= now) {
+                // 已到期的调度任务正在执行或即将执行，本次清理已完成其工作
+                expiryFuture.cancel(false);
+                expiryFuture = null;
+                expiryTask = null;
+            }
+            compactExpiryQueue();
+            scheduleExpiry();
+
+            // 回调失败时也已重新提交清理任务
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+                onRemindsRemoved(removedReminds);
+            }
+        } finally {
+            lock.unlock();
+            dispatchRemindDelta(new RemindDelta<>(Collections.<RemindType>emptyList(), removedReminds, Collections.<RemindType>emptyList(), sequence));
+        }
+        return removedReminds.size();
+    }
+
+    /**
+     * 设置过期消息清理调度器，设置后会在最早过期的消息过期时自动执行{@link #evictExpiredReminds()}，
+     * 同一时刻过期的消息在一次清理中移除；只会提交一个延迟任务，不会周期性地轮询
+     *
+     * @param expiryExecutor 调度器，null == 不自动清理，只能手动调用{@link #evictExpiredReminds()}
+     */
+    public void setExpiryExecutor(ScheduledExecutorService expiryExecutor) {
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            if (expiryFuture != null) {
+                expiryFuture.cancel(false);
+                expiryFuture = null;
+                expiryTask = null;
+            }
+            this.expiryExecutor = expiryExecutor;
+            scheduleExpiry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取当前时间，用于判断消息是否过期，默认为{@link System#currentTimeMillis()}
+     *
+     * @return 毫秒时间戳
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 批量执行数据变更，所有变更在同一个写锁内执行，监听器在锁外只收到一次净变更
+     */
+    @Override
+    public void batch(RemindBatch<RemindType> batch) {
+        mergeBatch(batch, this);
+    }
+
+    /**
+     * 在写锁内执行批量操作，其他线程不会读到执行一半的批量操作
+     */
+    @Override
+    protected void applyBatch(RemindBatch<RemindType> batch, BatchableRemindRepo<RemindType> repo) {
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            super.applyBatch(batch, repo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 消息被添加(包括替换为不同实例)后的回调，在写锁内同步调用，回调时索引已更新
+     * <p>
+     * 供子类同步维护额外状态(如持久化)，默认为空实现；
+     * 回调抛出异常时索引的变更不会回滚，依然会通知监听器，之后异常再抛给调用方
+     *
+     * @param addedReminds 被添加的消息，不为空
+     */
+    protected void onRemindsAdded(List<RemindType> addedReminds) {
+    }
+
+    /**
+     * 消息被移除后的回调，在写锁内同步调用，回调时索引已更新
+     * <p>
+     * 供子类同步维护额外状态(如持久化)，默认为空实现；
+     * 回调抛出异常时索引的变更不会回滚，依然会通知监听器，之后异常再抛给调用方
+     *
+     * @param removedReminds 被移除的消息，不为空
+     */
+    protected void onRemindsRemoved(List<RemindType> removedReminds) {
+    }
+
+    /**
+     * 获取保护索引的读写锁，供子类在与索引一致的状态下执行额外操作，写锁内可以再获取读锁
+     *
+     * @return 读写锁
+     */
+    protected ReadWriteLock locker() {
+        return locker;
+    }
+
+    private void resetRoot() {
+        root = new IndexNode<>(null, null);
+        argIndex.clear();
+        expiryQueue.clear();
+        scheduleExpiry();
+    }
+
+    /**
+     * 消息实例是否依然在索引中
+     */
+    private boolean isIndexed(RemindType remind) {
+        IndexNode<RemindType> indexNode = findIndexNode(remind.path().nodes());
+        return indexNode != null
+                && indexNode.reminds != null
+                && indexNode.reminds.get(remind) == remind;
+    }
+
+    /**
+     * 失效元素过多时丢弃过期堆中的失效元素，重建开销为 O(n)，均摊到产生失效元素的移除操作上
+     */
+    private void compactExpiryQueue() {
+        if (expiryQueue.size() <= root.subtreeCount + EXPIRY_QUEUE_SLACK) {
+            return;
+        }
+
+        List<Expiry<RemindType>> validExpiries = new ArrayList<>(root.subtreeCount);
+        for (Expiry<RemindType> expiry : expiryQueue) {
+            if (isIndexed(expiry.remind)) {
+                validExpiries.add(expiry);
+            }
+        }
+        expiryQueue.clear();
+        expiryQueue.addAll(validExpiries);
+    }
+
+    /**
+     * 按堆顶消息的过期时间提交清理任务，已提交的任务不晚于堆顶消息的过期时间时不重复提交；调用方需持有写锁
+     */
+    private void scheduleExpiry() {
+        Expiry<RemindType> head = expiryQueue.peek();
+
+        if (expiryFuture != null) {
+            if (head != null
+                    && expiryFutureAt <= head.remind.expireAt()
+                    && !expiryFuture.isDone()) {
+                return;
+            }
+            expiryFuture.cancel(false);
+            expiryFuture = null;
+            expiryTask = null;
+        }
+
+        if (expiryExecutor == null
+                || head == null) {
+            return;
+        }
+
+        expiryFutureAt = head.remind.expireAt();
+        expiryTask = new ExpiryTask();
+        expiryFuture = expiryExecutor.schedule(
+                expiryTask,
+                Math.max(0, expiryFutureAt - currentTimeMillis()),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * 获取过滤过期消息的时间点，调用方需持有读锁
+     *
+     * @return 毫秒时间戳，{@link Remind#NEVER_EXPIRE} == 当前没有过期未清理的消息，无需过滤
+     */
+    private long expiryFilterTime() {
+        Expiry<RemindType> head = expiryQueue.peek();
+        if (head == null) {
+            return Remind.NEVER_EXPIRE;
+        }
+
+        long now = currentTimeMillis();
+        return head.remind.isExpired(now)
+                ? now
+                : Remind.NEVER_EXPIRE;
+    }
+
+    private List<RemindType> filterExpired(List<RemindType> reminds, long filterTime) {
+        if (filterTime == Remind.NEVER_EXPIRE) {
+            return reminds;
+        }
+
+        List<RemindType> result = new ArrayList<>(reminds.size());
+        for (RemindType remind : reminds) {
+            if (!remind.isExpired(filterTime)) {
+                result.add(remind);
+            }
+        }
+        return result;
+    }
+
+    private IndexNode<RemindType> findIndexNode(List<Node> nodes) {
+        IndexNode<RemindType> current = root;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            if (current.sub == null) {
+                return null;
+            }
+            current = current.sub.get(nodes.get(i));
+            if (current == null) {
+                return null;
+            }
+        }
+
+        return current;
+    }
+
+    private IndexNode<RemindType> obtainIndexNode(List<Node> nodes) {
+        IndexNode<RemindType> current = root;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+
+            if (current.sub == null) {
+                current.sub = new HashMap<>();
+            }
+
+            IndexNode<RemindType> next = current.sub.get(node);
+            if (next == null) {
+                next = new IndexNode<>(current, node);
+                current.sub.put(node, next);
+                updateArgIndex(next, true);
+            }
+            current = next;
+        }
+
+        return current;
+    }
+
+    /**
+     * 自下而上更新路径上各树节点的子树消息数量，开销为 O(路径深度)
+     */
+    private void adjustSubtreeCount(IndexNode<RemindType> indexNode, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (IndexNode<RemindType> current = indexNode; current != null; current = current.parent) {
+            current.subtreeCount += delta;
+        }
+    }
+
+    /**
+     * 自下而上移除不再携带任何消息的树节点，开销为 O(路径深度)
+     */
+    private void removeInvalidIndexNode(IndexNode<RemindType> indexNode) {
+        IndexNode<RemindType> current = indexNode;
+        while (current.parent != null
+                && current.isEmpty()) {
+            current.parent.sub.remove(current.node);
+            removeSubtreeArgIndex(current);
+            current = current.parent;
+        }
+    }
+
+    /**
+     * 将整颗子树直接从父节点上摘除
+     */
+    private void detachSubtree(IndexNode<RemindType> indexNode, List<RemindType> removedReminds) {
+        addSubReminds(indexNode, removedReminds);
+        adjustSubtreeCount(indexNode.parent, -indexNode.subtreeCount);
+        indexNode.parent.sub.remove(indexNode.node);
+        removeSubtreeArgIndex(indexNode);
+        removeInvalidIndexNode(indexNode.parent);
+    }
+
+    private void updateArgIndex(IndexNode<RemindType> indexNode, boolean add) {
+        Node node = indexNode.node;
+        if (node.args.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<String, String> entry : node.args.entrySet()) {
+            Arg arg = new Arg(entry.getKey(), entry.getValue());
+            Map<String, Set<IndexNode<RemindType>>> nameIndexNodes = argIndex.get(arg);
+
+            if (add) {
+                if (nameIndexNodes == null) {
+                    nameIndexNodes = new HashMap<>();
+                    argIndex.put(arg, nameIndexNodes);
+                }
+                Set<IndexNode<RemindType>> indexNodes = nameIndexNodes.get(node.name);
+                if (indexNodes == null) {
+                    indexNodes = new HashSet<>();
+                    nameIndexNodes.put(node.name, indexNodes);
+                }
+                indexNodes.add(indexNode);
+                continue;
+            }
+
+            if (nameIndexNodes == null) {
+                continue;
+            }
+            Set<IndexNode<RemindType>> indexNodes = nameIndexNodes.get(node.name);
+            if (indexNodes == null) {
+                continue;
+            }
+            indexNodes.remove(indexNode);
+            if (indexNodes.isEmpty()) {
+                nameIndexNodes.remove(node.name);
+                if (nameIndexNodes.isEmpty()) {
+                    argIndex.remove(arg);
+                }
+            }
+        }
+    }
+
+    private void removeSubtreeArgIndex(IndexNode<RemindType> indexNode) {
+        updateArgIndex(indexNode, false);
+        if (indexNode.sub != null) {
+            for (IndexNode<RemindType> subIndexNode : indexNode.sub.values()) {
+                removeSubtreeArgIndex(subIndexNode);
+            }
+        }
+    }
+
+    /**
+     * 获取携带指定参数的树节点，祖先节点也携带指定参数的节点会被忽略，以免其子树消息被重复获取
+     */
+    private List<IndexNode<RemindType>> getOutermostArgIndexNodes(String nodeName, String argKey, Collection<String> argValues) {
+        Set<IndexNode<RemindType>> matched = new HashSet<>();
+        for (String argValue : argValues) {
+            Map<String, Set<IndexNode<RemindType>>> nameIndexNodes = argIndex.get(new Arg(argKey, argValue));
+            if (nameIndexNodes == null) {
+                continue;
+            }
+
+            if (nodeName != null) {
+                Set<IndexNode<RemindType>> indexNodes = nameIndexNodes.get(nodeName);
+                if (indexNodes != null) {
+                    matched.addAll(indexNodes);
+                }
+            } else {
+                for (Set<IndexNode<RemindType>> indexNodes : nameIndexNodes.values()) {
+                    matched.addAll(indexNodes);
+                }
+            }
+        }
+
+        List<IndexNode<RemindType>> result = new ArrayList<>(matched.size());
+        for (IndexNode<RemindType> indexNode : matched) {
+            if (!hasAncestorIn(indexNode, matched)) {
+                result.add(indexNode);
+            }
+        }
+        return result;
+    }
+
+    private boolean hasAncestorIn(IndexNode<RemindType> indexNode, Set<IndexNode<RemindType>> indexNodes) {
+        for (IndexNode<RemindType> current = indexNode.parent; current != null; current = current.parent) {
+            if (indexNodes.contains(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addSubReminds(IndexNode<RemindType> indexNode, Collection<RemindType> resultContainer) {
+        if (indexNode.reminds != null) {
+            resultContainer.addAll(indexNode.reminds.values());
+        }
+        if (indexNode.sub != null) {
+            for (IndexNode<RemindType> subIndexNode : indexNode.sub.values()) {
+                addSubReminds(subIndexNode, resultContainer);
+            }
+        }
+    }
+}
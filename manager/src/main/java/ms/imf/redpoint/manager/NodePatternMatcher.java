@@ -0,0 +1,37 @@
+package ms.imf.redpoint.manager;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePattern;
+
+/**
+ * 以{@link NodePattern}为模式节点的{@link TreeStructure.NodeMatcher}
+ */
+final class NodePatternMatcher implements TreeStructure.NodeMatcher<Node> {
+
+    static final NodePatternMatcher INSTANCE = new NodePatternMatcher();
+
+    private NodePatternMatcher() {
+    }
+
+    @Override
+    public boolean isPattern(Node node) {
+        return node instanceof NodePattern;
+    }
+
+    @Override
+    public boolean matches(Node pattern, Node node) {
+        return ((NodePattern) pattern).matches(node);
+    }
+
+    /**
+     * 路径中是否包含节点模式
+     */
+    static boolean hasPattern(Iterable<Node> path) {
+        for (Node node : path) {
+            if (node instanceof NodePattern) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
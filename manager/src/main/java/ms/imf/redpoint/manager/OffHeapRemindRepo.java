@@ -0,0 +1,1067 @@
+package ms.imf.redpoint.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
+
+/**
+ * 堆外存储的消息仓库，用于消息数量巨大(数十万条以上)的场景
+ * <p>
+ * {@link IndexedRemindRepo}每条消息都对应一组{@link Remind}、{@link NodePath}、{@link Node}及其参数map对象，
+ * 消息量巨大时堆内存占用及GC停顿都很可观；本仓库不在堆上保存任何消息对象，所有数据都放在直接内存({@link ByteBuffer#allocateDirect(int)})中：
+ * <ul>
+ * <li>节点表：每个不同的节点编码为一条记录(引用计数、hash、名称及按参数名排序的参数的UTF-8编码)，以记录偏移量作为节点id，
+ * 另有一张以节点编码hash为键的开放寻址表用于由节点查找节点id</li>
+ * <li>前缀树：每个树节点为一条定长记录(父节点、边的节点id、首个子节点、前后兄弟节点、子树消息数量、消息过期时间)，
+ * 另有一张以(父节点, 节点id)为键的开放寻址表用于沿路径下行</li>
+ * </ul>
+ * 消息相等只取决于路径({@link Remind#equals(Object)})，所以每个树节点最多挂载一条消息，只需记录其过期时间
+ * <p>
+ * 查询时才按树节点记录解码出{@link Node}并生成{@link Remind}，同一次查询中公共前缀的节点只解码一次；
+ * 本仓库声明为{@link UncachedRemindRepo}，管理器不会缓存查询结果，
+ * 消息只在向handler分发前生成，handler不再持有后即可被回收；通过{@link CountableRemindRepo}获取数量时则完全不生成消息对象
+ * <p>
+ * 只保存消息的路径及过期时间，{@link Remind}子类携带的其他数据不会被保存，查询结果均为{@link Remind}实例；
+ * 重复添加路径与过期时间都相同的消息不算变更，过期时间不同时视为替换；
+ * 消息路径不能包含{@link NodePattern}
+ * <p>
+ * 与{@link IndexedRemindRepo}相同，已过期但还未被清理的消息不会出现在查询结果中，但在清理前依然会被计入消息数量，
+ * 由于没有堆上的过期堆，{@link #evictExpiredReminds()}需要扫描全部消息
+ * <p>
+ * 读写锁保护，监听器的回调在锁外进行；{@link #batch(RemindBatch)}在同一个写锁内执行所有变更
+ */
+public class OffHeapRemindRepo extends AbstractRemindRepo<Remind> implements CountableRemindRepo<Remind>, BatchableRemindRepo<Remind>, UncachedRemindRepo<Remind> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NO_ID = -1;
+    private static final long NO_REMIND = -1;
+
+    private static final int ROOT = 0;
+
+    /**
+     * 树节点记录布局
+     */
+    private static final int TRIE_PARENT = 0;
+    private static final int TRIE_EDGE = 4;
+    private static final int TRIE_FIRST_CHILD = 8;
+    private static final int TRIE_NEXT_SIBLING = 12;
+    private static final int TRIE_PREV_SIBLING = 16;
+    private static final int TRIE_SUBTREE_COUNT = 20;
+    private static final int TRIE_EXPIRE_AT = 24;
+    private static final int TRIE_RECORD_SIZE = 32;
+
+    /**
+     * 节点记录布局，NODE_HEADER之后为节点编码
+     */
+    private static final int NODE_REF_COUNT = 0;
+    private static final int NODE_HASH = 4;
+    private static final int NODE_LENGTH = 8;
+    private static final int NODE_HEADER = 12;
+
+    private static final int INITIAL_TRIE_CAPACITY = 1024;
+    private static final int INITIAL_NODE_BYTES = 16 * 1024;
+    private static final int INITIAL_TABLE_CAPACITY = 1024;
+
+    /**
+     * 开放寻址表，槽位为int值，值的hash由子类从堆外记录中取得；不扩容时不分配堆内存
+     */
+    private abstract static class OffHeapIntTable {
+        private ByteBuffer slots;
+        private int mask;
+        private int size;
+
+        OffHeapIntTable() {
+            reset();
+        }
+
+        abstract int hashOf(int value);
+
+        final void reset() {
+            slots = newSlots(INITIAL_TABLE_CAPACITY);
+            mask = INITIAL_TABLE_CAPACITY - 1;
+            size = 0;
+        }
+
+        final int mask() {
+            return mask;
+        }
+
+        final int get(int slot) {
+            return slots.getInt(slot << 2);
+        }
+
+        final int capacityBytes() {
+            return slots.capacity();
+        }
+
+        final void insert(int value, int hash) {
+            if ((size + 1) * 2 > mask + 1) {
+                rehash((mask + 1) * 2);
+            }
+            int slot = hash & mask;
+            while (get(slot) != NO_ID) {
+                slot = (slot + 1) & mask;
+            }
+            slots.putInt(slot << 2, value);
+            size++;
+        }
+
+        /**
+         * 移除值，后续槽位中的值向前回填，不留删除标记
+         */
+        final void remove(int value, int hash) {
+            int hole = hash & mask;
+            while (get(hole) != value) {
+                hole = (hole + 1) & mask;
+            }
+
+            int next = (hole + 1) & mask;
+            int nextValue;
+            while ((nextValue = get(next)) != NO_ID) {
+                int ideal = hashOf(nextValue) & mask;
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    slots.putInt(hole << 2, nextValue);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            slots.putInt(hole << 2, NO_ID);
+            size--;
+        }
+
+        private void rehash(int capacity) {
+            ByteBuffer oldSlots = slots;
+            int oldCapacity = mask + 1;
+
+            slots = newSlots(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                int value = oldSlots.getInt(i << 2);
+                if (value == NO_ID) {
+                    continue;
+                }
+                int slot = hashOf(value) & mask;
+                while (get(slot) != NO_ID) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.putInt(slot << 2, value);
+            }
+        }
+
+        private static ByteBuffer newSlots(int capacity) {
+            ByteBuffer slots = ByteBuffer.allocateDirect(capacity << 2).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < capacity; i++) {
+                slots.putInt(i << 2, NO_ID);
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * 所有直接内存只通过绝对位置读写，读锁内多个线程可以同时读取
+     */
+    private final ReadWriteLock locker = new ReentrantReadWriteLock();
+
+    private ByteBuffer trie;
+    /**
+     * 已使用过的树节点记录数量，包括空闲记录
+     */
+    private int trieSize;
+    /**
+     * 空闲树节点记录链表头，以TRIE_NEXT_SIBLING串联
+     */
+    private int freeTrie;
+
+    private ByteBuffer nodes;
+    /**
+     * 节点记录的写入位置
+     */
+    private int nodesEnd;
+    /**
+     * 引用计数已归零的节点记录占用的字节数，超过一半时整理节点表
+     */
+    private int garbageNodeBytes;
+
+    /**
+     * 节点编码hash -> 节点id
+     */
+    private final OffHeapIntTable nodeTable = new OffHeapIntTable() {
+        @Override
+        int hashOf(int nodeId) {
+            return nodes.getInt(nodeId + NODE_HASH);
+        }
+    };
+    /**
+     * (父树节点, 节点id) -> 子树节点
+     */
+    private final OffHeapIntTable childTable = new OffHeapIntTable() {
+        @Override
+        int hashOf(int trieId) {
+            return childHash(trieInt(trieId, TRIE_PARENT), trieInt(trieId, TRIE_EDGE));
+        }
+    };
+
+    public OffHeapRemindRepo() {
+        resetStore();
+    }
+
+    /**
+     * 添加消息
+     *
+     * @param remind 要添加的消息
+     * @see #addReminds(Iterable)
+     */
+    public void addRemind(Remind remind) {
+        addReminds(Collections.singletonList(remind));
+    }
+
+    /**
+     * 添加消息集
+     * <p>
+     * 只保存消息的路径及过期时间；已存在相同路径的消息时，过期时间不同才视为替换
+     *
+     * @param reminds 要添加的消息集，消息路径不能包含{@link NodePattern}
+     */
+    @Override
+    public void addReminds(Iterable<? extends Remind> reminds) {
+        if (reminds == null) { throw new IllegalArgumentException("reminds can't be null"); }
+
+        // 先校验全部消息再修改，非法消息不会导致只添加了一部分且没有分发变更
+        final List<Remind> checkedReminds = new ArrayList<>();
+        for (Remind remind : reminds) {
+            if (remind == null) { throw new IllegalArgumentException("reminds can't contain null value"); }
+            for (Node node : remind.path().nodes()) {
+                if (node instanceof NodePattern) {
+                    throw new IllegalArgumentException("remind path can't contain NodePattern: " + remind.path());
+                }
+            }
+            checkedReminds.add(remind);
+        }
+
+        final List<Remind> addedReminds = new ArrayList<>();
+        final List<Remind> updatedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (Remind remind : checkedReminds) {
+                int trieId = obtainTrie(remind.path().nodes());
+                long lastExpireAt = trieLong(trieId, TRIE_EXPIRE_AT);
+                if (lastExpireAt == NO_REMIND) {
+                    adjustSubtreeCount(trieId, 1);
+                    addedReminds.add(remind);
+                } else if (lastExpireAt != remind.expireAt()) {
+                    updatedReminds.add(remind);
+                } else {
+                    continue;
+                }
+                trie.putLong(trieOffset(trieId) + TRIE_EXPIRE_AT, remind.expireAt());
+            }
+            if (!addedReminds.isEmpty()
+                    || !updatedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(addedReminds, Collections.<Remind>emptyList(), updatedReminds, sequence));
+    }
+
+    /**
+     * 获取消息总数
+     *
+     * @return 消息总数
+     */
+    public int remindCount() {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            return trieInt(ROOT, TRIE_SUBTREE_COUNT);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取当前占用的直接内存字节数，包括已分配但未使用的容量
+     *
+     * @return 字节数
+     */
+    public long offHeapBytes() {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            return (long) trie.capacity()
+                    + nodes.capacity()
+                    + nodeTable.capacityBytes()
+                    + childTable.capacityBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMatchPathRemindCount(NodePath nodePath) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            int trieId = findTrie(nodePath.nodes());
+            return trieId == NO_ID || trieLong(trieId, TRIE_EXPIRE_AT) == NO_REMIND
+                    ? 0
+                    : 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMatchPathSubRemindCount(NodePath nodePath) {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            int trieId = findTrie(nodePath.nodes());
+            return trieId == NO_ID
+                    ? 0
+                    : trieInt(trieId, TRIE_SUBTREE_COUNT);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<? extends Remind> getAllReminds() {
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            List<Remind> result = new ArrayList<>(trieInt(ROOT, TRIE_SUBTREE_COUNT));
+            addSubReminds(ROOT, new ArrayList<Node>(), currentTimeMillis(), result);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<NodePath, ? extends Collection<? extends Remind>> getMatchPathReminds(Collection<NodePath> nodePaths) {
+        HashMap<NodePath, Collection<? extends Remind>> result = new HashMap<>(nodePaths.size());
+
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            long now = currentTimeMillis();
+            for (NodePath nodePath : nodePaths) {
+                int trieId = findTrie(nodePath.nodes());
+                long expireAt = trieId == NO_ID
+                        ? NO_REMIND
+                        : trieLong(trieId, TRIE_EXPIRE_AT);
+
+                result.put(
+                        nodePath,
+                        expireAt == NO_REMIND || isExpired(expireAt, now)
+                                ? Collections.<Remind>emptyList()
+                                : Collections.singletonList(new Remind(nodePath, expireAt))
+                );
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<NodePath, ? extends Collection<? extends Remind>> getMatchPathSubReminds(Collection<NodePath> nodePaths) {
+        HashMap<NodePath, Collection<? extends Remind>> result = new HashMap<>(nodePaths.size());
+
+        Lock lock = locker.readLock();
+        lock.lock();
+        try {
+            long now = currentTimeMillis();
+            for (NodePath nodePath : nodePaths) {
+                int trieId = findTrie(nodePath.nodes());
+
+                List<Remind> reminds = new ArrayList<>();
+                if (trieId != NO_ID) {
+                    addSubReminds(trieId, new ArrayList<>(nodePath.nodes()), now, reminds);
+                }
+                result.put(nodePath, reminds);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void removeReminds(Iterable<? extends Remind> reminds) {
+        if (reminds == null) { throw new IllegalArgumentException("reminds can't be null"); }
+
+        final List<Remind> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (Remind remind : reminds) {
+                if (remind == null) {
+                    continue;
+                }
+
+                int trieId = findTrie(remind.path().nodes());
+                if (trieId == NO_ID) {
+                    continue;
+                }
+                long expireAt = trieLong(trieId, TRIE_EXPIRE_AT);
+                if (expireAt == NO_REMIND) {
+                    continue;
+                }
+
+                removedReminds.add(new Remind(remind.path(), expireAt));
+                removeRemindAt(trieId);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), removedReminds, Collections.<Remind>emptyList(), sequence));
+    }
+
+    @Override
+    public long removeMatchPathReminds(Collection<NodePath> nodePaths) {
+        final List<Remind> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (NodePath nodePath : nodePaths) {
+                int trieId = findTrie(nodePath.nodes());
+                if (trieId == NO_ID) {
+                    continue;
+                }
+                long expireAt = trieLong(trieId, TRIE_EXPIRE_AT);
+                if (expireAt == NO_REMIND) {
+                    continue;
+                }
+
+                removedReminds.add(new Remind(nodePath, expireAt));
+                removeRemindAt(trieId);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), removedReminds, Collections.<Remind>emptyList(), sequence));
+        return removedReminds.size();
+    }
+
+    @Override
+    public long removeMatchPathSubReminds(Collection<NodePath> nodePaths) {
+        final List<Remind> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            for (NodePath nodePath : nodePaths) {
+                if (nodePath.nodes().isEmpty()) {
+                    // 空路径即根节点，其子路径为所有消息，与 AbstractRemindRepo#isMySubPathWithMe 的行为保持一致
+                    addSubReminds(ROOT, new ArrayList<Node>(), Remind.NEVER_EXPIRE, removedReminds);
+                    resetStore();
+                    continue;
+                }
+
+                int trieId = findTrie(nodePath.nodes());
+                if (trieId == NO_ID) {
+                    continue;
+                }
+
+                detachSubtree(trieId, new ArrayList<>(nodePath.nodes()), removedReminds);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), removedReminds, Collections.<Remind>emptyList(), sequence));
+        return removedReminds.size();
+    }
+
+    @Override
+    public long removeAllReminds() {
+        final List<Remind> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            addSubReminds(ROOT, new ArrayList<Node>(), Remind.NEVER_EXPIRE, removedReminds);
+            resetStore();
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), removedReminds, Collections.<Remind>emptyList(), sequence));
+        return removedReminds.size();
+    }
+
+    /**
+     * 清理所有已过期的消息，合并为一次移除通知
+     * <p>
+     * 需要扫描全部消息，开销为 O(n)，但只为过期的消息生成对象
+     *
+     * @return 被清理的消息数量
+     */
+    public int evictExpiredReminds() {
+        final List<Remind> removedReminds = new ArrayList<>();
+        long sequence = RemindDelta.NO_SEQUENCE;
+
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            long now = currentTimeMillis();
+
+            List<Integer> expiredTrieIds = new ArrayList<>();
+            collectExpired(ROOT, new ArrayList<Node>(), now, expiredTrieIds, removedReminds);
+            for (int trieId : expiredTrieIds) {
+                removeRemindAt(trieId);
+            }
+            if (!removedReminds.isEmpty()) {
+                sequence = nextDeltaSequence();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        dispatchRemindDelta(new RemindDelta<>(Collections.<Remind>emptyList(), removedReminds, Collections.<Remind>emptyList(), sequence));
+        return removedReminds.size();
+    }
+
+    /**
+     * 获取当前时间，用于判断消息是否过期，默认为{@link System#currentTimeMillis()}
+     *
+     * @return 毫秒时间戳
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 批量执行数据变更，所有变更在同一个写锁内执行，监听器在锁外只收到一次净变更
+     */
+    @Override
+    public void batch(RemindBatch<Remind> batch) {
+        mergeBatch(batch, this);
+    }
+
+    /**
+     * 在写锁内执行批量操作，其他线程不会读到执行一半的批量操作
+     */
+    @Override
+    protected void applyBatch(RemindBatch<Remind> batch, BatchableRemindRepo<Remind> repo) {
+        Lock lock = locker.writeLock();
+        lock.lock();
+        try {
+            super.applyBatch(batch, repo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃所有数据，重新分配初始大小的存储，原有直接内存随缓冲区对象被回收时释放
+     */
+    private void resetStore() {
+        trie = ByteBuffer.allocateDirect(INITIAL_TRIE_CAPACITY * TRIE_RECORD_SIZE).order(ByteOrder.nativeOrder());
+        trieSize = 0;
+        freeTrie = NO_ID;
+        nodes = ByteBuffer.allocateDirect(INITIAL_NODE_BYTES).order(ByteOrder.nativeOrder());
+        nodesEnd = 0;
+        garbageNodeBytes = 0;
+        nodeTable.reset();
+        childTable.reset();
+
+        allocTrie(NO_ID, NO_ID);
+    }
+
+    private static boolean isExpired(long expireAt, long now) {
+        return expireAt != Remind.NEVER_EXPIRE
+                && expireAt <= now;
+    }
+
+    // ---------------------------------------------------------------- 前缀树
+
+    private static int trieOffset(int trieId) {
+        return trieId * TRIE_RECORD_SIZE;
+    }
+
+    private int trieInt(int trieId, int field) {
+        return trie.getInt(trieOffset(trieId) + field);
+    }
+
+    private void setTrieInt(int trieId, int field, int value) {
+        trie.putInt(trieOffset(trieId) + field, value);
+    }
+
+    private long trieLong(int trieId, int field) {
+        return trie.getLong(trieOffset(trieId) + field);
+    }
+
+    private static int childHash(int parent, int nodeId) {
+        int hash = parent * 0x9E3779B9 + nodeId;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+
+    private int findChild(int parent, int nodeId) {
+        int mask = childTable.mask();
+        int slot = childHash(parent, nodeId) & mask;
+        int child;
+        while ((child = childTable.get(slot)) != NO_ID) {
+            if (trieInt(child, TRIE_EDGE) == nodeId
+                    && trieInt(child, TRIE_PARENT) == parent) {
+                return child;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_ID;
+    }
+
+    private int findTrie(List<Node> pathNodes) {
+        int current = ROOT;
+        for (int i = 0; i < pathNodes.size(); i++) {
+            Node node = pathNodes.get(i);
+            if (node instanceof NodePattern) {
+                return NO_ID;
+            }
+
+            byte[] encoded = encodeNode(node);
+            int nodeId = findNode(encoded, hashBytes(encoded));
+            if (nodeId == NO_ID) {
+                return NO_ID;
+            }
+            current = findChild(current, nodeId);
+            if (current == NO_ID) {
+                return NO_ID;
+            }
+        }
+        return current;
+    }
+
+    private int obtainTrie(List<Node> pathNodes) {
+        int current = ROOT;
+        for (int i = 0; i < pathNodes.size(); i++) {
+            byte[] encoded = encodeNode(pathNodes.get(i));
+            int hash = hashBytes(encoded);
+
+            int nodeId = findNode(encoded, hash);
+            int child = nodeId == NO_ID
+                    ? NO_ID
+                    : findChild(current, nodeId);
+            if (child == NO_ID) {
+                if (nodeId == NO_ID) {
+                    nodeId = addNode(encoded, hash);
+                }
+                child = allocTrie(current, nodeId);
+            }
+            current = child;
+        }
+        return current;
+    }
+
+    /**
+     * 分配树节点并挂载到父节点上，父节点为{@link #NO_ID}时为根节点
+     */
+    private int allocTrie(int parent, int nodeId) {
+        int trieId;
+        if (freeTrie != NO_ID) {
+            trieId = freeTrie;
+            freeTrie = trieInt(trieId, TRIE_NEXT_SIBLING);
+        } else {
+            if ((trieSize + 1) * TRIE_RECORD_SIZE > trie.capacity()) {
+                trie = grow(trie, trie.capacity() * 2);
+            }
+            trieId = trieSize++;
+        }
+
+        setTrieInt(trieId, TRIE_PARENT, parent);
+        setTrieInt(trieId, TRIE_EDGE, nodeId);
+        setTrieInt(trieId, TRIE_FIRST_CHILD, NO_ID);
+        setTrieInt(trieId, TRIE_PREV_SIBLING, NO_ID);
+        setTrieInt(trieId, TRIE_SUBTREE_COUNT, 0);
+        trie.putLong(trieOffset(trieId) + TRIE_EXPIRE_AT, NO_REMIND);
+
+        if (parent == NO_ID) {
+            setTrieInt(trieId, TRIE_NEXT_SIBLING, NO_ID);
+            return trieId;
+        }
+
+        int firstChild = trieInt(parent, TRIE_FIRST_CHILD);
+        setTrieInt(trieId, TRIE_NEXT_SIBLING, firstChild);
+        if (firstChild != NO_ID) {
+            setTrieInt(firstChild, TRIE_PREV_SIBLING, trieId);
+        }
+        setTrieInt(parent, TRIE_FIRST_CHILD, trieId);
+
+        childTable.insert(trieId, childHash(parent, nodeId));
+        retainNode(nodeId);
+        return trieId;
+    }
+
+    /**
+     * 从父节点上摘除并释放树节点，调用方需保证其已没有子节点
+     */
+    private void freeTrie(int trieId) {
+        int parent = trieInt(trieId, TRIE_PARENT);
+        int nodeId = trieInt(trieId, TRIE_EDGE);
+        int prev = trieInt(trieId, TRIE_PREV_SIBLING);
+        int next = trieInt(trieId, TRIE_NEXT_SIBLING);
+
+        if (prev == NO_ID) {
+            setTrieInt(parent, TRIE_FIRST_CHILD, next);
+        } else {
+            setTrieInt(prev, TRIE_NEXT_SIBLING, next);
+        }
+        if (next != NO_ID) {
+            setTrieInt(next, TRIE_PREV_SIBLING, prev);
+        }
+
+        childTable.remove(trieId, childHash(parent, nodeId));
+        releaseNode(nodeId);
+
+        setTrieInt(trieId, TRIE_EDGE, NO_ID);
+        setTrieInt(trieId, TRIE_NEXT_SIBLING, freeTrie);
+        freeTrie = trieId;
+    }
+
+    /**
+     * 自下而上更新路径上各树节点的子树消息数量，开销为 O(路径深度)
+     */
+    private void adjustSubtreeCount(int trieId, int delta) {
+        for (int current = trieId; current != NO_ID; current = trieInt(current, TRIE_PARENT)) {
+            setTrieInt(current, TRIE_SUBTREE_COUNT, trieInt(current, TRIE_SUBTREE_COUNT) + delta);
+        }
+    }
+
+    private void removeRemindAt(int trieId) {
+        trie.putLong(trieOffset(trieId) + TRIE_EXPIRE_AT, NO_REMIND);
+        adjustSubtreeCount(trieId, -1);
+        removeInvalidTrie(trieId);
+    }
+
+    /**
+     * 自下而上释放不再携带任何消息的树节点，开销为 O(路径深度)；子树消息数量为0的树节点必然没有子节点
+     */
+    private void removeInvalidTrie(int trieId) {
+        int current = trieId;
+        while (current != ROOT
+                && trieInt(current, TRIE_SUBTREE_COUNT) == 0) {
+            int parent = trieInt(current, TRIE_PARENT);
+            freeTrie(current);
+            current = parent;
+        }
+        compactNodesIfNeeded();
+    }
+
+    /**
+     * 将整颗子树摘除，被移除的消息加入removedReminds
+     *
+     * @param pathNodes 子树根节点的路径，作为生成消息时的路径前缀，会被修改
+     */
+    private void detachSubtree(int trieId, List<Node> pathNodes, List<Remind> removedReminds) {
+        addSubReminds(trieId, pathNodes, Remind.NEVER_EXPIRE, removedReminds);
+
+        int parent = trieInt(trieId, TRIE_PARENT);
+        adjustSubtreeCount(parent, -trieInt(trieId, TRIE_SUBTREE_COUNT));
+        freeSubtree(trieId);
+        removeInvalidTrie(parent);
+    }
+
+    private void freeSubtree(int trieId) {
+        int child;
+        while ((child = trieInt(trieId, TRIE_FIRST_CHILD)) != NO_ID) {
+            freeSubtree(child);
+        }
+        freeTrie(trieId);
+    }
+
+    /**
+     * 生成子树内的消息，树节点的节点只解码一次，由其下所有消息共用
+     *
+     * @param pathNodes 当前树节点的路径，递归时作为路径前缀使用，返回时恢复原状
+     * @param now       过滤过期消息的时间点，{@link Remind#NEVER_EXPIRE} == 不过滤
+     */
+    private void addSubReminds(int trieId, List<Node> pathNodes, long now, List<Remind> result) {
+        long expireAt = trieLong(trieId, TRIE_EXPIRE_AT);
+        if (expireAt != NO_REMIND
+                && !isExpired(expireAt, now)) {
+            result.add(new Remind(new NodePath(pathNodes), expireAt));
+        }
+
+        for (int child = trieInt(trieId, TRIE_FIRST_CHILD); child != NO_ID; child = trieInt(child, TRIE_NEXT_SIBLING)) {
+            pathNodes.add(decodeNode(trieInt(child, TRIE_EDGE)));
+            addSubReminds(child, pathNodes, now, result);
+            pathNodes.remove(pathNodes.size() - 1);
+        }
+    }
+
+    private void collectExpired(int trieId, List<Node> pathNodes, long now, List<Integer> expiredTrieIds, List<Remind> expiredReminds) {
+        long expireAt = trieLong(trieId, TRIE_EXPIRE_AT);
+        if (expireAt != NO_REMIND
+                && isExpired(expireAt, now)) {
+            expiredTrieIds.add(trieId);
+            expiredReminds.add(new Remind(new NodePath(pathNodes), expireAt));
+        }
+
+        for (int child = trieInt(trieId, TRIE_FIRST_CHILD); child != NO_ID; child = trieInt(child, TRIE_NEXT_SIBLING)) {
+            pathNodes.add(decodeNode(trieInt(child, TRIE_EDGE)));
+            collectExpired(child, pathNodes, now, expiredTrieIds, expiredReminds);
+            pathNodes.remove(pathNodes.size() - 1);
+        }
+    }
+
+    // ---------------------------------------------------------------- 节点表
+
+    private int findNode(byte[] encoded, int hash) {
+        int mask = nodeTable.mask();
+        int slot = hash & mask;
+        int nodeId;
+        while ((nodeId = nodeTable.get(slot)) != NO_ID) {
+            if (nodes.getInt(nodeId + NODE_HASH) == hash
+                    && isNodeBytesEqual(nodeId, encoded)) {
+                return nodeId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_ID;
+    }
+
+    private boolean isNodeBytesEqual(int nodeId, byte[] encoded) {
+        if (nodes.getInt(nodeId + NODE_LENGTH) != encoded.length) {
+            return false;
+        }
+        int offset = nodeId + NODE_HEADER;
+        for (int i = 0; i < encoded.length; i++) {
+            if (nodes.get(offset + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写入引用计数为0的节点记录
+     */
+    private int addNode(byte[] encoded, int hash) {
+        int recordSize = NODE_HEADER + encoded.length;
+        if (nodesEnd + recordSize > nodes.capacity()) {
+            nodes = grow(nodes, Math.max(nodes.capacity() * 2, nodesEnd + recordSize));
+        }
+
+        int nodeId = nodesEnd;
+        nodes.putInt(nodeId + NODE_REF_COUNT, 0);
+        nodes.putInt(nodeId + NODE_HASH, hash);
+        nodes.putInt(nodeId + NODE_LENGTH, encoded.length);
+        for (int i = 0; i < encoded.length; i++) {
+            nodes.put(nodeId + NODE_HEADER + i, encoded[i]);
+        }
+        nodesEnd += recordSize;
+
+        nodeTable.insert(nodeId, hash);
+        return nodeId;
+    }
+
+    private void retainNode(int nodeId) {
+        nodes.putInt(nodeId + NODE_REF_COUNT, nodes.getInt(nodeId + NODE_REF_COUNT) + 1);
+    }
+
+    private void releaseNode(int nodeId) {
+        int refCount = nodes.getInt(nodeId + NODE_REF_COUNT) - 1;
+        nodes.putInt(nodeId + NODE_REF_COUNT, refCount);
+        if (refCount == 0) {
+            nodeTable.remove(nodeId, nodes.getInt(nodeId + NODE_HASH));
+            garbageNodeBytes += NODE_HEADER + nodes.getInt(nodeId + NODE_LENGTH);
+        }
+    }
+
+    /**
+     * 已释放的节点记录超过一半时整理节点表：将存活的记录紧凑地复制到新缓冲区，并更新树节点上的节点id，
+     * 开销为 O(节点记录字节数 + 树节点数量)，均摊到产生废弃记录的移除操作上
+     */
+    private void compactNodesIfNeeded() {
+        if (garbageNodeBytes <= INITIAL_NODE_BYTES
+                || garbageNodeBytes * 2 <= nodesEnd) {
+            return;
+        }
+
+        ByteBuffer oldNodes = nodes;
+        int liveBytes = nodesEnd - garbageNodeBytes;
+        ByteBuffer newNodes = ByteBuffer.allocateDirect(Math.max(INITIAL_NODE_BYTES, liveBytes * 2)).order(ByteOrder.nativeOrder());
+
+        int newEnd = 0;
+        for (int offset = 0; offset < nodesEnd; ) {
+            int recordSize = NODE_HEADER + oldNodes.getInt(offset + NODE_LENGTH);
+            if (oldNodes.getInt(offset + NODE_REF_COUNT) > 0) {
+                for (int i = 0; i < recordSize; i++) {
+                    newNodes.put(newEnd + i, oldNodes.get(offset + i));
+                }
+                // 旧记录已不再使用，借用其hash字段记录新的节点id
+                oldNodes.putInt(offset + NODE_HASH, newEnd);
+                newEnd += recordSize;
+            }
+            offset += recordSize;
+        }
+
+        for (int trieId = 0; trieId < trieSize; trieId++) {
+            int nodeId = trieInt(trieId, TRIE_EDGE);
+            if (nodeId != NO_ID) {
+                setTrieInt(trieId, TRIE_EDGE, oldNodes.getInt(nodeId + NODE_HASH));
+            }
+        }
+
+        nodes = newNodes;
+        nodesEnd = newEnd;
+        garbageNodeBytes = 0;
+
+        // 节点id及子节点表的hash均已改变，重建两张表
+        nodeTable.reset();
+        for (int offset = 0; offset < nodesEnd; offset += NODE_HEADER + nodes.getInt(offset + NODE_LENGTH)) {
+            nodeTable.insert(offset, nodes.getInt(offset + NODE_HASH));
+        }
+        childTable.reset();
+        for (int trieId = 0; trieId < trieSize; trieId++) {
+            int nodeId = trieInt(trieId, TRIE_EDGE);
+            if (nodeId != NO_ID) {
+                childTable.insert(trieId, childHash(trieInt(trieId, TRIE_PARENT), nodeId));
+            }
+        }
+    }
+
+    /**
+     * 节点编码: String name, varint 参数个数, (String key, String value)...，参数按参数名排序以保证相等的节点编码相同；
+     * String: varint 0 == null | 字节长度 + 1，之后为UTF-8字节
+     */
+    private static byte[] encodeNode(Node node) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(32);
+        writeString(output, node.name);
+        writeVarInt(output, node.args.size());
+
+        if (node.args.size() == 1) {
+            Map.Entry<String, String> arg = node.args.entrySet().iterator().next();
+            writeString(output, arg.getKey());
+            writeString(output, arg.getValue());
+        } else if (!node.args.isEmpty()) {
+            String[] keys = node.args.keySet().toArray(new String[node.args.size()]);
+            Arrays.sort(keys);
+            for (String key : keys) {
+                writeString(output, key);
+                writeString(output, node.args.get(key));
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String string) {
+        if (string == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarInt(output, bytes.length + 1);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private Node decodeNode(int nodeId) {
+        ByteBuffer input = nodes.duplicate();
+        input.position(nodeId + NODE_HEADER);
+
+        String name = readString(input);
+        int argCount = readVarInt(input);
+        Map<String, String> args = null;
+        if (argCount > 0) {
+            args = new HashMap<>(argCount * 4 / 3 + 1);
+            for (int i = 0; i < argCount; i++) {
+                String key = readString(input);
+                args.put(key, readString(input));
+            }
+        }
+        return new Node(name, args);
+    }
+
+    private static String readString(ByteBuffer input) {
+        int length = readVarInt(input) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = input.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    private static int hashBytes(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        grown.put(source);
+        grown.clear();
+        return grown;
+    }
+}
@@ -0,0 +1,213 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 发布指定节点路径消息的{@link RemindPublisher}
+ * <p>
+ * 每个订阅对应一个附加到{@link RemindHandlerManager}的{@link RemindHandler}，与普通handler共用同一套分发机制；
+ * 订阅时附加并由管理器强引用，取消时解除并释放
+ *
+ * @param <RemindType> 支持的消息类型
+ */
+class PathRemindPublisher<RemindType extends Remind> implements RemindPublisher<RemindType> {
+
+    private final RemindHandlerManager<RemindType> manager;
+    private final List<NodePath> paths;
+
+    PathRemindPublisher(RemindHandlerManager<RemindType> manager, List<NodePath> paths) {
+        if (manager == null) { throw new IllegalArgumentException("manager can't be null"); }
+        if (paths == null) { throw new IllegalArgumentException("paths can't be null"); }
+
+        int nullIndex = paths.indexOf(null);
+        if (nullIndex >= 0) {
+            throw new IllegalArgumentException("paths can't contain null value '" + nullIndex + "'");
+        }
+
+        this.manager = manager;
+        this.paths = new ArrayList<>(paths);
+    }
+
+    @Override
+    public void subscribe(RemindSubscriber<? super RemindType> subscriber) {
+        if (subscriber == null) { throw new IllegalArgumentException("subscriber can't be null"); }
+
+        PathSubscription<RemindType> subscription = new PathSubscription<>(manager, subscriber);
+        subscription.setPath(paths);
+
+        subscriber.onSubscribe(subscription);
+
+        // 订阅者可能在onSubscribe中就已取消
+        if (subscription.isCancelled()) {
+            return;
+        }
+        manager.retainSubscription(subscription);
+        subscription.attachToManager();
+        // 附加期间其他线程可能已取消，此时取消中的解除及释放可能早于附加，需再次解除
+        if (subscription.isCancelled()) {
+            subscription.detachFromManager();
+            manager.releaseSubscription(subscription);
+        }
+    }
+
+    /**
+     * 订阅，同时作为接收消息的handler
+     * <p>
+     * 只保留最新一次未发布的消息，请求数量不足时的多次变化会被合并为一次
+     */
+    private static final class PathSubscription<RemindType extends Remind> extends RemindHandler<RemindType> implements RemindSubscription {
+
+        private final RemindHandlerManager<RemindType> manager;
+        private final RemindSubscriber<? super RemindType> subscriber;
+
+        private final Object locker = new Object();
+        /**
+         * 还未满足的请求数量
+         */
+        private long requested;
+        /**
+         * 等待发布的最新消息，null == 没有
+         */
+        private List<RemindType> pending;
+        /**
+         * 上次发布的消息，key与value为相等的消息，null == 还未发布过
+         */
+        private Map<RemindType, RemindType> lastEmitted;
+        /**
+         * 是否有线程正在向订阅者发布，用于保证订阅者回调不并发
+         */
+        private boolean emitting;
+        private volatile boolean cancelled;
+
+        PathSubscription(RemindHandlerManager<RemindType> manager, RemindSubscriber<? super RemindType> subscriber) {
+            super(manager);
+            this.manager = manager;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void showReminds(Collection<? extends RemindType> reminds) {
+            if (cancelled) {
+                return;
+            }
+
+            synchronized (locker) {
+                pending = new ArrayList<>(reminds);
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("request count must be positive: " + n));
+                return;
+            }
+
+            synchronized (locker) {
+                requested = requested + n < 0
+                        ? Long.MAX_VALUE
+                        : requested + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+
+            synchronized (locker) {
+                pending = null;
+                lastEmitted = null;
+            }
+            detachFromManager();
+            manager.releaseSubscription(this);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void drain() {
+            synchronized (locker) {
+                if (emitting) {
+                    // 正在发布的线程会在循环中取到最新状态
+                    return;
+                }
+                emitting = true;
+            }
+
+            boolean released = false;
+            try {
+                while (true) {
+                    List<RemindType> next;
+
+                    synchronized (locker) {
+                        if (cancelled
+                                || pending == null
+                                || requested == 0) {
+                            emitting = false;
+                            released = true;
+                            return;
+                        }
+
+                        next = pending;
+                        pending = null;
+
+                        if (isSameReminds(next)) {
+                            continue;
+                        }
+
+                        lastEmitted = new HashMap<>(Math.max(16, next.size() * 4 / 3 + 1));
+                        for (RemindType remind : next) {
+                            lastEmitted.put(remind, remind);
+                        }
+                        if (requested != Long.MAX_VALUE) {
+                            requested--;
+                        }
+                    }
+
+                    subscriber.onNext(Collections.unmodifiableList(next));
+                }
+            } finally {
+                // 订阅者回调抛出异常时释放发布权，否则之后的消息再也不会被发布
+                if (!released) {
+                    synchronized (locker) {
+                        emitting = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 调用方需持有locker
+         */
+        private boolean isSameReminds(List<RemindType> reminds) {
+            if (lastEmitted == null
+                    || lastEmitted.size() != reminds.size()) {
+                return false;
+            }
+            for (RemindType remind : reminds) {
+                if (lastEmitted.get(remind) != remind) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
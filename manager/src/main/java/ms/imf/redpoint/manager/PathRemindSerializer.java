@@ -0,0 +1,111 @@
+package ms.imf.redpoint.manager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * {@link Remind}的序列化器，写出节点路径及过期时间
+ *
+ * <pre>
+ * Remind:   [int {@value #EXPIRING_REMIND}, long expireAt], int 节点个数, Node...
+ * Node:     UTF name, int 参数个数, Arg...
+ * Arg:      UTF key, boolean 是否有值, [UTF value]
+ * </pre>
+ * 永不过期的消息不写出过期时间，与只有节点路径的旧格式相同；过期标记为负数，不会与节点个数混淆，旧格式的数据仍可读取
+ */
+public class PathRemindSerializer implements RemindSerializer<Remind> {
+
+    /**
+     * 带过期时间的消息标记，位于节点个数处
+     */
+    static final int EXPIRING_REMIND = -1;
+
+    @Override
+    public Writer<Remind> newWriter(final DataOutput output) {
+        if (output == null) { throw new IllegalArgumentException("output can't be null"); }
+        return new Writer<Remind>() {
+            @Override
+            public void write(Remind remind) throws IOException {
+                writeRemind(remind, output);
+            }
+        };
+    }
+
+    @Override
+    public Reader<Remind> newReader(final DataInput input) {
+        if (input == null) { throw new IllegalArgumentException("input can't be null"); }
+        return new Reader<Remind>() {
+            @Override
+            public Remind read() throws IOException {
+                return readRemind(input);
+            }
+        };
+    }
+
+    private static void writeRemind(Remind remind, DataOutput output) throws IOException {
+        if (remind.expireAt() != Remind.NEVER_EXPIRE) {
+            output.writeInt(EXPIRING_REMIND);
+            output.writeLong(remind.expireAt());
+        }
+
+        List<Node> nodes = remind.path().nodes();
+        output.writeInt(nodes.size());
+        for (Node node : nodes) {
+            output.writeUTF(node.name);
+            output.writeInt(node.args.size());
+            for (Map.Entry<String, String> arg : node.args.entrySet()) {
+                output.writeUTF(arg.getKey());
+                output.writeBoolean(arg.getValue() != null);
+                if (arg.getValue() != null) {
+                    output.writeUTF(arg.getValue());
+                }
+            }
+        }
+    }
+
+    private static Remind readRemind(DataInput input) throws IOException {
+        long expireAt = Remind.NEVER_EXPIRE;
+        int nodeCount = input.readInt();
+        if (nodeCount == EXPIRING_REMIND) {
+            expireAt = input.readLong();
+            if (expireAt <= Remind.NEVER_EXPIRE) {
+                throw new IOException(String.format("illegal expireAt: %d", expireAt));
+            }
+            nodeCount = input.readInt();
+        }
+        if (nodeCount < 0) {
+            throw new IOException(String.format("illegal node count: %d", nodeCount));
+        }
+
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            String name = input.readUTF();
+
+            int argCount = input.readInt();
+            if (argCount < 0) {
+                throw new IOException(String.format("illegal arg count: %d", argCount));
+            }
+
+            Map<String, String> args = null;
+            if (argCount > 0) {
+                args = new HashMap<>(argCount * 4 / 3 + 1);
+                for (int j = 0; j < argCount; j++) {
+                    String key = input.readUTF();
+                    args.put(key, input.readBoolean() ? input.readUTF() : null);
+                }
+            }
+
+            nodes.add(new Node(name, args));
+        }
+
+        return new Remind(NodePath.instance(nodes), expireAt);
+    }
+}
@@ -0,0 +1,154 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 共享树结构中以指定前缀节点开头的子树视图，多个视图以不同的前缀节点共用一颗树
+ * <p>
+ * 所有路径在读写时都会在开头加上前缀节点，各视图的数据互不可见；空路径不会被写入也查询不到数据，与{@link TreeStructure}一致
+ * <p>
+ * {@link #clear()}、{@link #getLongestPathData()}及{@link #getShortestPathData()}只作用于前缀节点下的子树；
+ * 线程安全性与共享树结构相同
+ *
+ * @see ShardedRemindHandlerManager
+ */
+class PrefixedTreeStructure<Node, Data> extends TreeStructure<Node, Data> {
+
+    private final TreeStructure<Node, Data> tree;
+    private final Node prefix;
+
+    /**
+     * @param tree   共享的树结构
+     * @param prefix 前缀节点，需与共享该树结构的其他视图的前缀节点都不相等，且不能为模式节点
+     */
+    PrefixedTreeStructure(TreeStructure<Node, Data> tree, Node prefix) {
+        super(tree == null ? null : tree.matcher);
+        if (tree == null) { throw new IllegalArgumentException("tree can't be null"); }
+        if (prefix == null) { throw new IllegalArgumentException("prefix can't be null"); }
+        if (tree.isPattern(prefix)) { throw new IllegalArgumentException("prefix can't be pattern: " + prefix); }
+
+        this.tree = tree;
+        this.prefix = prefix;
+    }
+
+    @Override
+    void put(Data data, Iterable<Node> path) {
+        putMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void putMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        List<List<Node>> prefixedPaths = prefixed(paths);
+        if (!prefixedPaths.isEmpty()) {
+            tree.putMore(data, prefixedPaths);
+        }
+    }
+
+    @Override
+    void remove(Data data, Iterable<Node> path) {
+        removeMore(data, Collections.singleton(path));
+    }
+
+    @Override
+    void removeMore(Data data, Iterable<? extends Iterable<Node>> paths) {
+        List<List<Node>> prefixedPaths = prefixed(paths);
+        if (!prefixedPaths.isEmpty()) {
+            tree.removeMore(data, prefixedPaths);
+        }
+    }
+
+    @Override
+    void clear() {
+        tree.clearSub(Collections.singletonList(prefix));
+    }
+
+    @Override
+    void clearSub(Iterable<Node> path) {
+        tree.clearSub(prefixedPath(path));
+    }
+
+    @Override
+    Set<Data> getMatchPathData(Iterable<Node> path) {
+        List<List<Node>> prefixedPaths = prefixed(Collections.singleton(path));
+        return prefixedPaths.isEmpty()
+                ? Collections.<Data>emptySet()
+                : tree.getMatchPathData(prefixedPaths.get(0));
+    }
+
+    @Override
+    Set<Data> getPathRangeAllData(Iterable<Node> path) {
+        return getPathsRangeAllData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getPathsRangeAllData(Iterable<? extends Iterable<Node>> paths) {
+        return tree.getPathsRangeAllData(prefixed(paths));
+    }
+
+    @Override
+    Set<Data> getMatchPathSubData(Iterable<Node> path) {
+        return getMatchPathsSubData(Collections.singleton(path));
+    }
+
+    @Override
+    Set<Data> getMatchPathsSubData(Iterable<? extends Iterable<Node>> paths) {
+        return tree.getMatchPathsSubData(prefixed(paths));
+    }
+
+    @Override
+    Set<Data> getLongestPathData() {
+        return tree.getLongestPathData(Collections.singletonList(prefix));
+    }
+
+    @Override
+    Set<Data> getShortestPathData() {
+        return tree.getShortestPathData(Collections.singletonList(prefix));
+    }
+
+    @Override
+    Set<Data> getLongestPathData(Iterable<Node> path) {
+        return tree.getLongestPathData(prefixedPath(path));
+    }
+
+    @Override
+    Set<Data> getShortestPathData(Iterable<Node> path) {
+        return tree.getShortestPathData(prefixedPath(path));
+    }
+
+    /**
+     * 为路径加上前缀节点，空路径即前缀节点本身
+     */
+    private List<Node> prefixedPath(Iterable<Node> path) {
+        List<Node> result = new ArrayList<>();
+        result.add(prefix);
+        for (Node node : path) {
+            result.add(node);
+        }
+        return result;
+    }
+
+    /**
+     * 为非空路径加上前缀节点，空路径被忽略
+     */
+    private List<List<Node>> prefixed(Iterable<? extends Iterable<Node>> paths) {
+        List<List<Node>> result = new ArrayList<>();
+        for (Iterable<Node> path : paths) {
+            Iterator<Node> iterator = path.iterator();
+            if (!iterator.hasNext()) {
+                continue;
+            }
+
+            List<Node> prefixedPath = new ArrayList<>();
+            prefixedPath.add(prefix);
+            while (iterator.hasNext()) {
+                prefixedPath.add(iterator.next());
+            }
+            result.add(prefixedPath);
+        }
+        return result;
+    }
+}
@@ -6,23 +6,64 @@ import ms.imf.redpoint.entity.NodePath;
 
 /**
  * 消息提醒，代表一条消息
+ * <p>
+ * 可以携带过期时间，用于限时活动等场景，过期的消息会被{@link IndexedRemindRepo}自动清理；
+ * 过期时间不参与{@link #equals(Object)}，路径相同的消息依然相等
  */
 public class Remind implements Serializable {
 
+    private static final long serialVersionUID = -1058126251937334732L;
+
+    /**
+     * 永不过期
+     */
+    public static final long NEVER_EXPIRE = 0;
+
     /**
      * 消息节点路径
      */
     private final NodePath path;
+    /**
+     * 过期时间，毫秒时间戳，{@link #NEVER_EXPIRE} == 永不过期
+     */
+    private final long expireAt;
 
     public Remind(NodePath path) {
+        this(path, NEVER_EXPIRE);
+    }
+
+    /**
+     * @param path     消息节点路径
+     * @param expireAt 过期时间，毫秒时间戳({@link System#currentTimeMillis()})，{@link #NEVER_EXPIRE} == 永不过期
+     */
+    public Remind(NodePath path, long expireAt) {
         if (path == null) { throw new IllegalArgumentException("path can't be null"); }
+        if (expireAt < 0) { throw new IllegalArgumentException("expireAt can't be negative"); }
         this.path = path;
+        this.expireAt = expireAt;
     }
 
     public NodePath path() {
         return path;
     }
 
+    /**
+     * @return 过期时间，毫秒时间戳，{@link #NEVER_EXPIRE} == 永不过期
+     */
+    public long expireAt() {
+        return expireAt;
+    }
+
+    /**
+     * 在指定时间是否已过期
+     *
+     * @param now 毫秒时间戳
+     */
+    public boolean isExpired(long now) {
+        return expireAt != NEVER_EXPIRE
+                && expireAt <= now;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -42,6 +83,7 @@ public class Remind implements Serializable {
     public String toString() {
         return "Remind{" +
                 "path=" + path +
+                (expireAt == NEVER_EXPIRE ? "" : ", expireAt=" + expireAt) +
                 '}';
     }
 }
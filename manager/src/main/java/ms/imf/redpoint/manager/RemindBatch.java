@@ -0,0 +1,28 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 对{@link BatchableRemindRepo}的批量操作
+ * <p>
+ * 例如将服务端同步的一批提醒一次性应用到仓库:
+ * <pre>
+ * repo.batch(new RemindBatch&lt;Remind&gt;() {
+ *     &#64;Override
+ *     public void apply(RemindRepo&lt;Remind&gt; repo) {
+ *         repo.removeMatchPathSubReminds(syncRootPaths);
+ *         repo.addReminds(syncedReminds);
+ *     }
+ * });
+ * </pre>
+ *
+ * @param <RemindType> 支持的提醒数据类型
+ * @see BatchableRemindRepo#batch(RemindBatch)
+ */
+public interface RemindBatch<RemindType extends Remind> {
+
+    /**
+     * 执行批量操作，只能在调用线程内同步操作仓库
+     *
+     * @param repo 执行批量操作的仓库
+     */
+    void apply(BatchableRemindRepo<RemindType> repo);
+}
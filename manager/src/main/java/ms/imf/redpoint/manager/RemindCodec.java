@@ -0,0 +1,195 @@
+package ms.imf.redpoint.manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ms.imf.redpoint.entity.NodeDecoder;
+import ms.imf.redpoint.entity.NodeDictionary;
+import ms.imf.redpoint.entity.NodeEncoder;
+
+/**
+ * {@link Remind}紧凑二进制编解码，用于消息在进程间传递及落盘
+ * <p>
+ * 相比Java默认序列化，不写出类描述及集合内部结构，字符串及节点在流中去重，高频字符串可通过共享的{@link NodeDictionary}省去，
+ * 节点编码格式参见{@link NodeEncoder}
+ * <pre>
+ * int magic, byte version, (varint 1 + NodePath | varint 2 + long expireAt + NodePath)..., varint 0
+ * </pre>
+ * 永不过期的消息使用tag 1，与只有路径的旧数据格式相同
+ * 编码与解码均为流式，无需预先知道消息数量，也无需将全部消息读入内存
+ */
+public class RemindCodec {
+
+    /**
+     * 'R' 'M' 'D' 'C'
+     */
+    public static final int MAGIC = 0x524D4443;
+    public static final int VERSION = 1;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_REMIND = 1;
+    private static final int TAG_EXPIRING_REMIND = 2;
+
+    /**
+     * 编码消息集
+     *
+     * @param reminds      消息集
+     * @param outputStream 写出目标，写出完毕后不会被关闭
+     * @param dictionary   共享字典，解码时需使用内容相同的字典
+     * @throws IOException 写出失败
+     */
+    public static void encode(Iterable<? extends Remind> reminds, OutputStream outputStream, NodeDictionary dictionary) throws IOException {
+        if (reminds == null) { throw new IllegalArgumentException("reminds can't be null"); }
+
+        Writer writer = new Writer(outputStream, dictionary);
+        for (Remind remind : reminds) {
+            writer.write(remind);
+        }
+        writer.finish();
+    }
+
+    /**
+     * 解码消息集
+     *
+     * @param inputStream 读取来源，读取完毕后不会被关闭
+     * @param dictionary  共享字典，需与编码时使用的字典内容相同
+     * @return 消息集
+     * @throws IOException 读取失败或数据格式错误
+     */
+    public static List<Remind> decode(InputStream inputStream, NodeDictionary dictionary) throws IOException {
+        Reader reader = new Reader(inputStream, dictionary);
+        List<Remind> result = new ArrayList<>();
+        Remind remind;
+        while ((remind = reader.read()) != null) {
+            result.add(remind);
+        }
+        return result;
+    }
+
+    /**
+     * 流式消息编码器，逐条写出消息，写出完毕后需调用{@link #finish()}；非线程安全
+     */
+    public static class Writer {
+
+        private final DataOutputStream output;
+        private final NodeEncoder encoder;
+        private boolean finished;
+
+        /**
+         * @param outputStream 写出目标，写出时带缓冲，{@link #finish()}时刷新，不会被关闭
+         * @param dictionary   共享字典，解码时需使用内容相同的字典
+         * @throws IOException 写出失败
+         */
+        public Writer(OutputStream outputStream, NodeDictionary dictionary) throws IOException {
+            if (outputStream == null) { throw new IllegalArgumentException("outputStream can't be null"); }
+            if (dictionary == null) { throw new IllegalArgumentException("dictionary can't be null"); }
+
+            this.output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            this.encoder = new NodeEncoder(output, dictionary);
+
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+        }
+
+        /**
+         * 写出消息
+         *
+         * @param remind 消息
+         * @throws IOException 写出失败
+         */
+        public void write(Remind remind) throws IOException {
+            if (remind == null) { throw new IllegalArgumentException("remind can't be null"); }
+            if (finished) { throw new IllegalStateException("writer has been finished"); }
+
+            if (remind.expireAt() == Remind.NEVER_EXPIRE) {
+                encoder.writeVarInt(TAG_REMIND);
+            } else {
+                encoder.writeVarInt(TAG_EXPIRING_REMIND);
+                output.writeLong(remind.expireAt());
+            }
+            encoder.writeNodePath(remind.path());
+        }
+
+        /**
+         * 写出结束标记并刷新
+         *
+         * @throws IOException 写出失败
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            encoder.writeVarInt(TAG_END);
+            output.flush();
+        }
+    }
+
+    /**
+     * 流式消息解码器，逐条读取消息；非线程安全
+     */
+    public static class Reader {
+
+        private final DataInputStream input;
+        private final NodeDecoder decoder;
+        private boolean finished;
+
+        /**
+         * @param inputStream 读取来源，读取时带缓冲，可能读取超出结束标记的内容，不会被关闭
+         * @param dictionary  共享字典，需与编码时使用的字典内容相同
+         * @throws IOException 读取失败或数据格式错误
+         */
+        public Reader(InputStream inputStream, NodeDictionary dictionary) throws IOException {
+            if (inputStream == null) { throw new IllegalArgumentException("inputStream can't be null"); }
+            if (dictionary == null) { throw new IllegalArgumentException("dictionary can't be null"); }
+
+            this.input = new DataInputStream(new BufferedInputStream(inputStream));
+            this.decoder = new NodeDecoder(input, dictionary);
+
+            int magic = input.readInt();
+            if (magic != MAGIC) {
+                throw new IOException(String.format("illegal magic 0x%08x, expected 0x%08x", magic, MAGIC));
+            }
+            int version = input.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException(String.format("unsupported version %d, expected %d", version, VERSION));
+            }
+        }
+
+        /**
+         * 读取下一条消息
+         *
+         * @return 消息，null == 已读取到结束标记
+         * @throws IOException 读取失败或数据格式错误
+         */
+        public Remind read() throws IOException {
+            if (finished) {
+                return null;
+            }
+
+            int tag = decoder.readVarInt();
+            switch (tag) {
+                case TAG_REMIND:
+                    return new Remind(decoder.readNodePath());
+                case TAG_EXPIRING_REMIND:
+                    long expireAt = input.readLong();
+                    if (expireAt < 0) {
+                        throw new IOException(String.format("illegal expireAt: %d", expireAt));
+                    }
+                    return new Remind(decoder.readNodePath(), expireAt);
+                case TAG_END:
+                    finished = true;
+                    return null;
+                default:
+                    throw new IOException(String.format("unknown tag: %d", tag));
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ms.imf.redpoint.manager;
+
+import java.util.Collection;
+
+/**
+ * 只关心消息数量的提醒消息处理器，例如红点、数字角标
+ * <p>
+ * 在消息仓库为{@link CountableRemindRepo}时，{@link TreeModeRemindHandlerManager}会直接通过仓库的计数索引刷新数量，
+ * 不会查询和生成消息列表；其他情况下以{@link #showReminds(Collection)}收到的消息数量刷新
+ *
+ * @param <RemindType> 支持的消息数据类型
+ */
+public abstract class RemindCountHandler<RemindType extends Remind> extends RemindHandler<RemindType> {
+
+    /**
+     * @see RemindHandler#RemindHandler(RemindHandlerManager)
+     */
+    protected RemindCountHandler(RemindHandlerManager<RemindType> remindHandleManager) {
+        super(remindHandleManager);
+    }
+
+    @Override
+    public final void showReminds(Collection<? extends RemindType> reminds) {
+        showRemindCount(reminds.size());
+    }
+
+    /**
+     * 展示消息数量
+     *
+     * @param count 支持的节点路径及其子路径下的消息数量
+     */
+    public abstract void showRemindCount(int count);
+}
@@ -0,0 +1,151 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 消息数据的增量变更
+ * <p>
+ * 同一条消息(按{@link Remind#equals(Object)})在一次变更中只会出现在其中一个集合内；
+ * 不可变，构造时复制传入的集合，之后对其的修改不会影响本变更
+ * <p>
+ * 仓库可为变更附带提交序号({@link #firstSequence()}~{@link #lastSequence()})，序号在提交变更的写锁内分配，
+ * 监听器在锁外回调时多个线程的变更可能乱序到达，接收方可据此判断变更是否按提交顺序连续到达
+ *
+ * @param <RemindType> 支持的消息类型
+ * @see RemindDeltaListener
+ */
+public class RemindDelta<RemindType extends Remind> {
+
+    /**
+     * 没有提交序号
+     */
+    public static final long NO_SEQUENCE = 0;
+
+    private final Collection<RemindType> added;
+    private final Collection<RemindType> removed;
+    private final Collection<RemindType> updated;
+    private final long firstSequence;
+    private final long lastSequence;
+
+    /**
+     * 没有提交序号的变更
+     *
+     * @param added   新增的消息
+     * @param removed 被移除的消息
+     * @param updated 被替换为新实例的消息，为替换后的实例
+     */
+    public RemindDelta(Collection<? extends RemindType> added, Collection<? extends RemindType> removed, Collection<? extends RemindType> updated) {
+        this(added, removed, updated, NO_SEQUENCE, NO_SEQUENCE);
+    }
+
+    /**
+     * 一次提交的变更
+     *
+     * @param sequence 提交序号，{@link #NO_SEQUENCE} == 没有序号
+     * @see #RemindDelta(Collection, Collection, Collection)
+     */
+    public RemindDelta(Collection<? extends RemindType> added, Collection<? extends RemindType> removed, Collection<? extends RemindType> updated, long sequence) {
+        this(added, removed, updated, sequence, sequence);
+    }
+
+    /**
+     * 连续多次提交合并而成的变更
+     *
+     * @param firstSequence 第一次提交的序号，{@link #NO_SEQUENCE} == 没有序号
+     * @param lastSequence  最后一次提交的序号，没有序号时需同为{@link #NO_SEQUENCE}
+     * @see #RemindDelta(Collection, Collection, Collection)
+     */
+    public RemindDelta(Collection<? extends RemindType> added, Collection<? extends RemindType> removed, Collection<? extends RemindType> updated, long firstSequence, long lastSequence) {
+        if (added == null) { throw new IllegalArgumentException("added can't be null"); }
+        if (removed == null) { throw new IllegalArgumentException("removed can't be null"); }
+        if (updated == null) { throw new IllegalArgumentException("updated can't be null"); }
+        if ((firstSequence == NO_SEQUENCE) != (lastSequence == NO_SEQUENCE)
+                || firstSequence > lastSequence) {
+            throw new IllegalArgumentException(String.format("illegal sequence range: %d~%d", firstSequence, lastSequence));
+        }
+
+        this.added = copyOf(added);
+        this.removed = copyOf(removed);
+        this.updated = copyOf(updated);
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+    }
+
+    private static <T> Collection<T> copyOf(Collection<? extends T> reminds) {
+        return reminds.isEmpty()
+                ? Collections.<T>emptyList()
+                : Collections.unmodifiableList(new ArrayList<T>(reminds));
+    }
+
+    /**
+     * 新增的消息
+     */
+    public Collection<RemindType> added() {
+        return added;
+    }
+
+    /**
+     * 被移除的消息
+     */
+    public Collection<RemindType> removed() {
+        return removed;
+    }
+
+    /**
+     * 被替换为新实例的消息，为替换后的实例
+     */
+    public Collection<RemindType> updated() {
+        return updated;
+    }
+
+    /**
+     * 第一次提交的序号
+     *
+     * @return 序号，{@link #NO_SEQUENCE} == 没有序号
+     */
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * 最后一次提交的序号，单次提交的变更与{@link #firstSequence()}相同
+     *
+     * @return 序号，{@link #NO_SEQUENCE} == 没有序号
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * 是否没有任何变更
+     */
+    public boolean isEmpty() {
+        return added.isEmpty()
+                && removed.isEmpty()
+                && updated.isEmpty();
+    }
+
+    /**
+     * 所有变更的消息，依次为新增、替换、移除的消息
+     */
+    public List<RemindType> changedReminds() {
+        List<RemindType> result = new ArrayList<>(added.size() + updated.size() + removed.size());
+        result.addAll(added);
+        result.addAll(updated);
+        result.addAll(removed);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RemindDelta{" +
+                "added=" + added +
+                ", removed=" + removed +
+                ", updated=" + updated +
+                ", sequence=" + firstSequence + "~" + lastSequence +
+                '}';
+    }
+}
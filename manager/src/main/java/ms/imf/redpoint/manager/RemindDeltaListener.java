@@ -0,0 +1,20 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 支持增量变更的提醒数据变更监听器
+ * <p>
+ * 能够区分新增/移除/替换的消息仓库在监听器为此类型时只回调{@link #onRemindDataChanged(RemindDelta)}，
+ * 不能区分的仓库依然回调{@link #onRemindDataChanged(Iterable)}
+ *
+ * @param <RemindType> 支持的提醒数据类型
+ * @see AbstractRemindRepo#dispatchRemindDelta(RemindDelta)
+ */
+public interface RemindDeltaListener<RemindType extends Remind> extends RemindDataChangedListener<RemindType> {
+
+    /**
+     * 当消息数据发生增量变更时
+     *
+     * @param delta 增量变更，不为空
+     */
+    void onRemindDataChanged(RemindDelta<RemindType> delta);
+}
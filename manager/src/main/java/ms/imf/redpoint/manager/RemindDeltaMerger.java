@@ -0,0 +1,108 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将一系列增量变更合并为一次净变更
+ * <p>
+ * 例如先新增后移除的消息不会出现在合并结果中，先移除后以不同实例添加回来的消息视为替换；
+ * 合并的变更都带有提交序号时，合并结果的序号范围覆盖所有合并的变更，否则没有序号
+ *
+ * @param <RemindType> 支持的消息类型
+ */
+final class RemindDeltaMerger<RemindType extends Remind> {
+
+    /**
+     * 变更前不存在/变更后已移除
+     */
+    private static final Object ABSENT = new Object();
+    /**
+     * 变更前存在，但只知道其实例与替换后的实例不同
+     */
+    private static final Object REPLACED = new Object();
+
+    private static final class Change {
+        final Object before;
+        Object after;
+        /**
+         * 最后一次出现的消息实例
+         */
+        Object last;
+
+        Change(Object before) {
+            this.before = before;
+        }
+    }
+
+    private final Map<RemindType, Change> changes = new LinkedHashMap<>();
+    private long firstSequence = RemindDelta.NO_SEQUENCE;
+    private long lastSequence = RemindDelta.NO_SEQUENCE;
+    /**
+     * 是否合并过没有序号的变更
+     */
+    private boolean unsequenced;
+
+    /**
+     * 合并一次增量变更，需按变更发生的顺序合并
+     */
+    void merge(RemindDelta<RemindType> delta) {
+        if (delta.firstSequence() == RemindDelta.NO_SEQUENCE) {
+            unsequenced = true;
+        } else {
+            if (firstSequence == RemindDelta.NO_SEQUENCE
+                    || delta.firstSequence() < firstSequence) {
+                firstSequence = delta.firstSequence();
+            }
+            lastSequence = Math.max(lastSequence, delta.lastSequence());
+        }
+
+        for (RemindType remind : delta.added()) {
+            change(remind, ABSENT, remind);
+        }
+        for (RemindType remind : delta.updated()) {
+            change(remind, REPLACED, remind);
+        }
+        for (RemindType remind : delta.removed()) {
+            change(remind, remind, ABSENT);
+        }
+    }
+
+    private void change(RemindType remind, Object before, Object after) {
+        Change change = changes.get(remind);
+        if (change == null) {
+            change = new Change(before);
+            changes.put(remind, change);
+        }
+        change.after = after;
+        change.last = remind;
+    }
+
+    /**
+     * @return 合并后的净变更
+     */
+    @SuppressWarnings("unchecked")
+    RemindDelta<RemindType> toDelta() {
+        List<RemindType> added = new ArrayList<>();
+        List<RemindType> removed = new ArrayList<>();
+        List<RemindType> updated = new ArrayList<>();
+
+        for (Change change : changes.values()) {
+            if (change.before == ABSENT) {
+                if (change.after != ABSENT) {
+                    added.add((RemindType) change.after);
+                }
+            } else if (change.after == ABSENT) {
+                removed.add((RemindType) change.last);
+            } else if (change.before != change.after) {
+                updated.add((RemindType) change.after);
+            }
+        }
+
+        return unsequenced
+                ? new RemindDelta<>(added, removed, updated)
+                : new RemindDelta<>(added, removed, updated, firstSequence, lastSequence);
+    }
+}
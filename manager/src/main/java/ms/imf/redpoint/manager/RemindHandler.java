@@ -18,7 +18,11 @@ import ms.imf.redpoint.entity.NodePath;
 public abstract class RemindHandler<RemindType extends Remind> {
 
     private final RemindHandlerManager<RemindType> remindHandleManager;
-    private final Set<NodePath> paths = new HashSet<>();
+    /**
+     * 支持的节点路径的不可变快照，修改时整体替换，其他线程(如管理器)无需加锁即可读取
+     */
+    private volatile Set<NodePath> paths = Collections.emptySet();
+    private final Object pathsLocker = new Object();
 
     /**
      * 由于RemindHandler在程序中为高频使用的类，所以本构造的{@link RemindHandlerManager}参数的指定会挺麻烦
@@ -85,8 +89,16 @@ public abstract class RemindHandler<RemindType extends Remind> {
      * @param paths 节点路径
      */
     public void setPath(List<NodePath> paths) {
-        this.paths.clear();
-        addPath(paths);
+        if (paths == null) { throw new IllegalArgumentException("paths can't be null"); }
+        checkPaths(paths);
+
+        synchronized (pathsLocker) {
+            this.paths = Collections.unmodifiableSet(new HashSet<>(paths));
+        }
+
+        if (isAttachedManager()) {
+            remindHandleManager.notifyRemindHandlerChanged(this);
+        }
     }
 
     /**
@@ -118,12 +130,13 @@ public abstract class RemindHandler<RemindType extends Remind> {
             return;
         }
 
-        int nullIndex = paths.indexOf(null);
-        if (nullIndex >= 0) {
-            throw new IllegalArgumentException("paths can't contain null value '" + nullIndex +  "'");
-        }
+        checkPaths(paths);
 
-        this.paths.addAll(paths);
+        synchronized (pathsLocker) {
+            Set<NodePath> newPaths = new HashSet<>(this.paths);
+            newPaths.addAll(paths);
+            this.paths = Collections.unmodifiableSet(newPaths);
+        }
 
         if (isAttachedManager()) {
             remindHandleManager.notifyRemindHandlerChanged(this);
@@ -143,7 +156,9 @@ public abstract class RemindHandler<RemindType extends Remind> {
      * 清空支持的节点路径
      */
     public void clearPath() {
-        this.paths.clear();
+        synchronized (pathsLocker) {
+            this.paths = Collections.emptySet();
+        }
         if (isAttachedManager()) {
             remindHandleManager.notifyRemindHandlerChanged(this);
         }
@@ -151,12 +166,19 @@ public abstract class RemindHandler<RemindType extends Remind> {
 
     /**
      * 获取支持的节点路径
-     * @return 支持的节点路径
+     * @return 支持的节点路径的不可变快照，之后对路径的修改不会反映到已返回的集合上
      */
     public Set<NodePath> getPaths() {
         return paths;
     }
 
+    private static void checkPaths(List<NodePath> paths) {
+        int nullIndex = paths.indexOf(null);
+        if (nullIndex >= 0) {
+            throw new IllegalArgumentException("paths can't contain null value '" + nullIndex +  "'");
+        }
+    }
+
     /**
      * 展示消息
      *
@@ -164,6 +186,19 @@ public abstract class RemindHandler<RemindType extends Remind> {
      */
     public abstract void showReminds(Collection<? extends RemindType> reminds);
 
+    /**
+     * 以增量的方式展示消息
+     * <p>
+     * 管理器能够得知消息的增量变更时回调此方法(参见{@link RemindHandlerManager#notifyRemindDelta(RemindDelta)})，
+     * 需要局部刷新的handler可重写此方法只处理变更部分，默认以变更后的全部消息调用{@link #showReminds(Collection)}
+     *
+     * @param delta   支持的节点路径及其子路径下的消息增量变更
+     * @param reminds 变更后支持的节点路径及其子路径下的全部消息
+     */
+    public void showRemindDelta(RemindDelta<RemindType> delta, Collection<? extends RemindType> reminds) {
+        showReminds(reminds);
+    }
+
     /**
      * 当消息处理器被触发，触发范围为支持的节点路径
      */
@@ -1,5 +1,14 @@
 package ms.imf.redpoint.manager;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ms.imf.redpoint.entity.NodePath;
+
 /**
  * RemindHandler管理器
  * <p>
@@ -13,11 +22,15 @@ package ms.imf.redpoint.manager;
 public abstract class RemindHandlerManager<RemindType extends Remind> {
 
     private final RemindRepo<RemindType> mRemindRepo;
+    /**
+     * 未取消的订阅，订阅内部的handler通常只被订阅者间接持有，由管理器强引用以免在弱引用模式下被回收
+     */
+    private final Set<RemindSubscription> activeSubscriptions = Collections.newSetFromMap(new ConcurrentHashMap<RemindSubscription, Boolean>());
 
     public RemindHandlerManager(RemindRepo<RemindType> repo) {
         if (repo == null) { throw new IllegalArgumentException("repo can't be null"); }
         mRemindRepo = repo;
-        repo.setRemindDataChangedListener(new RemindDataChangedListener<RemindType>() {
+        repo.setRemindDataChangedListener(new RemindDeltaListener<RemindType>() {
             @Override
             public void onRemindDataChanged() {
                 notifyRemindDataChanged();
@@ -27,6 +40,11 @@ public abstract class RemindHandlerManager<RemindType extends Remind> {
             public void onRemindDataChanged(Iterable<RemindType> changedReminds) {
                 RemindHandlerManager.this.notifyRemindDataChanged(changedReminds);
             }
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<RemindType> delta) {
+                notifyRemindDelta(delta);
+            }
         });
     }
 
@@ -34,6 +52,67 @@ public abstract class RemindHandlerManager<RemindType extends Remind> {
         return mRemindRepo;
     }
 
+    /**
+     * 获取匹配指定节点路径及其子路径的消息数量
+     * <p>
+     * 消息仓库为{@link CountableRemindRepo}时直接使用其计数索引，否则以查询到的消息列表数量为准
+     *
+     * @param nodePath 节点路径
+     * @return 消息数量
+     */
+    @SuppressWarnings("unchecked")
+    public int getMatchPathSubRemindCount(NodePath nodePath) {
+        if (nodePath == null) { throw new IllegalArgumentException("nodePath can't be null"); }
+
+        if (mRemindRepo instanceof CountableRemindRepo) {
+            return ((CountableRemindRepo<RemindType>) mRemindRepo).getMatchPathSubRemindCount(nodePath);
+        }
+
+        Collection<? extends RemindType> reminds = mRemindRepo.getMatchPathSubReminds(Collections.singleton(nodePath)).get(nodePath);
+        return reminds == null ? 0 : reminds.size();
+    }
+
+    /**
+     * 以发布者的方式观察节点路径及其子路径下的消息
+     *
+     * @param paths 节点路径
+     * @return 消息发布者
+     * @see #observe(List)
+     */
+    public RemindPublisher<RemindType> observe(NodePath... paths) {
+        if (paths == null) { throw new IllegalArgumentException("paths can't be null"); }
+        return observe(Arrays.asList(paths));
+    }
+
+    /**
+     * 以发布者的方式观察节点路径及其子路径下的消息
+     * <p>
+     * 每次订阅都会附加一个内部的{@link RemindHandler}，取消订阅时解除，与直接使用handler的分发开销相同；
+     * 发布遵循订阅者的请求数量，请求不足期间的变化只保留最新的消息，与上次发布相同的消息不会重复发布
+     * <p>
+     * 订阅在取消前由管理器强引用，即使管理器只弱引用handler，未取消的订阅也不会被回收，所以订阅者不再需要时必须取消订阅
+     *
+     * @param paths 节点路径
+     * @return 消息发布者
+     */
+    public RemindPublisher<RemindType> observe(List<NodePath> paths) {
+        return new PathRemindPublisher<>(this, paths);
+    }
+
+    /**
+     * 强引用未取消的订阅
+     */
+    void retainSubscription(RemindSubscription subscription) {
+        activeSubscriptions.add(subscription);
+    }
+
+    /**
+     * 释放已取消的订阅
+     */
+    void releaseSubscription(RemindSubscription subscription) {
+        activeSubscriptions.remove(subscription);
+    }
+
     /**
      * 添加管理的{@link RemindHandler}
      *
@@ -87,4 +166,19 @@ public abstract class RemindHandlerManager<RemindType extends Remind> {
      * @param changedReminds 发生变更的提醒数据
      */
     public abstract void notifyRemindDataChanged(Iterable<? extends RemindType> changedReminds);
+
+    /**
+     * 当提醒数据发生增量变更
+     * <p>
+     * 默认以{@link RemindDelta#changedReminds()}调用{@link #notifyRemindDataChanged(Iterable)}，
+     * 能够据增量局部刷新的管理器可重写此方法
+     *
+     * @param delta 增量变更
+     */
+    public void notifyRemindDelta(RemindDelta<RemindType> delta) {
+        if (delta == null) { throw new IllegalArgumentException("delta can't be null"); }
+        if (delta.isEmpty()) { return; }
+
+        notifyRemindDataChanged(delta.changedReminds());
+    }
 }
@@ -0,0 +1,24 @@
+package ms.imf.redpoint.manager;
+
+import ms.imf.redpoint.entity.NodePath;
+
+/**
+ * 消息发布者，订阅后持续发布指定节点路径及其子路径下的消息
+ * <p>
+ * 与Reactive Streams的Publisher语义一致，可以直接适配到RxJava、Reactor等响应式框架
+ *
+ * @param <RemindType> 支持的消息类型
+ * @see RemindHandlerManager#observe(NodePath...)
+ */
+public interface RemindPublisher<RemindType extends Remind> {
+
+    /**
+     * 订阅消息
+     * <p>
+     * 每次订阅都是独立的，订阅者会先收到{@link RemindSubscriber#onSubscribe(RemindSubscription)}，
+     * 之后按请求数量收到消息
+     *
+     * @param subscriber 订阅者
+     */
+    void subscribe(RemindSubscriber<? super RemindType> subscriber);
+}
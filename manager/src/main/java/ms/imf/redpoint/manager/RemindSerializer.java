@@ -0,0 +1,64 @@
+package ms.imf.redpoint.manager;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 消息序列化器，用于消息的持久化
+ * <p>
+ * 序列化的状态(如字符串表)只存在于调用方为每个流创建的{@link Writer}/{@link Reader}中，序列化器本身无状态，可在多线程间共享
+ *
+ * @param <RemindType> 支持的消息类型
+ * @see FileRemindRepo
+ */
+public interface RemindSerializer<RemindType extends Remind> {
+
+    /**
+     * 创建写出器，同一个写出器写出的消息需由同一个{@link Reader}按相同顺序全部读取
+     *
+     * @param output 写出目标
+     * @return 写出器
+     */
+    Writer<RemindType> newWriter(DataOutput output);
+
+    /**
+     * 创建读取器，需与{@link #newWriter(DataOutput)}对应
+     *
+     * @param input 读取来源
+     * @return 读取器
+     */
+    Reader<RemindType> newReader(DataInput input);
+
+    /**
+     * 消息写出器；非线程安全
+     *
+     * @param <RemindType> 支持的消息类型
+     */
+    interface Writer<RemindType extends Remind> {
+
+        /**
+         * 写出消息
+         *
+         * @param remind 要写出的消息
+         * @throws IOException 写出失败
+         */
+        void write(RemindType remind) throws IOException;
+    }
+
+    /**
+     * 消息读取器；非线程安全
+     *
+     * @param <RemindType> 支持的消息类型
+     */
+    interface Reader<RemindType extends Remind> {
+
+        /**
+         * 读取消息
+         *
+         * @return 读取到的消息
+         * @throws IOException 读取失败或数据格式错误
+         */
+        RemindType read() throws IOException;
+    }
+}
@@ -0,0 +1,44 @@
+package ms.imf.redpoint.manager;
+
+import java.util.Collection;
+
+/**
+ * 消息订阅者
+ * <p>
+ * 与Reactive Streams的Subscriber语义一致，同一订阅者的回调不会并发执行
+ *
+ * @param <RemindType> 支持的消息类型
+ * @see RemindPublisher
+ */
+public interface RemindSubscriber<RemindType extends Remind> {
+
+    /**
+     * 订阅成功，之后需通过{@link RemindSubscription#request(long)}请求消息才会收到{@link #onNext(Collection)}
+     *
+     * @param subscription 订阅
+     */
+    void onSubscribe(RemindSubscription subscription);
+
+    /**
+     * 订阅路径及其子路径下的消息发生变化
+     * <p>
+     * 只发布最新的消息，请求不足期间的变化会被合并；与上次发布的消息相同时不会发布
+     *
+     * @param reminds 订阅路径及其子路径下的全部消息
+     */
+    void onNext(Collection<? extends RemindType> reminds);
+
+    /**
+     * 订阅因错误终止，例如请求数量不合法
+     *
+     * @param throwable 错误
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * 订阅正常结束
+     * <p>
+     * 消息订阅不会主动结束，预留以保持与Reactive Streams一致
+     */
+    void onComplete();
+}
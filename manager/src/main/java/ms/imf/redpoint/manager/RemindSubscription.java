@@ -0,0 +1,23 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 消息订阅
+ * <p>
+ * 与Reactive Streams的Subscription语义一致，可以在任意线程调用
+ *
+ * @see RemindSubscriber#onSubscribe(RemindSubscription)
+ */
+public interface RemindSubscription {
+
+    /**
+     * 请求消息
+     *
+     * @param n 请求的数量，需大于0，{@link Long#MAX_VALUE} == 不限
+     */
+    void request(long n);
+
+    /**
+     * 取消订阅，取消后不会再收到任何回调
+     */
+    void cancel();
+}
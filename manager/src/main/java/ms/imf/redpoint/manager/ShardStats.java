@@ -0,0 +1,45 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 单个分片的统计信息快照
+ *
+ * @see ShardedRemindHandlerManager#shardStats(int)
+ */
+public class ShardStats {
+
+    /**
+     * 分片序号
+     */
+    public final int shard;
+    /**
+     * 分片内的租户数量
+     */
+    public final int tenantCount;
+    /**
+     * 分片内所有租户已附加且未被回收的handler总数
+     */
+    public final int handlerCount;
+    /**
+     * 分片内所有租户的通知分发统计之和，最大延迟取各租户中的最大值；已移除租户的统计不再计入
+     */
+    public final DispatchStats dispatchStats;
+
+    public ShardStats(int shard, int tenantCount, int handlerCount, DispatchStats dispatchStats) {
+        if (dispatchStats == null) { throw new IllegalArgumentException("dispatchStats can't be null"); }
+
+        this.shard = shard;
+        this.tenantCount = tenantCount;
+        this.handlerCount = handlerCount;
+        this.dispatchStats = dispatchStats;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardStats{" +
+                "shard=" + shard +
+                ", tenantCount=" + tenantCount +
+                ", handlerCount=" + handlerCount +
+                ", dispatchStats=" + dispatchStats +
+                '}';
+    }
+}
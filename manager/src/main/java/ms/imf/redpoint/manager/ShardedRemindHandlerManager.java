@@ -0,0 +1,355 @@
+package ms.imf.redpoint.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeInterner;
+
+/**
+ * 按租户(如用户ID)分片管理多个{@link TreeModeRemindHandlerManager}，用于服务端在一个进程内同时维护大量用户的提醒状态
+ * <p>
+ * 每个租户拥有独立的消息仓库及管理器，租户按ID的哈希值分布到固定数量的分片上，
+ * 每个分片以自己的读写锁保护其租户表，不同分片的租户创建、查找、移除互不阻塞
+ * <p>
+ * 同一分片的租户共用一颗handler节点树，每个租户的支持路径挂在该租户独有的前缀节点下，租户之间互不可见；
+ * 节点树为无锁的写时复制树，附加/解除时需复制根节点下的租户表，分片越多每颗树的租户越少，写入开销越小
+ * <p>
+ * 所有租户管理器共享：
+ * <pre>
+ *  节点规范化: 相等的支持路径节点在所有租户的节点树中只有一个实例，参见{@link TreeModeRemindHandlerManager#setNodeInterner(NodeInterner)}
+ *  分发线程池: 所有租户的查询及展示都提交到同一组executor，参见{@link TreeModeRemindHandlerManager#setAsyncExecutors(Executor, Executor)}
+ *  查找线程池: 参见{@link TreeModeRemindHandlerManager#setLookupPool(ForkJoinPool)}
+ * </pre>
+ * 各分片的租户数量、handler数量及分发统计可通过{@link #shardStats(int)}获取
+ *
+ * @param <RemindType> 支持的消息类型
+ */
+public class ShardedRemindHandlerManager<RemindType extends Remind> {
+
+    /**
+     * 租户消息仓库工厂
+     *
+     * @param <RemindType> 支持的消息类型
+     */
+    public interface RepoFactory<RemindType extends Remind> {
+        /**
+         * 为租户创建消息仓库，在租户首次被获取时于分片写锁内调用
+         *
+         * @param tenantId 租户ID
+         * @return 该租户独占的消息仓库，不可为null
+         */
+        RemindRepo<RemindType> createRepo(String tenantId);
+    }
+
+    private static final class Shard<RemindType extends Remind> {
+        final ReadWriteLock locker = new ReentrantReadWriteLock();
+        final Map<String, TreeModeRemindHandlerManager<RemindType>> managers = new HashMap<>();
+        /**
+         * 分片内所有租户共用的handler节点树
+         */
+        final TreeModeRemindHandlerManager.SharedHandlerTree<RemindType> handlerTree = new TreeModeRemindHandlerManager.SharedHandlerTree<>();
+    }
+
+    private final Shard<RemindType>[] shards;
+    /**
+     * 租户管理器在共用节点树中的前缀序号，被移除租户的前缀不会被之后创建的管理器复用
+     */
+    private final AtomicLong treePrefixSequence = new AtomicLong();
+    private final RepoFactory<RemindType> repoFactory;
+    private final NodeInterner nodeInterner;
+    private final Executor queryExecutor;
+    private final Executor deliveryExecutor;
+    private volatile ForkJoinPool lookupPool;
+
+    /**
+     * 同步分发模式，查询及展示在触发通知的线程执行
+     *
+     * @see #ShardedRemindHandlerManager(int, RepoFactory, Executor, Executor)
+     */
+    public ShardedRemindHandlerManager(int shardCount, RepoFactory<RemindType> repoFactory) {
+        this(shardCount, repoFactory, null, null);
+    }
+
+    /**
+     * @param shardCount       分片数量
+     * @param repoFactory      租户消息仓库工厂
+     * @param queryExecutor    所有租户共享的查询executor，null == 同步模式
+     * @param deliveryExecutor 所有租户共享的展示executor，null == 同步模式
+     */
+    public ShardedRemindHandlerManager(int shardCount, RepoFactory<RemindType> repoFactory, Executor queryExecutor, Executor deliveryExecutor) {
+        if (shardCount <= 0) { throw new IllegalArgumentException("shardCount must be positive: " + shardCount); }
+        if (repoFactory == null) { throw new IllegalArgumentException("repoFactory can't be null"); }
+        if ((queryExecutor == null) != (deliveryExecutor == null)) {
+            throw new IllegalArgumentException("queryExecutor and deliveryExecutor must be both null or both not null");
+        }
+
+        this.shards = newShards(shardCount);
+        this.repoFactory = repoFactory;
+        this.nodeInterner = new NodeInterner();
+        this.queryExecutor = queryExecutor;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * 获取租户的管理器，不存在时创建
+     *
+     * @param tenantId 租户ID
+     * @return 租户的管理器
+     */
+    public TreeModeRemindHandlerManager<RemindType> manager(String tenantId) {
+        if (tenantId == null) { throw new IllegalArgumentException("tenantId can't be null"); }
+
+        Shard<RemindType> shard = shards[shardIndex(tenantId)];
+
+        TreeModeRemindHandlerManager<RemindType> manager = existingManager(shard, tenantId);
+        if (manager != null) {
+            return manager;
+        }
+
+        Lock lock = shard.locker.writeLock();
+        lock.lock();
+        try {
+            manager = shard.managers.get(tenantId);
+            if (manager == null) {
+                manager = createManager(tenantId);
+                shard.managers.put(tenantId, manager);
+            }
+            return manager;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取已存在的租户管理器
+     *
+     * @param tenantId 租户ID
+     * @return 租户的管理器，null == 租户不存在
+     */
+    public TreeModeRemindHandlerManager<RemindType> existingManager(String tenantId) {
+        if (tenantId == null) { throw new IllegalArgumentException("tenantId can't be null"); }
+
+        return existingManager(shards[shardIndex(tenantId)], tenantId);
+    }
+
+    /**
+     * 移除租户
+     * <p>
+     * 被移除的管理器不再受本对象管理，其已附加的handler会被全部解除以释放其在分片共用节点树中占用的节点，
+     * 消息仓库由调用方自行处理；之后再次获取该租户时会创建新的管理器及消息仓库，与被移除的管理器互不影响
+     *
+     * @param tenantId 租户ID
+     * @return 被移除的管理器，null == 租户不存在
+     */
+    public TreeModeRemindHandlerManager<RemindType> removeTenant(String tenantId) {
+        if (tenantId == null) { throw new IllegalArgumentException("tenantId can't be null"); }
+
+        Shard<RemindType> shard = shards[shardIndex(tenantId)];
+        TreeModeRemindHandlerManager<RemindType> manager;
+        Lock lock = shard.locker.writeLock();
+        lock.lock();
+        try {
+            manager = shard.managers.remove(tenantId);
+        } finally {
+            lock.unlock();
+        }
+
+        // 在分片锁外解除，不阻塞同一分片其他租户的获取
+        if (manager != null) {
+            manager.detachAllRemindHandlers();
+        }
+        return manager;
+    }
+
+    /**
+     * 设置所有租户共享的并行查找线程池，对已存在及之后创建的租户都生效
+     *
+     * @param lookupPool 线程池，null == 顺序查找(默认)
+     * @see TreeModeRemindHandlerManager#setLookupPool(ForkJoinPool)
+     */
+    public void setLookupPool(ForkJoinPool lookupPool) {
+        this.lookupPool = lookupPool;
+        for (Shard<RemindType> shard : shards) {
+            for (TreeModeRemindHandlerManager<RemindType> manager : managers(shard)) {
+                manager.setLookupPool(lookupPool);
+            }
+        }
+    }
+
+    /**
+     * 获取分片数量
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 获取租户所在的分片序号
+     *
+     * @param tenantId 租户ID
+     * @return 分片序号
+     */
+    public int shardIndex(String tenantId) {
+        if (tenantId == null) { throw new IllegalArgumentException("tenantId can't be null"); }
+
+        // 打散哈希值的高位，避免ID哈希值低位规律性过强时分布不均
+        int hash = tenantId.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & 0x7fffffff) % shards.length;
+    }
+
+    /**
+     * 获取租户总数
+     */
+    public int tenantCount() {
+        int result = 0;
+        for (Shard<RemindType> shard : shards) {
+            Lock lock = shard.locker.readLock();
+            lock.lock();
+            try {
+                result += shard.managers.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取所有租户共享的节点规范化工厂
+     */
+    public NodeInterner nodeInterner() {
+        return nodeInterner;
+    }
+
+    /**
+     * 获取分片的统计信息
+     * <p>
+     * 统计时只在复制租户表时短暂持有分片读锁，各租户的统计在锁外汇总
+     *
+     * @param shard 分片序号
+     * @return 统计信息
+     */
+    public ShardStats shardStats(int shard) {
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalArgumentException("shard out of range: " + shard);
+        }
+
+        List<TreeModeRemindHandlerManager<RemindType>> managers = managers(shards[shard]);
+
+        int handlerCount = 0;
+        long requestCount = 0;
+        long flushCount = 0;
+        long dispatchedHandlerCount = 0;
+        long totalLatencyNanos = 0;
+        long maxLatencyNanos = 0;
+        long deliveredHandlerCount = 0;
+        long skippedHandlerCount = 0;
+        long supersededHandlerCount = 0;
+        for (TreeModeRemindHandlerManager<RemindType> manager : managers) {
+            handlerCount += manager.liveRemindHandlerCount();
+
+            DispatchStats stats = manager.dispatchStats();
+            requestCount += stats.requestCount;
+            flushCount += stats.flushCount;
+            dispatchedHandlerCount += stats.dispatchedHandlerCount;
+            totalLatencyNanos += stats.totalLatencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, stats.maxLatencyNanos);
+            deliveredHandlerCount += stats.deliveredHandlerCount;
+            skippedHandlerCount += stats.skippedHandlerCount;
+            supersededHandlerCount += stats.supersededHandlerCount;
+        }
+
+        return new ShardStats(
+                shard,
+                managers.size(),
+                handlerCount,
+                new DispatchStats(
+                        requestCount,
+                        flushCount,
+                        dispatchedHandlerCount,
+                        totalLatencyNanos,
+                        maxLatencyNanos,
+                        deliveredHandlerCount,
+                        skippedHandlerCount,
+                        supersededHandlerCount
+                )
+        );
+    }
+
+    /**
+     * 获取所有分片的统计信息
+     *
+     * @return 按分片序号排列的统计信息
+     * @see #shardStats(int)
+     */
+    public List<ShardStats> shardStats() {
+        List<ShardStats> result = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            result.add(shardStats(i));
+        }
+        return result;
+    }
+
+    /**
+     * 创建租户管理器，调用方需持有分片写锁
+     */
+    private TreeModeRemindHandlerManager<RemindType> createManager(String tenantId) {
+        RemindRepo<RemindType> repo = repoFactory.createRepo(tenantId);
+        if (repo == null) {
+            throw new IllegalStateException(String.format("repoFactory created null repo for tenant '%s'", tenantId));
+        }
+
+        TreeModeRemindHandlerManager<RemindType> manager = new TreeModeRemindHandlerManager<>(
+                repo,
+                false,
+                shards[shardIndex(tenantId)].handlerTree,
+                Node.instance(String.valueOf(treePrefixSequence.incrementAndGet()))
+        );
+        manager.setNodeInterner(nodeInterner);
+        manager.setAsyncExecutors(queryExecutor, deliveryExecutor);
+        manager.setLookupPool(lookupPool);
+        return manager;
+    }
+
+    /**
+     * 泛型数组无法直接创建，Shard只在本类内部创建及使用，数组元素的实际类型总是Shard&lt;RemindType&gt;
+     */
+    @SuppressWarnings("unchecked")
+    private static <RemindType extends Remind> Shard<RemindType>[] newShards(int shardCount) {
+        Shard<RemindType>[] result = (Shard<RemindType>[]) new Shard<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            result[i] = new Shard<>();
+        }
+        return result;
+    }
+
+    private TreeModeRemindHandlerManager<RemindType> existingManager(Shard<RemindType> shard, String tenantId) {
+        Lock lock = shard.locker.readLock();
+        lock.lock();
+        try {
+            return shard.managers.get(tenantId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<TreeModeRemindHandlerManager<RemindType>> managers(Shard<RemindType> shard) {
+        Lock lock = shard.locker.readLock();
+        lock.lock();
+        try {
+            return new ArrayList<>(shard.managers.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,16 +1,30 @@
 package ms.imf.redpoint.manager;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeInterner;
 import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
 
 /**
  * 以节点树方式管理{@link RemindHandler}的{@link RemindHandlerManager}
@@ -18,98 +32,606 @@ import ms.imf.redpoint.entity.NodePath;
  * 通过所有RemindHandler的支持路径生成一颗节点树，并将RemindHandler引用到其支持的对应节点下，
  * 从而达到通过节点快速匹配到对应的RemindHandler的目的，并通过此思想的优势来提升RemindHandlerManager内各项匹配任务的效率
  * <p>
+ * 节点树为无锁的写时复制树，查询、通知等读操作不会阻塞，附加/解除/通知可以在任意线程调用；
+ * 支持路径可包含{@link NodePattern}，例如'list>item(itemId=*)'
+ * <p>
+ * 每个handler的最近一次查询结果会被缓存，增量变更({@link #notifyRemindDelta(RemindDelta)})只合并到受影响handler的缓存中，
+ * 带有提交序号的变更没有按序号连续到达时不合并，使受影响handler的缓存失效后重新查询；
+ * 展示的消息没有变化时跳过展示，否则以差异回调{@link RemindHandler#showRemindDelta(RemindDelta, Collection)}；
+ * 仓库为{@link UncachedRemindRepo}时不缓存消息，每次都查询仓库，只以消息指纹跳过未变化的展示，参见{@link #isCachingReminds()}
+ * <p>
+ * 可选模式参见{@link #setDispatchScheduler(DispatchScheduler)}、{@link #setAsyncExecutors(Executor, Executor)}、
+ * {@link #setLookupPool(ForkJoinPool)}及{@link #TreeModeRemindHandlerManager(RemindRepo, boolean)}
  *
  * @author f_ms
  * @date 19-07-26
  */
 public class TreeModeRemindHandlerManager<RemindType extends Remind> extends RemindHandlerManager<RemindType> {
 
-    private final Map<RemindHandler<RemindType>, Set<NodePath>> attachedRemindHandlers = new HashMap<>();
-    private final TreeStructure<Node, RemindHandler<RemindType>> remindHandlerTree = new ConcurrentSafeTreeStructure<>();
+    /**
+     * handler已附加的支持路径快照，不可变
+     */
+    private static final class AttachedPaths {
+        final Set<NodePath> paths;
+        /**
+         * {@link #paths}中互不重合的最短路径，例如有: a>b, a>b>c, a>d 则为: a>b, a>d
+         */
+        final NodePath[] shortestPaths;
+        /**
+         * 是否有路径包含{@link NodePattern}
+         */
+        final boolean hasPattern;
+
+        AttachedPaths(Set<NodePath> paths, Set<NodePath> shortestPaths) {
+            this.paths = paths;
+            this.shortestPaths = shortestPaths.toArray(new NodePath[shortestPaths.size()]);
+
+            boolean hasPattern = false;
+            for (NodePath path : paths) {
+                if (NodePatternMatcher.hasPattern(path.nodes())) {
+                    hasPattern = true;
+                    break;
+                }
+            }
+            this.hasPattern = hasPattern;
+        }
+    }
+
+    /**
+     * handler的消息缓存，所有字段的读写都需持有本对象锁
+     */
+    private static final class RemindCache<RemindType> {
+        /**
+         * handler支持路径下的消息，key与value为相等的消息，value为最新的消息实例
+         */
+        final Map<RemindType, RemindType> reminds = new LinkedHashMap<>();
+        /**
+         * 缓存内容是否与仓库一致
+         */
+        boolean valid;
+        /**
+         * 每次失效时递增，用于丢弃失效前发起的查询结果
+         */
+        long generation;
+        /**
+         * 最近一次发起的分发的序号，每次发起异步分发时递增，序号落后的查询及展示会被放弃
+         */
+        long sequence;
+        /**
+         * 最近一次展示给handler的消息，null == 还未展示过
+         */
+        Map<RemindType, RemindType> delivered;
+        /**
+         * 最近一次展示给{@link RemindCountHandler}的消息数量，-1 == 还未展示过
+         */
+        int deliveredCount = -1;
+        /*
+        不缓存消息时最近一次展示的消息指纹，deliveredSize == -1 == 还未展示过
+         */
+        int deliveredSize = -1;
+        long deliveredHashSum;
+        long deliveredHashXor;
+
+        void invalidate() {
+            valid = false;
+            generation++;
+            reminds.clear();
+        }
+    }
+
+    /**
+     * 已附加handler的记录，节点树及分发过程只引用记录，不直接引用handler
+     * <p>
+     * 弱引用模式下记录只弱引用handler，handler被回收后记录进入引用队列等待清理；
+     * 强引用模式下同时强引用handler，{@link #get()}在解除前始终有效
+     */
+    private static final class HandlerRecord<RemindType extends Remind> extends WeakReference<RemindHandler<RemindType>> {
+        /**
+         * 强引用模式下持有handler防止其被回收，弱引用模式下为null
+         */
+        @SuppressWarnings("unused")
+        private final RemindHandler<RemindType> strongHandler;
+        /**
+         * 保护支持路径的附加、变更及解除，不使用handler自身的监视器，避免与调用方对handler的同步互相影响
+         */
+        final Object pathsLocker = new Object();
+        /**
+         * 已附加的支持路径，null == 还未附加、已解除或已被回收
+         */
+        volatile AttachedPaths attachedPaths;
+        final RemindCache<RemindType> cache = new RemindCache<>();
+
+        /**
+         * @param queue 引用队列，null == 强引用模式
+         */
+        HandlerRecord(RemindHandler<RemindType> handler, ReferenceQueue<? super RemindHandler<RemindType>> queue) {
+            super(handler, queue);
+            this.strongHandler = queue == null ? handler : null;
+        }
+    }
+
+    /**
+     * 一次异步分发，记录发起时各handler的分发序号
+     */
+    private final class AsyncDispatch {
+        final Executor deliveryExecutor;
+        final Map<HandlerRecord<RemindType>, Long> sequences;
+
+        AsyncDispatch(Executor deliveryExecutor, Map<HandlerRecord<RemindType>, Long> sequences) {
+            this.deliveryExecutor = deliveryExecutor;
+            this.sequences = sequences;
+        }
+
+        /**
+         * handler在本次分发后是否还没有发起新的分发
+         */
+        boolean isCurrent(HandlerRecord<RemindType> record) {
+            Long sequence = sequences.get(record);
+            if (sequence == null
+                    || record.attachedPaths == null) {
+                return false;
+            }
+            synchronized (record.cache) {
+                return record.cache.sequence == sequence;
+            }
+        }
+
+        /**
+         * @return 还没有被后续分发取代的handler
+         */
+        Set<HandlerRecord<RemindType>> currentRecords(Set<HandlerRecord<RemindType>> records) {
+            Set<HandlerRecord<RemindType>> result = new HashSet<>();
+            for (HandlerRecord<RemindType> record : records) {
+                if (isCurrent(record)) {
+                    result.add(record);
+                } else {
+                    supersededHandlerCount.incrementAndGet();
+                }
+            }
+            return result;
+        }
+
+        void deliver(final HandlerRecord<RemindType> record, final Runnable delivery) {
+            deliveryExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCurrent(record)) {
+                        delivery.run();
+                    } else {
+                        supersededHandlerCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 并行查找任务，将handler区间二分直至不超过{@link #PARALLEL_LOOKUP_BATCH_SIZE}个后在当前线程查找
+     */
+    private final class LookupTask extends RecursiveAction {
+        private static final long serialVersionUID = 7804956601157640707L;
+
+        final List<HandlerRecord<RemindType>> records;
+        final TreeStructure<Node, RemindType> remindTree;
+        final Map<HandlerRecord<RemindType>, Long> cacheGenerations;
+        final List<List<RemindType>> results;
+        final int from;
+        final int to;
+
+        LookupTask(List<HandlerRecord<RemindType>> records, TreeStructure<Node, RemindType> remindTree, Map<HandlerRecord<RemindType>, Long> cacheGenerations, List<List<RemindType>> results, int from, int to) {
+            this.records = records;
+            this.remindTree = remindTree;
+            this.cacheGenerations = cacheGenerations;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_LOOKUP_BATCH_SIZE) {
+                lookupReminds(records, remindTree, cacheGenerations, results, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new LookupTask(records, remindTree, cacheGenerations, results, from, middle),
+                    new LookupTask(records, remindTree, cacheGenerations, results, middle, to)
+            );
+        }
+    }
+
+    /**
+     * 多个管理器共用的handler节点树，各管理器的支持路径以各自的前缀节点区分，参见{@link ShardedRemindHandlerManager}
+     */
+    static final class SharedHandlerTree<RemindType extends Remind> {
+        final TreeStructure<Node, HandlerRecord<RemindType>> tree = new CopyOnWriteTreeStructure<>(NodePatternMatcher.INSTANCE);
+    }
+
+    /**
+     * 单个handler收到的增量变更
+     */
+    private static final class HandlerDelta<RemindType> {
+        final List<RemindType> added = new ArrayList<>();
+        final List<RemindType> removed = new ArrayList<>();
+        final List<RemindType> updated = new ArrayList<>();
+    }
+
+    /**
+     * 并行查找时每个任务最多处理的handler数量，handler数量不超过此值时不并行
+     */
+    private static final int PARALLEL_LOOKUP_BATCH_SIZE = 64;
+
+    /**
+     * 已附加的handler与其记录，弱引用模式下为同步的{@link WeakHashMap}
+     */
+    private final Map<RemindHandler<RemindType>, HandlerRecord<RemindType>> records;
+    /**
+     * 被回收handler的记录队列，null == 强引用模式
+     */
+    private final ReferenceQueue<RemindHandler<RemindType>> collectedRecords;
+    private final AtomicLong collectedHandlerCount = new AtomicLong();
+    private final AtomicLong deliveredHandlerCount = new AtomicLong();
+    private final AtomicLong skippedHandlerCount = new AtomicLong();
+    private final AtomicLong supersededHandlerCount = new AtomicLong();
+    private volatile ForkJoinPool lookupPool;
+    private volatile NodeInterner nodeInterner;
+    private final Object asyncExecutorsLocker = new Object();
+    private volatile Executor queryExecutor;
+    private volatile Executor deliveryExecutor;
+    private final TreeStructure<Node, HandlerRecord<RemindType>> remindHandlerTree;
+    /**
+     * 是否在堆上缓存handler的消息
+     */
+    private final boolean cacheReminds;
+    /**
+     * 保证增量变更按到达顺序逐个合并到缓存
+     */
+    private final Object deltaLocker = new Object();
+    /**
+     * 已到达的增量变更的最大提交序号，{@link RemindDelta#NO_SEQUENCE} == 还没有收到过带序号的变更；只在deltaLocker内访问
+     */
+    private long lastDeltaSequence = RemindDelta.NO_SEQUENCE;
+    private final CoalescingDispatcher<HandlerRecord<RemindType>> dispatcher = new CoalescingDispatcher<>(
+            new CoalescingDispatcher.FlushHandler<HandlerRecord<RemindType>>() {
+                @Override
+                public void onFlush(Set<HandlerRecord<RemindType>> records) {
+                    dispatchRemindHandlersDataChangedAsync(records);
+                }
+            }
+    );
 
     public TreeModeRemindHandlerManager(RemindRepo<RemindType> repo) {
+        this(repo, false);
+    }
+
+    /**
+     * @param repo               消息仓库
+     * @param weakRemindHandlers 是否只弱引用已附加的handler，true时调用方需自行持有handler(例如由其View持有)，否则handler可能随时被回收而不再收到消息
+     */
+    public TreeModeRemindHandlerManager(RemindRepo<RemindType> repo, boolean weakRemindHandlers) {
+        this(repo, weakRemindHandlers, null, null);
+    }
+
+    /**
+     * @param sharedHandlerTree 与其他管理器共用的handler节点树，null == 使用独立的节点树
+     * @param treePrefix        本管理器在共用节点树中的前缀节点，需与共用该节点树的其他管理器都不相同
+     * @see #TreeModeRemindHandlerManager(RemindRepo, boolean)
+     */
+    TreeModeRemindHandlerManager(RemindRepo<RemindType> repo, boolean weakRemindHandlers, SharedHandlerTree<RemindType> sharedHandlerTree, Node treePrefix) {
         super(repo);
+        cacheReminds = !(repo instanceof UncachedRemindRepo);
+        remindHandlerTree = sharedHandlerTree == null
+                ? new CopyOnWriteTreeStructure<Node, HandlerRecord<RemindType>>(NodePatternMatcher.INSTANCE)
+                : new PrefixedTreeStructure<>(sharedHandlerTree.tree, treePrefix);
+        if (weakRemindHandlers) {
+            records = Collections.synchronizedMap(new WeakHashMap<RemindHandler<RemindType>, HandlerRecord<RemindType>>());
+            collectedRecords = new ReferenceQueue<>();
+        } else {
+            records = new ConcurrentHashMap<>();
+            collectedRecords = null;
+        }
+    }
+
+    /**
+     * 是否在堆上缓存各handler的查询结果及最近一次展示的消息
+     * <p>
+     * 仓库为{@link UncachedRemindRepo}时为false：变更时总是重新查询仓库，只以消息数量及消息路径hash、过期时间组成的指纹
+     * 判断展示的消息是否变化，变化时以{@link RemindHandler#showReminds(Collection)}展示全部消息，不回调差异
+     */
+    public boolean isCachingReminds() {
+        return cacheReminds;
+    }
+
+    /**
+     * 是否为弱引用模式
+     *
+     * @see #TreeModeRemindHandlerManager(RemindRepo, boolean)
+     */
+    public boolean isWeakRemindHandlers() {
+        return collectedRecords != null;
+    }
+
+    /**
+     * 获取当前附加且未被回收的handler数量，获取前会先清理已被回收的handler
+     *
+     * @return handler数量
+     */
+    public int liveRemindHandlerCount() {
+        purgeCollectedRemindHandlers();
+        return records.size();
+    }
+
+    /**
+     * 获取弱引用模式下未解除就被回收、已从节点树中清除的handler数量
+     *
+     * @return handler数量
+     */
+    public long collectedRemindHandlerCount() {
+        purgeCollectedRemindHandlers();
+        return collectedHandlerCount.get();
+    }
+
+    /**
+     * 设置通知分发调度器
+     *
+     * @param scheduler 分发调度器，null == 不合并，每次变更立即同步刷新(默认)
+     * @see DispatchScheduler
+     */
+    public void setDispatchScheduler(DispatchScheduler scheduler) {
+        dispatcher.setScheduler(scheduler);
+    }
+
+    /**
+     * 获取当前的通知分发调度器
+     *
+     * @return 分发调度器，null == 同步刷新
+     */
+    public DispatchScheduler dispatchScheduler() {
+        return dispatcher.scheduler();
+    }
+
+    /**
+     * 立即处理所有等待合并分发的刷新请求
+     */
+    public void flushPendingDispatch() {
+        dispatcher.flush();
+    }
+
+    /**
+     * 设置异步模式的executor
+     * <p>
+     * 开启后仓库的消息查询及计数都在queryExecutor执行，{@link RemindHandler}的展示回调都在deliveryExecutor执行；
+     * 同一个handler在前一次分发完成前又发起了新的分发时，前一次分发尚未执行的查询及展示会被放弃，
+     * 所以deliveryExecutor应按提交顺序执行任务，例如Android主线程的Handler
+     *
+     * @param queryExecutor    执行消息查询的executor，null == 同步模式(默认)
+     * @param deliveryExecutor 执行展示回调的executor，null == 同步模式(默认)
+     */
+    public void setAsyncExecutors(Executor queryExecutor, Executor deliveryExecutor) {
+        if ((queryExecutor == null) != (deliveryExecutor == null)) {
+            throw new IllegalArgumentException("queryExecutor and deliveryExecutor must be both null or both not null");
+        }
+        synchronized (asyncExecutorsLocker) {
+            this.queryExecutor = queryExecutor;
+            this.deliveryExecutor = deliveryExecutor;
+        }
+    }
+
+    /**
+     * 获取当前执行消息查询的executor
+     *
+     * @return 查询executor，null == 同步模式
+     */
+    public Executor queryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * 获取当前执行展示回调的executor
+     *
+     * @return 展示executor，null == 同步模式
+     */
+    public Executor deliveryExecutor() {
+        return deliveryExecutor;
+    }
+
+    /**
+     * 设置并行查找各handler消息的线程池
+     * <p>
+     * 一次分发的handler数量超过{@value #PARALLEL_LOOKUP_BATCH_SIZE}时，按handler分段在线程池中并行查找消息树并更新其缓存，
+     * 全部查找完成后再按原有方式展示；仓库查询及消息树的生成依然只执行一次
+     *
+     * @param lookupPool 线程池，null == 在分发线程中顺序查找(默认)
+     */
+    public void setLookupPool(ForkJoinPool lookupPool) {
+        this.lookupPool = lookupPool;
+    }
+
+    /**
+     * 获取并行查找各handler消息的线程池
+     *
+     * @return 线程池，null == 顺序查找
+     */
+    public ForkJoinPool lookupPool() {
+        return lookupPool;
+    }
+
+    /**
+     * 设置handler支持路径的规范化工厂
+     * <p>
+     * 设置后附加的支持路径及其节点会先经由interner规范化再放入节点树，
+     * 多个管理器共享同一个interner时，相等的节点在所有管理器的节点树中都只有一个实例
+     *
+     * @param nodeInterner 规范化工厂，null == 不规范化(默认)
+     * @see ShardedRemindHandlerManager
+     */
+    public void setNodeInterner(NodeInterner nodeInterner) {
+        this.nodeInterner = nodeInterner;
+    }
+
+    /**
+     * 获取handler支持路径的规范化工厂
+     *
+     * @return 规范化工厂，null == 不规范化
+     */
+    public NodeInterner nodeInterner() {
+        return nodeInterner;
+    }
+
+    /**
+     * 获取通知分发统计信息
+     */
+    public DispatchStats dispatchStats() {
+        DispatchStats stats = dispatcher.stats();
+        return new DispatchStats(
+                stats.requestCount,
+                stats.flushCount,
+                stats.dispatchedHandlerCount,
+                stats.totalLatencyNanos,
+                stats.maxLatencyNanos,
+                deliveredHandlerCount.get(),
+                skippedHandlerCount.get(),
+                supersededHandlerCount.get()
+        );
     }
 
     @Override
     public void attachRemindHandler(RemindHandler<RemindType> remindHandler) {
         if (remindHandler == null) { return; }
 
-        if (remindHandlerAttached(remindHandler)) {
+        purgeCollectedRemindHandlers();
+
+        HandlerRecord<RemindType> record = new HandlerRecord<>(remindHandler, collectedRecords);
+        synchronized (record.pathsLocker) {
+            // 先持有新记录的锁再放入，并发的变更及解除会等待路径附加完毕
+            if (putRecordIfAbsent(remindHandler, record) != null) {
+                record = null;
+            } else {
+                putRemindHandlerPath(record, remindHandler.getPaths(), Collections.<NodePath>emptySet());
+            }
+        }
+
+        if (record == null) {
             notifyRemindHandlerChanged(remindHandler);
             return;
         }
 
-        putRemindHandlerPath(remindHandler, remindHandler.getPaths());
-
-        notifyRemindHandlerDataChanged(remindHandler);
+        notifyRemindHandlerDataChanged(record);
     }
 
     @Override
     public void detachRemindHandler(RemindHandler<RemindType> remindHandler) {
         if (remindHandler == null) { return; }
-        if (!remindHandlerAttached(remindHandler)) { return; }
 
-        removeRemindHandlerPath(
-                remindHandler,
-                getRemindHandlerPath(remindHandler)
-        );
+        purgeCollectedRemindHandlers();
+
+        HandlerRecord<RemindType> record = records.remove(remindHandler);
+        if (record == null) { return; }
+
+        synchronized (record.pathsLocker) {
+            if (record.attachedPaths != null) {
+                removeRemindHandlerPath(record);
+            }
+        }
+    }
+
+    /**
+     * 解除所有已附加的handler，释放其在节点树中的节点
+     */
+    void detachAllRemindHandlers() {
+        purgeCollectedRemindHandlers();
+
+        List<HandlerRecord<RemindType>> allRecords;
+        synchronized (records) {
+            allRecords = new ArrayList<>(records.values());
+        }
+        for (HandlerRecord<RemindType> record : allRecords) {
+            RemindHandler<RemindType> remindHandler = record.get();
+            if (remindHandler != null) {
+                detachRemindHandler(remindHandler);
+            }
+        }
     }
 
     @Override
     public boolean remindHandlerAttached(RemindHandler<RemindType> remindHandler) {
-        return attachedRemindHandlers.containsKey(remindHandler);
+        return remindHandler != null
+                && records.containsKey(remindHandler);
     }
 
     @Override
     public void notifyRemindHandlerChanged(RemindHandler<RemindType> remindHandler) {
-        if (!remindHandlerAttached(remindHandler)) { return; }
+        if (remindHandler == null) { return; }
+
+        HandlerRecord<RemindType> record = records.get(remindHandler);
+        if (record == null) { return; }
 
-        Set<NodePath> acceptPaths = remindHandler.getPaths();
-        Set<NodePath> lastAcceptPaths = getRemindHandlerPath(remindHandler);
+        Set<NodePath> addPaths;
+        Set<NodePath> removePaths;
 
-        Set<NodePath> addPaths = new HashSet<>(acceptPaths);
-        addPaths.removeAll(lastAcceptPaths);
+        synchronized (record.pathsLocker) {
+            Set<NodePath> lastAcceptPaths = getRemindHandlerPath(record);
+            if (lastAcceptPaths == null) { return; }
 
-        Set<NodePath> removePaths = new HashSet<>(lastAcceptPaths);
-        removePaths.removeAll(acceptPaths);
+            Set<NodePath> acceptPaths = remindHandler.getPaths();
 
-        putRemindHandlerPath(remindHandler, addPaths, removePaths);
+            addPaths = new HashSet<>(acceptPaths);
+            addPaths.removeAll(lastAcceptPaths);
+
+            removePaths = new HashSet<>(lastAcceptPaths);
+            removePaths.removeAll(acceptPaths);
+
+            putRemindHandlerPath(record, addPaths, removePaths);
+        }
 
         if (!addPaths.isEmpty()
                 || !removePaths.isEmpty()) {
-            notifyRemindHandlerDataChanged(remindHandler);
+            notifyRemindHandlerDataChanged(record);
         }
     }
 
     @Override
     public void happenedRemindHandler(RemindHandler<RemindType> remindHandler) {
-        if (!remindHandlerAttached(remindHandler)) { return; }
-
         Set<NodePath> paths = getRemindHandlerPath(remindHandler);
+        if (paths == null) { return; }
+
+        if (hasPattern(paths)) {
+            removePatternPathReminds(paths, false);
+            return;
+        }
 
         if (remindRepo().removeMatchPathReminds(paths) <= 0) {
             return;
         }
 
-        Set<RemindHandler<RemindType>> needChangedHandlers = remindHandlerTree.getPathsRangeAllData(pathsToNodes(paths));
+        purgeCollectedRemindHandlers();
+
+        Set<HandlerRecord<RemindType>> needChangedHandlers = remindHandlerTree.getPathsRangeAllData(pathsToNodes(paths));
         notifyRemindHandlersDataChanged(needChangedHandlers);
     }
 
     @Override
     public void happenedRemindHandlerWithSubPath(RemindHandler<RemindType> remindHandler) {
-        if (!remindHandlerAttached(remindHandler)) { return; }
-
         Set<NodePath> paths = getRemindHandlerPath(remindHandler);
+        if (paths == null) { return; }
+
+        if (hasPattern(paths)) {
+            removePatternPathReminds(paths, true);
+            return;
+        }
 
         if (remindRepo().removeMatchPathSubReminds(paths) <= 0) {
             return;
         }
 
+        purgeCollectedRemindHandlers();
+
         /*
         变更涉及handler支持路径节点范围内节点和路径根节点后整个树上的所有handler
          */
-        Set<RemindHandler<RemindType>> needChangedHandlers = new HashSet<>(
+        Set<HandlerRecord<RemindType>> needChangedHandlers = new HashSet<>(
                 remindHandlerTree.getPathsRangeAllData(pathsToNodes(paths))
         );
         needChangedHandlers.addAll(
@@ -118,13 +640,52 @@ public class TreeModeRemindHandlerManager<RemindType extends Remind> extends Rem
         notifyRemindHandlersDataChanged(needChangedHandlers);
     }
 
+    /**
+     * 移除匹配包含节点模式的路径的消息，并刷新关注这些消息的handler
+     *
+     * @param withSub 是否同时移除子路径下的消息
+     */
+    private void removePatternPathReminds(Set<NodePath> paths, boolean withSub) {
+        TreeStructure<Node, RemindType> remindTree = queryRemindTree(paths);
+        Set<RemindType> reminds;
+        if (withSub) {
+            reminds = remindTree.getMatchPathsSubData(pathsToNodes(paths));
+        } else {
+            reminds = new HashSet<>();
+            for (NodePath path : paths) {
+                reminds.addAll(remindTree.getMatchPathData(path.nodes()));
+            }
+        }
+        if (reminds.isEmpty()) {
+            return;
+        }
+
+        remindRepo().removeReminds(reminds);
+
+        purgeCollectedRemindHandlers();
+
+        Set<HandlerRecord<RemindType>> needChangedHandlers = new HashSet<>();
+        for (RemindType remind : reminds) {
+            needChangedHandlers.addAll(remindHandlerTree.getPathRangeAllData(remind.path().nodes()));
+        }
+        notifyRemindHandlersDataChanged(needChangedHandlers);
+    }
+
     @Override
     public void notifyRemindDataChanged() {
-        notifyRemindHandlersDataChanged(attachedRemindHandlers.keySet());
+        purgeCollectedRemindHandlers();
+
+        Set<HandlerRecord<RemindType>> allRecords;
+        // 弱引用模式下为同步map，遍历时需持有其锁
+        synchronized (records) {
+            allRecords = new HashSet<>(records.values());
+        }
+        notifyRemindHandlersDataChanged(allRecords);
     }
 
     @Override
     public void notifyRemindDataChanged(Iterable<? extends RemindType> changedReminds) {
+        purgeCollectedRemindHandlers();
 
         /*
         取所有变更消息支持路径中的最长路径，获取对应的handler刷新其数据
@@ -141,11 +702,254 @@ public class TreeModeRemindHandlerManager<RemindType extends Remind> extends Rem
         );
     }
 
-    private void notifyRemindHandlerDataChanged(RemindHandler<RemindType> remindHandler) {
-        notifyRemindHandlersDataChanged(Collections.singleton(remindHandler));
+    /**
+     * {@inheritDoc}
+     * <p>
+     * 变更带有提交序号时，只有紧接上一次变更的变更才合并到缓存，乱序或有遗漏时受影响handler的缓存失效并重新查询仓库；
+     * 没有序号的变更总是合并，调用方需自行保证按提交顺序通知
+     */
+    @Override
+    public void notifyRemindDelta(RemindDelta<RemindType> delta) {
+        if (delta == null) { throw new IllegalArgumentException("delta can't be null"); }
+        if (delta.isEmpty()) { return; }
+
+        purgeCollectedRemindHandlers();
+
+        /*
+        按消息路径找到受影响的handler，将增量按handler分组
+         */
+        Map<HandlerRecord<RemindType>, HandlerDelta<RemindType>> handlerDeltas = new HashMap<>();
+        for (RemindType remind : delta.added()) {
+            for (HandlerRecord<RemindType> record : remindHandlerTree.getPathRangeAllData(remind.path().nodes())) {
+                obtainHandlerDelta(handlerDeltas, record).added.add(remind);
+            }
+        }
+        for (RemindType remind : delta.removed()) {
+            for (HandlerRecord<RemindType> record : remindHandlerTree.getPathRangeAllData(remind.path().nodes())) {
+                obtainHandlerDelta(handlerDeltas, record).removed.add(remind);
+            }
+        }
+        for (RemindType remind : delta.updated()) {
+            for (HandlerRecord<RemindType> record : remindHandlerTree.getPathRangeAllData(remind.path().nodes())) {
+                obtainHandlerDelta(handlerDeltas, record).updated.add(remind);
+            }
+        }
+
+        boolean immediately = dispatcher.scheduler() == null;
+        boolean countable = remindRepo() instanceof CountableRemindRepo;
+
+        // 缓存无效、需要重新查询的handler
+        Set<HandlerRecord<RemindType>> refreshHandlers = new HashSet<>();
+        // 缓存已合并、等待合并分发的handler
+        Set<HandlerRecord<RemindType>> patchedHandlers = new HashSet<>();
+        // 缓存已合并、立即展示的handler及其消息
+        Map<HandlerRecord<RemindType>, List<RemindType>> immediateReminds = new HashMap<>();
+
+        synchronized (deltaLocker) {
+            boolean inOrder = isDeltaInOrder(delta);
+
+            for (Map.Entry<HandlerRecord<RemindType>, HandlerDelta<RemindType>> entry : handlerDeltas.entrySet()) {
+                HandlerRecord<RemindType> record = entry.getKey();
+                HandlerDelta<RemindType> handlerDelta = entry.getValue();
+
+                if (countable
+                        && record.get() instanceof RemindCountHandler) {
+                    // 计数handler直接通过计数索引刷新
+                    patchedHandlers.add(record);
+                    continue;
+                }
+
+                if (record.attachedPaths == null) {
+                    // 已被解除
+                    continue;
+                }
+
+                RemindCache<RemindType> cache = record.cache;
+                synchronized (cache) {
+                    if (!cache.valid
+                            || !inOrder) {
+                        // 使进行中的查询结果作废，以免覆盖本次变更
+                        cache.invalidate();
+                        refreshHandlers.add(record);
+                        continue;
+                    }
+
+                    for (RemindType remind : handlerDelta.removed) {
+                        cache.reminds.remove(remind);
+                    }
+                    for (RemindType remind : handlerDelta.added) {
+                        cache.reminds.put(remind, remind);
+                    }
+                    for (RemindType remind : handlerDelta.updated) {
+                        cache.reminds.put(remind, remind);
+                    }
+
+                    if (immediately) {
+                        immediateReminds.put(record, new ArrayList<>(cache.reminds.values()));
+                    } else {
+                        // 合并分发时以缓存刷新，不会再次查询仓库
+                        patchedHandlers.add(record);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<HandlerRecord<RemindType>, List<RemindType>> entry : immediateReminds.entrySet()) {
+            deliverReminds(entry.getKey(), entry.getValue(), beginAsyncDispatch(Collections.singleton(entry.getKey())));
+        }
+
+        if (!patchedHandlers.isEmpty()) {
+            dispatcher.dispatch(patchedHandlers);
+        }
+        if (!refreshHandlers.isEmpty()) {
+            dispatcher.dispatch(refreshHandlers);
+        }
     }
-    private void notifyRemindHandlersDataChanged(Set<RemindHandler<RemindType>> remindHandlers) {
-        if (remindHandlers.isEmpty()) { return; }
+
+    /**
+     * 增量变更是否紧接上一次到达的变更，并记录其序号；调用方需持有deltaLocker
+     * <p>
+     * 乱序到达的变更(包括序号已落后的变更)及遗漏变更后到达的变更都不能直接合并，
+     * 此时缓存失效后的重新查询会在本次变更之后进行，能查询到所有已提交的变更；
+     * 收到的第一个变更直接合并，序号更早的变更之后才到达时会被识别为落后的变更
+     */
+    private boolean isDeltaInOrder(RemindDelta<RemindType> delta) {
+        if (delta.firstSequence() == RemindDelta.NO_SEQUENCE) {
+            return true;
+        }
+
+        boolean inOrder = lastDeltaSequence == RemindDelta.NO_SEQUENCE
+                || delta.firstSequence() == lastDeltaSequence + 1;
+        lastDeltaSequence = Math.max(lastDeltaSequence, delta.lastSequence());
+        return inOrder;
+    }
+
+    private HandlerDelta<RemindType> obtainHandlerDelta(Map<HandlerRecord<RemindType>, HandlerDelta<RemindType>> handlerDeltas, HandlerRecord<RemindType> record) {
+        HandlerDelta<RemindType> handlerDelta = handlerDeltas.get(record);
+        if (handlerDelta == null) {
+            handlerDelta = new HandlerDelta<>();
+            handlerDeltas.put(record, handlerDelta);
+        }
+        return handlerDelta;
+    }
+
+    /**
+     * 从节点树中清除已被回收的handler，强引用模式下不做任何事
+     */
+    @SuppressWarnings("unchecked")
+    private void purgeCollectedRemindHandlers() {
+        if (collectedRecords == null) {
+            return;
+        }
+
+        Reference<? extends RemindHandler<RemindType>> reference;
+        while ((reference = collectedRecords.poll()) != null) {
+            HandlerRecord<RemindType> record = (HandlerRecord<RemindType>) reference;
+            // 已回收的handler不会再有其他写操作，记录的映射也已由WeakHashMap自行清除
+            synchronized (record.pathsLocker) {
+                if (record.attachedPaths != null) {
+                    removeRemindHandlerPath(record);
+                    collectedHandlerCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return handler已有的记录，null == 没有已有记录，已放入新记录
+     */
+    private HandlerRecord<RemindType> putRecordIfAbsent(RemindHandler<RemindType> handler, HandlerRecord<RemindType> record) {
+        if (records instanceof ConcurrentHashMap) {
+            return ((ConcurrentHashMap<RemindHandler<RemindType>, HandlerRecord<RemindType>>) records).putIfAbsent(handler, record);
+        }
+        synchronized (records) {
+            HandlerRecord<RemindType> existRecord = records.get(handler);
+            if (existRecord == null) {
+                records.put(handler, record);
+            }
+            return existRecord;
+        }
+    }
+
+    private void notifyRemindHandlerDataChanged(HandlerRecord<RemindType> record) {
+        notifyRemindHandlersDataChanged(Collections.singleton(record));
+    }
+    private void notifyRemindHandlersDataChanged(Set<HandlerRecord<RemindType>> records) {
+        // 不清楚具体变更了哪些消息，缓存全部失效
+        for (HandlerRecord<RemindType> record : records) {
+            synchronized (record.cache) {
+                record.cache.invalidate();
+            }
+        }
+        dispatcher.dispatch(records);
+    }
+    /**
+     * 异步模式下在查询executor中执行分发，否则同步执行
+     */
+    private void dispatchRemindHandlersDataChangedAsync(final Set<HandlerRecord<RemindType>> records) {
+        Executor executor;
+        final AsyncDispatch async;
+        synchronized (asyncExecutorsLocker) {
+            executor = queryExecutor;
+            async = beginAsyncDispatch(records);
+        }
+
+        if (async == null) {
+            dispatchRemindHandlersDataChanged(records, null);
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 执行前已被后续分发取代的handler不再查询
+                Set<HandlerRecord<RemindType>> currentRecords = async.currentRecords(records);
+                if (!currentRecords.isEmpty()) {
+                    dispatchRemindHandlersDataChanged(currentRecords, async);
+                }
+            }
+        });
+    }
+
+    /**
+     * 异步模式下为handler发起新的分发，使其之前发起的分发失效
+     *
+     * @return 本次分发，null == 同步模式
+     */
+    private AsyncDispatch beginAsyncDispatch(Set<HandlerRecord<RemindType>> records) {
+        Executor executor = deliveryExecutor;
+        if (executor == null) {
+            return null;
+        }
+
+        Map<HandlerRecord<RemindType>, Long> sequences = new HashMap<>(records.size() * 4 / 3 + 1);
+        for (HandlerRecord<RemindType> record : records) {
+            synchronized (record.cache) {
+                sequences.put(record, ++record.cache.sequence);
+            }
+        }
+        return new AsyncDispatch(executor, sequences);
+    }
+
+    /**
+     * @param async 异步分发，null == 同步模式
+     */
+    private void dispatchRemindHandlersDataChanged(Set<HandlerRecord<RemindType>> records, AsyncDispatch async) {
+        // 只关心消息数量的handler直接通过计数索引刷新，不参与后续的消息查询
+        records = dispatchRemindCountHandlers(records, async);
+
+        // 缓存有效的handler直接以缓存刷新
+        records = dispatchCachedRemindHandlers(records, async);
+
+        if (records.isEmpty()) { return; }
+
+        // 记录查询前的缓存版本，查询期间失效过的缓存不再使用本次查询结果
+        Map<HandlerRecord<RemindType>, Long> cacheGenerations = new HashMap<>(records.size());
+        for (HandlerRecord<RemindType> record : records) {
+            synchronized (record.cache) {
+                cacheGenerations.put(record, record.cache.generation);
+            }
+        }
 
         /*
         handlers支持的路径节点大多存在重合部分，全部交给repo查询会增大开销
@@ -154,75 +958,500 @@ public class TreeModeRemindHandlerManager<RemindType extends Remind> extends Rem
          */
 
         // 对handlers支持路径去重
-        Set<NodePath> allPaths = getRemindHandlersAllPaths(remindHandlers);
+        Set<NodePath> allPaths = getRemindHandlersAllPaths(records);
         if (allPaths.isEmpty()) {
-            for (RemindHandler<RemindType> remindHandler : remindHandlers) {
-                remindHandler.showReminds(Collections.<RemindType>emptyList());
+            for (HandlerRecord<RemindType> record : records) {
+                deliverReminds(record, Collections.<RemindType>emptyList(), async);
             }
             return;
         }
 
+        // 查询消息并生成消息树
+        TreeStructure<Node, RemindType> remindTree = queryRemindTree(allPaths);
+
+        // 查找各handler的消息
+        List<HandlerRecord<RemindType>> recordList = new ArrayList<>(records);
+        // 各任务只写入自己区间内的位置，set不会改变列表结构
+        List<List<RemindType>> results = new ArrayList<>(Collections.<List<RemindType>>nCopies(recordList.size(), null));
+        ForkJoinPool pool = lookupPool;
+        if (pool != null
+                && recordList.size() > PARALLEL_LOOKUP_BATCH_SIZE) {
+            pool.invoke(new LookupTask(recordList, remindTree, cacheGenerations, results, 0, recordList.size()));
+        } else {
+            lookupReminds(recordList, remindTree, cacheGenerations, results, 0, recordList.size());
+        }
+
+        // 分发消息
+        for (int i = 0; i < recordList.size(); i++) {
+            List<RemindType> handlerReminds = results.get(i);
+            if (handlerReminds != null) {
+                deliverReminds(recordList.get(i), handlerReminds, async);
+            }
+        }
+    }
+
+    /**
+     * 在消息树中查找区间[from, to)内各handler的消息并更新其缓存，结果存入results对应位置，查找期间已被解除的handler结果为null
+     * <p>
+     * 只读取消息树及handler的支持路径快照，可在多个线程中对不相交的区间并行执行
+     */
+    private void lookupReminds(List<HandlerRecord<RemindType>> records, TreeStructure<Node, RemindType> remindTree, Map<HandlerRecord<RemindType>, Long> cacheGenerations, List<List<RemindType>> results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            HandlerRecord<RemindType> record = records.get(i);
+            AttachedPaths attachedPaths = record.attachedPaths;
+            if (attachedPaths == null) {
+                // 分发期间已被解除
+                continue;
+            }
+            // 只取所有路径中的最短路径, 用于减少重合路径部分的无用查询, 例如有: a>b, a>b>c 则获取到: a>b
+            NodePath[] paths = attachedPaths.shortestPaths;
+            if (paths.length == 0) {
+                results.set(i, Collections.<RemindType>emptyList());
+                continue;
+            }
+
+            List<RemindType> handlerReminds;
+            if (attachedPaths.hasPattern) {
+                // 包含节点模式的路径之间可能互相重合，合并去重
+                handlerReminds = new ArrayList<>(remindTree.getMatchPathsSubData(pathsToNodes(Arrays.asList(paths))));
+            } else {
+                handlerReminds = new ArrayList<>();
+                for (NodePath path : paths) {
+                    Collection<? extends RemindType> reminds = remindTree.getMatchPathSubData(path.nodes());
+                    if (reminds != null) {
+                        handlerReminds.addAll(reminds);
+                    }
+                }
+            }
+            putRemindCache(record, cacheGenerations.get(record), handlerReminds);
+            results.set(i, handlerReminds);
+        }
+    }
+
+    /**
+     * 查询支持路径下的消息并生成消息树，支持路径可包含节点模式
+     * <p>
+     * 以路径中第一个节点模式之前的部分查询仓库，按模式过滤由消息树查询时完成；
+     * 有路径以节点模式开头时查询仓库中的所有消息
+     */
+    private TreeStructure<Node, RemindType> queryRemindTree(Set<NodePath> paths) {
+        Set<NodePath> queryPaths = new HashSet<>(paths.size() * 4 / 3 + 1);
+        boolean queryAll = false;
+        for (NodePath path : paths) {
+            NodePath queryPath = patternFreePrefix(path);
+            if (queryPath.nodes().isEmpty()) {
+                queryAll = true;
+                break;
+            }
+            queryPaths.add(queryPath);
+        }
+
+        // 消息树只在本次分发中使用且规模与消息数量相当，使用内存紧凑的实现
+        TreeStructure<Node, RemindType> remindTree = new CompactTreeStructure<>(NodePatternMatcher.INSTANCE);
+
+        if (queryAll) {
+            for (RemindType remind : remindRepo().getAllReminds()) {
+                remindTree.put(remind, remind.path().nodes());
+            }
+            return remindTree;
+        }
+
         // 获取所有路径中的最短路径, 用于减少重合路径部分的无用查询, 例如有: a>b, a>b>c 则获取到: a>b
-        Set<NodePath> shortestPaths = getShortestPaths(allPaths);
+        Set<NodePath> shortestPaths = getShortestPaths(queryPaths);
 
-        // 查询消息
         Map<NodePath, ? extends Collection<? extends RemindType>> rootNodePathSubRemindsMap = remindRepo().getMatchPathSubReminds(shortestPaths);
-
-        // 生成消息树
-        TreeStructure<Node, RemindType> remindTree = new TreeStructure<>();
         for (Collection<? extends RemindType> reminds : rootNodePathSubRemindsMap.values()) {
             for (RemindType remind : reminds) {
                 remindTree.put(remind, remind.path().nodes());
             }
         }
+        return remindTree;
+    }
 
-        // 分发消息
-        for (RemindHandler<RemindType> remindHandler : remindHandlers) {
-            Set<NodePath> paths = getRemindHandlerPath(remindHandler);
-            // 获取所有路径中的最短路径, 用于减少重合路径部分的无用查询, 例如有: a>b, a>b>c 则获取到: a>b
-            paths = getShortestPaths(paths);
-            if (paths.isEmpty()) {
-                remindHandler.showReminds(Collections.<RemindType>emptyList());
+    /**
+     * 获取路径中第一个节点模式之前的部分，不包含节点模式时返回路径本身
+     */
+    private static NodePath patternFreePrefix(NodePath path) {
+        List<Node> nodes = path.nodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i) instanceof NodePattern) {
+                return NodePath.instance(nodes.subList(0, i));
+            }
+        }
+        return path;
+    }
+
+    private static boolean hasPattern(Set<NodePath> paths) {
+        for (NodePath path : paths) {
+            if (NodePatternMatcher.hasPattern(path.nodes())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 向handler展示消息，异步模式下在展示executor中执行
+     *
+     * @param reminds 要展示的全部消息，调用后不可再修改
+     * @param async   异步分发，null == 同步模式
+     */
+    private void deliverReminds(final HandlerRecord<RemindType> record, final List<RemindType> reminds, AsyncDispatch async) {
+        if (async == null) {
+            showRemindsIfChanged(record, reminds);
+            return;
+        }
+
+        async.deliver(record, new Runnable() {
+            @Override
+            public void run() {
+                showRemindsIfChanged(record, reminds);
+            }
+        });
+    }
+
+    /**
+     * 向handler展示消息，与上次展示的消息相同时跳过
+     *
+     * @param reminds 要展示的全部消息，调用后不可再修改
+     */
+    private void showRemindsIfChanged(HandlerRecord<RemindType> record, List<RemindType> reminds) {
+        RemindHandler<RemindType> remindHandler = record.get();
+        if (remindHandler == null
+                || record.attachedPaths == null) {
+            // 已被解除或已被回收
+            return;
+        }
+
+        if (!cacheReminds) {
+            showRemindsIfFingerprintChanged(record, remindHandler, reminds);
+            return;
+        }
+
+        RemindCache<RemindType> cache = record.cache;
+
+        synchronized (cache) {
+            // 绝大多数刷新结果未变化，先不分配内存直接比较
+            if (isSameReminds(cache.delivered, reminds)) {
+                skippedHandlerCount.incrementAndGet();
+                return;
+            }
+        }
+
+        Map<RemindType, RemindType> current = new HashMap<>(Math.max(16, reminds.size() * 4 / 3 + 1));
+        for (RemindType remind : reminds) {
+            current.put(remind, remind);
+        }
+
+        RemindDelta<RemindType> delta;
+        synchronized (cache) {
+            if (cache.delivered == null) {
+                delta = null;
+            } else {
+                delta = diffReminds(cache.delivered, current);
+                if (delta.isEmpty()) {
+                    skippedHandlerCount.incrementAndGet();
+                    return;
+                }
+            }
+            cache.delivered = current;
+        }
+
+        deliveredHandlerCount.incrementAndGet();
+        if (delta == null) {
+            remindHandler.showReminds(Collections.unmodifiableList(reminds));
+        } else {
+            remindHandler.showRemindDelta(delta, Collections.unmodifiableList(reminds));
+        }
+    }
+
+    /**
+     * 不缓存消息时向handler展示消息，与上次展示的消息指纹相同时跳过
+     * <p>
+     * 只保留指纹不保留消息，没有上次的消息也就无法计算差异；
+     * 指纹为消息数量及各消息指纹的和与异或，不同消息集的指纹恰好相同的概率可忽略
+     *
+     * @param reminds 要展示的全部消息，调用后不可再修改
+     */
+    private void showRemindsIfFingerprintChanged(HandlerRecord<RemindType> record, RemindHandler<RemindType> remindHandler, List<RemindType> reminds) {
+        long hashSum = 0;
+        long hashXor = 0;
+        for (RemindType remind : reminds) {
+            long hash = remindFingerprint(remind);
+            hashSum += hash;
+            hashXor ^= Long.rotateLeft(hash, 31);
+        }
+
+        RemindCache<RemindType> cache = record.cache;
+        synchronized (cache) {
+            if (cache.deliveredSize == reminds.size()
+                    && cache.deliveredHashSum == hashSum
+                    && cache.deliveredHashXor == hashXor) {
+                skippedHandlerCount.incrementAndGet();
+                return;
+            }
+            cache.deliveredSize = reminds.size();
+            cache.deliveredHashSum = hashSum;
+            cache.deliveredHashXor = hashXor;
+        }
+
+        deliveredHandlerCount.incrementAndGet();
+        remindHandler.showReminds(Collections.unmodifiableList(reminds));
+    }
+
+    /**
+     * 消息路径hash及过期时间的64位混合
+     */
+    private static long remindFingerprint(Remind remind) {
+        long hash = remind.path().hashCode() * 0x9E3779B97F4A7C15L + remind.expireAt();
+        hash = (hash ^ (hash >>> 32)) * 0xD6E8FEB86659FD93L;
+        return hash ^ (hash >>> 32);
+    }
+
+    /**
+     * 消息与上次展示的消息是否完全相同(包括实例)，reminds中的消息互不相等
+     */
+    private boolean isSameReminds(Map<RemindType, RemindType> delivered, List<RemindType> reminds) {
+        if (delivered == null
+                || delivered.size() != reminds.size()) {
+            return false;
+        }
+        for (RemindType remind : reminds) {
+            if (delivered.get(remind) != remind) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算两次展示的消息间的差异，开销为 O(消息数量)
+     */
+    private RemindDelta<RemindType> diffReminds(Map<RemindType, RemindType> last, Map<RemindType, RemindType> current) {
+        List<RemindType> added = new ArrayList<>();
+        List<RemindType> updated = new ArrayList<>();
+        for (RemindType remind : current.values()) {
+            RemindType lastRemind = last.get(remind);
+            if (lastRemind == null) {
+                added.add(remind);
+            } else if (lastRemind != remind) {
+                updated.add(remind);
+            }
+        }
+
+        // 上次的消息都还在时无需再遍历上次的消息
+        List<RemindType> removed = new ArrayList<>();
+        if (last.size() > current.size() - added.size()) {
+            for (RemindType remind : last.values()) {
+                if (!current.containsKey(remind)) {
+                    removed.add(remind);
+                }
+            }
+        }
+
+        return new RemindDelta<>(added, removed, updated);
+    }
+
+    /**
+     * 以缓存刷新缓存有效的handler
+     *
+     * @return 余下需要通过查询消息刷新的handler
+     */
+    private Set<HandlerRecord<RemindType>> dispatchCachedRemindHandlers(Set<HandlerRecord<RemindType>> records, AsyncDispatch async) {
+        Set<HandlerRecord<RemindType>> restRecords = null;
+
+        for (HandlerRecord<RemindType> record : records) {
+            List<RemindType> reminds = null;
+            synchronized (record.cache) {
+                if (record.cache.valid) {
+                    reminds = new ArrayList<>(record.cache.reminds.values());
+                }
+            }
+
+            if (reminds == null) {
+                if (restRecords == null) {
+                    restRecords = new HashSet<>();
+                }
+                restRecords.add(record);
                 continue;
             }
 
-            List<RemindType> handlerReminds = new LinkedList<>();
-            for (NodePath path : paths) {
-                Collection<? extends RemindType> reminds = remindTree.getMatchPathSubData(path.nodes());
-                if (reminds != null) {
-                    handlerReminds.addAll(reminds);
+            deliverReminds(record, reminds, async);
+        }
+
+        return restRecords == null
+                ? Collections.<HandlerRecord<RemindType>>emptySet()
+                : restRecords;
+    }
+
+    /**
+     * 以查询结果填充handler的缓存，查询期间缓存失效过则放弃
+     *
+     * @param generation 查询前的缓存版本
+     */
+    private void putRemindCache(HandlerRecord<RemindType> record, Long generation, Collection<RemindType> reminds) {
+        RemindCache<RemindType> cache = record.cache;
+        if (generation == null
+                || !cacheReminds) {
+            return;
+        }
+
+        synchronized (cache) {
+            if (cache.generation != generation) {
+                return;
+            }
+
+            cache.reminds.clear();
+            for (RemindType remind : reminds) {
+                cache.reminds.put(remind, remind);
+            }
+            cache.valid = true;
+        }
+    }
+
+    /**
+     * 通过仓库的计数索引为{@link RemindCountHandler}刷新消息数量，开销为 O(路径数量 * 路径深度)
+     *
+     * @return 余下需要通过消息列表刷新的handler
+     */
+    @SuppressWarnings("unchecked")
+    private Set<HandlerRecord<RemindType>> dispatchRemindCountHandlers(Set<HandlerRecord<RemindType>> records, AsyncDispatch async) {
+        if (!(remindRepo() instanceof CountableRemindRepo)) {
+            return records;
+        }
+        CountableRemindRepo<RemindType> countableRepo = (CountableRemindRepo<RemindType>) remindRepo();
+
+        Set<HandlerRecord<RemindType>> restRecords = null;
+
+        for (HandlerRecord<RemindType> record : records) {
+            if (!(record.get() instanceof RemindCountHandler)) {
+                if (restRecords == null) {
+                    restRecords = new HashSet<>();
                 }
+                restRecords.add(record);
+                continue;
+            }
+
+            AttachedPaths attachedPaths = record.attachedPaths;
+            if (attachedPaths == null) {
+                continue;
+            }
+
+            if (attachedPaths.hasPattern) {
+                // 计数索引不支持节点模式，以消息查询结果的数量刷新
+                if (restRecords == null) {
+                    restRecords = new HashSet<>();
+                }
+                restRecords.add(record);
+                continue;
+            }
+
+            // 最短路径间互不重合，其子树消息数量直接相加即可
+            int count = 0;
+            for (NodePath path : attachedPaths.shortestPaths) {
+                count += countableRepo.getMatchPathSubRemindCount(path);
             }
-            remindHandler.showReminds(handlerReminds);
+            deliverRemindCount(record, count, async);
         }
+
+        return restRecords == null
+                ? Collections.<HandlerRecord<RemindType>>emptySet()
+                : restRecords;
     }
 
-    private void putRemindHandlerPath(RemindHandler<RemindType> handler, Set<NodePath> put) {
-        putRemindHandlerPath(handler, put, Collections.<NodePath>emptySet());
+    /**
+     * 向计数handler展示消息数量，异步模式下在展示executor中执行
+     *
+     * @param async 异步分发，null == 同步模式
+     */
+    private void deliverRemindCount(final HandlerRecord<RemindType> record, final int count, AsyncDispatch async) {
+        if (async == null) {
+            showRemindCountIfChanged(record, count);
+            return;
+        }
+
+        async.deliver(record, new Runnable() {
+            @Override
+            public void run() {
+                showRemindCountIfChanged(record, count);
+            }
+        });
+    }
+
+    /**
+     * 向计数handler展示消息数量，与上次展示的数量相同时跳过
+     */
+    private void showRemindCountIfChanged(HandlerRecord<RemindType> record, int count) {
+        RemindCountHandler<RemindType> remindHandler = (RemindCountHandler<RemindType>) record.get();
+        if (remindHandler == null
+                || record.attachedPaths == null) {
+            return;
+        }
+
+        RemindCache<RemindType> cache = record.cache;
+
+        synchronized (cache) {
+            if (cache.deliveredCount == count) {
+                skippedHandlerCount.incrementAndGet();
+                return;
+            }
+            cache.deliveredCount = count;
+        }
+
+        deliveredHandlerCount.incrementAndGet();
+        remindHandler.showRemindCount(count);
     }
-    private void putRemindHandlerPath(RemindHandler<RemindType> handler, Set<NodePath> put, Set<NodePath> remove) {
-        Set<NodePath> attachedNodePaths = attachedRemindHandlers.get(handler);
-        if (attachedNodePaths == null) {
-            attachedNodePaths = new HashSet<>();
-            attachedRemindHandlers.put(handler, attachedNodePaths);
+
+    /**
+     * 调用方需持有handler锁
+     */
+    private void putRemindHandlerPath(HandlerRecord<RemindType> record, Set<NodePath> put, Set<NodePath> remove) {
+        NodeInterner interner = nodeInterner;
+        if (interner != null
+                && !put.isEmpty()) {
+            Set<NodePath> internedPaths = new HashSet<>(put.size() * 4 / 3 + 1);
+            for (NodePath path : put) {
+                internedPaths.add(interner.intern(path));
+            }
+            put = internedPaths;
         }
 
+        Set<NodePath> lastAttachedNodePaths = getRemindHandlerPath(record);
+
+        // map中只存放不可变快照，读操作无需加锁
+        Set<NodePath> attachedNodePaths = lastAttachedNodePaths == null
+                ? new HashSet<NodePath>()
+                : new HashSet<>(lastAttachedNodePaths);
+
         if (!put.isEmpty()) {
-            remindHandlerTree.putMore(handler, pathsToNodes(put));
+            remindHandlerTree.putMore(record, pathsToNodes(put));
             attachedNodePaths.addAll(put);
         }
 
         if (!remove.isEmpty()) {
-            remindHandlerTree.removeMore(handler, pathsToNodes(remove));
+            remindHandlerTree.removeMore(record, pathsToNodes(remove));
             attachedNodePaths.removeAll(remove);
         }
+
+        record.attachedPaths = new AttachedPaths(
+                Collections.unmodifiableSet(attachedNodePaths),
+                getShortestPaths(attachedNodePaths)
+        );
     }
-    private void removeRemindHandlerPath(RemindHandler<RemindType> handler, Set<NodePath> remove) {
-        remindHandlerTree.removeMore(handler, pathsToNodes(remove));
-        attachedRemindHandlers.remove(handler);
+    /**
+     * 调用方需持有handler锁，或handler已被回收
+     */
+    private void removeRemindHandlerPath(HandlerRecord<RemindType> record) {
+        AttachedPaths attachedPaths = record.attachedPaths;
+        record.attachedPaths = null;
+        remindHandlerTree.removeMore(record, pathsToNodes(attachedPaths.paths));
     }
     private Set<NodePath> getRemindHandlerPath(RemindHandler<RemindType> handler) {
-        return attachedRemindHandlers.get(handler);
+        return handler == null ? null : getRemindHandlerPath(records.get(handler));
+    }
+    private Set<NodePath> getRemindHandlerPath(HandlerRecord<RemindType> record) {
+        AttachedPaths attachedPaths = record == null ? null : record.attachedPaths;
+        return attachedPaths == null ? null : attachedPaths.paths;
     }
 
     private Set<NodePath> getShortestPaths(Set<NodePath> paths) {
@@ -235,10 +1464,13 @@ public class TreeModeRemindHandlerManager<RemindType extends Remind> extends Rem
         return pathTree.getShortestPathData();
     }
 
-    private Set<NodePath> getRemindHandlersAllPaths(Collection<RemindHandler<RemindType>> remindHandlers) {
+    private Set<NodePath> getRemindHandlersAllPaths(Collection<HandlerRecord<RemindType>> records) {
         Set<NodePath> result = new HashSet<>();
-        for (RemindHandler<RemindType> remindHandler : remindHandlers) {
-            result.addAll(attachedRemindHandlers.get(remindHandler));
+        for (HandlerRecord<RemindType> record : records) {
+            Set<NodePath> paths = getRemindHandlerPath(record);
+            if (paths != null) {
+                result.addAll(paths);
+            }
         }
         return result;
     }
@@ -1,28 +1,87 @@
 package ms.imf.redpoint.manager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 
 /**
  * 树结构，每个树节点可携带数个数据
  * 提供树结构的构建和路径-数据的各项查询功能的封装
+ * <p>
+ * 指定{@link NodeMatcher}后支持模式节点：树中的模式节点能被查询路径中与之匹配的节点查询到，
+ * 查询路径中的模式节点也能查询到树中与之匹配的节点；每个树节点单独记录其模式子节点，查询时只额外遍历这些子节点
  *
  * @author f_ms
  * @date 19-7-28
  */
 class TreeStructure<Node, Data> {
 
+    /**
+     * 树节点匹配规则
+     */
+    interface NodeMatcher<Node> {
+        /**
+         * 节点是否为模式节点
+         */
+        boolean isPattern(Node node);
+
+        /**
+         * 模式节点是否匹配指定的非模式节点
+         */
+        boolean matches(Node pattern, Node node);
+    }
+
     private class DataNode {
         final Set<Data> dataSet = new HashSet<>();
         final Map<Node, DataNode> sub = new HashMap<>();
+        /**
+         * {@link #sub}中的模式节点，null == 没有模式子节点，多数树节点没有模式子节点，按需创建
+         */
+        Set<Node> patterns;
+
+        void addPattern(Node node) {
+            if (patterns == null) {
+                patterns = new HashSet<>();
+            }
+            patterns.add(node);
+        }
+
+        void removePattern(Node node) {
+            if (patterns != null
+                    && patterns.remove(node)
+                    && patterns.isEmpty()) {
+                patterns = null;
+            }
+        }
+    }
+
+    /**
+     * 模式节点匹配规则，null == 不支持模式节点
+     */
+    final NodeMatcher<Node> matcher;
+
+    private final DataNode root = new DataNode();
+    private final Map<Node, DataNode> tree = root.sub;
+    private final TreeWalker<Node, Data, DataNode> walker;
+
+    TreeStructure() {
+        this(null);
     }
 
-    private final Map<Node, DataNode> tree = new HashMap<>();
+    /**
+     * @param matcher 模式节点匹配规则，null == 不支持模式节点
+     */
+    TreeStructure(NodeMatcher<Node> matcher) {
+        this.matcher = matcher;
+        this.walker = new DataNodeWalker(matcher);
+    }
 
     /**
      * 插入数据到指定路径下
@@ -37,19 +96,22 @@ class TreeStructure<Node, Data> {
     void putMore(Data data, Iterable<? extends Iterable<Node>> paths) {
         for (Iterable<Node> path : paths) {
 
-            Map<Node, DataNode> currentNode = tree;
+            DataNode currentNode = root;
 
             Iterator<Node> iterator = path.iterator();
             while (iterator.hasNext()) {
                 Node node = iterator.next();
 
-                DataNode dataNode = currentNode.get(node);
+                DataNode dataNode = currentNode.sub.get(node);
                 if (dataNode == null) {
                     dataNode = new DataNode();
-                    currentNode.put(node, dataNode);
+                    currentNode.sub.put(node, dataNode);
+                    if (isPattern(node)) {
+                        currentNode.addPattern(node);
+                    }
                 }
 
-                currentNode = dataNode.sub;
+                currentNode = dataNode;
 
                 if (!iterator.hasNext()) {
                     dataNode.dataSet.add(data);
@@ -100,6 +162,33 @@ class TreeStructure<Node, Data> {
      */
     void clear() {
         tree.clear();
+        root.patterns = null;
+    }
+
+    /**
+     * 清空完全匹配指定路径的节点及其子节点下的所有数据，路径中的模式节点只匹配相等的节点；空路径 == {@link #clear()}
+     */
+    void clearSub(Iterable<Node> path) {
+        if (!path.iterator().hasNext()) {
+            clear();
+            return;
+        }
+
+        DataNode parentNode = null;
+        DataNode currentNode = root;
+        Node lastNode = null;
+        for (Node node : path) {
+            parentNode = currentNode;
+            currentNode = currentNode.sub.get(node);
+            lastNode = node;
+            if (currentNode == null) {
+                return;
+            }
+        }
+
+        parentNode.sub.remove(lastNode);
+        parentNode.removePattern(lastNode);
+        removeInvalidNode(path);
     }
 
     /**
@@ -109,14 +198,9 @@ class TreeStructure<Node, Data> {
      * 指定路径为 'a>b>c' 的情况下只会返回节点 'a>b>c' 下的数据
      */
     Set<Data> getMatchPathData(Iterable<Node> path) {
-        DataNode dataNode = getPathLastDataNode(path);
-        if (dataNode == null) {
-            return Collections.emptySet();
-        }
-
-        return new HashSet<>(
-                dataNode.dataSet
-        );
+        Set<Data> result = new HashSet<>();
+        walker.walk(root, path, TreeWalker.Mode.MATCH, result);
+        return result;
     }
 
     /**
@@ -136,20 +220,7 @@ class TreeStructure<Node, Data> {
         final Set<Data> result = new HashSet<>();
 
         for (Iterable<Node> path : paths) {
-
-            Map<Node, DataNode> currentDataNode = tree;
-
-            for (Node node : path) {
-                DataNode dataNode = currentDataNode.get(node);
-                if (dataNode == null) {
-                    break;
-                }
-
-                currentDataNode = dataNode.sub;
-
-                result.addAll(dataNode.dataSet);
-            }
-
+            walker.walk(root, path, TreeWalker.Mode.RANGE, result);
         }
 
         return result;
@@ -172,13 +243,7 @@ class TreeStructure<Node, Data> {
         Set<Data> result = new HashSet<>();
 
         for (Iterable<Node> path : paths) {
-
-            DataNode matchDataNode = getPathLastDataNode(path);
-            if (matchDataNode == null) {
-                continue;
-            }
-
-            addDataNodeToContainer(matchDataNode, result);
+            walker.walk(root, path, TreeWalker.Mode.MATCH_SUB, result);
         }
 
         return result;
@@ -210,27 +275,90 @@ class TreeStructure<Node, Data> {
         return result;
     }
 
-    private DataNode getPathLastDataNode(Iterable<Node> path) {
-        DataNode matchDataNode = null;
-        Map<Node, DataNode> currentNode = tree;
+    /**
+     * 获取以完全匹配指定路径的节点为根的子树中拥有最长节点的数据，路径中的模式节点只匹配相等的节点
+     *
+     * @see #getLongestPathData()
+     */
+    Set<Data> getLongestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        DataNode dataNode = findNode(path);
+        if (dataNode != null) {
+            addLongestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
 
-        Iterator<Node> nodeIterator = path.iterator();
-        while (nodeIterator.hasNext()) {
-            Node node = nodeIterator.next();
+    /**
+     * 获取以完全匹配指定路径的节点为根的子树中拥有最短节点的数据，路径中的模式节点只匹配相等的节点
+     *
+     * @see #getShortestPathData()
+     */
+    Set<Data> getShortestPathData(Iterable<Node> path) {
+        Set<Data> result = new HashSet<>();
+        DataNode dataNode = findNode(path);
+        if (dataNode != null) {
+            addShortestPathDataToContainer(dataNode, result);
+        }
+        return result;
+    }
 
-            DataNode dataNode = currentNode.get(node);
-            if (dataNode == null) {
-                break;
-            }
+    boolean isPattern(Node node) {
+        return matcher != null
+                && matcher.isPattern(node);
+    }
+
+    private class DataNodeWalker extends TreeWalker<Node, Data, DataNode> {
+
+        DataNodeWalker(NodeMatcher<Node> matcher) {
+            super(matcher);
+        }
 
-            currentNode = dataNode.sub;
+        @Override
+        DataNode findChild(DataNode parent, Node node) {
+            return parent.sub.get(node);
+        }
 
-            if (!nodeIterator.hasNext()) {
-                matchDataNode = dataNode;
+        @Override
+        void forEachChild(DataNode parent, boolean pattern, Walk walk) {
+            if (pattern) {
+                if (parent.patterns == null) {
+                    return;
+                }
+                for (Node node : parent.patterns) {
+                    walk.child(parent.sub.get(node), node, true);
+                }
+                return;
+            }
+            for (Map.Entry<Node, DataNode> entry : parent.sub.entrySet()) {
+                if (!isPattern(entry.getKey())) {
+                    walk.child(entry.getValue(), entry.getKey(), false);
+                }
             }
         }
 
-        return matchDataNode;
+        @Override
+        void addData(DataNode treeNode, Collection<Data> result) {
+            result.addAll(treeNode.dataSet);
+        }
+
+        @Override
+        void addSubData(DataNode treeNode, Collection<Data> result) {
+            addDataNodeToContainer(treeNode, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> toRandomAccessList(Iterable<T> iterable) {
+        if (iterable instanceof List
+                && iterable instanceof RandomAccess) {
+            return (List<T>) iterable;
+        }
+        List<T> result = new ArrayList<>();
+        for (T t : iterable) {
+            result.add(t);
+        }
+        return result;
     }
 
     private void addDataNodeToContainer(DataNode dataNode, Collection<Data> resultContainer) {
@@ -258,21 +386,32 @@ class TreeStructure<Node, Data> {
             addShortestPathDataToContainer(entry.getValue(), resultContainer);
         }
     }
+    private DataNode findNode(Iterable<Node> path) {
+        DataNode currentNode = root;
+        for (Node node : path) {
+            currentNode = currentNode.sub.get(node);
+            if (currentNode == null) {
+                return null;
+            }
+        }
+        return currentNode;
+    }
     private void removeInvalidNode(Iterable<Node> path) {
-        Map<Node, DataNode> currentNode = tree;
+        DataNode currentNode = root;
 
         for (Node node : path) {
-            DataNode dataNode = currentNode.get(node);
+            DataNode dataNode = currentNode.sub.get(node);
             if (dataNode == null) {
                 break;
             }
 
             if (!hasData(dataNode)) {
-                currentNode.remove(node);
+                currentNode.sub.remove(node);
+                currentNode.removePattern(node);
                 break;
             }
 
-            currentNode = dataNode.sub;
+            currentNode = dataNode;
         }
     }
     private boolean hasData(DataNode dataNode) {
@@ -0,0 +1,158 @@
+package ms.imf.redpoint.manager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link TreeStructure}各实现共用的路径查询规则，各实现只需提供树节点的访问方式
+ * <p>
+ * 沿路径逐层查询，路径中的节点与模式节点互相匹配时会同时沿所有匹配的分支查询：
+ * 树中的模式节点能被查询路径中与之匹配的节点查询到，查询路径中的模式节点也能查询到树中与之匹配的非模式节点
+ *
+ * @param <TreeNode> 树节点的表示方式，null == 不存在的树节点
+ */
+abstract class TreeWalker<Node, Data, TreeNode> {
+
+    /**
+     * 查询模式
+     */
+    enum Mode {
+        /**
+         * 路径范围内所有数据
+         */
+        RANGE,
+        /**
+         * 完全匹配路径的节点数据
+         */
+        MATCH,
+        /**
+         * 完全匹配路径的节点及其子节点数据
+         */
+        MATCH_SUB
+    }
+
+    /**
+     * 模式节点匹配规则，null == 不支持模式节点
+     */
+    private final TreeStructure.NodeMatcher<Node> matcher;
+
+    TreeWalker(TreeStructure.NodeMatcher<Node> matcher) {
+        this.matcher = matcher;
+    }
+
+    /**
+     * 获取parent下与node相等的子节点，没有时返回null
+     */
+    abstract TreeNode findChild(TreeNode parent, Node node);
+
+    /**
+     * 对parent下的每个模式子节点(pattern == true)或每个非模式子节点(pattern == false)调用{@link Walk#child}
+     */
+    abstract void forEachChild(TreeNode parent, boolean pattern, Walk walk);
+
+    /**
+     * 将树节点自身的数据添加到result
+     */
+    abstract void addData(TreeNode treeNode, Collection<Data> result);
+
+    /**
+     * 将树节点及其所有子节点的数据添加到result
+     */
+    abstract void addSubData(TreeNode treeNode, Collection<Data> result);
+
+    /**
+     * 从root开始沿路径查询数据并添加到result
+     */
+    final void walk(TreeNode root, Iterable<Node> path, Mode mode, Collection<Data> result) {
+        List<Node> nodes = TreeStructure.toRandomAccessList(path);
+        if (!nodes.isEmpty()) {
+            new Walk(nodes, mode, result).walk(root, 0);
+        }
+    }
+
+    /**
+     * 一次查询的状态
+     */
+    final class Walk {
+        private final List<Node> path;
+        private final Mode mode;
+        private final Collection<Data> result;
+        /**
+         * 当前查询的路径节点下标，{@link #forEachChild}期间有效
+         */
+        private int index;
+
+        private Walk(List<Node> path, Mode mode, Collection<Data> result) {
+            this.path = path;
+            this.mode = mode;
+            this.result = result;
+        }
+
+        /**
+         * 子节点与当前查询的路径节点匹配时沿该子节点继续查询
+         *
+         * @param child     子节点
+         * @param childNode 子节点对应的节点
+         * @param pattern   childNode是否为模式节点
+         */
+        void child(TreeNode child, Node childNode, boolean pattern) {
+            Node node = path.get(index);
+            boolean matched = pattern
+                    // 与路径节点相等的模式节点已作为完全匹配的子节点查询过
+                    ? !childNode.equals(node) && matcher.matches(childNode, node)
+                    : matcher.matches(node, childNode);
+            if (matched) {
+                visit(child, index);
+            }
+        }
+
+        private void walk(TreeNode current, int index) {
+            Node node = path.get(index);
+
+            TreeNode exact = findChild(current, node);
+            if (exact != null) {
+                visit(exact, index);
+            }
+
+            if (matcher == null) {
+                return;
+            }
+
+            this.index = index;
+            forEachChild(current, true, this);
+
+            if (matcher.isPattern(node)) {
+                this.index = index;
+                forEachChild(current, false, this);
+            }
+        }
+
+        private void visit(TreeNode treeNode, int index) {
+            boolean last = index == path.size() - 1;
+
+            switch (mode) {
+                case RANGE:
+                    addData(treeNode, result);
+                    break;
+                case MATCH:
+                    if (last) {
+                        addData(treeNode, result);
+                    }
+                    break;
+                case MATCH_SUB:
+                    if (last) {
+                        addSubData(treeNode, result);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown walk mode: " + mode);
+            }
+
+            if (!last) {
+                walk(treeNode, index + 1);
+                // 子节点的查询会改变当前下标，恢复后继续遍历同层的其他子节点
+                this.index = index;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ms.imf.redpoint.manager;
+
+/**
+ * 不希望被调用方缓存查询结果的提醒数据仓库
+ * <p>
+ * 与{@link CountableRemindRepo}一样作为{@link RemindRepo}的可选能力单独声明，本身不包含方法；
+ * 适用于查询时才生成消息对象、以降低堆内存占用为目的的仓库，调用方缓存查询结果会使全部消息在堆上常驻，失去其意义
+ *
+ * @param <RemindType> 支持的提醒数据类型
+ * @see OffHeapRemindRepo
+ */
+public interface UncachedRemindRepo<RemindType extends Remind> extends RemindRepo<RemindType> {
+}
@@ -0,0 +1,38 @@
+package ms.imf.redpoint.manager;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以固定时间窗口合并通知的分发调度器
+ * <p>
+ * 窗口内的所有刷新请求会在窗口结束时于指定的executor中合并执行
+ *
+ * @see DispatchScheduler
+ */
+public class WindowDispatchScheduler implements DispatchScheduler {
+
+    private final ScheduledExecutorService executor;
+    private final long window;
+    private final TimeUnit unit;
+
+    /**
+     * @param executor 执行合并后刷新任务的executor
+     * @param window   合并窗口时长
+     * @param unit     合并窗口时长单位
+     */
+    public WindowDispatchScheduler(ScheduledExecutorService executor, long window, TimeUnit unit) {
+        if (executor == null) { throw new IllegalArgumentException("executor can't be null"); }
+        if (unit == null) { throw new IllegalArgumentException("unit can't be null"); }
+        if (window < 0) { throw new IllegalArgumentException("window can't less 0"); }
+
+        this.executor = executor;
+        this.window = window;
+        this.unit = unit;
+    }
+
+    @Override
+    public void schedule(Runnable flushTask) {
+        executor.schedule(flushTask, window, unit);
+    }
+}
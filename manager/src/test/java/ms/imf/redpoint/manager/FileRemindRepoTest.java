@@ -0,0 +1,348 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeEncoder;
+import ms.imf.redpoint.entity.NodePath;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FileRemindRepoTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final NodePath pathA = NodePath.instance("a");
+    private final NodePath pathAb = NodePath.instance(Node.instance("a"), Node.instance("b", "id", "1", "empty", null));
+    private final NodePath pathAc = NodePath.instance("a", "c");
+
+    private File file;
+    private FileRemindRepo<Remind> repo;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(temporaryFolder.getRoot(), "reminds.log");
+        repo = open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        repo.close();
+    }
+
+    @Test
+    public void reloadReminds() throws IOException {
+        repo.addReminds(reminds(pathA, pathAb, pathAc));
+        repo.removeReminds(reminds(pathAc));
+
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathA, pathAb)));
+
+        repo.removeMatchPathSubReminds(Collections.singleton(pathA));
+        repo.addRemind(new Remind(pathAc));
+
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathAc)));
+    }
+
+    @Test
+    public void truncateTornTail() throws IOException {
+        repo.addReminds(reminds(pathA, pathAb));
+        long validLength = file.length();
+        repo.addRemind(new Remind(pathAc));
+        repo.close();
+
+        // 模拟最后一条记录写入一半时崩溃
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 3);
+        randomAccessFile.close();
+
+        repo = open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb)));
+        assertThat(file.length(), is(validLength));
+
+        // 截断后可继续追加
+        repo.addRemind(new Remind(pathAc));
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathA, pathAb, pathAc)));
+    }
+
+    @Test
+    public void batchRecord() throws IOException {
+        repo.addRemind(new Remind(pathAc));
+        long validLength = file.length();
+        repo.batch(new RemindBatch<Remind>() {
+            @Override
+            public void apply(BatchableRemindRepo<Remind> repo) {
+                repo.addReminds(reminds(pathA, pathAb));
+                repo.removeReminds(reminds(pathAc));
+                repo.removeReminds(reminds(pathA));
+            }
+        });
+
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathAb)));
+        repo.close();
+
+        // 模拟批量记录写入一半时崩溃，整个批量操作都不会被重放
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 3);
+        randomAccessFile.close();
+
+        repo = open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathAc)));
+        assertThat(file.length(), is(validLength));
+    }
+
+    @Test
+    public void compact() throws IOException {
+        repo.close();
+        repo = open(4);
+
+        for (int i = 0; i < 16; i++) {
+            repo.addRemind(new Remind(pathAc));
+            repo.removeReminds(reminds(pathAc));
+            repo.addRemind(new Remind(pathA));
+        }
+        long compactedLength = file.length();
+
+        repo.compact();
+        assertThat(file.length() <= compactedLength, is(true));
+        assertThat(new File(file.getPath() + ".compact").exists(), is(false));
+
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathA)));
+    }
+
+    @Test
+    public void compactFailure() throws IOException {
+        repo.close();
+        repo = open(4);
+
+        // 压缩临时文件的位置被目录占用，压缩必然失败
+        File compactFile = new File(file.getPath() + ".compact");
+        assertThat(compactFile.mkdir(), is(true));
+
+        for (int i = 0; i < 8; i++) {
+            repo.addRemind(new Remind(pathAc));
+            repo.removeReminds(reminds(pathAc));
+        }
+        repo.addRemind(new Remind(pathA));
+        long uncompactedLength = file.length();
+
+        // 压缩失败不影响已写入的记录，以日志副本验证，避免重新打开时清理掉占位目录
+        File copy = new File(temporaryFolder.getRoot(), "copy.log");
+        Files.copy(file.toPath(), copy.toPath());
+        FileRemindRepo<Remind> copyRepo = new FileRemindRepo<>(copy, new PathRemindSerializer());
+        assertThat(toSet(copyRepo.getAllReminds()), is(reminds(pathA)));
+        copyRepo.close();
+
+        assertThat(compactFile.delete(), is(true));
+
+        // 压缩恢复后日志被重写
+        for (int i = 0; i < 8; i++) {
+            repo.addRemind(new Remind(pathAc));
+            repo.removeReminds(reminds(pathAc));
+        }
+        assertThat(file.length() < uncompactedLength, is(true));
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathA)));
+    }
+
+    @Test
+    public void persistExpireAt() throws IOException {
+        repo.close();
+        assertExpireAtPersisted(new PathRemindSerializer());
+        assertExpireAtPersisted(new CompactRemindSerializer());
+        assertThat(file.delete(), is(true));
+        repo = open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    @Test
+    public void legacyRecordFormat() throws IOException {
+        // 不支持过期时间的旧格式：Path为int节点个数开头，Compact为NodePath开头
+        ByteArrayOutputStream pathBytes = new ByteArrayOutputStream();
+        DataOutputStream pathOutput = new DataOutputStream(pathBytes);
+        pathOutput.writeInt(1);
+        pathOutput.writeUTF("a");
+        pathOutput.writeInt(0);
+        pathOutput.flush();
+
+        ByteArrayOutputStream compactBytes = new ByteArrayOutputStream();
+        DataOutputStream compactOutput = new DataOutputStream(compactBytes);
+        new NodeEncoder(compactOutput).writeNodePath(pathA);
+        compactOutput.flush();
+
+        assertLegacyRecord(new PathRemindSerializer(), pathBytes.toByteArray());
+        assertLegacyRecord(new CompactRemindSerializer(), compactBytes.toByteArray());
+    }
+
+    @Test
+    public void logWriteFailure() throws IOException {
+        repo.close();
+
+        // pathAc的消息写入日志时失败
+        final RemindSerializer<Remind> pathSerializer = new PathRemindSerializer();
+        repo = new FileRemindRepo<>(file, new RemindSerializer<Remind>() {
+            @Override
+            public Writer<Remind> newWriter(DataOutput output) {
+                final Writer<Remind> writer = pathSerializer.newWriter(output);
+                return new Writer<Remind>() {
+                    @Override
+                    public void write(Remind remind) throws IOException {
+                        if (remind.path().equals(pathAc)) {
+                            throw new IOException("write failure");
+                        }
+                        writer.write(remind);
+                    }
+                };
+            }
+
+            @Override
+            public Reader<Remind> newReader(DataInput input) {
+                return pathSerializer.newReader(input);
+            }
+        });
+        final List<RemindDelta<Remind>> deltaHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {}
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltaHistory.add(delta);
+            }
+        });
+        repo.addRemind(new Remind(pathA));
+        deltaHistory.clear();
+
+        // 写入失败时内存中的变更依然生效，且在抛出异常前通知监听器
+        try {
+            repo.addReminds(reminds(pathAb, pathAc));
+            fail("log write failure should be thrown");
+        } catch (IllegalStateException ignore) {
+        }
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb, pathAc)));
+        assertThat(deltaHistory.size(), is(1));
+        assertThat(toSet(deltaHistory.get(0).added()), is(reminds(pathAb, pathAc)));
+
+        try {
+            repo.removeReminds(reminds(pathAc));
+            fail("log write failure should be thrown");
+        } catch (IllegalStateException ignore) {
+        }
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb)));
+        assertThat(deltaHistory.size(), is(2));
+        assertThat(toSet(deltaHistory.get(1).removed()), is(reminds(pathAc)));
+
+        // 写了一半的记录已被移除，之前的记录依然有效
+        assertThat(toSet(reopen().getAllReminds()), is(reminds(pathA)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed() throws IOException {
+        repo.close();
+        repo.addRemind(new Remind(pathA));
+    }
+
+    @Test(expected = IOException.class)
+    public void illegalFile() throws IOException {
+        repo.close();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.writeInt(0);
+        randomAccessFile.close();
+
+        open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * 过期时间经日志写入、重新加载及压缩后保持不变
+     */
+    private void assertExpireAtPersisted(RemindSerializer<Remind> serializer) throws IOException {
+        long expireAt = System.currentTimeMillis() + 3600 * 1000;
+        assertThat(file.delete(), is(true));
+
+        FileRemindRepo<Remind> expiringRepo = new FileRemindRepo<>(file, serializer);
+        expiringRepo.addReminds(Arrays.asList(new Remind(pathA), new Remind(pathAb, expireAt)));
+        expiringRepo.close();
+
+        expiringRepo = new FileRemindRepo<>(file, serializer);
+        assertThat(expireAtOf(expiringRepo.getAllReminds()), is(expireAts(Remind.NEVER_EXPIRE, expireAt)));
+
+        expiringRepo.compact();
+        expiringRepo.close();
+
+        expiringRepo = new FileRemindRepo<>(file, serializer);
+        assertThat(expireAtOf(expiringRepo.getAllReminds()), is(expireAts(Remind.NEVER_EXPIRE, expireAt)));
+        expiringRepo.close();
+    }
+
+    private Map<NodePath, Long> expireAts(long pathAExpireAt, long pathAbExpireAt) {
+        Map<NodePath, Long> result = new HashMap<>();
+        result.put(pathA, pathAExpireAt);
+        result.put(pathAb, pathAbExpireAt);
+        return result;
+    }
+
+    private static Map<NodePath, Long> expireAtOf(Collection<? extends Remind> reminds) {
+        Map<NodePath, Long> result = new HashMap<>();
+        for (Remind remind : reminds) {
+            result.put(remind.path(), remind.expireAt());
+        }
+        return result;
+    }
+
+    private void assertLegacyRecord(RemindSerializer<Remind> serializer, byte[] record) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        Remind remind = serializer.newReader(input).read();
+        assertThat(remind, is(new Remind(pathA)));
+        assertThat(remind.expireAt(), is(Remind.NEVER_EXPIRE));
+        assertThat(input.read(), is(-1));
+    }
+
+    private FileRemindRepo<Remind> reopen() throws IOException {
+        repo.close();
+        repo = open(FileRemindRepo.DEFAULT_COMPACT_THRESHOLD);
+        return repo;
+    }
+
+    private FileRemindRepo<Remind> open(int compactThreshold) throws IOException {
+        return new FileRemindRepo<>(file, new PathRemindSerializer(), compactThreshold);
+    }
+
+    private static Set<Remind> reminds(NodePath... paths) {
+        Set<Remind> result = new HashSet<>();
+        for (NodePath path : Arrays.asList(paths)) {
+            result.add(new Remind(path));
+        }
+        return result;
+    }
+
+    private static Set<Remind> toSet(Collection<? extends Remind> reminds) {
+        return new HashSet<>(reminds);
+    }
+}
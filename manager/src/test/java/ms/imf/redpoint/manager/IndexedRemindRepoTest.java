@@ -0,0 +1,486 @@
+package ms.imf.redpoint.manager;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class IndexedRemindRepoTest {
+
+    private final NodePath pathA = NodePath.instance("a");
+    private final NodePath pathAb = NodePath.instance("a", "b");
+    private final NodePath pathAbc = NodePath.instance("a", "b", "c");
+    private final NodePath pathAbd = NodePath.instance("a", "b", "d");
+    private final NodePath pathAe = NodePath.instance("a", "e");
+
+    private IndexedRemindRepo<Remind> repo;
+    private List<Set<Remind>> changedHistory;
+
+    @Before
+    public void setUp() {
+        repo = new IndexedRemindRepo<>();
+        changedHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDataChangedListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {
+                Set<Remind> reminds = new HashSet<>();
+                for (Remind remind : changedReminds) {
+                    reminds.add(remind);
+                }
+                changedHistory.add(reminds);
+            }
+        });
+
+        repo.addReminds(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe));
+        changedHistory.clear();
+    }
+
+    @Test
+    public void addReminds() {
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe))
+        );
+
+        // 重复添加相同实例不算变更
+        Remind remind = new Remind(NodePath.instance("f"));
+        repo.addRemind(remind);
+        repo.addRemind(remind);
+        assertThat(changedHistory, CoreMatchers.<List<Set<Remind>>>is(Collections.singletonList(Collections.singleton(remind))));
+    }
+
+    @Test
+    public void getMatchPathReminds() {
+        assertThat(
+                toSet(repo.getMatchPathReminds(Collections.singleton(pathAb)).get(pathAb)),
+                is(reminds(pathAb))
+        );
+        assertThat(
+                toSet(repo.getMatchPathReminds(Collections.singleton(NodePath.instance("x"))).get(NodePath.instance("x"))),
+                is(Collections.<Remind>emptySet())
+        );
+    }
+
+    @Test
+    public void getMatchPathSubReminds() {
+        assertThat(
+                toSet(repo.getMatchPathSubReminds(Collections.singleton(pathAb)).get(pathAb)),
+                is(reminds(pathAb, pathAbc, pathAbd))
+        );
+        assertThat(
+                toSet(repo.getMatchPathSubReminds(Collections.singleton(NodePath.EMPTY)).get(NodePath.EMPTY)),
+                is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe))
+        );
+    }
+
+    @Test
+    public void removeMatchPathReminds() {
+        assertThat(repo.removeMatchPathReminds(Collections.singleton(pathAb)), is(1L));
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAbc, pathAbd, pathAe))
+        );
+        assertThat(changedHistory, CoreMatchers.<List<Set<Remind>>>is(Collections.singletonList(reminds(pathAb))));
+
+        assertThat(repo.removeMatchPathReminds(Collections.singleton(pathAb)), is(0L));
+        assertThat(changedHistory.size(), is(1));
+    }
+
+    @Test
+    public void removeMatchPathSubReminds() {
+        assertThat(repo.removeMatchPathSubReminds(Collections.singleton(pathAb)), is(3L));
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAe))
+        );
+        assertThat(changedHistory, CoreMatchers.<List<Set<Remind>>>is(Collections.singletonList(reminds(pathAb, pathAbc, pathAbd))));
+
+        // 被移除的子树应不再能被匹配到
+        assertThat(
+                toSet(repo.getMatchPathSubReminds(Collections.singleton(pathAb)).get(pathAb)),
+                is(Collections.<Remind>emptySet())
+        );
+    }
+
+    @Test
+    public void removeReminds() {
+        repo.removeReminds(Arrays.asList(new Remind(pathAbc), new Remind(NodePath.instance("x"))));
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAb, pathAbd, pathAe))
+        );
+        assertThat(changedHistory, CoreMatchers.<List<Set<Remind>>>is(Collections.singletonList(reminds(pathAbc))));
+    }
+
+    @Test
+    public void removeAllReminds() {
+        assertThat(repo.removeAllReminds(), is(5L));
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(Collections.<Remind>emptySet())
+        );
+        assertThat(repo.removeAllReminds(), is(0L));
+        assertThat(changedHistory.size(), is(1));
+    }
+
+    @Test
+    public void remindsByArg() {
+        Node list = Node.instance("list");
+        NodePath item1 = NodePath.instance(list, Node.instance("item", "itemId", "1"));
+        NodePath item1Badge = NodePath.instance(item1, "badge");
+        NodePath item1Nested = NodePath.instance(item1, Node.instance("item", "itemId", "1"));
+        NodePath item2 = NodePath.instance(list, Node.instance("item", "itemId", "2"));
+        NodePath detail1 = NodePath.instance(Node.instance("detail", "itemId", "1"));
+        repo.addReminds(reminds(item1, item1Badge, item1Nested, item2, detail1));
+
+        assertThat(
+                toSet(repo.getRemindsByArg("item", "itemId", "1")),
+                is(reminds(item1, item1Badge, item1Nested))
+        );
+        // 祖先节点也匹配的消息不会被重复获取
+        assertThat(repo.getRemindsByArg("item", "itemId", "1").size(), is(3));
+        assertThat(
+                toSet(repo.getRemindsByArg(null, "itemId", "1")),
+                is(reminds(item1, item1Badge, item1Nested, detail1))
+        );
+        assertThat(
+                toSet(repo.getRemindsByArg("item", "itemId", Arrays.asList("1", "2"))),
+                is(reminds(item1, item1Badge, item1Nested, item2))
+        );
+        assertThat(
+                toSet(repo.getRemindsByArg("item", "itemId", "3")),
+                is(Collections.<Remind>emptySet())
+        );
+
+        changedHistory.clear();
+        assertThat(repo.removeRemindsByArg(null, "itemId", "1"), is(4L));
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe, item2))
+        );
+        assertThat(changedHistory, CoreMatchers.<List<Set<Remind>>>is(Collections.singletonList(reminds(item1, item1Badge, item1Nested, detail1))));
+        assertThat(repo.remindCount(), is(6));
+        assertThat(repo.getMatchPathSubRemindCount(NodePath.instance(list)), is(1));
+
+        // 其他方式移除的消息同样从索引中移除
+        repo.removeMatchPathSubReminds(Collections.singleton(NodePath.instance(list)));
+        assertThat(repo.getRemindsByArg("item", "itemId", "2").isEmpty(), is(true));
+        assertThat(repo.removeRemindsByArg("item", "itemId", "2"), is(0L));
+
+        // 重新添加后可再次被索引
+        repo.addRemind(new Remind(item2));
+        assertThat(toSet(repo.getRemindsByArg("item", "itemId", "2")), is(reminds(item2)));
+    }
+
+    @Test
+    public void remindCount() {
+        assertThat(repo.remindCount(), is(5));
+        assertThat(repo.getMatchPathRemindCount(pathAb), is(1));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(3));
+        assertThat(repo.getMatchPathSubRemindCount(pathA), is(5));
+
+        // 计数应随添加/移除增量更新
+        repo.addRemind(new Remind(NodePath.instance("a", "b", "c", "x")));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(4));
+        assertThat(repo.getMatchPathSubRemindCount(pathA), is(6));
+
+        repo.removeMatchPathSubReminds(Collections.singleton(pathAbc));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(2));
+        assertThat(repo.getMatchPathSubRemindCount(pathAbc), is(0));
+
+        repo.removeMatchPathReminds(Collections.singleton(pathA));
+        repo.removeReminds(Collections.singleton(new Remind(pathAe)));
+        assertThat(repo.getMatchPathSubRemindCount(pathA), is(2));
+        assertThat(repo.remindCount(), is(2));
+    }
+
+    @Test
+    public void remindCountHandler() {
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+
+        final int[] shownCount = {-1};
+        RemindCountHandler<Remind> handler = new RemindCountHandler<Remind>(manager) {
+            @Override
+            public void showRemindCount(int count) {
+                shownCount[0] = count;
+            }
+        };
+        handler.setPath(pathAb, pathAbc, pathAe);
+        handler.attachToManager();
+        assertThat(shownCount[0], is(4));
+
+        repo.addRemind(new Remind(NodePath.instance("a", "b", "x")));
+        assertThat(shownCount[0], is(5));
+
+        repo.removeMatchPathSubReminds(Collections.singleton(pathAb));
+        assertThat(shownCount[0], is(1));
+        assertThat(manager.getMatchPathSubRemindCount(pathA), is(2));
+    }
+
+    @Test
+    public void batch() {
+        final List<RemindDelta<Remind>> deltaHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {
+                throw new AssertionError("delta listener shouldn't receive untyped changes");
+            }
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltaHistory.add(delta);
+            }
+        });
+
+        final NodePath pathF = NodePath.instance("f");
+        final NodePath pathG = NodePath.instance("g");
+        final Remind newRemindA = new Remind(pathA);
+        final Remind newRemindAbc = new Remind(pathAbc);
+        repo.batch(new RemindBatch<Remind>() {
+            @Override
+            public void apply(BatchableRemindRepo<Remind> repo) {
+                repo.addReminds(reminds(pathF, pathG));
+                // 先添加后移除
+                repo.removeReminds(reminds(pathG));
+                repo.removeMatchPathReminds(Collections.singleton(pathAe));
+                // 移除后以新实例添加回来
+                repo.removeReminds(reminds(pathA));
+                repo.addReminds(Collections.singleton(newRemindA));
+                repo.addReminds(Collections.singleton(newRemindAbc));
+
+                // 批量操作内能读到已执行的变更
+                assertThat(repo.getAllReminds().size(), is(5));
+                assertThat(deltaHistory.isEmpty(), is(true));
+            }
+        });
+
+        // 只通知一次净变更
+        assertThat(deltaHistory.size(), is(1));
+        RemindDelta<Remind> delta = deltaHistory.get(0);
+        assertThat(toSet(delta.added()), is(reminds(pathF)));
+        assertThat(toSet(delta.removed()), is(reminds(pathAe)));
+        assertThat(toSet(delta.updated()), is(reminds(pathA, pathAbc)));
+        assertThat(delta.updated().contains(newRemindA), is(true));
+        // 序号范围覆盖批量操作内的6次提交
+        assertThat(delta.lastSequence() - delta.firstSequence(), is(5L));
+
+        // 批量同步只触发一次handler刷新
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+        final int[] showCount = {0};
+        RemindHandler<Remind> handler = new RemindHandler<Remind>(manager) {
+            @Override
+            public void showReminds(Collection<? extends Remind> reminds) {
+                showCount[0]++;
+            }
+        };
+        handler.setPath(NodePath.instance("sync"));
+        handler.attachToManager();
+        showCount[0] = 0;
+
+        repo.batch(new RemindBatch<Remind>() {
+            @Override
+            public void apply(BatchableRemindRepo<Remind> repo) {
+                for (int i = 0; i < 1000; i++) {
+                    repo.addReminds(Collections.singleton(new Remind(NodePath.instance("sync", String.valueOf(i)))));
+                }
+            }
+        });
+        assertThat(showCount[0], is(1));
+        assertThat(repo.getMatchPathSubRemindCount(NodePath.instance("sync")), is(1000));
+    }
+
+    @Test
+    public void expiry() {
+        final long[] now = {1000};
+        IndexedRemindRepo<Remind> repo = new IndexedRemindRepo<Remind>() {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        final List<RemindDelta<Remind>> deltaHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {}
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltaHistory.add(delta);
+            }
+        });
+
+        Remind remindA = new Remind(pathA, 2000);
+        Remind remindAb = new Remind(pathAb, 2000);
+        Remind remindAbc = new Remind(pathAbc, 3000);
+        Remind remindAe = new Remind(pathAe);
+        repo.addReminds(Arrays.asList(remindA, remindAb, remindAbc, remindAe));
+        deltaHistory.clear();
+
+        // 替换为不过期的实例、移除，之前的过期记录失效
+        repo.addRemind(new Remind(pathAb));
+        repo.removeReminds(Collections.singleton(remindAbc));
+        deltaHistory.clear();
+
+        assertThat(repo.evictExpiredReminds(), is(0));
+        assertThat(deltaHistory.isEmpty(), is(true));
+
+        // 过期但还未清理的消息不会被查询到
+        now[0] = 2000;
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathAb, pathAe)));
+        assertThat(toSet(repo.getMatchPathSubReminds(Collections.singleton(pathA)).get(pathA)), is(reminds(pathAb, pathAe)));
+        assertThat(repo.getMatchPathReminds(Collections.singleton(pathA)).get(pathA).isEmpty(), is(true));
+
+        now[0] = 5000;
+        assertThat(repo.evictExpiredReminds(), is(1));
+        assertThat(deltaHistory.size(), is(1));
+        assertThat(toSet(deltaHistory.get(0).removed()), is(Collections.singleton(remindA)));
+        assertThat(repo.remindCount(), is(2));
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathAb, pathAe)));
+
+        assertThat(repo.evictExpiredReminds(), is(0));
+        assertThat(deltaHistory.size(), is(1));
+    }
+
+    @Test
+    public void expiryExecutor() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final CountDownLatch evicted = new CountDownLatch(2);
+            repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+                @Override
+                public void onRemindDataChanged() {}
+
+                @Override
+                public void onRemindDataChanged(Iterable<Remind> changedReminds) {}
+
+                @Override
+                public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                    for (Remind ignored : delta.removed()) {
+                        evicted.countDown();
+                    }
+                }
+            });
+            repo.setExpiryExecutor(executor);
+
+            long now = System.currentTimeMillis();
+            repo.addReminds(Arrays.asList(
+                    new Remind(NodePath.instance("f"), now + 100),
+                    new Remind(NodePath.instance("g"), now + 50)
+            ));
+
+            assertThat(evicted.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void expiryExecutorLaggingClock() {
+        final long[] now = {1000};
+        IndexedRemindRepo<Remind> repo = new IndexedRemindRepo<Remind>() {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        doReturn(future).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        repo.setExpiryExecutor(executor);
+
+        repo.addRemind(new Remind(pathA, 1050));
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(task.capture(), anyLong(), any(TimeUnit.class));
+
+        // 时钟回拨，调度任务执行时堆顶消息还未过期，需重新提交而不是停止自动清理
+        now[0] = 0;
+        task.getValue().run();
+        assertThat(repo.remindCount(), is(1));
+        verify(executor, times(2)).schedule(task.capture(), anyLong(), any(TimeUnit.class));
+
+        now[0] = 2000;
+        task.getValue().run();
+        assertThat(repo.remindCount(), is(0));
+    }
+
+    private static Set<Remind> reminds(NodePath... paths) {
+        Set<Remind> result = new HashSet<>();
+        for (NodePath path : paths) {
+            result.add(new Remind(path));
+        }
+        return result;
+    }
+
+    private static Set<Remind> toSet(Collection<? extends Remind> reminds) {
+        return new HashSet<>(reminds);
+    }
+
+    @Test
+    public void remindDelta() {
+        final List<RemindDelta<Remind>> deltaHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {
+                throw new AssertionError("delta listener shouldn't receive untyped changes");
+            }
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltaHistory.add(delta);
+            }
+        });
+
+        Remind remindF = new Remind(NodePath.instance("f"));
+        Remind newRemindA = new Remind(pathA);
+        repo.addReminds(Arrays.asList(remindF, newRemindA));
+        assertThat(toSet(deltaHistory.get(0).added()), is(Collections.singleton(remindF)));
+        assertThat(toSet(deltaHistory.get(0).updated()), is(Collections.singleton(newRemindA)));
+        assertThat(deltaHistory.get(0).removed().isEmpty(), is(true));
+
+        repo.removeMatchPathSubReminds(Collections.singleton(pathAb));
+        assertThat(toSet(deltaHistory.get(1).removed()), is(reminds(pathAb, pathAbc, pathAbd)));
+        assertThat(deltaHistory.get(1).added().isEmpty(), is(true));
+
+        // 没有变更不通知
+        repo.removeMatchPathReminds(Collections.singleton(pathAb));
+        assertThat(deltaHistory.size(), is(2));
+    }
+}
@@ -0,0 +1,344 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OffHeapRemindRepoTest {
+
+    private final NodePath pathA = NodePath.instance("a");
+    private final NodePath pathAb = NodePath.instance("a", "b");
+    private final NodePath pathAbc = NodePath.instance("a", "b", "c");
+    private final NodePath pathAbd = NodePath.instance("a", "b", "d");
+    private final NodePath pathAe = NodePath.instance("a", "e");
+
+    private OffHeapRemindRepo repo;
+    private List<RemindDelta<Remind>> deltaHistory;
+
+    @Before
+    public void setUp() {
+        repo = new OffHeapRemindRepo();
+        deltaHistory = new LinkedList<>();
+        repo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {}
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltaHistory.add(delta);
+            }
+        });
+
+        repo.addReminds(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe));
+        deltaHistory.clear();
+    }
+
+    @Test
+    public void addReminds() {
+        assertThat(
+                toSet(repo.getAllReminds()),
+                is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe))
+        );
+
+        // 路径及过期时间都相同的消息不算变更，过期时间不同视为替换
+        repo.addRemind(new Remind(NodePath.instance("f")));
+        repo.addRemind(new Remind(NodePath.instance("f")));
+        repo.addRemind(new Remind(NodePath.instance("f"), Long.MAX_VALUE));
+        assertThat(deltaHistory.size(), is(2));
+        assertThat(toSet(deltaHistory.get(0).added()), is(reminds(NodePath.instance("f"))));
+        assertThat(toSet(deltaHistory.get(1).updated()), is(reminds(NodePath.instance("f"))));
+        assertThat(
+                repo.getMatchPathReminds(Collections.singleton(NodePath.instance("f"))).get(NodePath.instance("f")).iterator().next().expireAt(),
+                is(Long.MAX_VALUE)
+        );
+    }
+
+    @Test
+    public void nodeArgs() {
+        Node item1 = Node.instance("item", "itemId", "1", "type", null);
+        NodePath item1Path = NodePath.instance(Node.instance("list"), item1);
+        repo.addRemind(new Remind(item1Path));
+
+        // 参数顺序不同的相等节点能够匹配，取出的节点与原节点相等
+        NodePath queryPath = NodePath.instance(Node.instance("list"), Node.instance("item", "type", null, "itemId", "1"));
+        assertThat(repo.getMatchPathRemindCount(queryPath), is(1));
+        Collection<? extends Remind> reminds = repo.getMatchPathSubReminds(Collections.singleton(NodePath.instance("list"))).get(NodePath.instance("list"));
+        assertThat(toSet(reminds), is(reminds(item1Path)));
+        assertThat(reminds.iterator().next().path().get(1).args, is(item1.args));
+
+        assertThat(repo.getMatchPathRemindCount(NodePath.instance(Node.instance("list"), Node.instance("item", "itemId", "1"))), is(0));
+        assertThat(repo.getMatchPathSubRemindCount(NodePath.instance(Node.instance("list"), NodePattern.anyArgs("item", "itemId", "type"))), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNodePattern() {
+        repo.addRemind(new Remind(NodePath.instance(Node.instance("list"), NodePattern.any())));
+    }
+
+    @Test
+    public void rejectNodePatternBeforeMutation() {
+        // 非法消息位于批量中间时，之前的合法消息也不会被添加
+        try {
+            repo.addReminds(Arrays.asList(
+                    new Remind(NodePath.instance("f")),
+                    new Remind(NodePath.instance(Node.instance("list"), NodePattern.any())),
+                    new Remind(NodePath.instance("g"))
+            ));
+            throw new AssertionError("NodePattern should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe)));
+        assertThat(repo.remindCount(), is(5));
+        assertThat(deltaHistory.isEmpty(), is(true));
+    }
+
+    @Test
+    public void getMatchPathReminds() {
+        assertThat(
+                toSet(repo.getMatchPathReminds(Collections.singleton(pathAb)).get(pathAb)),
+                is(reminds(pathAb))
+        );
+        assertThat(
+                toSet(repo.getMatchPathReminds(Collections.singleton(NodePath.instance("x"))).get(NodePath.instance("x"))),
+                is(Collections.<Remind>emptySet())
+        );
+        assertThat(
+                toSet(repo.getMatchPathSubReminds(Collections.singleton(pathAb)).get(pathAb)),
+                is(reminds(pathAb, pathAbc, pathAbd))
+        );
+        assertThat(
+                toSet(repo.getMatchPathSubReminds(Collections.singleton(NodePath.EMPTY)).get(NodePath.EMPTY)),
+                is(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe))
+        );
+    }
+
+    @Test
+    public void removeReminds() {
+        repo.removeReminds(Arrays.asList(new Remind(pathAbc), new Remind(NodePath.instance("x"))));
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAb, pathAbd, pathAe)));
+
+        assertThat(repo.removeMatchPathReminds(Collections.singleton(pathAb)), is(1L));
+        assertThat(repo.removeMatchPathReminds(Collections.singleton(pathAb)), is(0L));
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAbd, pathAe)));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(1));
+
+        assertThat(repo.removeMatchPathSubReminds(Collections.singleton(pathAb)), is(1L));
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathA, pathAe)));
+
+        assertThat(deltaHistory.size(), is(3));
+        assertThat(toSet(deltaHistory.get(0).removed()), is(reminds(pathAbc)));
+        assertThat(toSet(deltaHistory.get(1).removed()), is(reminds(pathAb)));
+        assertThat(toSet(deltaHistory.get(2).removed()), is(reminds(pathAbd)));
+
+        assertThat(repo.removeAllReminds(), is(2L));
+        assertThat(repo.getAllReminds().isEmpty(), is(true));
+        assertThat(repo.remindCount(), is(0));
+
+        // 清空后可继续使用
+        repo.addRemind(new Remind(pathAbc));
+        assertThat(toSet(repo.getMatchPathSubReminds(Collections.singleton(pathA)).get(pathA)), is(reminds(pathAbc)));
+    }
+
+    @Test
+    public void remindCount() {
+        assertThat(repo.remindCount(), is(5));
+        assertThat(repo.getMatchPathRemindCount(pathAb), is(1));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(3));
+        assertThat(repo.getMatchPathSubRemindCount(pathA), is(5));
+
+        repo.addRemind(new Remind(NodePath.instance("a", "b", "c", "x")));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(4));
+
+        repo.removeMatchPathSubReminds(Collections.singleton(pathAbc));
+        assertThat(repo.getMatchPathSubRemindCount(pathAb), is(2));
+        assertThat(repo.getMatchPathSubRemindCount(pathAbc), is(0));
+        assertThat(repo.remindCount(), is(4));
+    }
+
+    @Test
+    public void handlerManager() {
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+
+        final List<Set<Remind>> shownReminds = new ArrayList<>();
+        RemindHandler<Remind> handler = new RemindHandler<Remind>(manager) {
+            @Override
+            public void showReminds(Collection<? extends Remind> reminds) {
+                shownReminds.add(toSet(reminds));
+            }
+        };
+        handler.setPath(pathAb);
+        handler.attachToManager();
+        assertThat(shownReminds.get(shownReminds.size() - 1), is(reminds(pathAb, pathAbc, pathAbd)));
+
+        repo.addRemind(new Remind(NodePath.instance("a", "b", "x")));
+        assertThat(shownReminds.get(shownReminds.size() - 1), is(reminds(pathAb, pathAbc, pathAbd, NodePath.instance("a", "b", "x"))));
+        assertThat(manager.getMatchPathSubRemindCount(pathA), is(6));
+    }
+
+    @Test
+    public void handlerManagerWithoutCache() {
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo);
+        assertThat(manager.isCachingReminds(), is(false));
+        assertThat(new TreeModeRemindHandlerManager<>(new IndexedRemindRepo<>()).isCachingReminds(), is(true));
+
+        final List<List<Remind>> shownReminds = new ArrayList<>();
+        RemindHandler<Remind> handler = new RemindHandler<Remind>(manager) {
+            @Override
+            public void showReminds(Collection<? extends Remind> reminds) {
+                shownReminds.add(new ArrayList<>(reminds));
+            }
+
+            @Override
+            public void showRemindDelta(RemindDelta<Remind> delta, Collection<? extends Remind> reminds) {
+                throw new AssertionError("delta can't be computed without cache");
+            }
+        };
+        handler.setPath(pathAb);
+        handler.attachToManager();
+        assertThat(shownReminds.size(), is(1));
+
+        // 每次都重新查询仓库，得到新的消息实例，但内容未变化时依然跳过展示
+        long skippedCount = manager.dispatchStats().skippedHandlerCount;
+        manager.notifyRemindDataChanged();
+        assertThat(shownReminds.size(), is(1));
+        assertThat(manager.dispatchStats().skippedHandlerCount, is(skippedCount + 1));
+
+        // 只有过期时间变化也会展示
+        repo.addRemind(new Remind(pathAbc, Long.MAX_VALUE));
+        assertThat(shownReminds.size(), is(2));
+        assertThat(toSet(shownReminds.get(1)), is(reminds(pathAb, pathAbc, pathAbd)));
+
+        repo.removeReminds(reminds(pathAbd));
+        assertThat(shownReminds.size(), is(3));
+        assertThat(toSet(shownReminds.get(2)), is(reminds(pathAb, pathAbc)));
+    }
+
+    @Test
+    public void expiry() {
+        final long[] now = {1000};
+        OffHeapRemindRepo repo = new OffHeapRemindRepo() {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        repo.addReminds(Arrays.asList(
+                new Remind(pathA, 2000),
+                new Remind(pathAb, 3000),
+                new Remind(pathAe)
+        ));
+
+        now[0] = 2000;
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathAb, pathAe)));
+        assertThat(repo.getMatchPathReminds(Collections.singleton(pathA)).get(pathA).isEmpty(), is(true));
+        assertThat(repo.remindCount(), is(3));
+
+        assertThat(repo.evictExpiredReminds(), is(1));
+        assertThat(repo.remindCount(), is(2));
+        assertThat(repo.evictExpiredReminds(), is(0));
+
+        now[0] = 5000;
+        assertThat(repo.evictExpiredReminds(), is(1));
+        assertThat(toSet(repo.getAllReminds()), is(reminds(pathAe)));
+    }
+
+    @Test
+    public void batch() {
+        final NodePath pathF = NodePath.instance("f");
+        repo.batch(new RemindBatch<Remind>() {
+            @Override
+            public void apply(BatchableRemindRepo<Remind> repo) {
+                repo.addReminds(reminds(pathF));
+                repo.removeMatchPathSubReminds(Collections.singleton(pathAb));
+                assertThat(repo.getAllReminds().size(), is(3));
+            }
+        });
+
+        assertThat(deltaHistory.size(), is(1));
+        assertThat(toSet(deltaHistory.get(0).added()), is(reminds(pathF)));
+        assertThat(toSet(deltaHistory.get(0).removed()), is(reminds(pathAb, pathAbc, pathAbd)));
+    }
+
+    /**
+     * 大量随机增删后与{@link IndexedRemindRepo}的结果一致，覆盖存储扩容、开放寻址表的删除及节点表整理
+     */
+    @Test
+    public void sameAsIndexedRepo() {
+        IndexedRemindRepo<Remind> expected = new IndexedRemindRepo<>();
+        expected.addReminds(reminds(pathA, pathAb, pathAbc, pathAbd, pathAe));
+
+        Random random = new Random(0);
+        List<NodePath> queryPaths = new ArrayList<>();
+        for (int round = 0; round < 6; round++) {
+            List<Remind> added = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                NodePath path = NodePath.instance(
+                        Node.instance("list", "page", String.valueOf(random.nextInt(4))),
+                        Node.instance("item", "itemId", String.valueOf(round * 1000 + random.nextInt(3000))),
+                        Node.instance("badge" + random.nextInt(3))
+                );
+                added.add(new Remind(path));
+                if (i % 500 == 0) {
+                    queryPaths.add(NodePath.instance(path.get(0), path.get(1)));
+                }
+            }
+            repo.addReminds(added);
+            expected.addReminds(added);
+
+            List<Remind> removed = added.subList(0, added.size() * 2 / 3);
+            repo.removeReminds(removed);
+            expected.removeReminds(removed);
+
+            NodePath removedSubPath = queryPaths.get(random.nextInt(queryPaths.size()));
+            assertThat(
+                    repo.removeMatchPathSubReminds(Collections.singleton(removedSubPath)),
+                    is(expected.removeMatchPathSubReminds(Collections.singleton(removedSubPath)))
+            );
+
+            assertThat(repo.remindCount(), is(expected.remindCount()));
+            assertThat(toSet(repo.getAllReminds()), is(toSet(expected.getAllReminds())));
+            for (NodePath queryPath : queryPaths) {
+                assertThat(
+                        toSet(repo.getMatchPathSubReminds(Collections.singleton(queryPath)).get(queryPath)),
+                        is(toSet(expected.getMatchPathSubReminds(Collections.singleton(queryPath)).get(queryPath)))
+                );
+                assertThat(repo.getMatchPathSubRemindCount(NodePath.instance(queryPath.get(0))), is(expected.getMatchPathSubRemindCount(NodePath.instance(queryPath.get(0)))));
+            }
+        }
+
+        assertThat(repo.removeAllReminds(), is(expected.removeAllReminds()));
+        assertThat(repo.remindCount(), is(0));
+    }
+
+    private static Set<Remind> reminds(NodePath... paths) {
+        Set<Remind> result = new HashSet<>();
+        for (NodePath path : paths) {
+            result.add(new Remind(path));
+        }
+        return result;
+    }
+
+    private static Set<Remind> toSet(Collection<? extends Remind> reminds) {
+        return new HashSet<>(reminds);
+    }
+}
@@ -0,0 +1,105 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PrefixedTreeStructureTest {
+
+    private final TreeStructure<Node, String> shared = new CopyOnWriteTreeStructure<>(NodePatternMatcher.INSTANCE);
+    private final TreeStructure<Node, String> viewA = new PrefixedTreeStructure<>(shared, Node.instance("1"));
+    private final TreeStructure<Node, String> viewB = new PrefixedTreeStructure<>(shared, Node.instance("2"));
+
+    private final NodePath pathA = NodePath.instance("a");
+    private final NodePath pathAb = NodePath.instance("a", "b");
+
+    @Test
+    public void isolation() {
+        viewA.put("a", pathA.nodes());
+        viewB.put("b", pathAb.nodes());
+
+        assertThat(viewA.getPathRangeAllData(pathAb.nodes()), is(Collections.singleton("a")));
+        assertThat(viewB.getPathRangeAllData(pathAb.nodes()), is(Collections.singleton("b")));
+        assertThat(viewA.getMatchPathSubData(pathA.nodes()), is(Collections.singleton("a")));
+        assertThat(viewB.getMatchPathSubData(pathA.nodes()), is(Collections.singleton("b")));
+
+        // 共享树中的数据均位于各自的前缀节点下
+        assertThat(shared.getMatchPathData(NodePath.instance("1", "a").nodes()), is(Collections.singleton("a")));
+        assertThat(shared.getMatchPathData(pathA.nodes()), is(Collections.<String>emptySet()));
+
+        viewA.remove("a", pathA.nodes());
+        assertThat(viewA.getPathRangeAllData(pathAb.nodes()), is(Collections.<String>emptySet()));
+        assertThat(shared.getLongestPathData(), is(Collections.singleton("b")));
+    }
+
+    @Test
+    public void emptyPath() {
+        viewA.put("a", pathA.nodes());
+        viewA.put("empty", NodePath.EMPTY.nodes());
+
+        // 空路径不会写入前缀节点，也不会查询到前缀节点下的所有数据
+        assertThat(viewA.getMatchPathData(NodePath.EMPTY.nodes()), is(Collections.<String>emptySet()));
+        assertThat(viewA.getMatchPathSubData(NodePath.EMPTY.nodes()), is(Collections.<String>emptySet()));
+        assertThat(viewA.getPathRangeAllData(pathA.nodes()), is(Collections.singleton("a")));
+    }
+
+    @Test
+    public void pattern() {
+        viewA.put("item", Arrays.asList(Node.instance("list"), NodePattern.anyArgs("item", "id")));
+        viewB.put("item", Arrays.asList(Node.instance("list"), NodePattern.anyArgs("item", "id")));
+        viewB.put("other", Arrays.asList(Node.instance("list"), Node.instance("item", "id", "1")));
+
+        assertThat(
+                viewA.getPathRangeAllData(Arrays.asList(Node.instance("list"), Node.instance("item", "id", "1"))),
+                is(Collections.singleton("item"))
+        );
+        Set<String> expected = new HashSet<>(Arrays.asList("item", "other"));
+        assertThat(
+                viewB.getPathRangeAllData(Arrays.asList(Node.instance("list"), Node.instance("item", "id", "1"))),
+                is(expected)
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patternPrefix() {
+        new PrefixedTreeStructure<>(shared, NodePattern.any());
+    }
+
+    @Test
+    public void clear() {
+        viewA.put("a", pathA.nodes());
+        viewA.put("ab", pathAb.nodes());
+        viewB.put("b", pathA.nodes());
+
+        viewA.clear();
+        assertThat(viewA.getMatchPathSubData(pathA.nodes()), is(Collections.<String>emptySet()));
+        assertThat(viewB.getMatchPathSubData(pathA.nodes()), is(Collections.singleton("b")));
+        assertThat(shared.getMatchPathSubData(Collections.singletonList(Node.instance("1"))), is(Collections.<String>emptySet()));
+
+        viewB.put("bb", pathAb.nodes());
+        viewB.clearSub(pathAb.nodes());
+        assertThat(viewB.getMatchPathSubData(pathA.nodes()), is(Collections.singleton("b")));
+    }
+
+    @Test
+    public void longestAndShortestPathData() {
+        viewA.put("a", pathA.nodes());
+        viewA.put("ab", pathAb.nodes());
+        viewB.put("b", NodePath.instance("b", "c").nodes());
+
+        assertThat(viewA.getLongestPathData(), is(Collections.singleton("ab")));
+        assertThat(viewA.getShortestPathData(), is(Collections.singleton("a")));
+        assertThat(viewB.getLongestPathData(), is(Collections.singleton("b")));
+        assertThat(viewA.getLongestPathData(pathAb.nodes()), is(Collections.singleton("ab")));
+    }
+}
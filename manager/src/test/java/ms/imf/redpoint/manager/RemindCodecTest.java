@@ -0,0 +1,198 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import ms.imf.redpoint.entity.Node;
+import ms.imf.redpoint.entity.NodeDictionary;
+import ms.imf.redpoint.entity.NodeEncoder;
+import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodeTree;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RemindCodecTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Remind> reminds = Arrays.asList(
+            new Remind(NodePath.EMPTY),
+            new Remind(NodePath.instance("home")),
+            new Remind(NodePath.instance(Node.instance("home"), Node.instance("item", "id", "1", "type", null))),
+            new Remind(NodePath.instance(Node.instance("home"), Node.instance("item", "id", "2", "type", "vip"))),
+            new Remind(NodePath.instance(Node.instance("home"), Node.instance("中文", "键", "值")))
+    );
+
+    @Test
+    public void encodeDecode() throws IOException {
+        assertThat(decode(encode(reminds, NodeDictionary.EMPTY), NodeDictionary.EMPTY), is(reminds));
+
+        NodeDictionary dictionary = new NodeDictionary(Arrays.asList("home", "item", "id", "type"));
+        assertThat(decode(encode(reminds, dictionary), dictionary), is(reminds));
+    }
+
+    @Test
+    public void expireAt() throws IOException {
+        List<Remind> expiringReminds = Arrays.asList(
+                new Remind(NodePath.instance("campaign"), 1500000000000L),
+                new Remind(NodePath.instance("home"))
+        );
+
+        List<Remind> decodedReminds = decode(encode(expiringReminds, NodeDictionary.EMPTY), NodeDictionary.EMPTY);
+        assertThat(decodedReminds, is(expiringReminds));
+        assertThat(decodedReminds.get(0).expireAt(), is(1500000000000L));
+        assertThat(decodedReminds.get(1).expireAt(), is(Remind.NEVER_EXPIRE));
+    }
+
+    @Test
+    public void sharedNodes() throws IOException {
+        List<Remind> decodedReminds = decode(encode(reminds, NodeDictionary.EMPTY), NodeDictionary.EMPTY);
+
+        assertThat(decodedReminds.get(2).path().get(0), sameInstance(decodedReminds.get(1).path().get(0)));
+        assertThat(decodedReminds.get(3).path().get(0), sameInstance(decodedReminds.get(1).path().get(0)));
+    }
+
+    @Test
+    public void compactThanJavaSerialization() throws IOException {
+        List<Remind> manyReminds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            manyReminds.add(new Remind(NodePath.instance(Node.instance("home"), Node.instance("item", "id", String.valueOf(i)))));
+        }
+
+        ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(javaBytes);
+        objectOutputStream.writeObject(new ArrayList<>(manyReminds));
+        objectOutputStream.close();
+
+        assertThat(encode(manyReminds, NodeDictionary.EMPTY).length * 4 < javaBytes.size(), is(true));
+    }
+
+    @Test
+    public void dictionaryOfNodeTree() {
+        NodeTree.Arg arg = new NodeTree.Arg();
+        arg.name = "id";
+        arg.valueLimits = Arrays.asList("1", "2");
+        List<NodeTree> nodeTree = Collections.singletonList(
+                new NodeTree("home", null, Collections.singletonList(
+                        new NodeTree("item", Collections.singletonList(arg), null)
+                ))
+        );
+
+        NodeDictionary dictionary = NodeDictionary.of(nodeTree);
+        assertThat(dictionary.size(), is(5));
+        assertThat(dictionary.indexOf("home"), is(0));
+        assertThat(dictionary.indexOf("item"), is(1));
+        assertThat(dictionary.indexOf("none"), is(-1));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws IOException {
+        byte[] bytes = encode(reminds, NodeDictionary.EMPTY);
+        decode(Arrays.copyOf(bytes, bytes.length - 1), NodeDictionary.EMPTY);
+    }
+
+    @Test
+    public void illegalLength() throws IOException {
+        // 损坏数据中的超长字符串长度及节点个数应在分配数组前被拒绝
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        NodeEncoder encoder = new NodeEncoder(new DataOutputStream(stringBytes));
+        // 消息tag、节点个数、节点字面量、字符串字面量、字符串长度
+        encoder.writeVarInt(1);
+        encoder.writeVarInt(1);
+        encoder.writeVarInt(0);
+        encoder.writeVarInt(1);
+        encoder.writeVarInt(NodeEncoder.MAX_STRING_BYTES + 1);
+        assertDecodeRejected(stringBytes.toByteArray(), "illegal string length");
+
+        ByteArrayOutputStream pathBytes = new ByteArrayOutputStream();
+        encoder = new NodeEncoder(new DataOutputStream(pathBytes));
+        encoder.writeVarInt(1);
+        encoder.writeVarInt(Integer.MAX_VALUE);
+        assertDecodeRejected(pathBytes.toByteArray(), "illegal path node count");
+    }
+
+    @Test
+    public void serializerPerStreamState() throws IOException {
+        // 同一个输出流上先后创建的写出器互不影响，各自对应一个读取器
+        CompactRemindSerializer serializer = new CompactRemindSerializer();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        RemindSerializer.Writer<Remind> writer = serializer.newWriter(output);
+        for (Remind remind : reminds) {
+            writer.write(remind);
+        }
+        writer = serializer.newWriter(output);
+        for (Remind remind : reminds) {
+            writer.write(remind);
+        }
+        output.flush();
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int round = 0; round < 2; round++) {
+            RemindSerializer.Reader<Remind> reader = serializer.newReader(input);
+            for (Remind remind : reminds) {
+                assertThat(reader.read(), is(remind));
+            }
+        }
+        assertThat(input.read(), is(-1));
+    }
+
+    @Test
+    public void fileRemindRepo() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "reminds.log");
+
+        FileRemindRepo<Remind> repo = new FileRemindRepo<>(file, new CompactRemindSerializer());
+        repo.addReminds(reminds);
+        repo.removeReminds(reminds.subList(0, 1));
+        repo.close();
+
+        repo = new FileRemindRepo<>(file, new CompactRemindSerializer());
+        assertThat(new HashSet<>(repo.getAllReminds()), is(new HashSet<>(reminds.subList(1, reminds.size()))));
+        repo.close();
+    }
+
+    private static void assertDecodeRejected(byte[] remindBytes, String expectedMessage) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(RemindCodec.MAGIC);
+        output.writeByte(RemindCodec.VERSION);
+        output.write(remindBytes);
+        output.flush();
+        try {
+            decode(bytes.toByteArray(), NodeDictionary.EMPTY);
+            fail("illegal data should be rejected");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString(expectedMessage));
+        }
+    }
+
+    private static byte[] encode(List<Remind> reminds, NodeDictionary dictionary) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        RemindCodec.encode(reminds, outputStream, dictionary);
+        return outputStream.toByteArray();
+    }
+
+    private static List<Remind> decode(byte[] bytes, NodeDictionary dictionary) throws IOException {
+        return RemindCodec.decode(new ByteArrayInputStream(bytes), dictionary);
+    }
+}
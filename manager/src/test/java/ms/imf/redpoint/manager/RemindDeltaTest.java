@@ -0,0 +1,57 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ms.imf.redpoint.entity.NodePath;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RemindDeltaTest {
+
+    @Test
+    public void defensiveCopy() {
+        Remind a = new Remind(NodePath.instance("a"));
+        Remind b = new Remind(NodePath.instance("b"));
+
+        List<Remind> added = new ArrayList<>(Collections.singletonList(a));
+        List<Remind> removed = new ArrayList<>();
+        RemindDelta<Remind> delta = new RemindDelta<>(added, removed, Collections.<Remind>emptyList());
+
+        // 构造后对传入集合的修改不影响变更
+        added.add(b);
+        removed.add(a);
+
+        assertThat(new ArrayList<>(delta.added()), is(Arrays.asList(a)));
+        assertThat(delta.removed().isEmpty(), is(true));
+        assertThat(delta.changedReminds(), is(Arrays.asList(a)));
+    }
+
+    @Test
+    public void sequence() {
+        RemindDelta<Remind> unsequenced = new RemindDelta<>(Collections.<Remind>emptyList(), Collections.<Remind>emptyList(), Collections.<Remind>emptyList());
+        assertThat(unsequenced.firstSequence(), is(RemindDelta.NO_SEQUENCE));
+        assertThat(unsequenced.lastSequence(), is(RemindDelta.NO_SEQUENCE));
+
+        RemindDelta<Remind> sequenced = new RemindDelta<>(Collections.<Remind>emptyList(), Collections.<Remind>emptyList(), Collections.<Remind>emptyList(), 3);
+        assertThat(sequenced.firstSequence(), is(3L));
+        assertThat(sequenced.lastSequence(), is(3L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalSequenceRange() {
+        new RemindDelta<>(Collections.<Remind>emptyList(), Collections.<Remind>emptyList(), Collections.<Remind>emptyList(), 5, 3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unmodifiable() {
+        new RemindDelta<>(Collections.singletonList(new Remind(NodePath.instance("a"))), Collections.<Remind>emptyList(), Collections.<Remind>emptyList())
+                .added()
+                .clear();
+    }
+}
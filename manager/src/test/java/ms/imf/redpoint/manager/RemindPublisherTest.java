@@ -0,0 +1,243 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ms.imf.redpoint.entity.NodePath;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RemindPublisherTest {
+
+    private static class TestSubscriber implements RemindSubscriber<Remind> {
+        RemindSubscription subscription;
+        final List<Set<Remind>> values = new ArrayList<>();
+        Throwable error;
+
+        @Override
+        public void onSubscribe(RemindSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Collection<? extends Remind> reminds) {
+            values.add(new HashSet<>(reminds));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private final NodePath pathAb = NodePath.instance("a", "b");
+    private final Remind remindAbc = new Remind(NodePath.instance("a", "b", "c"));
+    private final Remind remindAbd = new Remind(NodePath.instance("a", "b", "d"));
+    private final Remind remindAe = new Remind(NodePath.instance("a", "e"));
+
+    private IndexedRemindRepo<Remind> repo;
+    private TreeModeRemindHandlerManager<Remind> manager;
+
+    @Before
+    public void setUp() {
+        repo = new IndexedRemindRepo<>();
+        repo.addRemind(remindAbc);
+        manager = new TreeModeRemindHandlerManager<>(repo);
+    }
+
+    @Test
+    public void backpressure() {
+        TestSubscriber subscriber = new TestSubscriber();
+        manager.observe(pathAb).subscribe(subscriber);
+
+        // 没有请求时不发布
+        assertThat(subscriber.values.size(), is(0));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.values, is(valuesOf(setOf(remindAbc))));
+
+        // 请求不足期间的变化只保留最新的消息
+        repo.addRemind(remindAbd);
+        repo.removeReminds(Collections.singletonList(remindAbc));
+        assertThat(subscriber.values.size(), is(1));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.values, is(valuesOf(setOf(remindAbc), setOf(remindAbd))));
+
+        // 其他路径的变化不发布
+        repo.addRemind(remindAe);
+        assertThat(subscriber.values.size(), is(2));
+    }
+
+    @Test
+    public void distinctUntilChanged() {
+        TestSubscriber subscriber = new TestSubscriber();
+        manager.observe(pathAb).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        manager.notifyRemindDataChanged();
+        repo.addRemind(remindAbd);
+        repo.removeReminds(Collections.singletonList(remindAbd));
+
+        assertThat(subscriber.values, is(valuesOf(setOf(remindAbc), setOf(remindAbc, remindAbd), setOf(remindAbc))));
+    }
+
+    @Test
+    public void cancel() {
+        TestSubscriber subscriber = new TestSubscriber();
+        RemindPublisher<Remind> publisher = manager.observe(pathAb);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(manager.dispatchStats().deliveredHandlerCount, is(1L));
+
+        subscriber.subscription.cancel();
+        repo.addRemind(remindAbd);
+        assertThat(subscriber.values.size(), is(1));
+        // 取消后已解除，不再参与分发
+        assertThat(manager.dispatchStats().deliveredHandlerCount, is(1L));
+    }
+
+    @Test
+    public void illegalRequest() {
+        TestSubscriber subscriber = new TestSubscriber();
+        manager.observe(pathAb).subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.values.size(), is(0));
+    }
+
+    @Test
+    public void cancelWhileAttaching() {
+        final TestSubscriber subscriber = new TestSubscriber();
+        // 模拟其他线程在订阅检查取消状态之后、附加之前取消订阅
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<Remind>(repo) {
+            @Override
+            public void attachRemindHandler(RemindHandler<Remind> remindHandler) {
+                subscriber.subscription.cancel();
+                super.attachRemindHandler(remindHandler);
+            }
+        };
+
+        manager.observe(pathAb).subscribe(subscriber);
+
+        assertThat(((RemindHandler<?>) subscriber.subscription).isAttachedManager(), is(false));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        repo.addRemind(remindAbd);
+        assertThat(subscriber.values.size(), is(0));
+    }
+
+    @Test
+    public void onNextThrows() {
+        final RuntimeException failure = new IllegalStateException("onNext failure");
+        TestSubscriber subscriber = new TestSubscriber() {
+            boolean thrown;
+
+            @Override
+            public void onNext(Collection<? extends Remind> reminds) {
+                super.onNext(reminds);
+                if (!thrown) {
+                    thrown = true;
+                    throw failure;
+                }
+            }
+        };
+        manager.observe(pathAb).subscribe(subscriber);
+
+        try {
+            subscriber.subscription.request(Long.MAX_VALUE);
+            fail("onNext failure should be thrown to caller");
+        } catch (IllegalStateException e) {
+            assertThat(e, sameInstance(failure));
+        }
+
+        // 回调抛出异常后依然可以继续发布
+        repo.addRemind(remindAbd);
+        assertThat(subscriber.values, is(valuesOf(setOf(remindAbc), setOf(remindAbc, remindAbd))));
+    }
+
+    @Test
+    public void weakModeRetainsSubscription() throws InterruptedException {
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo, true);
+        // 订阅者不持有订阅，订阅内部的handler只能通过管理器到达
+        final List<Set<Remind>> received = new ArrayList<>();
+        manager.observe(pathAb).subscribe(new RemindSubscriber<Remind>() {
+            @Override
+            public void onSubscribe(RemindSubscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Collection<? extends Remind> reminds) {
+                received.add(new HashSet<>(reminds));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(manager.liveRemindHandlerCount(), is(1));
+
+        repo.addRemind(remindAbd);
+        assertThat(received, is(valuesOf(setOf(remindAbc), setOf(remindAbc, remindAbd))));
+    }
+
+    @Test
+    public void weakModeReleasesCancelledSubscription() throws InterruptedException {
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(repo, true);
+        TestSubscriber subscriber = new TestSubscriber();
+        manager.observe(pathAb).subscribe(subscriber);
+        WeakReference<RemindSubscription> subscription = new WeakReference<>(subscriber.subscription);
+
+        subscriber.subscription.cancel();
+        subscriber.subscription = null;
+
+        for (int i = 0; i < 50 && subscription.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(subscription.get() == null, is(true));
+    }
+
+    private static Set<Remind> setOf(Remind... reminds) {
+        return new HashSet<>(Arrays.asList(reminds));
+    }
+
+    @SafeVarargs
+    private static List<Set<Remind>> valuesOf(Set<Remind>... values) {
+        // 不把参数数组传给其他可变参数方法，避免堆污染警告
+        List<Set<Remind>> result = new ArrayList<>(values.length);
+        for (Set<Remind> value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}
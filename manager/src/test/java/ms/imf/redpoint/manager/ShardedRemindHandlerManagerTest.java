@@ -0,0 +1,146 @@
+package ms.imf.redpoint.manager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ms.imf.redpoint.entity.NodePath;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ShardedRemindHandlerManagerTest {
+
+    private static class RemindHandler extends ms.imf.redpoint.manager.RemindHandler<Remind> {
+        int showCount;
+        Collection<? extends Remind> reminds;
+        RemindHandler(RemindHandlerManager<Remind> remindHandleManager) { super(remindHandleManager); }
+        @Override public void showReminds(Collection<? extends Remind> reminds) { showCount++; this.reminds = reminds; }
+    }
+
+    private ShardedRemindHandlerManager<Remind> sharded;
+
+    @Before
+    public void setUp() {
+        sharded = newSharded(4);
+    }
+
+    @Test
+    public void tenants() {
+        TreeModeRemindHandlerManager<Remind> userA = sharded.manager("userA");
+        assertThat(sharded.manager("userA"), sameInstance(userA));
+        assertThat(sharded.existingManager("userB"), is(nullValue()));
+        assertThat(sharded.manager("userB"), not(sameInstance(userA)));
+        assertThat(sharded.tenantCount(), is(2));
+
+        assertThat(sharded.removeTenant("userA"), sameInstance(userA));
+        assertThat(sharded.existingManager("userA"), is(nullValue()));
+        assertThat(sharded.manager("userA"), not(sameInstance(userA)));
+    }
+
+    @Test
+    public void sharedHandlerTree() {
+        // 只有一个分片，所有租户共用同一颗节点树
+        sharded = newSharded(1);
+
+        RemindHandler handlerA = attach("userA", NodePath.instance("home"));
+        RemindHandler handlerB = attach("userB", NodePath.instance("home"));
+        assertThat(handlerA.reminds.size(), is(1));
+        assertThat(handlerA.reminds.iterator().next(), is(new Remind(NodePath.instance("home", "userA"))));
+        assertThat(handlerB.reminds.iterator().next(), is(new Remind(NodePath.instance("home", "userB"))));
+
+        // 租户之间的通知互不可见
+        addRemind(sharded.manager("userA"), NodePath.instance("home", "more"));
+        assertThat(handlerA.showCount, is(2));
+        assertThat(handlerB.showCount, is(1));
+
+        // 重新创建的租户管理器与被移除的管理器使用不同的前缀
+        TreeModeRemindHandlerManager<Remind> removed = sharded.removeTenant("userA");
+        RemindHandler recreated = attach("userA", NodePath.instance("home"));
+        addRemind(sharded.manager("userA"), NodePath.instance("home", "again"));
+        assertThat(recreated.showCount, is(2));
+        assertThat(handlerA.showCount, is(2));
+
+        // 被移除租户的handler已被解除，不再占用共用节点树
+        assertThat(handlerA.isAttachedManager(), is(false));
+        assertThat(removed.liveRemindHandlerCount(), is(0));
+        addRemind(removed, NodePath.instance("home", "removed"));
+        assertThat(handlerA.showCount, is(2));
+        assertThat(recreated.showCount, is(2));
+    }
+
+    @Test
+    public void sharedNodes() {
+        for (String tenantId : new String[]{"userA", "userB"}) {
+            RemindHandler handler = new RemindHandler(sharded.manager(tenantId));
+            // 每个租户各自创建相等的路径实例
+            handler.setPath(NodePath.instance("home"));
+            handler.attachToManager();
+        }
+
+        assertThat(sharded.nodeInterner().pathCount(), is(1));
+        assertThat(sharded.manager("userA").nodeInterner(), sameInstance(sharded.nodeInterner()));
+    }
+
+    @Test
+    public void shardStats() {
+        int tenantCount = 32;
+        for (int i = 0; i < tenantCount; i++) {
+            RemindHandler handler = new RemindHandler(sharded.manager("user" + i));
+            handler.setPath(NodePath.instance("home"));
+            handler.attachToManager();
+        }
+
+        List<ShardStats> stats = sharded.shardStats();
+        assertThat(stats.size(), is(4));
+
+        int statsTenantCount = 0;
+        int statsHandlerCount = 0;
+        long deliveredHandlerCount = 0;
+        for (int i = 0; i < stats.size(); i++) {
+            assertThat(stats.get(i).shard, is(i));
+            statsTenantCount += stats.get(i).tenantCount;
+            statsHandlerCount += stats.get(i).handlerCount;
+            deliveredHandlerCount += stats.get(i).dispatchStats.deliveredHandlerCount;
+        }
+        assertThat(statsTenantCount, is(tenantCount));
+        assertThat(statsHandlerCount, is(tenantCount));
+        assertThat(deliveredHandlerCount, is((long) tenantCount));
+
+        String tenantId = "user0";
+        ShardStats shardStats = sharded.shardStats(sharded.shardIndex(tenantId));
+        sharded.manager(tenantId).remindRepo().removeReminds(Collections.singleton(new Remind(NodePath.instance("home", tenantId))));
+        assertThat(
+                sharded.shardStats(sharded.shardIndex(tenantId)).dispatchStats.deliveredHandlerCount,
+                is(shardStats.dispatchStats.deliveredHandlerCount + 1)
+        );
+    }
+
+    private static void addRemind(TreeModeRemindHandlerManager<Remind> manager, NodePath path) {
+        ((IndexedRemindRepo<Remind>) manager.remindRepo()).addRemind(new Remind(path));
+    }
+
+    private RemindHandler attach(String tenantId, NodePath path) {
+        RemindHandler handler = new RemindHandler(sharded.manager(tenantId));
+        handler.setPath(path);
+        handler.attachToManager();
+        return handler;
+    }
+
+    private static ShardedRemindHandlerManager<Remind> newSharded(int shardCount) {
+        return new ShardedRemindHandlerManager<>(shardCount, new ShardedRemindHandlerManager.RepoFactory<Remind>() {
+            @Override
+            public RemindRepo<Remind> createRepo(String tenantId) {
+                IndexedRemindRepo<Remind> repo = new IndexedRemindRepo<>();
+                repo.addRemind(new Remind(NodePath.instance("home", tenantId)));
+                return repo;
+            }
+        });
+    }
+}
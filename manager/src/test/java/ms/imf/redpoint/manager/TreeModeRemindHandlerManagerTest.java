@@ -3,24 +3,40 @@ package ms.imf.redpoint.manager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.internal.stubbing.answers.Returns;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import ms.imf.redpoint.entity.Node;
 import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.mockito.ArgumentMatchers.any;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,6 +49,8 @@ public class TreeModeRemindHandlerManagerTest {
     }
 
     @Mock RemindRepo<Remind> repo;
+    @Captor ArgumentCaptor<Collection<Remind>> remindsCaptor;
+    @Captor ArgumentCaptor<RemindDelta<Remind>> deltaCaptor;
 
     private TreeModeRemindHandlerManager<Remind> manager;
     private RemindHandler handler;
@@ -102,6 +120,57 @@ public class TreeModeRemindHandlerManagerTest {
         );
     }
 
+    @Test
+    public void handlerMonitorNotUsed() throws InterruptedException {
+        final RemindHandler handler = new RemindHandler(manager);
+        handler.setPath(NodePath.instance("a"));
+        Thread attachThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                handler.attachToManager();
+                handler.addPath(NodePath.instance("b"));
+                handler.detachFromManager();
+            }
+        });
+
+        // 调用方持有handler的监视器时，管理器的附加、变更及解除不应被阻塞
+        synchronized (handler) {
+            attachThread.start();
+            attachThread.join(10000);
+            assertThat(attachThread.isAlive(), is(false));
+        }
+        assertThat(manager.remindHandlerAttached(handler), is(false));
+    }
+
+    @Test
+    public void handlerPathsSnapshot() {
+        NodePath pathA = NodePath.instance("a");
+        NodePath pathB = NodePath.instance("b");
+        RemindHandler handler = new RemindHandler(manager);
+        handler.setPath(pathA);
+
+        Set<NodePath> paths = handler.getPaths();
+        handler.addPath(pathB);
+
+        Set<NodePath> expected = new HashSet<>(Arrays.asList(pathA, pathB));
+        assertThat(paths, is(Collections.singleton(pathA)));
+        assertThat(handler.getPaths(), is(expected));
+        try {
+            handler.getPaths().clear();
+            fail();
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void uncachedRemindRepo() {
+        assertThat(manager.isCachingReminds(), is(true));
+
+        class UncachedIndexedRemindRepo extends IndexedRemindRepo<Remind> implements UncachedRemindRepo<Remind> {
+        }
+        assertThat(new TreeModeRemindHandlerManager<>(new UncachedIndexedRemindRepo()).isCachingReminds(), is(false));
+    }
+
     @Test
     public void notifyRemindHandlerChanged() {
         NodePath pathAb = NodePath.instance("a", "b");
@@ -113,13 +182,15 @@ public class TreeModeRemindHandlerManagerTest {
 
         // handler setPath后manager应有查询path对应消息及调用handler展示行为
         reset(repo, handler);
+        when(repo.getMatchPathSubReminds(ArgumentMatchers.<Collection<NodePath>>any()))
+                .then(new Returns(Collections.singletonMap(pathAb, Collections.singletonList(new Remind(pathAb)))));
         handler.setPath(pathAb);
         verify(repo).getMatchPathSubReminds(Collections.singleton(pathAb));
-        verify(handler).showReminds(Collections.<Remind>emptyList());
+        verify(handler).showReminds(Collections.singletonList(new Remind(pathAb)));
 
         // handler set多个path后应查找重合path中最短的path查询消息及调用handler展示行为
         reset(repo, handler);
-        when(repo.getMatchPathSubReminds(any(Collection.class)))
+        when(repo.getMatchPathSubReminds(ArgumentMatchers.<Collection<NodePath>>any()))
                 .then(new Returns(Collections.singletonMap(pathAb, Arrays.asList(
                         new Remind(pathAb),
                         new Remind(pathAbc),
@@ -256,10 +327,10 @@ public class TreeModeRemindHandlerManagerTest {
 
     @Test
     public void notifyRemindDataChangedWithChangedReminds() {
-        NodePath pathAb = NodePath.instance("a", "b");
-        NodePath pathAbc = NodePath.instance("a", "b", "c");
-        NodePath pathAbcd = NodePath.instance("a", "b", "c", "d");
-        NodePath pathAbe = NodePath.instance("a", "b", "e");
+        final NodePath pathAb = NodePath.instance("a", "b");
+        final NodePath pathAbc = NodePath.instance("a", "b", "c");
+        final NodePath pathAbcd = NodePath.instance("a", "b", "c", "d");
+        final NodePath pathAbe = NodePath.instance("a", "b", "e");
 
         RemindHandler handlerAb = spy(new RemindHandler(manager));
         handlerAb.setPath(pathAb);
@@ -277,13 +348,19 @@ public class TreeModeRemindHandlerManagerTest {
 
         reset(repo);
         reset(handlers);
+        // 每次查询都返回新的消息实例，否则结果未变化的handler会被跳过展示
         when(repo.getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection()))
-                .then(new Returns(Collections.singletonMap(pathAb, Arrays.asList(
-                        new Remind(pathAb),
-                        new Remind(pathAbc),
-                        new Remind(pathAbcd),
-                        new Remind(pathAbe)
-                ))));
+                .then(new Answer<Map<NodePath, List<Remind>>>() {
+                    @Override
+                    public Map<NodePath, List<Remind>> answer(InvocationOnMock invocation) {
+                        return Collections.singletonMap(pathAb, Arrays.asList(
+                                new Remind(pathAb),
+                                new Remind(pathAbc),
+                                new Remind(pathAbcd),
+                                new Remind(pathAbe)
+                        ));
+                    }
+                });
 
         manager.notifyRemindDataChanged(Arrays.asList(
                 new Remind(pathAbcd)
@@ -292,7 +369,7 @@ public class TreeModeRemindHandlerManagerTest {
         verify(handlerAbc).showReminds(ArgumentMatchers.<Remind>anyCollection());
         verify(handlerAbe, never()).showReminds(ArgumentMatchers.<Remind>anyCollection());
 
-        reset(repo);
+        clearInvocations(repo);
         reset(handlers);
         manager.notifyRemindDataChanged(Arrays.asList(
                 new Remind(pathAbe)
@@ -302,7 +379,7 @@ public class TreeModeRemindHandlerManagerTest {
         verify(handlerAbe).showReminds(ArgumentMatchers.<Remind>anyCollection());
 
 
-        reset(repo);
+        clearInvocations(repo);
         reset(handlers);
         manager.notifyRemindDataChanged(Arrays.asList(
                 new Remind(pathAbe),
@@ -312,4 +389,420 @@ public class TreeModeRemindHandlerManagerTest {
         verify(handlerAbc).showReminds(ArgumentMatchers.<Remind>anyCollection());
         verify(handlerAbe).showReminds(ArgumentMatchers.<Remind>anyCollection());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void coalescingDispatch() {
+        NodePath pathAb = NodePath.instance("a", "b");
+        NodePath pathAbc = NodePath.instance("a", "b", "c");
+
+        final List<Runnable> scheduledTasks = new ArrayList<>();
+        manager.setDispatchScheduler(new DispatchScheduler() {
+            @Override
+            public void schedule(Runnable flushTask) {
+                scheduledTasks.add(flushTask);
+            }
+        });
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+
+        RemindHandler handlerAbc = spy(new RemindHandler(manager));
+        handlerAbc.setPath(pathAbc);
+        handlerAbc.attachToManager();
+
+        for (int i = 0; i < 200; i++) {
+            manager.notifyRemindDataChanged(Collections.singletonList(new Remind(pathAbc)));
+        }
+
+        // 调度执行前不应有任何查询及刷新
+        verify(repo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        verify(handlerAb, never()).showReminds(ArgumentMatchers.<Remind>anyCollection());
+        assertThat(scheduledTasks.size(), is(1));
+
+        scheduledTasks.get(0).run();
+
+        // 合并为一次查询，每个handler只刷新一次
+        verify(repo, times(1)).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        verify(handlerAb, times(1)).showReminds(ArgumentMatchers.<Remind>anyCollection());
+        verify(handlerAbc, times(1)).showReminds(ArgumentMatchers.<Remind>anyCollection());
+
+        DispatchStats stats = manager.dispatchStats();
+        assertThat(stats.requestCount, is(202L));
+        assertThat(stats.flushCount, is(1L));
+        assertThat(stats.dispatchedHandlerCount, is(2L));
+    }
+
+    @Test
+    public void coalescingDispatchScheduleFailure() {
+        NodePath pathAb = NodePath.instance("a", "b");
+
+        final List<Runnable> scheduledTasks = new ArrayList<>();
+        final boolean[] rejecting = {true};
+        manager.setDispatchScheduler(new DispatchScheduler() {
+            @Override
+            public void schedule(Runnable flushTask) {
+                if (rejecting[0]) {
+                    throw new RejectedExecutionException("scheduler has been shutdown");
+                }
+                scheduledTasks.add(flushTask);
+            }
+        });
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+
+        try {
+            handlerAb.attachToManager();
+            fail("schedule failure should be thrown");
+        } catch (RejectedExecutionException ignored) {
+        }
+
+        // 调度器恢复后再次请求能够重新调度，之前积压的目标一并处理
+        rejecting[0] = false;
+        manager.notifyRemindDataChanged(Collections.singletonList(new Remind(pathAb)));
+        assertThat(scheduledTasks.size(), is(1));
+
+        scheduledTasks.get(0).run();
+        verify(handlerAb, times(1)).showReminds(ArgumentMatchers.<Remind>anyCollection());
+    }
+
+    @Test
+    public void notifyRemindDelta() {
+        NodePath pathAb = NodePath.instance("a", "b");
+        NodePath pathAbc = NodePath.instance("a", "b", "c");
+        NodePath pathAe = NodePath.instance("a", "e");
+
+        IndexedRemindRepo<Remind> indexedRepo = spy(new IndexedRemindRepo<Remind>());
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+
+        RemindHandler handlerAe = spy(new RemindHandler(manager));
+        handlerAe.setPath(pathAe);
+        handlerAe.attachToManager();
+
+        clearInvocations(indexedRepo, handlerAb, handlerAe);
+
+        // 增量合并到缓存后直接推送，不再查询仓库
+        Remind remindAbc = new Remind(pathAbc);
+        indexedRepo.addRemind(remindAbc);
+
+        verify(handlerAb).showRemindDelta(deltaCaptor.capture(), remindsCaptor.capture());
+        assertThat(new ArrayList<>(deltaCaptor.getValue().added()), is(Collections.singletonList(remindAbc)));
+        assertThat(deltaCaptor.getValue().removed().isEmpty(), is(true));
+        assertThat(new ArrayList<>(remindsCaptor.getValue()), is(Collections.singletonList(remindAbc)));
+        verify(handlerAe, never()).showReminds(ArgumentMatchers.<Remind>anyCollection());
+        verify(indexedRepo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+
+        clearInvocations(handlerAb);
+        indexedRepo.removeReminds(Collections.singletonList(remindAbc));
+        verify(handlerAb).showRemindDelta(deltaCaptor.capture(), remindsCaptor.capture());
+        assertThat(new ArrayList<>(deltaCaptor.getValue().removed()), is(Collections.singletonList(remindAbc)));
+        assertThat(remindsCaptor.getValue().isEmpty(), is(true));
+        verify(indexedRepo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+
+        // 无法得知变更内容时缓存失效，重新查询
+        manager.notifyRemindDataChanged();
+        verify(indexedRepo, times(1)).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+    }
+
+    @Test
+    public void notifyRemindDeltaCoalescing() {
+        NodePath pathAb = NodePath.instance("a", "b");
+
+        IndexedRemindRepo<Remind> indexedRepo = spy(new IndexedRemindRepo<Remind>());
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+
+        final List<Runnable> scheduledTasks = new ArrayList<>();
+        manager.setDispatchScheduler(new DispatchScheduler() {
+            @Override
+            public void schedule(Runnable flushTask) {
+                scheduledTasks.add(flushTask);
+            }
+        });
+        clearInvocations(indexedRepo, handlerAb);
+
+        for (int i = 0; i < 100; i++) {
+            indexedRepo.addRemind(new Remind(NodePath.instance("a", "b", String.valueOf(i))));
+        }
+        scheduledTasks.get(0).run();
+
+        // 合并分发时以缓存刷新
+        verify(handlerAb, times(1)).showReminds(remindsCaptor.capture());
+        assertThat(remindsCaptor.getValue().size(), is(100));
+        verify(indexedRepo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+    }
+
+    @Test
+    public void outOfOrderDelta() {
+        NodePath pathAb = NodePath.instance("a", "b");
+        Remind remindAbc = new Remind(NodePath.instance("a", "b", "c"));
+        Remind remindAbd = new Remind(NodePath.instance("a", "b", "d"));
+
+        IndexedRemindRepo<Remind> indexedRepo = spy(new IndexedRemindRepo<Remind>());
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        final List<Collection<? extends Remind>> shownReminds = new ArrayList<>();
+        RemindHandler handlerAb = new RemindHandler(manager) {
+            @Override
+            public void showReminds(Collection<? extends Remind> reminds) {
+                shownReminds.add(reminds);
+            }
+        };
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+
+        // 截留仓库的变更，模拟两个写线程的变更在锁外乱序到达
+        final List<RemindDelta<Remind>> deltas = new ArrayList<>();
+        indexedRepo.setRemindDataChangedListener(new RemindDeltaListener<Remind>() {
+            @Override
+            public void onRemindDataChanged() {}
+
+            @Override
+            public void onRemindDataChanged(Iterable<Remind> changedReminds) {}
+
+            @Override
+            public void onRemindDataChanged(RemindDelta<Remind> delta) {
+                deltas.add(delta);
+            }
+        });
+        indexedRepo.addRemind(remindAbd);
+        indexedRepo.addRemind(remindAbc);
+        indexedRepo.removeReminds(Collections.singleton(remindAbc));
+        assertThat(deltas.get(2).firstSequence(), is(deltas.get(1).lastSequence() + 1));
+
+        manager.notifyRemindDelta(deltas.get(0));
+        assertThat(new ArrayList<>(shownReminds.get(shownReminds.size() - 1)), is(Collections.singletonList(remindAbd)));
+
+        // 移除先于添加到达，两者都不能合并到缓存，各自使缓存失效后重新查询仓库，最终不会展示已被移除的消息
+        clearInvocations(indexedRepo);
+        manager.notifyRemindDelta(deltas.get(2));
+        manager.notifyRemindDelta(deltas.get(1));
+        verify(indexedRepo, times(2)).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        assertThat(new ArrayList<>(shownReminds.get(shownReminds.size() - 1)), is(Collections.singletonList(remindAbd)));
+
+        // 重新按顺序到达的变更依然合并到缓存
+        clearInvocations(indexedRepo);
+        indexedRepo.removeReminds(Collections.singleton(remindAbd));
+        manager.notifyRemindDelta(deltas.get(3));
+        verify(indexedRepo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        assertThat(shownReminds.get(shownReminds.size() - 1).isEmpty(), is(true));
+    }
+
+    @Test
+    public void skipUnchangedReminds() {
+        NodePath pathAb = NodePath.instance("a", "b");
+        NodePath pathAbc = NodePath.instance("a", "b", "c");
+
+        IndexedRemindRepo<Remind> indexedRepo = new IndexedRemindRepo<>();
+        Remind remindAb = new Remind(pathAb);
+        indexedRepo.addRemind(remindAb);
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+        verify(handlerAb).showReminds(Collections.singletonList(remindAb));
+
+        // 消息未变化，不再展示
+        clearInvocations(handlerAb);
+        manager.notifyRemindDataChanged();
+        manager.notifyRemindDataChanged(Collections.singletonList(remindAb));
+        verify(handlerAb, never()).showReminds(ArgumentMatchers.<Remind>anyCollection());
+        verify(handlerAb, never()).showRemindDelta(ArgumentMatchers.<RemindDelta<Remind>>any(), ArgumentMatchers.<Remind>anyCollection());
+
+        // 消息变化时以差异展示
+        Remind remindAbc = new Remind(pathAbc);
+        indexedRepo.addRemind(remindAbc);
+        verify(handlerAb).showRemindDelta(deltaCaptor.capture(), ArgumentMatchers.<Remind>anyCollection());
+        assertThat(new ArrayList<>(deltaCaptor.getValue().added()), is(Collections.singletonList(remindAbc)));
+
+        DispatchStats stats = manager.dispatchStats();
+        assertThat(stats.deliveredHandlerCount, is(2L));
+        assertThat(stats.skippedHandlerCount, is(2L));
+        assertThat(stats.skipRate(), is(0.5));
+    }
+
+    @Test
+    public void asyncExecutors() {
+        NodePath pathAb = NodePath.instance("a", "b");
+
+        IndexedRemindRepo<Remind> indexedRepo = spy(new IndexedRemindRepo<Remind>());
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        final List<Runnable> queryTasks = new ArrayList<>();
+        final List<Runnable> deliveryTasks = new ArrayList<>();
+        manager.setAsyncExecutors(
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queryTasks.add(command);
+                    }
+                },
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        deliveryTasks.add(command);
+                    }
+                }
+        );
+
+        RemindHandler handlerAb = spy(new RemindHandler(manager));
+        handlerAb.setPath(pathAb);
+        handlerAb.attachToManager();
+        manager.notifyRemindDataChanged();
+
+        // 查询及展示都不在调用线程执行
+        verify(indexedRepo, never()).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        assertThat(queryTasks.size(), is(2));
+
+        // 被取代的查询不再执行
+        for (Runnable task : queryTasks) {
+            task.run();
+        }
+        verify(indexedRepo, times(1)).getMatchPathSubReminds(ArgumentMatchers.<NodePath>anyCollection());
+        verify(handlerAb, never()).showReminds(ArgumentMatchers.<Remind>anyCollection());
+        assertThat(deliveryTasks.size(), is(1));
+
+        deliveryTasks.get(0).run();
+        verify(handlerAb).showReminds(ArgumentMatchers.<Remind>anyCollection());
+
+        // 查询完成后、展示前又有新的分发，旧的展示被放弃
+        queryTasks.clear();
+        deliveryTasks.clear();
+        clearInvocations(handlerAb);
+        indexedRepo.addRemind(new Remind(NodePath.instance("a", "b", "c")));
+        manager.notifyRemindDataChanged();
+        queryTasks.get(0).run();
+        indexedRepo.addRemind(new Remind(NodePath.instance("a", "b", "d")));
+        for (Runnable task : new ArrayList<>(queryTasks.subList(1, queryTasks.size()))) {
+            task.run();
+        }
+        for (Runnable task : deliveryTasks) {
+            task.run();
+        }
+        verify(handlerAb, times(1)).showReminds(remindsCaptor.capture());
+        assertThat(remindsCaptor.getValue().size(), is(2));
+        // 1次被取代的查询及2次被取代的展示
+        assertThat(manager.dispatchStats().supersededHandlerCount, is(3L));
+    }
+
+    @Test
+    public void parallelLookup() {
+        int handlerCount = 300;
+        IndexedRemindRepo<Remind> indexedRepo = new IndexedRemindRepo<>();
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        final Thread dispatchThread = Thread.currentThread();
+        final Map<NodePath, Collection<? extends Remind>> shown = new HashMap<>();
+        for (int i = 0; i < handlerCount; i++) {
+            final NodePath path = NodePath.instance("p", String.valueOf(i));
+            RemindHandler handler = new RemindHandler(manager) {
+                @Override
+                public void showReminds(Collection<? extends Remind> reminds) {
+                    // 展示回调不在线程池中执行
+                    assertThat(Thread.currentThread(), is(dispatchThread));
+                    shown.put(path, reminds);
+                }
+            };
+            handler.setPath(path);
+            handler.attachToManager();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            manager.setLookupPool(pool);
+            shown.clear();
+            List<Remind> reminds = new ArrayList<>();
+            for (int i = 0; i < handlerCount; i++) {
+                reminds.add(new Remind(NodePath.instance("p", String.valueOf(i), "r")));
+            }
+            indexedRepo.addReminds(reminds);
+            manager.notifyRemindDataChanged();
+
+            assertThat(shown.size(), is(handlerCount));
+            for (Remind remind : reminds) {
+                NodePath handlerPath = NodePath.instance(remind.path().nodes().subList(0, 2));
+                assertThat(new ArrayList<>(shown.get(handlerPath)), is(Collections.singletonList(remind)));
+            }
+        } finally {
+            manager.setLookupPool(null);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void weakRemindHandlers() throws InterruptedException {
+        TreeModeRemindHandlerManager<Remind> weakManager = new TreeModeRemindHandlerManager<>(repo, true);
+        RemindHandler keptHandler = new RemindHandler(weakManager);
+        keptHandler.setPath(NodePath.instance("a"));
+        keptHandler.attachToManager();
+        attachUnreferencedHandler(weakManager, NodePath.instance("a", "b"));
+        assertThat(weakManager.liveRemindHandlerCount(), is(2));
+
+        // 未解除就不再被引用的handler被回收后会被清除
+        for (int i = 0; i < 50 && weakManager.liveRemindHandlerCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(weakManager.liveRemindHandlerCount(), is(1));
+        assertThat(weakManager.collectedRemindHandlerCount(), is(1L));
+        assertThat(weakManager.remindHandlerAttached(keptHandler), is(true));
+
+        // 强引用模式下handler在解除前不会被回收
+        attachUnreferencedHandler(manager, NodePath.instance("a", "b"));
+        System.gc();
+        assertThat(manager.liveRemindHandlerCount(), is(1));
+        assertThat(manager.collectedRemindHandlerCount(), is(0L));
+    }
+
+    private static void attachUnreferencedHandler(RemindHandlerManager<Remind> manager, NodePath path) {
+        RemindHandler handler = new RemindHandler(manager);
+        handler.setPath(path);
+        handler.attachToManager();
+    }
+
+    @Test
+    public void patternPaths() {
+        Node list = Node.instance("list");
+        Remind item1 = new Remind(NodePath.instance(list, Node.instance("item", "itemId", "1")));
+        Remind item2 = new Remind(NodePath.instance(list, Node.instance("item", "itemId", "2")));
+        Remind item2Badge = new Remind(NodePath.instance(list, Node.instance("item", "itemId", "2"), Node.instance("badge")));
+        Remind other = new Remind(NodePath.instance(list, Node.instance("other")));
+
+        IndexedRemindRepo<Remind> indexedRepo = new IndexedRemindRepo<>();
+        indexedRepo.addReminds(Arrays.asList(item1, item2, item2Badge, other));
+        TreeModeRemindHandlerManager<Remind> manager = new TreeModeRemindHandlerManager<>(indexedRepo);
+
+        RemindHandler anyItemHandler = spy(new RemindHandler(manager));
+        anyItemHandler.setPath(NodePath.instance(list, NodePattern.anyArgs("item", "itemId")));
+        anyItemHandler.attachToManager();
+        RemindHandler item1Handler = spy(new RemindHandler(manager));
+        item1Handler.setPath(NodePath.instance(list, NodePattern.argIn("item", "itemId", Collections.singleton("1"))));
+        item1Handler.attachToManager();
+
+        verify(anyItemHandler).showReminds(remindsCaptor.capture());
+        assertThat(new HashSet<Remind>(remindsCaptor.getValue()), is(new HashSet<>(Arrays.asList(item1, item2, item2Badge))));
+        verify(item1Handler).showReminds(Collections.singletonList(item1));
+
+        // 新增消息只刷新模式匹配的handler
+        clearInvocations(anyItemHandler, item1Handler);
+        Remind item3 = new Remind(NodePath.instance(list, Node.instance("item", "itemId", "3")));
+        indexedRepo.addRemind(item3);
+        verify(anyItemHandler).showRemindDelta(deltaCaptor.capture(), ArgumentMatchers.<Remind>anyCollection());
+        assertThat(new ArrayList<>(deltaCaptor.getValue().added()), is(Collections.singletonList(item3)));
+        verify(item1Handler, never()).showRemindDelta(ArgumentMatchers.<RemindDelta<Remind>>any(), ArgumentMatchers.<Remind>anyCollection());
+
+        // 消除模式路径下的消息，不影响其他消息
+        manager.happenedRemindHandlerWithSubPath(anyItemHandler);
+        assertThat(new ArrayList<>(indexedRepo.getAllReminds()), is(Collections.singletonList(other)));
+        verify(item1Handler).showRemindDelta(ArgumentMatchers.<RemindDelta<Remind>>any(), ArgumentMatchers.eq(Collections.<Remind>emptyList()));
+    }
+}
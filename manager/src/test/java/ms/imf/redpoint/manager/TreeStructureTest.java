@@ -15,6 +15,7 @@ import java.util.Set;
 
 import ms.imf.redpoint.entity.Node;
 import ms.imf.redpoint.entity.NodePath;
+import ms.imf.redpoint.entity.NodePattern;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -26,7 +27,12 @@ public class TreeStructureTest {
     public static TreeStructure[] data() {
         return new TreeStructure[]{
                 new TreeStructure<Node, String>(),
-                new ConcurrentSafeTreeStructure<Node, String>()
+                new ConcurrentSafeTreeStructure<Node, String>(),
+                new CopyOnWriteTreeStructure<Node, String>(),
+                new TreeStructure<Node, String>(NodePatternMatcher.INSTANCE),
+                new CopyOnWriteTreeStructure<Node, String>(NodePatternMatcher.INSTANCE),
+                new CompactTreeStructure<Node, String>(),
+                new CompactTreeStructure<Node, String>(NodePatternMatcher.INSTANCE)
         };
     }
 
@@ -141,6 +147,61 @@ public class TreeStructureTest {
         }
     }
 
+    @Test
+    public void clearSub() {
+        tree.put("a", NodePath.instance("a").nodes());
+        tree.put("abc", NodePath.instance("a", "b", "c").nodes());
+        tree.put("abd", NodePath.instance("a", "b", "d").nodes());
+        tree.put("xbc", NodePath.instance("x", "b", "c").nodes());
+
+        tree.clearSub(NodePath.instance("a", "b").nodes());
+        assertThat(
+                tree.getMatchPathSubData(NodePath.instance("a").nodes()),
+                is(Collections.singleton("a"))
+        );
+        assertThat(
+                tree.getMatchPathData(NodePath.instance("x", "b", "c").nodes()),
+                is(Collections.singleton("xbc"))
+        );
+
+        // 被清空的子树可以再次写入
+        tree.put("abc", NodePath.instance("a", "b", "c").nodes());
+        assertThat(
+                tree.getMatchPathSubData(NodePath.instance("a", "b").nodes()),
+                is(Collections.singleton("abc"))
+        );
+
+        tree.clearSub(NodePath.instance("a").nodes());
+        tree.clearSub(NodePath.instance("y").nodes());
+        assertThat(
+                tree.getLongestPathData(),
+                is(Collections.singleton("xbc"))
+        );
+
+        tree.clearSub(NodePath.EMPTY.nodes());
+        assertThat(
+                tree.getLongestPathData(),
+                is(Collections.<String>emptySet())
+        );
+    }
+
+    @Test
+    public void getSubTreePathData() {
+        tree.put("ab", NodePath.instance("a", "b").nodes());
+        tree.put("abc", NodePath.instance("a", "b", "c").nodes());
+        tree.put("ad", NodePath.instance("a", "d").nodes());
+        tree.put("ade", NodePath.instance("a", "d", "e").nodes());
+        tree.put("xy", NodePath.instance("x", "y").nodes());
+
+        Set<String> longest = new HashSet<>(Arrays.asList("abc", "ade"));
+        Set<String> shortest = new HashSet<>(Arrays.asList("ab", "ad"));
+        assertThat(tree.getLongestPathData(NodePath.instance("a").nodes()), is(longest));
+        assertThat(tree.getShortestPathData(NodePath.instance("a").nodes()), is(shortest));
+        assertThat(tree.getShortestPathData(NodePath.instance("a", "b").nodes()), is(Collections.singleton("ab")));
+        assertThat(tree.getLongestPathData(NodePath.instance("z").nodes()), is(Collections.<String>emptySet()));
+        assertThat(tree.getShortestPathData(NodePath.instance("z").nodes()), is(Collections.<String>emptySet()));
+    }
+
     @Test
     public void getMatchPathData() {
         String data1 = "1";
@@ -371,6 +432,94 @@ public class TreeStructureTest {
         );
     }
 
+    @Test
+    public void patternNodes() {
+        if (tree.matcher == null) {
+            return;
+        }
+
+        Node list = Node.instance("list");
+        NodePath anyItem = NodePath.instance(list, NodePattern.anyArgs("item", "itemId"));
+        NodePath item12 = NodePath.instance(list, NodePattern.argIn("item", "itemId", Arrays.asList("1", "2")));
+        NodePath anyBadge = NodePath.instance(list, NodePattern.any(), Node.instance("badge"));
+        NodePath item1 = NodePath.instance(list, Node.instance("item", "itemId", "1"));
+        NodePath item3Badge = NodePath.instance(list, Node.instance("item", "itemId", "3"), Node.instance("badge"));
+
+        tree.put("list", NodePath.instance(list).nodes());
+        tree.put("anyItem", anyItem.nodes());
+        tree.put("item12", item12.nodes());
+        tree.put("anyBadge", anyBadge.nodes());
+        tree.put("item1", item1.nodes());
+
+        // 树中的模式节点被查询路径中的节点匹配
+        assertThat(
+                tree.getPathRangeAllData(item1.nodes()),
+                CoreMatchers.<Set<String>>is(new HashSet<>(Arrays.asList("list", "anyItem", "item12", "item1")))
+        );
+        assertThat(
+                tree.getPathRangeAllData(item3Badge.nodes()),
+                CoreMatchers.<Set<String>>is(new HashSet<>(Arrays.asList("list", "anyItem", "anyBadge")))
+        );
+        assertThat(
+                tree.getMatchPathData(item3Badge.nodes()),
+                CoreMatchers.<Set<String>>is(Collections.singleton("anyBadge"))
+        );
+        // 参数名集合不同的节点不被匹配
+        assertThat(
+                tree.getMatchPathData(NodePath.instance(list, Node.instance("item")).nodes()),
+                is(Collections.<String>emptySet())
+        );
+
+        // 查询路径中的模式节点匹配树中的节点，模式节点之间只按相等匹配
+        assertThat(
+                tree.getMatchPathSubData(anyItem.nodes()),
+                CoreMatchers.<Set<String>>is(new HashSet<>(Arrays.asList("anyItem", "item1")))
+        );
+
+        tree.remove("anyItem", anyItem.nodes());
+        tree.remove("anyBadge", anyBadge.nodes());
+        assertThat(
+                tree.getPathRangeAllData(item3Badge.nodes()),
+                CoreMatchers.<Set<String>>is(Collections.singleton("list"))
+        );
+        assertThat(
+                tree.getPathRangeAllData(item1.nodes()),
+                CoreMatchers.<Set<String>>is(new HashSet<>(Arrays.asList("list", "item12", "item1")))
+        );
+    }
+
+    @Test
+    public void manyChildrenAndData() {
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            tree.put("child" + i, NodePath.instance("a", String.valueOf(i)).nodes());
+            tree.put("data" + i, NodePath.instance("a").nodes());
+        }
+        assertThat(tree.getMatchPathSubData(NodePath.instance("a").nodes()).size(), is(count * 2));
+
+        // 移除大部分子节点及数据，剩余的依然能被查询到
+        for (int i = 0; i < count - 3; i++) {
+            tree.remove("child" + i, NodePath.instance("a", String.valueOf(i)).nodes());
+            tree.remove("data" + i, NodePath.instance("a").nodes());
+        }
+        for (int i = count - 3; i < count; i++) {
+            assertThat(
+                    tree.getMatchPathData(NodePath.instance("a", String.valueOf(i)).nodes()),
+                    is(Collections.singleton("child" + i))
+            );
+        }
+        assertThat(
+                tree.getMatchPathData(NodePath.instance("a").nodes()),
+                CoreMatchers.<Set<String>>is(new HashSet<>(Arrays.asList("data97", "data98", "data99")))
+        );
+        assertThat(tree.getMatchPathSubData(NodePath.instance("a").nodes()).size(), is(6));
+
+        // 被移除的节点可以再次放入
+        tree.put("child0", NodePath.instance("a", "0").nodes());
+        assertThat(tree.getMatchPathData(NodePath.instance("a", "0").nodes()), is(Collections.singleton("child0")));
+        assertThat(tree.getLongestPathData().size(), is(4));
+    }
+
     private Iterable<? extends Iterable<Node>> pathsToNodes(Iterable<NodePath> paths) {
         List<List<Node>> nodes = new ArrayList<>();
 
@@ -380,4 +529,4 @@ public class TreeStructureTest {
 
         return nodes;
     }
-}
\ No newline at end of file
+}
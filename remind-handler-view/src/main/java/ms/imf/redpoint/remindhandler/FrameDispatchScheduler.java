@@ -0,0 +1,54 @@
+package ms.imf.redpoint.remindhandler;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import ms.imf.redpoint.manager.DispatchScheduler;
+
+/**
+ * 帧同步的分发调度器，合并一帧内的所有刷新请求并在下一帧绘制前于主线程执行
+ * <p>
+ * API 16 以下没有{@link Choreographer}，以主线程延迟一帧时长的方式近似
+ *
+ * @see DispatchScheduler
+ * @see ms.imf.redpoint.manager.TreeModeRemindHandlerManager#setDispatchScheduler(DispatchScheduler)
+ */
+public class FrameDispatchScheduler implements DispatchScheduler {
+
+    private static final long FALLBACK_FRAME_INTERVAL_MILLIS = 16;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void schedule(final Runnable flushTask) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            mainHandler.postDelayed(flushTask, FALLBACK_FRAME_INTERVAL_MILLIS);
+            return;
+        }
+
+        // Choreographer为线程单例，需在主线程获取
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            postFrameCallback(flushTask);
+        } else {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    postFrameCallback(flushTask);
+                }
+            });
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void postFrameCallback(final Runnable flushTask) {
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                flushTask.run();
+            }
+        });
+    }
+}